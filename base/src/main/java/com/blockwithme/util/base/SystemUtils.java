@@ -87,9 +87,12 @@ public abstract class SystemUtils {
     @SuppressWarnings("rawtypes")
     protected static final Provider[] NO_PROVIDER = new Provider[0];
 
-    /** The cached Providers. */
+    /**
+     * The cached Providers. This map is never modified once published;
+     * it is replaced by a modified copy instead, so readers need no lock.
+     */
     @SuppressWarnings("rawtypes")
-    private static final HashMap<Class, Provider[]> PROVIDERS = new HashMap<>();
+    private static volatile HashMap<Class, Provider[]> providers = new HashMap<>();
 
     /** Returns the Class object associated with the class or interface with the supplied string name. */
     protected abstract Class<?> forNameImpl(String name);
@@ -298,20 +301,30 @@ public abstract class SystemUtils {
         if (clazz == null) {
             throw new NullPointerException("clazz");
         }
-        Provider<T>[] result;
-        synchronized (PROVIDERS) {
-            result = PROVIDERS.get(clazz);
+        Provider<T>[] result = providers.get(clazz);
+        if (result == null) {
+            result = cacheProvidersFor(clazz);
+        }
+        return result;
+    }
+
+    /** Resolves, and caches, the Providers for the supplied Class. */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static synchronized <T> Provider<T>[] cacheProvidersFor(
+            final Class<T> clazz) {
+        Provider<T>[] result = providers.get(clazz);
+        if (result == null) {
+            try {
+                result = systemUtils.providersForImpl(clazz);
+            } catch (final Throwable t) {
+                // NOP
+            }
             if (result == null) {
-                try {
-                    result = systemUtils.providersForImpl(clazz);
-                } catch (final Throwable t) {
-                    // NOP
-                }
-                if (result == null) {
-                    result = NO_PROVIDER;
-                }
-                PROVIDERS.put(clazz, result);
+                result = NO_PROVIDER;
             }
+            final HashMap<Class, Provider[]> copy = new HashMap<>(providers);
+            copy.put(clazz, result);
+            providers = copy;
         }
         return result;
     }
@@ -75,6 +75,9 @@ public class GenericObject {
      */
     private Object[] properties;
 
+    /** Was this generic object released to a GenericObjectPool, and not acquired since? */
+    boolean pooled;
+
     /** Creates a default generic object. */
     public GenericObject() {
         objects = NO_OBJECTS;
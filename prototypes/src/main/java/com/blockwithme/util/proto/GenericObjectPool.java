@@ -0,0 +1,267 @@
+/*
+ * Copyright (C) 2014 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.util.proto;
+
+import java.lang.ref.WeakReference;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A pool of GenericObjects, with pre-allocated arrays.
+ *
+ * Acquired generic objects must be explicitly released, after which they
+ * must not be used anymore. Released generic objects are cleared, and kept
+ * in a free list of the releasing thread, so acquire() and release() do not
+ * need any synchronization. Arrays grown while in use are kept.
+ *
+ * Releasing a generic object twice, without acquiring it in between, fails,
+ * even if it was discarded the first time. The check is not synchronized,
+ * so releasing the same generic object concurrently from two threads is not
+ * reliably detected.
+ *
+ * The free lists of terminated threads are dropped (and their counters kept)
+ * when another thread first uses the pool, or when getStatistics() is called.
+ *
+ * @author monster
+ */
+public class GenericObjectPool {
+
+    /** Pool statistics. */
+    public static final class Statistics {
+        /** Number of generic objects created by the pool. */
+        public final long created;
+
+        /** Number of acquire() calls. */
+        public final long acquired;
+
+        /** Number of release() calls. */
+        public final long released;
+
+        /** Number of released generic objects dropped, because the free list was full. */
+        public final long discarded;
+
+        /** Constructor */
+        Statistics(final long theCreated, final long theAcquired,
+                final long theReleased, final long theDiscarded) {
+            created = theCreated;
+            acquired = theAcquired;
+            released = theReleased;
+            discarded = theDiscarded;
+        }
+
+        /** Returns the number of generic objects currently in use. */
+        public long outstanding() {
+            return acquired - released;
+        }
+
+        /** Returns the ratio of acquire() calls served from a free list. */
+        public double reuseRatio() {
+            return (acquired == 0) ? 0 : (acquired - created)
+                    / (double) acquired;
+        }
+
+        /** toString */
+        @Override
+        public String toString() {
+            return "Statistics(created=" + created + ", acquired=" + acquired
+                    + ", released=" + released + ", discarded=" + discarded
+                    + ", outstanding=" + outstanding() + ")";
+        }
+    }
+
+    /**
+     * The free list of one thread. The counters are only written by the
+     * owning thread, but can be read by any thread.
+     */
+    private static final class FreeList {
+        /** The owning thread. */
+        final WeakReference<Thread> owner;
+
+        /** The free generic objects. */
+        final GenericObject[] free;
+
+        /** The number of free generic objects. */
+        int size;
+
+        /** Number of generic objects created. */
+        final AtomicLong created = new AtomicLong();
+
+        /** Number of acquire() calls. */
+        final AtomicLong acquired = new AtomicLong();
+
+        /** Number of release() calls. */
+        final AtomicLong released = new AtomicLong();
+
+        /** Number of released generic objects dropped. */
+        final AtomicLong discarded = new AtomicLong();
+
+        /** Constructor */
+        FreeList(final int capacity) {
+            owner = new WeakReference<>(Thread.currentThread());
+            free = new GenericObject[capacity];
+        }
+
+        /** Is the owning thread terminated? */
+        boolean isDead() {
+            final Thread thread = owner.get();
+            return (thread == null) || !thread.isAlive();
+        }
+
+        /** Increments a counter, only written by the owning thread. */
+        static void inc(final AtomicLong counter) {
+            counter.lazySet(counter.get() + 1);
+        }
+    }
+
+    /** The minimum objects capacity of the generic objects. */
+    private final int objectsCapacity;
+
+    /** The minimum data capacity of the generic objects. */
+    private final int dataCapacity;
+
+    /** The maximum size of the free lists. */
+    private final int maxFree;
+
+    /** All the free lists of live threads, for the statistics. */
+    private final CopyOnWriteArrayList<FreeList> freeLists = new CopyOnWriteArrayList<>();
+
+    /** Number of generic objects created, by terminated threads. */
+    private long retiredCreated;
+
+    /** Number of acquire() calls, by terminated threads. */
+    private long retiredAcquired;
+
+    /** Number of release() calls, by terminated threads. */
+    private long retiredReleased;
+
+    /** Number of released generic objects dropped, by terminated threads. */
+    private long retiredDiscarded;
+
+    /** The free list of the current thread. */
+    private final ThreadLocal<FreeList> freeList = new ThreadLocal<FreeList>() {
+        @Override
+        protected FreeList initialValue() {
+            final FreeList result = new FreeList(maxFree);
+            synchronized (freeLists) {
+                pruneDeadFreeLists();
+                freeLists.add(result);
+            }
+            return result;
+        }
+    };
+
+    /**
+     * Creates a GenericObjectPool.
+     *
+     * @param minObjectsCapacity The minimum size for the object arrays.
+     * @param minDataCapacity The minimum size for the data arrays.
+     * @param maxFreePerThread The maximum number of free generic objects kept, per thread.
+     */
+    public GenericObjectPool(final int minObjectsCapacity,
+            final int minDataCapacity, final int maxFreePerThread) {
+        if ((minObjectsCapacity < 0) || (minDataCapacity < 0)
+                || (maxFreePerThread < 0)) {
+            throw new IllegalArgumentException("Negative parameter: "
+                    + minObjectsCapacity + ", " + minDataCapacity + ", "
+                    + maxFreePerThread);
+        }
+        objectsCapacity = minObjectsCapacity;
+        dataCapacity = minDataCapacity;
+        maxFree = maxFreePerThread;
+    }
+
+    /** Returns a cleared generic object, with at least the pool capacities. */
+    public GenericObject acquire() {
+        final FreeList list = freeList.get();
+        FreeList.inc(list.acquired);
+        if (list.size > 0) {
+            final int index = --list.size;
+            final GenericObject result = list.free[index];
+            list.free[index] = null;
+            result.pooled = false;
+            return result;
+        }
+        FreeList.inc(list.created);
+        return new GenericObject(objectsCapacity, dataCapacity);
+    }
+
+    /**
+     * Releases a generic object. It is cleared, and must not be used
+     * anymore by the caller.
+     *
+     * @throws IllegalStateException if it was already released, and not acquired since.
+     */
+    public void release(final GenericObject obj) {
+        Objects.requireNonNull(obj, "obj");
+        if (obj.pooled) {
+            throw new IllegalStateException("Generic object already released");
+        }
+        final FreeList list = freeList.get();
+        FreeList.inc(list.released);
+        obj.pooled = true;
+        if ((list.size < list.free.length)
+                && (obj.getObjectsCapacity() >= objectsCapacity)
+                && (obj.getDataCapacity() >= dataCapacity)) {
+            obj.clear();
+            list.free[list.size++] = obj;
+        } else {
+            FreeList.inc(list.discarded);
+        }
+    }
+
+    /**
+     * Returns the statistics, summed over all threads. While other threads
+     * use the pool, the values are approximate.
+     */
+    public Statistics getStatistics() {
+        synchronized (freeLists) {
+            pruneDeadFreeLists();
+            long created = retiredCreated;
+            long acquired = retiredAcquired;
+            long released = retiredReleased;
+            long discarded = retiredDiscarded;
+            for (final FreeList list : freeLists) {
+                created += list.created.get();
+                acquired += list.acquired.get();
+                released += list.released.get();
+                discarded += list.discarded.get();
+            }
+            return new Statistics(created, acquired, released, discarded);
+        }
+    }
+
+    /** Returns the number of free lists currently kept. */
+    int freeListCount() {
+        return freeLists.size();
+    }
+
+    /**
+     * Drops the free lists of terminated threads, after adding their
+     * counters to the retired totals. Must hold the freeLists lock.
+     */
+    private void pruneDeadFreeLists() {
+        for (final FreeList list : freeLists) {
+            if (list.isDead()) {
+                retiredCreated += list.created.get();
+                retiredAcquired += list.acquired.get();
+                retiredReleased += list.released.get();
+                retiredDiscarded += list.discarded.get();
+                freeLists.remove(list);
+            }
+        }
+    }
+}
@@ -0,0 +1,561 @@
+/*
+ * Copyright (C) 2014 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.util.proto;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Maps named fields to positions in the arrays of a GenericObject.
+ *
+ * Every primitive field gets a slot in the data array, and a bit offset
+ * within that slot. Small primitives share long words: a boolean takes one
+ * bit, a byte 8, short and char 16, int and float 32. Object fields get a
+ * slot in the object array.
+ *
+ * The positions are computed once, when the schema is built. The typed
+ * Field instances then do all the index and bit arithmetic. Generic objects
+ * used with a schema should not also be accessed through the index-based,
+ * or cursor, API of GenericObject, since that API uses whole slots.
+ *
+ * @author monster
+ */
+public final class GenericObjectSchema {
+
+    /** A field of a schema. */
+    public abstract static class Field {
+        /** The field name. */
+        private final String name;
+
+        /** The field type. */
+        private final Class<?> type;
+
+        /** The slot, in the data or object array. */
+        private final int slot;
+
+        /** The bit offset, within the data slot. */
+        private final int shift;
+
+        /** The number of bits, 0 for objects. */
+        private final int bits;
+
+        /** The mask of the value bits, once shifted. */
+        private final long mask;
+
+        /** Constructor */
+        Field(final String theName, final Class<?> theType, final int theSlot,
+                final int theShift, final int theBits) {
+            name = theName;
+            type = theType;
+            slot = theSlot;
+            shift = theShift;
+            bits = theBits;
+            mask = (theBits == 64) ? -1L : ((1L << theBits) - 1) << theShift;
+        }
+
+        /** Returns the field name. */
+        public final String name() {
+            return name;
+        }
+
+        /** Returns the field type. */
+        public final Class<?> type() {
+            return type;
+        }
+
+        /** Returns the slot, in the data array, or in the object array. */
+        public final int slot() {
+            return slot;
+        }
+
+        /** Returns the bit offset, within the data slot. */
+        public final int shift() {
+            return shift;
+        }
+
+        /** Returns the number of bits, or 0 for object fields. */
+        public final int bits() {
+            return bits;
+        }
+
+        /** Reads the (unshifted, unmasked) bits of the field. */
+        final long read(final GenericObject obj) {
+            return (obj.getLong(slot) & mask) >>> shift;
+        }
+
+        /** Writes the bits of the field, which must fit in the field. */
+        final GenericObject write(final GenericObject obj, final long value) {
+            if (bits == 64) {
+                return obj.setLong(slot, value);
+            }
+            final long old = obj.getLong(slot);
+            return obj.setLong(slot, (old & ~mask) | (value << shift));
+        }
+
+        /** toString */
+        @Override
+        public String toString() {
+            return getClass().getSimpleName() + "(" + name + ", slot=" + slot
+                    + ", shift=" + shift + ", bits=" + bits + ")";
+        }
+    }
+
+    /** A boolean field. */
+    public static final class BooleanField extends Field {
+        /** Constructor */
+        BooleanField(final String theName, final int theSlot, final int theShift) {
+            super(theName, boolean.class, theSlot, theShift, 1);
+        }
+
+        /** Returns the value of the field. */
+        public boolean get(final GenericObject obj) {
+            final long bits = read(obj);
+            return bits != 0;
+        }
+
+        /** Sets the value of the field. */
+        public GenericObject set(final GenericObject obj, final boolean value) {
+            return write(obj, (value ? 1L : 0L));
+        }
+    }
+
+    /** A byte field. */
+    public static final class ByteField extends Field {
+        /** Constructor */
+        ByteField(final String theName, final int theSlot, final int theShift) {
+            super(theName, byte.class, theSlot, theShift, 8);
+        }
+
+        /** Returns the value of the field. */
+        public byte get(final GenericObject obj) {
+            final long bits = read(obj);
+            return (byte) bits;
+        }
+
+        /** Sets the value of the field. */
+        public GenericObject set(final GenericObject obj, final byte value) {
+            return write(obj, (value & 0xFFL));
+        }
+    }
+
+    /** A short field. */
+    public static final class ShortField extends Field {
+        /** Constructor */
+        ShortField(final String theName, final int theSlot, final int theShift) {
+            super(theName, short.class, theSlot, theShift, 16);
+        }
+
+        /** Returns the value of the field. */
+        public short get(final GenericObject obj) {
+            final long bits = read(obj);
+            return (short) bits;
+        }
+
+        /** Sets the value of the field. */
+        public GenericObject set(final GenericObject obj, final short value) {
+            return write(obj, (value & 0xFFFFL));
+        }
+    }
+
+    /** A char field. */
+    public static final class CharField extends Field {
+        /** Constructor */
+        CharField(final String theName, final int theSlot, final int theShift) {
+            super(theName, char.class, theSlot, theShift, 16);
+        }
+
+        /** Returns the value of the field. */
+        public char get(final GenericObject obj) {
+            final long bits = read(obj);
+            return (char) bits;
+        }
+
+        /** Sets the value of the field. */
+        public GenericObject set(final GenericObject obj, final char value) {
+            return write(obj, (long) value);
+        }
+    }
+
+    /** A int field. */
+    public static final class IntField extends Field {
+        /** Constructor */
+        IntField(final String theName, final int theSlot, final int theShift) {
+            super(theName, int.class, theSlot, theShift, 32);
+        }
+
+        /** Returns the value of the field. */
+        public int get(final GenericObject obj) {
+            final long bits = read(obj);
+            return (int) bits;
+        }
+
+        /** Sets the value of the field. */
+        public GenericObject set(final GenericObject obj, final int value) {
+            return write(obj, (value & 0xFFFFFFFFL));
+        }
+    }
+
+    /** A float field. */
+    public static final class FloatField extends Field {
+        /** Constructor */
+        FloatField(final String theName, final int theSlot, final int theShift) {
+            super(theName, float.class, theSlot, theShift, 32);
+        }
+
+        /** Returns the value of the field. */
+        public float get(final GenericObject obj) {
+            final long bits = read(obj);
+            return Float.intBitsToFloat((int) bits);
+        }
+
+        /** Sets the value of the field. */
+        public GenericObject set(final GenericObject obj, final float value) {
+            return write(obj, (Float.floatToRawIntBits(value) & 0xFFFFFFFFL));
+        }
+    }
+
+    /** A long field. */
+    public static final class LongField extends Field {
+        /** Constructor */
+        LongField(final String theName, final int theSlot, final int theShift) {
+            super(theName, long.class, theSlot, theShift, 64);
+        }
+
+        /** Returns the value of the field. */
+        public long get(final GenericObject obj) {
+            final long bits = read(obj);
+            return bits;
+        }
+
+        /** Sets the value of the field. */
+        public GenericObject set(final GenericObject obj, final long value) {
+            return write(obj, value);
+        }
+    }
+
+    /** A double field. */
+    public static final class DoubleField extends Field {
+        /** Constructor */
+        DoubleField(final String theName, final int theSlot, final int theShift) {
+            super(theName, double.class, theSlot, theShift, 64);
+        }
+
+        /** Returns the value of the field. */
+        public double get(final GenericObject obj) {
+            final long bits = read(obj);
+            return Double.longBitsToDouble(bits);
+        }
+
+        /** Sets the value of the field. */
+        public GenericObject set(final GenericObject obj, final double value) {
+            return write(obj, Double.doubleToRawLongBits(value));
+        }
+    }
+
+    /** An object field. */
+    public static final class ObjectField<E> extends Field {
+        /** Constructor */
+        ObjectField(final String theName, final Class<E> theType,
+                final int theSlot) {
+            super(theName, theType, theSlot, 0, 0);
+        }
+
+        /** Returns the value of the field. */
+        public E get(final GenericObject obj) {
+            return obj.getObject(slot());
+        }
+
+        /** Sets the value of the field. */
+        public GenericObject set(final GenericObject obj, final E value) {
+            return obj.setObject(slot(), value);
+        }
+    }
+
+    /** Builds a GenericObjectSchema. */
+    public static final class Builder {
+        /** The field types, by name, in declaration order. */
+        private final LinkedHashMap<String, Class<?>> fields = new LinkedHashMap<>();
+
+        /** Adds a field. */
+        private Builder add(final String name, final Class<?> type) {
+            Objects.requireNonNull(name, "name");
+            if (fields.containsKey(name)) {
+                throw new IllegalArgumentException("Duplicate field: " + name);
+            }
+            fields.put(name, type);
+            return this;
+        }
+
+        /** Adds a boolean field. */
+        public Builder addBoolean(final String name) {
+            return add(name, boolean.class);
+        }
+
+        /** Adds a byte field. */
+        public Builder addByte(final String name) {
+            return add(name, byte.class);
+        }
+
+        /** Adds a short field. */
+        public Builder addShort(final String name) {
+            return add(name, short.class);
+        }
+
+        /** Adds a char field. */
+        public Builder addChar(final String name) {
+            return add(name, char.class);
+        }
+
+        /** Adds a int field. */
+        public Builder addInt(final String name) {
+            return add(name, int.class);
+        }
+
+        /** Adds a float field. */
+        public Builder addFloat(final String name) {
+            return add(name, float.class);
+        }
+
+        /** Adds a long field. */
+        public Builder addLong(final String name) {
+            return add(name, long.class);
+        }
+
+        /** Adds a double field. */
+        public Builder addDouble(final String name) {
+            return add(name, double.class);
+        }
+
+        /** Adds an object field. */
+        public Builder addObject(final String name, final Class<?> type) {
+            if (Objects.requireNonNull(type, "type").isPrimitive()) {
+                throw new IllegalArgumentException("Primitive type: " + type);
+            }
+            return add(name, type);
+        }
+
+        /** Builds the schema. */
+        public GenericObjectSchema build() {
+            return new GenericObjectSchema(fields);
+        }
+    }
+
+    /** The number of bits of each primitive type. */
+    private static final Map<Class<?>, Integer> BITS = new HashMap<>();
+    static {
+        BITS.put(boolean.class, 1);
+        BITS.put(byte.class, 8);
+        BITS.put(short.class, 16);
+        BITS.put(char.class, 16);
+        BITS.put(int.class, 32);
+        BITS.put(float.class, 32);
+        BITS.put(long.class, 64);
+        BITS.put(double.class, 64);
+    }
+
+    /** Returns the number of bits of a type, or 0 for objects. */
+    private static int bitsOf(final Class<?> type) {
+        final Integer result = BITS.get(type);
+        return (result == null) ? 0 : result;
+    }
+
+    /** The fields, by name, in declaration order. */
+    private final Map<String, Field> fields;
+
+    /** The number of data slots. */
+    private final int dataSlots;
+
+    /** The number of object slots. */
+    private final int objectSlots;
+
+    /** Returns a new Builder. */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /** Constructor */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private GenericObjectSchema(final LinkedHashMap<String, Class<?>> types) {
+        // Biggest first: since all sizes are powers of two, packing them in
+        // that order never leaves a hole before the last data slot.
+        final List<String> names = new ArrayList<>(types.keySet());
+        Collections.sort(names, new Comparator<String>() {
+            @Override
+            public int compare(final String a, final String b) {
+                return bitsOf(types.get(b)) - bitsOf(types.get(a));
+            }
+        });
+        final HashMap<String, Field> created = new HashMap<>();
+        int slot = 0;
+        int used = 0;
+        int objects = 0;
+        for (final String name : names) {
+            final Class<?> type = types.get(name);
+            final int bits = bitsOf(type);
+            if (bits == 0) {
+                created.put(name, new ObjectField(name, type, objects++));
+                continue;
+            }
+            if (used + bits > 64) {
+                slot++;
+                used = 0;
+            }
+            final int shift = used;
+            used += bits;
+            final Field field;
+            if (type == boolean.class) {
+                field = new BooleanField(name, slot, shift);
+            } else if (type == byte.class) {
+                field = new ByteField(name, slot, shift);
+            } else if (type == short.class) {
+                field = new ShortField(name, slot, shift);
+            } else if (type == char.class) {
+                field = new CharField(name, slot, shift);
+            } else if (type == int.class) {
+                field = new IntField(name, slot, shift);
+            } else if (type == float.class) {
+                field = new FloatField(name, slot, shift);
+            } else if (type == long.class) {
+                field = new LongField(name, slot, shift);
+            } else {
+                field = new DoubleField(name, slot, shift);
+            }
+            created.put(name, field);
+        }
+        dataSlots = (used == 0) ? slot : slot + 1;
+        objectSlots = objects;
+        final LinkedHashMap<String, Field> ordered = new LinkedHashMap<>();
+        for (final String name : types.keySet()) {
+            ordered.put(name, created.get(name));
+        }
+        fields = Collections.unmodifiableMap(ordered);
+    }
+
+    /** Returns the fields, by name, in declaration order. */
+    public Map<String, Field> fields() {
+        return fields;
+    }
+
+    /** Returns a field, or null if unknown. */
+    public Field field(final String name) {
+        return fields.get(name);
+    }
+
+    /** Returns a field, of the expected class. */
+    private <F extends Field> F field(final String name, final Class<F> fieldClass) {
+        final Field result = fields.get(name);
+        if (result == null) {
+            throw new IllegalArgumentException("Unknown field: " + name);
+        }
+        if (!fieldClass.isInstance(result)) {
+            throw new IllegalArgumentException("Field " + name + " is a "
+                    + result.type() + ", not a "
+                    + fieldClass.getSimpleName());
+        }
+        return fieldClass.cast(result);
+    }
+
+    /** Returns a boolean field. */
+    public BooleanField booleanField(final String name) {
+        return field(name, BooleanField.class);
+    }
+
+    /** Returns a byte field. */
+    public ByteField byteField(final String name) {
+        return field(name, ByteField.class);
+    }
+
+    /** Returns a short field. */
+    public ShortField shortField(final String name) {
+        return field(name, ShortField.class);
+    }
+
+    /** Returns a char field. */
+    public CharField charField(final String name) {
+        return field(name, CharField.class);
+    }
+
+    /** Returns a int field. */
+    public IntField intField(final String name) {
+        return field(name, IntField.class);
+    }
+
+    /** Returns a float field. */
+    public FloatField floatField(final String name) {
+        return field(name, FloatField.class);
+    }
+
+    /** Returns a long field. */
+    public LongField longField(final String name) {
+        return field(name, LongField.class);
+    }
+
+    /** Returns a double field. */
+    public DoubleField doubleField(final String name) {
+        return field(name, DoubleField.class);
+    }
+
+    /** Returns an object field. */
+    @SuppressWarnings("unchecked")
+    public <E> ObjectField<E> objectField(final String name,
+            final Class<E> type) {
+        final ObjectField<?> result = field(name, ObjectField.class);
+        if (!type.isAssignableFrom(result.type())) {
+            throw new IllegalArgumentException("Field " + name + " is a "
+                    + result.type() + ", not a " + type);
+        }
+        return (ObjectField<E>) result;
+    }
+
+    /** Returns the number of data slots used. */
+    public int dataSlots() {
+        return dataSlots;
+    }
+
+    /** Returns the number of object slots used. */
+    public int objectSlots() {
+        return objectSlots;
+    }
+
+    /** Creates a new generic object, big enough for this schema. */
+    public GenericObject newInstance() {
+        return new GenericObject(objectSlots, dataSlots);
+    }
+
+    /** Ensures a generic object is big enough for this schema. */
+    public GenericObject ensureCapacity(final GenericObject obj) {
+        return obj.ensureTotalObjectCapacity(objectSlots)
+                .ensureTotalDataCapacity(dataSlots);
+    }
+
+    /** Creates a pool of generic objects, big enough for this schema. */
+    public GenericObjectPool newPool(final int maxFreePerThread) {
+        return new GenericObjectPool(objectSlots, dataSlots, maxFreePerThread);
+    }
+
+    /** toString */
+    @Override
+    public String toString() {
+        return "GenericObjectSchema(dataSlots=" + dataSlots + ", objectSlots="
+                + objectSlots + ", fields=" + fields.values() + ")";
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright (C) 2014 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.blockwithme.util.proto;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+import com.blockwithme.util.proto.stringnum.Stringnum;
+import com.blockwithme.util.shared.converters.StringConverter;
+import com.blockwithme.util.shared.domains.GenericLazyDomain;
+
+/**
+ * Binary snapshots of the ID mappings of Stringnums and GenericLazyDomains.
+ *
+ * Both assign IDs lazily, in first-seen order, so the IDs are only stable
+ * across restarts if the content is saved, and restored in one bulk
+ * operation before anything else is added.
+ *
+ * The format is (all big-endian):
+ *
+ * int MAGIC, int VERSION, int firstID, int count,
+ * int[count+1] char offsets, char[offsets[count]] UTF-16 text.
+ *
+ * The value at index i has the ID (firstID + i). The loader maps the file
+ * in memory, and copies the whole text in a single bulk get.
+ *
+ * @author monster
+ */
+public class IDSnapshot {
+    /** The file magic number ("IDSN"). */
+    public static final int MAGIC = 0x4944534E;
+
+    /** The current format version. */
+    public static final int VERSION = 1;
+
+    /** Header size, in bytes. */
+    private static final int HEADER = 16;
+
+    /** The ID of the first value. */
+    private final int firstID;
+
+    /** The values, in ID order. */
+    private final String[] values;
+
+    /** Constructor. */
+    public IDSnapshot(final int theFirstID, final String[] theValues) {
+        firstID = theFirstID;
+        values = Objects.requireNonNull(theValues, "theValues");
+    }
+
+    /** Returns the ID of the first value. */
+    public int firstID() {
+        return firstID;
+    }
+
+    /** Returns the number of values. */
+    public int size() {
+        return values.length;
+    }
+
+    /** Returns the value at the given index (not ID!). */
+    public String get(final int index) {
+        return values[index];
+    }
+
+    /** Returns a copy of the values, in ID order. */
+    public String[] values() {
+        return values.clone();
+    }
+
+    /** Creates a snapshot of a Stringnum. The empty String is implicit. */
+    public static IDSnapshot of(final Stringnum stringnum) {
+        final String[] all = stringnum.toArray(new String[0]);
+        return new IDSnapshot(1, Arrays.copyOfRange(all, 1, all.length));
+    }
+
+    /** Creates a snapshot of a GenericLazyDomain, using a StringConverter. */
+    public static <CONTEXT, E> IDSnapshot of(final GenericLazyDomain<E> domain,
+            final StringConverter<CONTEXT, E> converter, final CONTEXT context) {
+        final List<E> list = domain.values();
+        final String[] array = new String[list.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = converter.fromObject(context, list.get(i));
+            if (array[i] == null) {
+                throw new IllegalArgumentException("Converter returned null for "
+                        + list.get(i));
+            }
+        }
+        return new IDSnapshot(domain.firstID(), array);
+    }
+
+    /** Restores the snapshot in an empty Stringnum. */
+    public void restore(final Stringnum stringnum) {
+        if (firstID != 1) {
+            throw new IllegalStateException("Not a Stringnum snapshot: firstID="
+                    + firstID);
+        }
+        stringnum.restore(values);
+    }
+
+    /** Restores the snapshot in an empty GenericLazyDomain, using a StringConverter. */
+    public <CONTEXT, E> void restore(final GenericLazyDomain<E> domain,
+            final StringConverter<CONTEXT, E> converter, final CONTEXT context) {
+        if (firstID != domain.firstID()) {
+            throw new IllegalStateException("Snapshot firstID " + firstID
+                    + " does not match Domain firstID " + domain.firstID());
+        }
+        final ArrayList<E> list = new ArrayList<>(values.length);
+        for (final String value : values) {
+            list.add(converter.toObject(context, value));
+        }
+        domain.restore(list);
+    }
+
+    /** Writes the snapshot to a file. */
+    public void write(final File file) throws IOException {
+        try (final DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(firstID);
+            out.writeInt(values.length);
+            int offset = 0;
+            out.writeInt(offset);
+            for (final String value : values) {
+                offset += value.length();
+                out.writeInt(offset);
+            }
+            for (final String value : values) {
+                out.writeChars(value);
+            }
+        }
+    }
+
+    /** Reads a snapshot from a file, by mapping it in memory. */
+    public static IDSnapshot read(final File file) throws IOException {
+        try (final RandomAccessFile raf = new RandomAccessFile(file, "r");
+                final FileChannel channel = raf.getChannel()) {
+            final long size = channel.size();
+            if (size < HEADER + 4) {
+                throw new IOException(file + " is too small: " + size);
+            }
+            final MappedByteBuffer buffer = channel.map(
+                    FileChannel.MapMode.READ_ONLY, 0, size);
+            final int magic = buffer.getInt();
+            final int version = buffer.getInt();
+            if ((magic != MAGIC) || (version != VERSION)) {
+                throw new IOException(file + " is not a version " + VERSION
+                        + " IDSnapshot");
+            }
+            final int first = buffer.getInt();
+            final int count = buffer.getInt();
+            final long textStart = HEADER + 4L * (count + 1L);
+            if ((count < 0) || (textStart > size)) {
+                throw new IOException(file + " is truncated");
+            }
+            final int[] offsets = new int[count + 1];
+            final IntBuffer ints = buffer.asIntBuffer();
+            ints.get(offsets);
+            final int chars = offsets[count];
+            if ((chars < 0) || (textStart + 2L * chars != size)) {
+                throw new IOException(file + " is truncated");
+            }
+            if (offsets[0] != 0) {
+                throw new IOException(file + " has a bad first offset: "
+                        + offsets[0]);
+            }
+            for (int i = 0; i < count; i++) {
+                if ((offsets[i + 1] < offsets[i]) || (offsets[i + 1] > chars)) {
+                    throw new IOException(file + " has a bad offset at index "
+                            + (i + 1) + ": " + offsets[i + 1]);
+                }
+            }
+            buffer.position((int) textStart);
+            final CharBuffer text = buffer.asCharBuffer();
+            final char[] all = new char[chars];
+            text.get(all);
+            final String[] result = new String[count];
+            for (int i = 0; i < count; i++) {
+                result[i] = new String(all, offsets[i], offsets[i + 1]
+                        - offsets[i]);
+            }
+            return new IDSnapshot(first, result);
+        }
+    }
+}
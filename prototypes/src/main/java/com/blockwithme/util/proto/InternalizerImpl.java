@@ -20,7 +20,12 @@ import java.util.Iterator;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
-/** Perform internalization of some type. */
+/**
+ * Perform internalization of some type.
+ *
+ * The instances are strongly referenced, and never removed. See
+ * StripedInternalizer for weak and size-bounded internalization.
+ */
 public class InternalizerImpl<E> implements Internalizer<E> {
     /** The parent, if any. */
     private final Internalizer<E> parent;
@@ -55,7 +60,7 @@ public class InternalizerImpl<E> implements Internalizer<E> {
                 }
             }
         }
-        return instance;
+        return result;
     }
 
     @Override
@@ -65,7 +70,7 @@ public class InternalizerImpl<E> implements Internalizer<E> {
         if ((result == null) && (parent != null)) {
             result = parent.getInterned(instance);
         }
-        return instance;
+        return result;
     }
 
     @Override
@@ -15,14 +15,22 @@
  */
 package com.blockwithme.util.proto;
 
+import groovy.lang.Binding;
 import groovy.lang.GroovyShell;
+import groovy.lang.Script;
 
 import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.codehaus.groovy.runtime.InvokerHelper;
 
 import com.blockwithme.util.shared.annotations.E;
 import com.blockwithme.util.shared.annotations.KVMap;
@@ -35,20 +43,152 @@ import com.blockwithme.util.shared.annotations.KVMap;
  * @author monster
  */
 public class KVMapHelper {
+    /**
+     * A compiled Groovy script.
+     *
+     * If the script has no identifiers (only literals and operators), and
+     * evaluates to an immutable value, then that value is cached, and the
+     * script never runs again. Otherwise, each evaluation creates a new
+     * instance of the compiled script class, with it's own Binding, so
+     * evaluations are thread-safe, and cannot see each other's variables.
+     */
+    private static final class Compiled {
+        /** The compiled script class. */
+        private final Class<? extends Script> type;
+
+        /** Is the value a constant? */
+        private final boolean constant;
+
+        /** The constant value, if any. */
+        private final Object value;
+
+        /** Constructor */
+        Compiled(final Class<? extends Script> theType,
+                final boolean theConstant, final Object theValue) {
+            type = theType;
+            constant = theConstant;
+            value = theValue;
+        }
+
+        /** Evaluates the script. */
+        Object evaluate() {
+            return constant ? value : run(type);
+        }
+    }
+
     /** Groovy stuff */
     private static final class Groovy {
-        /** Groovy itself. */
+        /** Groovy itself. Only used to compile scripts, while locked. */
         private final GroovyShell SHELL = new GroovyShell();
 
+        /** The compiled scripts, by script text. */
+        private final ConcurrentHashMap<String, Compiled> compiled = new ConcurrentHashMap<>();
+
+        /** Returns the compiled script, compiling it if needed. */
+        public Compiled compile(final String script) {
+            Compiled result = compiled.get(script);
+            if (result == null) {
+                final Class<? extends Script> type;
+                synchronized (SHELL) {
+                    result = compiled.get(script);
+                    if (result != null) {
+                        return result;
+                    }
+                    type = SHELL.parse(script).getClass();
+                }
+                if (isPure(script)) {
+                    Object value;
+                    boolean constant;
+                    try {
+                        value = run(type);
+                        constant = isImmutable(value);
+                    } catch (final Exception e) {
+                        // Like "1/0". Not cached as a constant, so that each
+                        // evaluate() throws again.
+                        value = null;
+                        constant = false;
+                    }
+                    result = new Compiled(type, constant, value);
+                } else {
+                    result = new Compiled(type, false, null);
+                }
+                final Compiled before = compiled.putIfAbsent(script, result);
+                if (before != null) {
+                    result = before;
+                }
+            }
+            return result;
+        }
+
         /** Evaluates a Groovy script. */
         public Object evaluate(final String script) {
-            return SHELL.evaluate(script);
+            return compile(script).evaluate();
         }
 
         /** The singleton */
         public static final Groovy GROOVY = new Groovy();
     }
 
+    /** Runs a new instance of a compiled script, with an empty Binding. */
+    private static Object run(final Class<? extends Script> type) {
+        return InvokerHelper.createScript(type, new Binding()).run();
+    }
+
+    /**
+     * Returns true if the script contains no identifiers outside of
+     * String literals, except true, false and null. Such a script can only
+     * reference literals, and so always returns the same value.
+     */
+    private static boolean isPure(final String script) {
+        final int len = script.length();
+        int i = 0;
+        while (i < len) {
+            final char c = script.charAt(i);
+            if ((c == '\'') || (c == '"')) {
+                i++;
+                while ((i < len) && (script.charAt(i) != c)) {
+                    if ((script.charAt(i) == '\\') || (script.charAt(i) == '$')) {
+                        // Escapes and GString interpolation: be safe.
+                        return false;
+                    }
+                    i++;
+                }
+                i++;
+            } else if (Character.isJavaIdentifierStart(c)) {
+                final int start = i;
+                while ((i < len)
+                        && Character.isJavaIdentifierPart(script.charAt(i))) {
+                    i++;
+                }
+                final String word = script.substring(start, i);
+                if (!"true".equals(word) && !"false".equals(word)
+                        && !"null".equals(word)) {
+                    return false;
+                }
+            } else if (Character.isDigit(c)) {
+                // Skip numeric literals, including suffixes like 1L or 0x1F
+                while ((i < len)
+                        && Character.isJavaIdentifierPart(script.charAt(i))) {
+                    i++;
+                }
+            } else {
+                i++;
+            }
+        }
+        return true;
+    }
+
+    /** Returns true if the value is known to be immutable. */
+    private static boolean isImmutable(final Object value) {
+        return (value == null) || (value instanceof String)
+                || (value instanceof Boolean) || (value instanceof Character)
+                || (value instanceof Integer) || (value instanceof Long)
+                || (value instanceof Double) || (value instanceof Float)
+                || (value instanceof Short) || (value instanceof Byte)
+                || (value instanceof java.math.BigDecimal)
+                || (value instanceof java.math.BigInteger);
+    }
+
     /**
      * Returns the KVMap annotation, if any, of this AnnotatedElement, or null.
      */
@@ -317,4 +457,40 @@ public class KVMapHelper {
             final AnnotatedElement elem) {
         return getAsGroovyMap(findMap(elem));
     }
+
+    /** Compiles all the Groovy scripts of the KVMap. Returns the number of scripts. */
+    public static int precompile(final KVMap map) {
+        int result = 0;
+        final Map<String, String[]> ssaMap = getAsRawMap(map);
+        if (ssaMap != null) {
+            for (final String[] scripts : ssaMap.values()) {
+                for (final String script : scripts) {
+                    if ((script != null) && !script.isEmpty()) {
+                        Groovy.GROOVY.compile(script);
+                        result++;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Compiles all the Groovy scripts of all the KVMaps of a class, and of
+     * it's declared constructors, methods and fields, so that later lookups
+     * do not pay the compilation cost. Returns the number of scripts.
+     */
+    public static int precompile(final Class<?> type) {
+        int result = precompile(findMap(type));
+        for (final Constructor<?> c : type.getDeclaredConstructors()) {
+            result += precompile(findMap(c));
+        }
+        for (final Method m : type.getDeclaredMethods()) {
+            result += precompile(findMap(m));
+        }
+        for (final Field f : type.getDeclaredFields()) {
+            result += precompile(findMap(f));
+        }
+        return result;
+    }
 }
@@ -0,0 +1,324 @@
+/*
+ * Copyright (C) 2014 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.util.proto;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Internalizer split in independently locked stripes, to reduce contention.
+ *
+ * It supports three modes:
+ * - strong: instances are kept until clear() is called,
+ * - weak: instances are only weakly referenced, and vanish once they are
+ *   not used anymore,
+ * - bounded: each stripe keeps at most maxSize/stripes instances, evicting
+ *   the least recently used ones.
+ *
+ * It also counts how many duplicates were replaced by their canonical
+ * instance; see getStatistics().
+ *
+ * @author monster
+ */
+public class StripedInternalizer<E> implements Internalizer<E> {
+
+    /** The default number of stripes. */
+    public static final int DEFAULT_STRIPES = 16;
+
+    /** Internalization statistics. */
+    public static final class Statistics {
+        /** Number of intern() calls, with a non-null instance. */
+        public final long requests;
+
+        /** Number of intern() calls that returned another, equal, instance. */
+        public final long hits;
+
+        /** Number of instances currently interned. */
+        public final long size;
+
+        /** Number of instances evicted, in bounded mode. */
+        public final long evicted;
+
+        /** Constructor */
+        Statistics(final long theRequests, final long theHits,
+                final long theSize, final long theEvicted) {
+            requests = theRequests;
+            hits = theHits;
+            size = theSize;
+            evicted = theEvicted;
+        }
+
+        /** Returns the ratio of intern() calls that found a duplicate. */
+        public double dedupRatio() {
+            return (requests == 0) ? 0 : hits / (double) requests;
+        }
+
+        /**
+         * Returns an estimation of the memory saved, in bytes, assuming every
+         * duplicate would otherwise have been retained, and uses
+         * bytesPerInstance bytes.
+         */
+        public long memorySaved(final long bytesPerInstance) {
+            return hits * bytesPerInstance;
+        }
+
+        /** Returns a report, with the memory saved for the given instance size. */
+        public String report(final long bytesPerInstance) {
+            return toString() + ": dedup ratio "
+                    + Math.round(dedupRatio() * 1000) / 10.0 + "%, ~"
+                    + memorySaved(bytesPerInstance) / 1024
+                    + " KB saved at " + bytesPerInstance + " bytes/instance";
+        }
+
+        /** toString */
+        @Override
+        public String toString() {
+            return "Statistics(requests=" + requests + ", hits=" + hits
+                    + ", size=" + size + ", evicted=" + evicted + ")";
+        }
+    }
+
+    /** A stripe. All fields are only accessed while holding it's lock. */
+    private static final class Stripe<E> {
+        /** The instances; the values are WeakReferences in weak mode. */
+        final Map<E, Object> map;
+
+        /** Number of intern() calls. */
+        long requests;
+
+        /** Number of duplicates found. */
+        long hits;
+
+        /** Number of evictions. */
+        long evicted;
+
+        /** Constructor */
+        Stripe(final boolean weak, final int capacity) {
+            if (weak) {
+                map = new WeakHashMap<>();
+            } else if (capacity > 0) {
+                map = new LinkedHashMap<E, Object>(16, 0.75f, true) {
+                    private static final long serialVersionUID = 1L;
+
+                    @Override
+                    protected boolean removeEldestEntry(
+                            final Map.Entry<E, Object> eldest) {
+                        if (size() > capacity) {
+                            evicted++;
+                            return true;
+                        }
+                        return false;
+                    }
+                };
+            } else {
+                map = new HashMap<>();
+            }
+        }
+    }
+
+    /** The parent, if any. */
+    private final Internalizer<E> parent;
+
+    /** Are the instances weakly referenced? */
+    private final boolean weak;
+
+    /** The stripes. */
+    private final Stripe<E>[] stripes;
+
+    /** The stripe index mask. */
+    private final int mask;
+
+    /**
+     * Constructor.
+     *
+     * If weak is true, the instances are only weakly referenced. If maxSize
+     * is positive, at most about maxSize instances are kept (weak and
+     * bounded cannot be combined). The number of stripes is rounded up to a
+     * power of two. The parent is optional, and is only queried.
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public StripedInternalizer(final boolean theWeak, final int maxSize,
+            final int stripeCount, final Internalizer<E> theParent) {
+        if (stripeCount <= 0) {
+            throw new IllegalArgumentException("stripeCount: " + stripeCount);
+        }
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("maxSize: " + maxSize);
+        }
+        if (theWeak && (maxSize > 0)) {
+            throw new IllegalArgumentException(
+                    "weak and bounded modes are exclusive");
+        }
+        int count = 1;
+        while (count < stripeCount) {
+            count *= 2;
+        }
+        weak = theWeak;
+        parent = theParent;
+        mask = count - 1;
+        stripes = new Stripe[count];
+        // Rounded up, so that no stripe has a capacity of 0.
+        final int capacity = (maxSize == 0) ? 0 : (maxSize + count - 1)
+                / count;
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new Stripe<E>(theWeak, capacity);
+        }
+    }
+
+    /** Constructor, for the strong mode, with DEFAULT_STRIPES stripes. */
+    public StripedInternalizer() {
+        this(false, 0, DEFAULT_STRIPES, null);
+    }
+
+    /** Creates a weak internalizer, with DEFAULT_STRIPES stripes. */
+    public static <E> StripedInternalizer<E> weak() {
+        return new StripedInternalizer<E>(true, 0, DEFAULT_STRIPES, null);
+    }
+
+    /** Creates a bounded internalizer, with DEFAULT_STRIPES stripes. */
+    public static <E> StripedInternalizer<E> bounded(final int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize: " + maxSize);
+        }
+        return new StripedInternalizer<E>(false, maxSize, DEFAULT_STRIPES,
+                null);
+    }
+
+    /** Returns the stripe of an instance. */
+    private Stripe<E> stripe(final Object instance) {
+        final int h = instance.hashCode() * 0x9E3779B9;
+        return stripes[(h ^ (h >>> 16)) & mask];
+    }
+
+    /** Returns the value of an entry. */
+    @SuppressWarnings("unchecked")
+    private E value(final Object value) {
+        return (weak && (value != null)) ? ((WeakReference<E>) value).get()
+                : (E) value;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <F extends E> F intern(final F instance) {
+        if (instance == null) {
+            return null;
+        }
+        if (parent != null) {
+            final F result = parent.getInterned(instance);
+            if (result != null) {
+                final Stripe<E> stripe = stripe(instance);
+                synchronized (stripe) {
+                    stripe.requests++;
+                    if (result != instance) {
+                        stripe.hits++;
+                    }
+                }
+                return result;
+            }
+        }
+        final Stripe<E> stripe = stripe(instance);
+        synchronized (stripe) {
+            stripe.requests++;
+            final E before = value(stripe.map.get(instance));
+            if (before != null) {
+                if (before != instance) {
+                    stripe.hits++;
+                }
+                return (F) before;
+            }
+            stripe.map.put(instance,
+                    weak ? new WeakReference<E>(instance) : instance);
+            return instance;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <F extends E> F getInterned(final F instance) {
+        if (instance == null) {
+            return null;
+        }
+        final Stripe<E> stripe = stripe(instance);
+        F result;
+        synchronized (stripe) {
+            result = (F) value(stripe.map.get(instance));
+        }
+        if ((result == null) && (parent != null)) {
+            result = parent.getInterned(instance);
+        }
+        return result;
+    }
+
+    /** Removes all the instances. The statistics are not reset. */
+    public void clear() {
+        for (final Stripe<E> stripe : stripes) {
+            synchronized (stripe) {
+                stripe.map.clear();
+            }
+        }
+    }
+
+    /** Returns the number of interned instances. */
+    public int size() {
+        int result = 0;
+        for (final Stripe<E> stripe : stripes) {
+            synchronized (stripe) {
+                result += stripe.map.size();
+            }
+        }
+        return result;
+    }
+
+    /** Returns the current statistics. */
+    public Statistics getStatistics() {
+        long requests = 0;
+        long hits = 0;
+        long size = 0;
+        long evicted = 0;
+        for (final Stripe<E> stripe : stripes) {
+            synchronized (stripe) {
+                requests += stripe.requests;
+                hits += stripe.hits;
+                size += stripe.map.size();
+                evicted += stripe.evicted;
+            }
+        }
+        return new Statistics(requests, hits, size, evicted);
+    }
+
+    /** Iterates over a snapshot of the (local) interned instances. */
+    @Override
+    public Iterator<E> iterator() {
+        final List<E> result = new ArrayList<>();
+        for (final Stripe<E> stripe : stripes) {
+            synchronized (stripe) {
+                for (final Object value : stripe.map.values()) {
+                    final E e = value(value);
+                    if (e != null) {
+                        result.add(e);
+                    }
+                }
+            }
+        }
+        return result.iterator();
+    }
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright (C) 2014 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.blockwithme.util.proto.base40;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Objects;
+
+/**
+ * Base class of the Enum40 dispatch tables.
+ *
+ * Calling Enum40.handle() relies on every constant overriding the method in
+ * it's own anonymous class, so the call site becomes megamorphic as soon as
+ * more than two constants go through it. A dispatcher instead looks up,
+ * once, the handler method of every constant, by name (ignoring case), and
+ * combines them in a single MethodHandle, which selects the handler method
+ * by binary search on the ordinal. When that MethodHandle is stored in a
+ * static final field, the JIT inlines it completely, which gives about the
+ * same code as a switch on the ordinal.
+ *
+ * Constants without a handler method, for example because their class was
+ * initialized after the dispatcher was created, fall back to
+ * Enum40.handle().
+ *
+ * @author monster
+ */
+public abstract class AbstractEnum40Dispatcher<E extends Enum40<E>> {
+
+    /** Enum40.ordinal(), as (Enum40)int. */
+    private static final MethodHandle ORDINAL;
+
+    /** lessThan(int,int). */
+    private static final MethodHandle LESS_THAN;
+
+    static {
+        final MethodHandles.Lookup lookup = MethodHandles.lookup();
+        try {
+            ORDINAL = lookup.findVirtual(Enum40.class, "ordinal",
+                    MethodType.methodType(char.class)).asType(
+                    MethodType.methodType(int.class, Enum40.class));
+            LESS_THAN = lookup.findStatic(AbstractEnum40Dispatcher.class,
+                    "lessThan", MethodType.methodType(boolean.class,
+                            int.class, int.class));
+        } catch (final NoSuchMethodException | IllegalAccessException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /** The Enum40 type. */
+    private final Class<E> enumClass;
+
+    /** The handler type. */
+    private final Class<?> handlerType;
+
+    /** The number of handler methods found. */
+    private final int methods;
+
+    /**
+     * The dispatching MethodHandle, of type (handler, Enum40, input)output.
+     */
+    protected final MethodHandle target;
+
+    /** Constructor. */
+    protected AbstractEnum40Dispatcher(final Class<E> theEnumClass,
+            final Class<?> theHandlerType, final MethodType theHandleType,
+            final MethodHandle theFallback) {
+        enumClass = Objects.requireNonNull(theEnumClass, "theEnumClass");
+        handlerType = Objects.requireNonNull(theHandlerType,
+                "theHandlerType");
+        if (!Modifier.isPublic(theHandlerType.getModifiers())) {
+            throw new IllegalArgumentException(theHandlerType
+                    + " is not public");
+        }
+        // Makes sure the constants were created.
+        Enum40.values(theEnumClass);
+        final Enum40<?>[] values = Enum40.ordinalTable(theEnumClass, -1);
+        final MethodHandle[] table = new MethodHandle[values.length];
+        int count = 0;
+        int first = values.length;
+        int last = -1;
+        for (int ordinal = 0; ordinal < values.length; ordinal++) {
+            final Enum40<?> value = values[ordinal];
+            if (theEnumClass.isInstance(value)) {
+                final Method method = find(value);
+                if (method != null) {
+                    try {
+                        table[ordinal] = MethodHandles.dropArguments(
+                                MethodHandles.publicLookup().unreflect(method)
+                                        .asType(theHandleType), 1,
+                                Enum40.class);
+                    } catch (final IllegalAccessException e) {
+                        throw new IllegalArgumentException(
+                                "Cannot access " + method, e);
+                    }
+                    count++;
+                    first = Math.min(first, ordinal);
+                    last = ordinal;
+                }
+            }
+        }
+        methods = count;
+        if (count == 0) {
+            target = theFallback;
+        } else {
+            final MethodHandle tree = build(table, first, last + 1,
+                    theFallback);
+            target = MethodHandles.guardWithTest(below(first, tree),
+                    theFallback, MethodHandles.guardWithTest(
+                            below(last + 1, tree), tree, theFallback));
+        }
+    }
+
+    /** Returns the handler method of value, if any. */
+    private Method find(final Enum40<?> value) {
+        Method result = null;
+        for (final Method method : handlerType.getMethods()) {
+            if (!Modifier.isStatic(method.getModifiers())
+                    && method.getName().equalsIgnoreCase(value.name())
+                    && accepts(method)) {
+                if (result != null) {
+                    throw new IllegalArgumentException(handlerType
+                            + " has multiple methods for " + value + ": "
+                            + result + " and " + method);
+                }
+                result = method;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Builds the binary search over the ordinals from lo (inclusive) to hi
+     * (exclusive).
+     */
+    private static MethodHandle build(final MethodHandle[] table,
+            final int lo, final int hi, final MethodHandle fallback) {
+        if (hi - lo == 1) {
+            return (table[lo] == null) ? fallback : table[lo];
+        }
+        boolean empty = true;
+        for (int i = lo; empty && (i < hi); i++) {
+            empty = (table[i] == null);
+        }
+        if (empty) {
+            return fallback;
+        }
+        final int mid = (lo + hi) >>> 1;
+        final MethodHandle low = build(table, lo, mid, fallback);
+        final MethodHandle high = build(table, mid, hi, fallback);
+        if (low == high) {
+            return low;
+        }
+        return MethodHandles.guardWithTest(below(mid, low), low, high);
+    }
+
+    /**
+     * Returns a test MethodHandle, of type (handler, Enum40)boolean, for
+     * (ordinal < value). The handler type is taken from target.
+     */
+    private static MethodHandle below(final int value,
+            final MethodHandle target) {
+        return MethodHandles.dropArguments(MethodHandles.filterArguments(
+                MethodHandles.insertArguments(LESS_THAN, 1, value), 0,
+                ORDINAL), 0, target.type().parameterType(0));
+    }
+
+    /** Used by the binary search. */
+    @SuppressWarnings("unused")
+    private static boolean lessThan(final int ordinal, final int value) {
+        return ordinal < value;
+    }
+
+    /** Returns the Enum40 type. */
+    public final Class<E> enumClass() {
+        return enumClass;
+    }
+
+    /** Returns the handler type. */
+    public final Class<?> handlerType() {
+        return handlerType;
+    }
+
+    /** Returns the number of handler methods found. */
+    public final int methods() {
+        return methods;
+    }
+
+    /**
+     * Returns the dispatching MethodHandle, of type
+     * (handler, Enum40, input)output. For best performance, store it in a
+     * static final field, and call it with invokeExact().
+     */
+    public final MethodHandle target() {
+        return target;
+    }
+
+    /** Does the handler method have the expected signature? */
+    protected abstract boolean accepts(final Method method);
+
+    /** Rethrows a Throwable from a handler, as an unchecked exception. */
+    protected static RuntimeException rethrow(final Throwable t) {
+        if (t instanceof RuntimeException) {
+            throw (RuntimeException) t;
+        }
+        if (t instanceof Error) {
+            throw (Error) t;
+        }
+        // Can only happen if the handler cheats.
+        throw new IllegalStateException(t);
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "(" + enumClass.getName() + ","
+                + handlerType.getName() + "," + methods + ")";
+    }
+}
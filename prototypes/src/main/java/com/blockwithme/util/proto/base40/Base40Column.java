@@ -0,0 +1,496 @@
+/*
+ * Copyright (C) 2014 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.blockwithme.util.proto.base40;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * <code>Base40Column</code> stores many base-40 values, of one CharacterSet,
+ * in a long[].
+ *
+ * The values are treated as unsigned longs. When sorted, the column is in
+ * unsigned numeric order, which is the order of the text length first, and
+ * then of the base-40 characters. All the values starting with a given text
+ * prefix are then in at most MAX_LEN ranges, one per text length, which are
+ * found by binary search.
+ *
+ * The whole column can be decoded to text in a single shared char[], and
+ * exported in a compact binary form: the values are written as varints, and
+ * delta-encoded (zigzag-encoded if not sorted).
+ *
+ * It is not thread-safe.
+ *
+ * @author monster
+ */
+public final class Base40Column {
+
+    /** The export format version. */
+    public static final int VERSION = 1;
+
+    /** The export flag for sorted columns. */
+    private static final int SORTED = 1;
+
+    /**
+     * The largest unsigned value that can be multiplied by RADIX without
+     * overflow: (2^64 - 1) / RADIX.
+     */
+    private static final long MAX_TIMES_RADIX = 0x0666666666666666L;
+
+    /** The initial capacity. */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /** The character set. */
+    private final CharacterSet characterSet;
+
+    /** The values. */
+    private long[] values;
+
+    /** The number of values. */
+    private int size;
+
+    /** Are the values sorted (unsigned)? */
+    private boolean sorted = true;
+
+    /** Creates an empty column. */
+    public Base40Column(final CharacterSet theCharacterSet) {
+        this(theCharacterSet, INITIAL_CAPACITY);
+    }
+
+    /** Creates an empty column, with the given capacity. */
+    public Base40Column(final CharacterSet theCharacterSet,
+            final int theCapacity) {
+        characterSet = Objects.requireNonNull(theCharacterSet,
+                "theCharacterSet");
+        if (theCapacity < 0) {
+            throw new IllegalArgumentException("theCapacity: " + theCapacity);
+        }
+        values = new long[theCapacity];
+    }
+
+    /** Creates a column containing a copy of the given values. */
+    public Base40Column(final CharacterSet theCharacterSet,
+            final long[] theValues) {
+        this(theCharacterSet, theValues.length);
+        addAll(theValues);
+    }
+
+    /** Compares two longs as unsigned values. */
+    private static boolean lessThan(final long a, final long b) {
+        return (a ^ Long.MIN_VALUE) < (b ^ Long.MIN_VALUE);
+    }
+
+    /** Can the unsigned value be multiplied by RADIX, without overflow? */
+    private static boolean timesRadixFits(final long value) {
+        return !lessThan(MAX_TIMES_RADIX, value);
+    }
+
+    /** Returns the character set. */
+    public CharacterSet getCharacterSet() {
+        return characterSet;
+    }
+
+    /** Returns the number of values. */
+    public int size() {
+        return size;
+    }
+
+    /** Returns true if the column is empty. */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /** Are the values sorted (unsigned)? */
+    public boolean isSorted() {
+        return sorted;
+    }
+
+    /** Checks the index. */
+    private void checkIndex(final int index) {
+        if ((index < 0) || (index >= size)) {
+            throw new IndexOutOfBoundsException("index: " + index + " size: "
+                    + size);
+        }
+    }
+
+    /** Returns the value at the given index. */
+    public long get(final int index) {
+        checkIndex(index);
+        return values[index];
+    }
+
+    /** Returns the text of the value at the given index. */
+    public String getString(final int index) {
+        return characterSet.toString(get(index), false, false);
+    }
+
+    /** Adds a value. */
+    public void add(final long value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values,
+                    Math.max(INITIAL_CAPACITY, size + (size >> 1)));
+        }
+        if ((size > 0) && sorted && lessThan(value, values[size - 1])) {
+            sorted = false;
+        }
+        values[size++] = value;
+    }
+
+    /** Adds the base-40 value of the given text. */
+    public void add(final CharSequence text) {
+        add(characterSet.toLong(text, 0, text.length()));
+    }
+
+    /** Adds all the values. */
+    public void addAll(final long[] theValues) {
+        if (size + theValues.length > values.length) {
+            values = Arrays.copyOf(values, size + theValues.length);
+        }
+        for (final long value : theValues) {
+            add(value);
+        }
+    }
+
+    /** Removes all values. */
+    public void clear() {
+        size = 0;
+        sorted = true;
+    }
+
+    /** Returns a copy of the values. */
+    public long[] toLongArray() {
+        return Arrays.copyOf(values, size);
+    }
+
+    /** Sorts the values (unsigned). */
+    public void sort() {
+        if (!sorted) {
+            // Flipping the sign bit makes the signed order unsigned.
+            for (int i = 0; i < size; i++) {
+                values[i] ^= Long.MIN_VALUE;
+            }
+            Arrays.sort(values, 0, size);
+            for (int i = 0; i < size; i++) {
+                values[i] ^= Long.MIN_VALUE;
+            }
+            sorted = true;
+        }
+    }
+
+    /** Sorts the values, and removes the duplicates. */
+    public void sortDistinct() {
+        sort();
+        if (size > 1) {
+            int last = 0;
+            for (int i = 1; i < size; i++) {
+                if (values[i] != values[last]) {
+                    values[++last] = values[i];
+                }
+            }
+            size = last + 1;
+        }
+    }
+
+    /** Checks that the column is sorted. */
+    private void checkSorted() {
+        if (!sorted) {
+            throw new IllegalStateException("Column is not sorted");
+        }
+    }
+
+    /**
+     * Returns the index of the first value that is not less than key
+     * (unsigned), or size. The column must be sorted.
+     */
+    private int lowerBound(final long key) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            final int mid = (lo + hi) >>> 1;
+            if (lessThan(values[mid], key)) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Returns the index of the (first) given value, or -1. If the column is
+     * sorted, it uses a binary search.
+     */
+    public int indexOf(final long value) {
+        if (sorted) {
+            final int index = lowerBound(value);
+            return ((index < size) && (values[index] == value)) ? index : -1;
+        }
+        for (int i = 0; i < size; i++) {
+            if (values[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /** Returns true if the column contains the value. */
+    public boolean contains(final long value) {
+        return indexOf(value) >= 0;
+    }
+
+    /**
+     * Returns the ranges of the (unsigned) values, whose text starts with
+     * the given prefix, as pairs of inclusive bounds: [first0, last0,
+     * first1, last1, ...]. There is at most one range per text length.
+     * Since the text of a value has no leading "zero" character (except for
+     * the value 0 itself), a prefix starting with it only matches 0.
+     */
+    public long[] prefixRanges(final CharSequence prefix) {
+        final int len = prefix.length();
+        if (len == 0) {
+            return new long[] { 0, -1L };
+        }
+        long first = 0;
+        boolean overflow = false;
+        for (int i = 0; i < len; i++) {
+            final char c = prefix.charAt(i);
+            final int index = characterSet.findIgnoreCase(c);
+            if (index == -1) {
+                throw new IllegalArgumentException("Invalid character (#"
+                        + ((int) c) + ") " + c);
+            }
+            overflow |= !timesRadixFits(first);
+            first = first * CharacterSet.RADIX + index;
+            overflow |= lessThan(first, index);
+        }
+        if (characterSet.findIgnoreCase(prefix.charAt(0)) == 0) {
+            return (len == 1) ? new long[] { 0, 0 } : new long[0];
+        }
+        if (overflow) {
+            return new long[0];
+        }
+        final long[] result = new long[2 * (CharacterSet.MAX_LEN - len + 1)];
+        int count = 0;
+        long last = first;
+        while (true) {
+            result[count++] = first;
+            result[count++] = last;
+            if (!timesRadixFits(first)) {
+                return Arrays.copyOf(result, count);
+            }
+            // One more character: [first*RADIX, last*RADIX + RADIX-1]
+            first *= CharacterSet.RADIX;
+            last = lessThan(last, MAX_TIMES_RADIX) ? last * CharacterSet.RADIX
+                    + CharacterSet.RADIX - 1 : -1L;
+        }
+    }
+
+    /**
+     * Returns the index ranges of the values whose text starts with the
+     * given prefix, as pairs of [from, to) indexes. Empty ranges are not
+     * returned. The column must be sorted.
+     */
+    public int[] findPrefix(final CharSequence prefix) {
+        checkSorted();
+        final long[] ranges = prefixRanges(prefix);
+        final int[] result = new int[ranges.length];
+        int count = 0;
+        for (int i = 0; i < ranges.length; i += 2) {
+            final int from = lowerBound(ranges[i]);
+            final long last = ranges[i + 1];
+            final int to = (last == -1L) ? size : lowerBound(last + 1);
+            if (from < to) {
+                result[count++] = from;
+                result[count++] = to;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Returns the number of values whose text starts with the given prefix.
+     * The column must be sorted.
+     */
+    public int countPrefix(final CharSequence prefix) {
+        final int[] ranges = findPrefix(prefix);
+        int result = 0;
+        for (int i = 0; i < ranges.length; i += 2) {
+            result += ranges[i + 1] - ranges[i];
+        }
+        return result;
+    }
+
+    /**
+     * Decodes all the values in a single char[]. The text of value i ends
+     * at ends[i], and starts at ends[i-1] (or 0). ends must have at least
+     * size() elements. The parameters are the same as for
+     * CharacterSet.toCharArray().
+     */
+    public char[] decode(final boolean fixedSize, final boolean capitalize,
+            final int[] ends) {
+        if (ends.length < size) {
+            throw new IllegalArgumentException("ends.length: " + ends.length
+                    + " size: " + size);
+        }
+        int total = 0;
+        for (int i = 0; i < size; i++) {
+            total += fixedSize ? CharacterSet.MAX_LEN : CharacterSet
+                    .length(values[i]);
+            ends[i] = total;
+        }
+        final char[] result = new char[total];
+        int offset = 0;
+        for (int i = 0; i < size; i++) {
+            offset += characterSet.appendTo(values[i], fixedSize, capitalize,
+                    result, offset);
+        }
+        return result;
+    }
+
+    /**
+     * Appends the text of all the values to buf, separated by separator.
+     * It does not create any temporary object (except if buf has to grow).
+     */
+    public StringBuilder appendTo(final StringBuilder buf,
+            final String separator, final boolean capitalize) {
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                buf.append(separator);
+            }
+            characterSet.appendTo(values[i], false, capitalize, buf);
+        }
+        return buf;
+    }
+
+    /** Writes an unsigned varint. */
+    private static void writeVarLong(final DataOutput out, final long value)
+            throws IOException {
+        long v = value;
+        while ((v & ~0x7FL) != 0) {
+            out.writeByte((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.writeByte((int) v);
+    }
+
+    /** Reads an unsigned varint. */
+    private static long readVarLong(final DataInput in) throws IOException {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            final int b = in.readUnsignedByte();
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    /**
+     * Writes the column. The format is: byte VERSION, byte flags, varint
+     * size, and then the varint deltas to the previous value (the first
+     * value is relative to 0). If the column is not sorted, the deltas are
+     * zigzag-encoded. The character set is not written.
+     */
+    public void writeTo(final DataOutput out) throws IOException {
+        out.writeByte(VERSION);
+        out.writeByte(sorted ? SORTED : 0);
+        writeVarLong(out, size);
+        long previous = 0;
+        for (int i = 0; i < size; i++) {
+            final long delta = values[i] - previous;
+            writeVarLong(out, sorted ? delta : (delta << 1) ^ (delta >> 63));
+            previous = values[i];
+        }
+    }
+
+    /** Reads a column written by writeTo(). */
+    public static Base40Column readFrom(final DataInput in,
+            final CharacterSet characterSet) throws IOException {
+        final int version = in.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("Not a version " + VERSION
+                    + " Base40Column: " + version);
+        }
+        final boolean sorted = (in.readUnsignedByte() & SORTED) != 0;
+        final long count = readVarLong(in);
+        if ((count < 0) || (count > Integer.MAX_VALUE - 8)) {
+            throw new IOException("Bad size: " + count);
+        }
+        final int size = (int) count;
+        final Base40Column result = new Base40Column(characterSet,
+                Math.min(size, 1 << 16));
+        long previous = 0;
+        for (int i = 0; i < size; i++) {
+            final long v = readVarLong(in);
+            previous += sorted ? v : (v >>> 1) ^ -(v & 1);
+            result.add(previous);
+        }
+        if (sorted && !result.sorted) {
+            throw new IOException("Column is not sorted");
+        }
+        return result;
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#hashCode()
+     */
+    @Override
+    public int hashCode() {
+        int result = characterSet.hashCode();
+        for (int i = 0; i < size; i++) {
+            final long v = values[i];
+            result = 31 * result + (int) (v ^ (v >>> 32));
+        }
+        return result;
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#equals(java.lang.Object)
+     */
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof Base40Column)) {
+            return false;
+        }
+        final Base40Column other = (Base40Column) obj;
+        if ((size != other.size) || !characterSet.equals(other.characterSet)) {
+            return false;
+        }
+        for (int i = 0; i < size; i++) {
+            if (values[i] != other.values[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return appendTo(new StringBuilder().append('['), ", ", false).append(
+                ']').toString();
+    }
+}
@@ -89,6 +89,25 @@ public final class CharacterSet implements Serializable,
     /** The character set at 39 */
     public transient final char c39;
 
+    /**
+     * The index of the characters in [0,FOLD_SIZE), ignoring the case,
+     * or -1 if not in the character set.
+     */
+    private transient final byte[] folded;
+
+    /** The size of the case-folding table. */
+    private static final int FOLD_SIZE = 256;
+
+    /** The powers of RADIX that fit in a (signed) long. */
+    private static final long[] POWERS = new long[12];
+
+    static {
+        POWERS[0] = 1;
+        for (int i = 1; i < POWERS.length; i++) {
+            POWERS[i] = POWERS[i - 1] * RADIX;
+        }
+    }
+
     /**
      * Creates the character set.
      *
@@ -152,6 +171,25 @@ public final class CharacterSet implements Serializable,
         c37 = chars[37];
         c38 = chars[38];
         c39 = chars[39];
+        folded = new byte[FOLD_SIZE];
+        for (char c = 0; c < FOLD_SIZE; c++) {
+            folded[c] = (byte) find(fold(c));
+        }
+    }
+
+    /** Converts the character to the case of the character set. */
+    private char fold(final char c) {
+        return lower ? Character.toLowerCase(c) : Character.toUpperCase(c);
+    }
+
+    /**
+     * Takes a character, and returns the position in CHARACTERS, ignoring
+     * the case.
+     *
+     * @return the index, or -1 if not found.
+     */
+    public int findIgnoreCase(final char c) {
+        return (c < FOLD_SIZE) ? folded[c] : find(fold(c));
     }
 
     /** toString() */
@@ -193,16 +231,28 @@ public final class CharacterSet implements Serializable,
     /** Returns the long representation of this base-40 encoded String
      * (non-case-sensitive). */
     public long toLong(final String value) {
-        final int len = value.length();
-        if (len > MAX_LEN) {
+        return toLong(value, 0, value.length());
+    }
+
+    /**
+     * Returns the long representation of the base-40 encoded characters of
+     * value between from (inclusive) and to (exclusive) (non-case-sensitive).
+     * It does not create any temporary object.
+     */
+    public long toLong(final CharSequence value, final int from, final int to) {
+        if (to - from > MAX_LEN) {
             throw new IllegalArgumentException("Maximum length is: " + MAX_LEN
-                    + " value: \"" + value + "\"");
+                    + " value: \"" + value.subSequence(from, to) + "\"");
         }
-        final String cased = lower ? value.toLowerCase() : value.toUpperCase();
-        final char[] chars = cased.toCharArray();
         long v = 0;
-        for (int i = 0; i < chars.length; i++) {
-            v = v * RADIX + indexOf(chars[i]);
+        for (int i = from; i < to; i++) {
+            final char c = value.charAt(i);
+            final int index = findIgnoreCase(c);
+            if (index == -1) {
+                throw new IllegalArgumentException("Invalid character (#"
+                        + ((int) c) + ") " + c);
+            }
+            v = v * RADIX + index;
         }
         return v;
     }
@@ -214,12 +264,10 @@ public final class CharacterSet implements Serializable,
      * if needed.
      */
     public long toLongLenient(final String value) {
-        final String cased = lower ? value.toLowerCase() : value.toUpperCase();
-        final char[] chars = cased.toCharArray();
-        final int len = Math.min(chars.length, MAX_LEN);
+        final int len = Math.min(value.length(), MAX_LEN);
         long v = 0;
         for (int i = 0; i < len; i++) {
-            int index = find(chars[i]);
+            int index = findIgnoreCase(value.charAt(i));
             if (index == -1) {
                 index = 36;
             }
@@ -235,68 +283,138 @@ public final class CharacterSet implements Serializable,
      * first character, if it is a letter, and any letter afterward, if it
      * follows a non-letter.
      */
-    public char[] toCharArray(long value, final boolean fixedSize,
+    public char[] toCharArray(final long value, final boolean fixedSize,
+            final boolean capitalize) {
+        final char[] array = new char[MAX_LEN];
+        final int len = appendTo(value, fixedSize, capitalize, array, 0);
+        return (len == MAX_LEN) ? array : Arrays.copyOf(array, len);
+    }
+
+    /** Returns the base-40 String representation of the value, treated as an
+     * unsigned long. If fixedSize is true, it will be MAX_LEN character long. */
+    public String toString(final long value, final boolean fixedSize,
             final boolean capitalize) {
         final char[] array = new char[MAX_LEN];
-        int i = MAX_LEN - 1;
+        return new String(array, 0, appendTo(value, fixedSize, capitalize,
+                array, 0));
+    }
+
+    /**
+     * Returns the number of characters in the variable-length base-40
+     * representation of the value, treated as an unsigned long.
+     */
+    public static int length(final long value) {
         if (value < 0) {
-            int index = (int) (value % RADIX);
+            // Lowest digit, and the rest: (value >>> 2) / 10 == unsigned
+            // value / 40
+            return 1 + length((value >>> 2) / (RADIX / 4L));
+        }
+        int len = 1;
+        while ((len < POWERS.length) && (value >= POWERS[len])) {
+            len++;
+        }
+        return len;
+    }
+
+    /**
+     * Writes the base-40 representation of the value, treated as an unsigned
+     * long, in dest, starting at offset, and returns the number of
+     * characters written (at most MAX_LEN). The parameters are the same as
+     * for toCharArray(). It does not create any temporary object.
+     */
+    public int appendTo(final long value, final boolean fixedSize,
+            final boolean capitalize, final char[] dest, final int offset) {
+        final int len = fixedSize ? MAX_LEN : length(value);
+        int pos = offset + len - 1;
+        long v = value;
+        if (v < 0) {
+            // Lowest digit of the unsigned value: 2^64 % RADIX == 16
+            int index = (int) (v % RADIX);
             if (index < 0) {
                 index += RADIX;
             }
-
-            // I don't understand why I need to do this:
-            // (Probably I somehow compute the modulo wrong. Any help welcome here!)
-            if (index >= 24) {
-                index -= 24;
-            } else {
-                index += 16;
-            }
-
-            array[i--] = chars[index];
-            // To turn a byte to the integer range, you add 256 (2^8 == 1 << 8),
-            // so to do that with longs, you need to add (1 << 64) ...
-            // value = (value + (1L << 64))/RADIX;
-            // value = ((value + (1L << 64))/4)/(RADIX/4);
-            // value = (value/4 + (1L << 64)/4)/(RADIX/4);
-            value = ((value >> 2) + (1L << 62L)) / (RADIX / 4L);
+            dest[pos--] = chars[(int) ((index + 16) % RADIX)];
+            // (v >>> 2) / 10 == unsigned v / 40
+            v = (v >>> 2) / (RADIX / 4L);
         }
-        while (value != 0) {
-            final int index = (int) (value % RADIX);
-            array[i--] = chars[index];
-            value /= RADIX;
+        while (pos >= offset) {
+            dest[pos--] = chars[(int) (v % RADIX)];
+            v /= RADIX;
         }
-        int len = MAX_LEN - i - 1;
-        if (len == 0) {
-            len = 1;
+        if (lower && capitalize) {
+            boolean up = true;
+            for (int i = offset; i < offset + len; i++) {
+                final char c = dest[i];
+                if (up && Character.isLowerCase(c)) {
+                    dest[i] = Character.toUpperCase(c);
+                }
+                up = !Character.isLetter(c);
+            }
         }
-        while (i >= 0) {
-            array[i--] = '0';
+        return len;
+    }
+
+    /**
+     * Appends the base-40 representation of the value, treated as an
+     * unsigned long, to buf. The parameters are the same as for
+     * toCharArray(). It does not create any temporary object (except if buf
+     * has to grow).
+     */
+    public StringBuilder appendTo(final long value, final boolean fixedSize,
+            final boolean capitalize, final StringBuilder buf) {
+        final int start = buf.length();
+        final int len = fixedSize ? MAX_LEN : length(value);
+        buf.setLength(start + len);
+        int pos = start + len - 1;
+        long v = value;
+        if (v < 0) {
+            int index = (int) (v % RADIX);
+            if (index < 0) {
+                index += RADIX;
+            }
+            buf.setCharAt(pos--, chars[(int) ((index + 16) % RADIX)]);
+            v = (v >>> 2) / (RADIX / 4L);
         }
-        final char[] result;
-        if (fixedSize || (MAX_LEN == len)) {
-            result = array;
-        } else {
-            result = Arrays.copyOfRange(array, MAX_LEN - len, MAX_LEN);
+        while (pos >= start) {
+            buf.setCharAt(pos--, chars[(int) (v % RADIX)]);
+            v /= RADIX;
         }
         if (lower && capitalize) {
             boolean up = true;
-            for (int j = 0; j < result.length; j++) {
-                final char c = result[j];
+            for (int i = start; i < start + len; i++) {
+                final char c = buf.charAt(i);
                 if (up && Character.isLowerCase(c)) {
-                    result[j] = Character.toUpperCase(c);
+                    buf.setCharAt(i, Character.toUpperCase(c));
                 }
                 up = !Character.isLetter(c);
             }
         }
-        return result;
+        return buf;
     }
 
-    /** Returns the base-40 String representation of the value, treated as an
-     * unsigned long. If fixedSize is true, it will be MAX_LEN character long. */
-    public String toString(final long value, final boolean fixedSize,
+    /**
+     * Converts all the values to their base-40 String representation.
+     * The parameters are the same as for toCharArray().
+     */
+    public String[] toStrings(final long[] values, final boolean fixedSize,
             final boolean capitalize) {
-        return new String(toCharArray(value, fixedSize, capitalize));
+        final String[] result = new String[values.length];
+        final char[] array = new char[MAX_LEN];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = new String(array, 0, appendTo(values[i], fixedSize,
+                    capitalize, array, 0));
+        }
+        return result;
+    }
+
+    /** Converts all the base-40 encoded values to long (non-case-sensitive). */
+    public long[] toLongs(final CharSequence[] values) {
+        final long[] result = new long[values.length];
+        for (int i = 0; i < values.length; i++) {
+            final CharSequence value = values[i];
+            result[i] = toLong(value, 0, value.length());
+        }
+        return result;
     }
 
     /**
@@ -21,9 +21,11 @@ import java.lang.reflect.Array;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Logger;
 
 import com.blockwithme.util.shared.Statics;
@@ -130,6 +132,11 @@ import com.blockwithme.util.shared.Statics;
  * *within* the Enum40 type itself. But those are hard to make extensible.
  * If the enum is small, just using if-then-else might be enough.
  *
+ * Since every constant overrides handle(), the call site becomes megamorphic
+ * when many constants go through it. Enum40LongDispatcher and
+ * Enum40ObjectDispatcher find the handler methods by name instead, and
+ * dispatch on the ordinal.
+ *
  * The toString() method returns the variable-length *capitalized* String
  * representation, so it it recommended you use the same for the field names.
  *
@@ -180,6 +187,11 @@ public abstract class Enum40<E extends Enum40<E>> extends AbstractBase40<E> {
         private final Map<Long, E> base40ToValue = new HashMap<>();
         /** All types extending this type, which also provide Enum40 constants. */
         private final List<Data<E>> children = new ArrayList<>();
+        /**
+         * Number of values and children registered in the family. Only used
+         * in the root Data. Only modified under lock.
+         */
+        private volatile int registrations;
 
         /** Constructors computes the enum values. */
         public Data(final Class<E> theEnumClass, final Data<?> theParent,
@@ -211,6 +223,21 @@ public abstract class Enum40<E extends Enum40<E>> extends AbstractBase40<E> {
             log.info("Enum40 fields for " + enumClass + " " + fields);
         }
 
+        /** Returns the root Data of the family. */
+        public Data<?> root() {
+            Data<?> result = this;
+            while (result.parent != null) {
+                result = result.parent;
+            }
+            return result;
+        }
+
+        /** Records a new value or child in the family. Must hold the lock. */
+        public void registered() {
+            final Data<?> root = root();
+            root.registrations++;
+        }
+
         public E[] toArray() {
             @SuppressWarnings("unchecked")
             final E[] result = (E[]) Array
@@ -219,9 +246,91 @@ public abstract class Enum40<E extends Enum40<E>> extends AbstractBase40<E> {
         }
     }
 
+    /**
+     * Immutable lookup tables of a fully initialized "enumeration" class,
+     * used for lock-free lookups.
+     */
+    private static final class Tables<E extends Enum40<E>> {
+        /** All the values, in registration order. */
+        private final E[] values;
+        /** The base-40 values, sorted. */
+        private final long[] base40s;
+        /** The values, in base40s order. */
+        private final E[] byBase40;
+        /** Maps names to values. Never modified after construction. */
+        private final HashMap<String, E> nameToValue;
+
+        /** Creates the tables from the Data. Must be called under lock. */
+        @SuppressWarnings("unchecked")
+        public Tables(final Data<E> data) {
+            values = data.toArray();
+            nameToValue = new HashMap<>(data.nameToValue);
+            final int size = data.base40ToValue.size();
+            base40s = new long[size];
+            int i = 0;
+            for (final Long base40 : data.base40ToValue.keySet()) {
+                base40s[i++] = base40;
+            }
+            Arrays.sort(base40s);
+            byBase40 = (E[]) Array.newInstance(data.enumClass, size);
+            for (i = 0; i < size; i++) {
+                byBase40[i] = data.base40ToValue.get(base40s[i]);
+            }
+        }
+
+        /** Returns the value with the given base-40 ID, if any. */
+        public E get(final long base40) {
+            final int index = Arrays.binarySearch(base40s, base40);
+            return (index < 0) ? null : byBase40[index];
+        }
+    }
+
+    /**
+     * The values of a "family", indexed by ordinal, and the number of
+     * registrations in the family when they were collected.
+     */
+    private static final class OrdinalTable {
+        /** The root Data of the family. */
+        private final Data<?> root;
+        /** The root registrations, when the table was built. */
+        private final int registrations;
+        /** The values, indexed by ordinal. */
+        private final Enum40<?>[] values;
+
+        /** Creates the table from the root Data. Must be called under lock. */
+        public OrdinalTable(final Data<?> theRoot) {
+            root = theRoot;
+            registrations = theRoot.registrations;
+            values = new Enum40<?>[(theRoot.children.size() + 1)
+                    * (MAX_VALUES + 1)];
+            fill(values, theRoot);
+            for (final Data<?> child : theRoot.children) {
+                fill(values, child);
+            }
+        }
+
+        /** Is the table still up to date? */
+        public boolean isCurrent() {
+            return registrations == root.registrations;
+        }
+    }
+
     /** Key for already computed Data for classes. */
     private static final String DATA = Enum40.class.getName() + ".data";
 
+    /**
+     * The published lookup tables, per fully initialized "enumeration" class.
+     * Once published, tables are replaced (under lock), never modified.
+     */
+    private static final ConcurrentHashMap<Class<?>, Tables<?>> TABLES = new ConcurrentHashMap<>();
+
+    /**
+     * The values of the "family" (the root "enumeration" class, and all its
+     * children) of a class, indexed by ordinal. Replaced (under lock), never
+     * modified.
+     */
+    private static final ConcurrentHashMap<Class<?>, OrdinalTable> BY_ORDINAL = new ConcurrentHashMap<>();
+
     /* The ordinal + 1 of this Enum40. The +1 allows detection of invalids. */
     private transient final char ordinal;
 
@@ -275,11 +384,13 @@ public abstract class Enum40<E extends Enum40<E>> extends AbstractBase40<E> {
         final Data<?> toCheck = map.get(Object.class);
         if (toCheck != null) {
             checkField(toCheck, toCheck.count - 1);
+            // Must be removed first, as postInit() can create generic
+            // instances, which would otherwise come back here.
+            map.remove(Object.class);
             final Enum40<?>[] all = toCheck.toArray();
             for (final Enum40 e : all) {
                 e.postInit(all);
             }
-            map.remove(Object.class);
         }
         Data<E> data = (Data<E>) map.get(enumClass);
         if (data == null) {
@@ -309,6 +420,7 @@ public abstract class Enum40<E extends Enum40<E>> extends AbstractBase40<E> {
                             * (MAX_VALUES + 1);
                     data = new Data<E>(enumClass, parentData, firstID);
                     parentData.children.add((Data) data);
+                    parentData.registered();
                 }
             } else {
                 data = new Data<E>(enumClass, parentData, firstID);
@@ -323,6 +435,7 @@ public abstract class Enum40<E extends Enum40<E>> extends AbstractBase40<E> {
         public Data<E> data;
         public String name;
         public int ordinal;
+        public boolean generic;
     }
 
     /**
@@ -353,20 +466,66 @@ public abstract class Enum40<E extends Enum40<E>> extends AbstractBase40<E> {
                 result.name = field.getName();
                 result.ordinal = next;
             } else {
-                // Generic instance
+                // Generic instance; it shares the ordinal of the constant.
                 result.name = getDefaultCharacterSet().toString(
                         base40ForGeneric, false, true);
-                result.ordinal = 0;
+                final E constant = data.base40ToValue.get(base40ForGeneric);
+                result.ordinal = (constant == null) ? -1 : constant
+                        .ordinal() - data.firstID - 1;
+                result.generic = true;
             }
             return result;
         }
     }
 
+    /**
+     * (Re-)publishes the lookup tables of a class, if it is fully
+     * initialized, or if they were already published. Must be called
+     * under lock.
+     */
+    private static <E extends Enum40<E>> void publish(final Data<E> data,
+            final Map<Class<?>, Data<?>> map) {
+        final boolean complete = (data.count == data.fields.size())
+                && (map.get(Object.class) != data);
+        if (complete || TABLES.containsKey(data.enumClass)) {
+            TABLES.put(data.enumClass, new Tables<E>(data));
+        }
+    }
+
+    /**
+     * Returns the lookup tables for the given "enumeration" class. Lock-free,
+     * once the class is fully initialized.
+     */
+    @SuppressWarnings("unchecked")
+    private static <E extends Enum40<E>> Tables<E> tablesFor(
+            final Class<E> enumClass) {
+        Tables<E> result = (Tables<E>) TABLES.get(enumClass);
+        if (result == null) {
+            // A class literal does not initialize the class, and therefore
+            // does not create the constants. Must be done outside the lock.
+            try {
+                Class.forName(enumClass.getName(), true,
+                        enumClass.getClassLoader());
+            } catch (final ClassNotFoundException e) {
+                throw new IllegalStateException(e);
+            }
+            final Map<Class<?>, Data<?>> map = getData();
+            synchronized (map) {
+                final Data<E> data = dataFor(enumClass);
+                publish(data, map);
+                result = (Tables<E>) TABLES.get(enumClass);
+                if (result == null) {
+                    // Not fully initialized yet; do not publish.
+                    result = new Tables<E>(data);
+                }
+            }
+        }
+        return result;
+    }
+
     /** Returns the all values for the given "enumeration" class. */
     public static <E extends Enum40<E>> E[] values(final Class<E> enumClass) {
-        synchronized (getData()) {
-            return dataFor(enumClass).toArray();
-        }
+        return tablesFor(enumClass).values.clone();
     }
 
     /** Returns the value for the given name for the "enumeration" class. */
@@ -375,30 +534,86 @@ public abstract class Enum40<E extends Enum40<E>> extends AbstractBase40<E> {
         if (name == null) {
             throw new IllegalStateException("Name is null");
         }
-        synchronized (getData()) {
-            final E result = dataFor(enumClass).nameToValue.get(name);
-            if (result == null) {
-                throw new IllegalStateException("Enum40 " + name
-                        + " not found in " + enumClass);
-            }
-            return result;
+        final E result = tablesFor(enumClass).nameToValue.get(name);
+        if (result == null) {
+            throw new IllegalStateException("Enum40 " + name + " not found in "
+                    + enumClass);
         }
+        return result;
     }
 
     /** Returns the value for the given base-40 ID for the "enumeration" class. */
     public static <E extends Enum40<E>> E valueOf(final Class<E> enumClass,
             final long base40) {
-        synchronized (getData()) {
-            final E result = dataFor(enumClass).base40ToValue.get(base40);
-            if (result == null) {
-                throw new IllegalStateException("Enum40 "
-                        + getDefaultCharacterSet().toString(base40, false,
-                                false) + " not found in " + enumClass);
+        final E result = tablesFor(enumClass).get(base40);
+        if (result == null) {
+            throw new IllegalStateException("Enum40 "
+                    + getDefaultCharacterSet().toString(base40, false, false)
+                    + " not found in " + enumClass);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the values of the "family" of the given "enumeration" class
+     * (the root class, and all its children), indexed by ordinal. Slots
+     * without a value are null. If the table contains a value for the given
+     * ordinal (pass -1 if there is none), it is returned directly. Otherwise
+     * the table is only rebuilt if values or children were registered in the
+     * family since it was built. The returned array must not be modified.
+     */
+    static Enum40<?>[] ordinalTable(final Class<?> enumClass,
+            final int ordinal) {
+        OrdinalTable table = BY_ORDINAL.get(enumClass);
+        if (table != null) {
+            final Enum40<?>[] values = table.values;
+            if (((ordinal >= 0) && (ordinal < values.length)
+                    && (values[ordinal] != null)) || table.isCurrent()) {
+                return values;
             }
-            return result;
+        }
+        final Map<Class<?>, Data<?>> map = getData();
+        synchronized (map) {
+            final Data<?> data = map.get(enumClass);
+            if (data == null) {
+                return (table == null) ? new Enum40<?>[0] : table.values;
+            }
+            if ((table == null) || !table.isCurrent()) {
+                table = new OrdinalTable(data.root());
+                BY_ORDINAL.put(enumClass, table);
+            }
+            return table.values;
         }
     }
 
+    /** Copies the valid values of data in the ordinal table. */
+    private static void fill(final Enum40<?>[] table, final Data<?> data) {
+        for (final Enum40<?> e : data.values) {
+            if (e.ordinal != 0) {
+                table[e.ordinal] = e;
+            }
+        }
+    }
+
+    /**
+     * Returns the value with the given ordinal, within the "family" of the
+     * "enumeration" class (the root class, and all its children).
+     */
+    public static <E extends Enum40<E>> E fromOrdinal(
+            final Class<E> enumClass, final int ordinal) {
+        if ((ordinal > 0) && (ordinal <= Character.MAX_VALUE)) {
+            // Makes sure the constants were created.
+            tablesFor(enumClass);
+            final Enum40<?>[] table = ordinalTable(enumClass, ordinal);
+            if ((ordinal < table.length)
+                    && enumClass.isInstance(table[ordinal])) {
+                return enumClass.cast(table[ordinal]);
+            }
+        }
+        throw new IllegalStateException("Enum40 ordinal " + ordinal
+                + " not found in " + enumClass);
+    }
+
     ///////////////////////
     // Instance methods. //
     ///////////////////////
@@ -438,13 +653,13 @@ public abstract class Enum40<E extends Enum40<E>> extends AbstractBase40<E> {
     private Enum40(final CharacterSet theCharacterSet,
             final NameAndOrdinal<E> nameAndOrdinal) {
         this(theCharacterSet, nameAndOrdinal.data, nameAndOrdinal.name,
-                nameAndOrdinal.ordinal);
+                nameAndOrdinal.ordinal, nameAndOrdinal.generic);
     }
 
     /** Constructor. Only accepts valid names. */
     @SuppressWarnings("unchecked")
     private Enum40(final CharacterSet theCharacterSet, final Data<E> data,
-            final String name, final int theOrdinal) {
+            final String name, final int theOrdinal, final boolean generic) {
         super(theCharacterSet, name);
         final int ord = data.firstID + theOrdinal + 1;
         if ((ord < 0) || (ord > Character.MAX_VALUE)) {
@@ -453,13 +668,22 @@ public abstract class Enum40<E extends Enum40<E>> extends AbstractBase40<E> {
         ordinal = (char) ord;
         declaringClass = data.enumClass;
         writeReplace = (E) this;
-        synchronized (getData()) {
+        if (generic) {
+            // Generic instances only replace the constants for serialization.
+            return;
+        }
+        final Map<Class<?>, Data<?>> map = getData();
+        synchronized (map) {
             final E e = (E) this;
             data.base40ToValue.put(asLong(), e);
             data.nameToValue.put(toString(), e);
             // In case there is a "case difference" ...
             data.nameToValue.put(data.fields.get(theOrdinal).getName(), e);
             data.values.add(e);
+            data.registered();
+            if (TABLES.containsKey(data.enumClass)) {
+                publish(data, map);
+            }
         }
     }
 
@@ -471,29 +695,59 @@ public abstract class Enum40<E extends Enum40<E>> extends AbstractBase40<E> {
         return (this == obj);
     }
 
-    /** Resolves the Enum40. */
-    @SuppressWarnings("unchecked")
-    private Object readResolve() throws ObjectStreamException {
-        synchronized (getData()) {
-            final Data<E> data = dataFor(getClass());
+    /**
+     * Returns the "enumeration" class of this Enum40, skipping the anonymous
+     * classes of constants with a body. Works after de-serialization too.
+     */
+    private Class<?> enumClass() {
+        Class<?> result = getClass();
+        while (result.isAnonymousClass()) {
+            result = result.getSuperclass();
+        }
+        return result;
+    }
+
+    /**
+     * Resolves the Enum40. Protected, so that it also applies to the
+     * "enumeration" classes.
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    protected Object readResolve() throws ObjectStreamException {
+        final Class enumClass = enumClass();
+        // Lock-free, when the value is known.
+        final Tables<?> tables = TABLES.get(enumClass);
+        if (tables != null) {
+            final Object known = tables.get(asLong());
+            if (known != null) {
+                return known;
+            }
+        }
+        final Map<Class<?>, Data<?>> map = getData();
+        synchronized (map) {
+            final Data<E> data = dataFor(enumClass);
             E result = data.base40ToValue.get(asLong());
             if (result == null) {
                 final Logger log = Logger.getLogger(Enum40.class.getName());
                 log.warning("Enum40 "
                         + getCharacterSet().toString(asLong(), false, false)
-                        + " not found in " + getClass());
+                        + " not found in " + enumClass);
                 result = (E) this;
                 // Through de-serialization, the ordinal becomes -1.
                 data.base40ToValue.put(asLong(), result);
                 data.nameToValue.put(toString(), result);
                 data.values.add(result);
+                data.registered();
+                publish(data, map);
             }
             return result;
         }
     }
 
-    /** Replaces the Enum40, before serializing. */
-    private Object writeReplace() throws ObjectStreamException {
+    /**
+     * Replaces the Enum40, before serializing. Protected, so that it also
+     * applies to the "enumeration" classes.
+     */
+    protected Object writeReplace() throws ObjectStreamException {
         return writeReplace;
     }
 
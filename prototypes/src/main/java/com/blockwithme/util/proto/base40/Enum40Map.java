@@ -0,0 +1,344 @@
+/*
+ * Copyright (C) 2014 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.blockwithme.util.proto.base40;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * A Map with Enum40 keys, implemented as an array indexed by ordinal, like
+ * java.util.EnumMap.
+ *
+ * The map can contain the values of the key type, and the values of its
+ * children. Since every Enum40 class has it's own range of 64 ordinals,
+ * the array only grows up to the highest child used. Null values are
+ * supported.
+ *
+ * It is not thread-safe, and the iterators are fail-fast.
+ *
+ * @author monster
+ */
+public class Enum40Map<K extends Enum40<K>, V> extends AbstractMap<K, V>
+        implements Cloneable {
+
+    /** Represents null values. */
+    private static final Object NULL = new Object();
+
+    /** Empty values. */
+    private static final Object[] NO_VALUES = new Object[0];
+
+    /** Empty ordinal table. */
+    private static final Enum40<?>[] NO_KEYS = new Enum40<?>[0];
+
+    /** The key type. */
+    private final Class<K> keyType;
+
+    /** The (masked) values, indexed by ordinal. */
+    private Object[] values;
+
+    /** The number of mappings. */
+    private int size;
+
+    /** The modification count. */
+    private int modCount;
+
+    /** The ordinal table of the family, refreshed on demand. */
+    private Enum40<?>[] table = NO_KEYS;
+
+    /** The entry set, created lazily. */
+    private transient Set<Map.Entry<K, V>> entrySet;
+
+    /** Creates an empty Enum40Map. */
+    public Enum40Map(final Class<K> theKeyType) {
+        keyType = Objects.requireNonNull(theKeyType, "theKeyType");
+        values = NO_VALUES;
+    }
+
+    /** Creates an Enum40Map, containing the mappings of another map. */
+    public Enum40Map(final Class<K> theKeyType,
+            final Map<? extends K, ? extends V> other) {
+        this(theKeyType);
+        putAll(other);
+    }
+
+    /** Returns the key type. */
+    public Class<K> keyType() {
+        return keyType;
+    }
+
+    /** Masks null values. */
+    private static Object mask(final Object value) {
+        return (value == null) ? NULL : value;
+    }
+
+    /** Unmasks null values. */
+    @SuppressWarnings("unchecked")
+    private static <V> V unmask(final Object value) {
+        return (value == NULL) ? null : (V) value;
+    }
+
+    /** Returns the key with the given ordinal. */
+    @SuppressWarnings("unchecked")
+    private K key(final int ordinal) {
+        Enum40<?>[] keys = table;
+        if ((ordinal >= keys.length) || (keys[ordinal] == null)) {
+            keys = Enum40.ordinalTable(keyType, ordinal);
+            table = keys;
+        }
+        // Only validated keys can be added.
+        return (K) keys[ordinal];
+    }
+
+    /** Returns the ordinal of key, or 0 if it cannot be a key. */
+    private int ordinalOf(final Object key) {
+        return keyType.isInstance(key) ? ((Enum40<?>) key).ordinal() : 0;
+    }
+
+    /* (non-Javadoc)
+     * @see java.util.AbstractMap#size()
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /* (non-Javadoc)
+     * @see java.util.AbstractMap#containsKey(java.lang.Object)
+     */
+    @Override
+    public boolean containsKey(final Object key) {
+        final int ordinal = ordinalOf(key);
+        return (ordinal != 0) && (ordinal < values.length)
+                && (values[ordinal] != null);
+    }
+
+    /* (non-Javadoc)
+     * @see java.util.AbstractMap#containsValue(java.lang.Object)
+     */
+    @Override
+    public boolean containsValue(final Object value) {
+        final Object masked = mask(value);
+        for (final Object v : values) {
+            if ((v != null) && masked.equals(v)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /* (non-Javadoc)
+     * @see java.util.AbstractMap#get(java.lang.Object)
+     */
+    @Override
+    public V get(final Object key) {
+        final int ordinal = ordinalOf(key);
+        return (ordinal < values.length) ? Enum40Map.<V> unmask(values[ordinal])
+                : null;
+    }
+
+    /* (non-Javadoc)
+     * @see java.util.AbstractMap#put(java.lang.Object, java.lang.Object)
+     */
+    @Override
+    public V put(final K key, final V value) {
+        if (!keyType.isInstance(key)) {
+            throw new ClassCastException(Objects.requireNonNull(key, "key")
+                    .getClass() + " is not a " + keyType);
+        }
+        final int ordinal = key.ordinal();
+        if (ordinal == 0) {
+            throw new IllegalArgumentException("Invalid Enum40: " + key);
+        }
+        if (ordinal >= values.length) {
+            // Grows one whole Enum40 class at a time.
+            values = Arrays.copyOf(values, (ordinal | 63) + 1);
+        }
+        final Object old = values[ordinal];
+        values[ordinal] = mask(value);
+        if (old == null) {
+            size++;
+            modCount++;
+        }
+        return unmask(old);
+    }
+
+    /* (non-Javadoc)
+     * @see java.util.AbstractMap#remove(java.lang.Object)
+     */
+    @Override
+    public V remove(final Object key) {
+        final int ordinal = ordinalOf(key);
+        if ((ordinal == 0) || (ordinal >= values.length)) {
+            return null;
+        }
+        final Object old = values[ordinal];
+        if (old != null) {
+            values[ordinal] = null;
+            size--;
+            modCount++;
+        }
+        return unmask(old);
+    }
+
+    /* (non-Javadoc)
+     * @see java.util.AbstractMap#putAll(java.util.Map)
+     */
+    @Override
+    public void putAll(final Map<? extends K, ? extends V> other) {
+        if (other instanceof Enum40Map<?, ?>) {
+            final Enum40Map<?, ?> map = (Enum40Map<?, ?>) other;
+            if (keyType.isAssignableFrom(map.keyType)) {
+                final Object[] otherValues = map.values;
+                if (otherValues.length > values.length) {
+                    values = Arrays.copyOf(values, otherValues.length);
+                }
+                for (int i = 0; i < otherValues.length; i++) {
+                    final Object value = otherValues[i];
+                    if (value != null) {
+                        if (values[i] == null) {
+                            size++;
+                        }
+                        values[i] = value;
+                    }
+                }
+                modCount++;
+                return;
+            }
+        }
+        super.putAll(other);
+    }
+
+    /* (non-Javadoc)
+     * @see java.util.AbstractMap#clear()
+     */
+    @Override
+    public void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+        modCount++;
+    }
+
+    /* (non-Javadoc)
+     * @see java.util.AbstractMap#clone()
+     */
+    @Override
+    public Enum40Map<K, V> clone() {
+        final Enum40Map<K, V> result = new Enum40Map<K, V>(keyType);
+        result.values = values.clone();
+        result.size = size;
+        result.table = table;
+        return result;
+    }
+
+    /* (non-Javadoc)
+     * @see java.util.AbstractMap#entrySet()
+     */
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new AbstractSet<Map.Entry<K, V>>() {
+                @Override
+                public Iterator<Map.Entry<K, V>> iterator() {
+                    return new EntryIterator();
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+
+                @Override
+                public void clear() {
+                    Enum40Map.this.clear();
+                }
+            };
+        }
+        return entrySet;
+    }
+
+    /** Iterates over the mappings, in ordinal order. */
+    private final class EntryIterator implements Iterator<Map.Entry<K, V>> {
+        /** The next ordinal, or values.length. */
+        private int next = nextOrdinal(1);
+        /** The last returned ordinal, or -1. */
+        private int last = -1;
+        /** The expected modification count. */
+        private int expectedModCount = modCount;
+
+        /** Returns the first used ordinal, starting at from. */
+        private int nextOrdinal(int from) {
+            while ((from < values.length) && (values[from] == null)) {
+                from++;
+            }
+            return from;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < values.length;
+        }
+
+        @Override
+        public Map.Entry<K, V> next() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (next >= values.length) {
+                throw new NoSuchElementException();
+            }
+            last = next;
+            next = nextOrdinal(next + 1);
+            final int ordinal = last;
+            final K key = key(ordinal);
+            return new AbstractMap.SimpleEntry<K, V>(key,
+                    Enum40Map.<V> unmask(values[ordinal])) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                public V setValue(final V value) {
+                    if (values[ordinal] == null) {
+                        throw new IllegalStateException(
+                                "Mapping was removed");
+                    }
+                    super.setValue(value);
+                    return Enum40Map.this.put(key, value);
+                }
+            };
+        }
+
+        @Override
+        public void remove() {
+            if (last < 0) {
+                throw new IllegalStateException();
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            values[last] = null;
+            size--;
+            expectedModCount = ++modCount;
+            last = -1;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2014 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.blockwithme.util.proto.base40;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+
+/**
+ * Dispatch table for Enum40ObjectHandler. The handler methods must be named
+ * like the constants, and have the signature: OUTPUT name(INPUT).
+ *
+ * The dispatcher should be created once. For best performance, use the
+ * target() MethodHandle, stored in a static final field:
+ * <code>
+ * result = (OUTPUT) (Object) DISPATCH.invokeExact(
+ *         (Enum40ObjectHandler) handler, (Enum40) value, (Object) input);
+ * </code>
+ * See also Enum40LongDispatcher.
+ *
+ * @author monster
+ */
+public final class Enum40ObjectDispatcher<E extends Enum40<E>> extends
+        AbstractEnum40Dispatcher<E> {
+
+    /** The type of the handler methods. */
+    private static final MethodType TYPE = MethodType.methodType(
+            Object.class, Enum40ObjectHandler.class, Object.class);
+
+    /** Calls Enum40.handle(), as (handler, Enum40, input)output. */
+    private static final MethodHandle FALLBACK;
+
+    static {
+        try {
+            FALLBACK = MethodHandles.permuteArguments(
+                    MethodHandles.publicLookup().findVirtual(Enum40.class,
+                            "handle", TYPE), MethodType.methodType(
+                            Object.class, Enum40ObjectHandler.class,
+                            Enum40.class, Object.class), 1, 0, 2);
+        } catch (final NoSuchMethodException | IllegalAccessException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /** Constructor. */
+    @SuppressWarnings("rawtypes")
+    public Enum40ObjectDispatcher(final Class<E> theEnumClass,
+            final Class<? extends Enum40ObjectHandler> theHandlerType) {
+        super(theEnumClass, theHandlerType, TYPE, FALLBACK);
+    }
+
+    /** Creates a dispatcher. */
+    @SuppressWarnings("rawtypes")
+    public static <E extends Enum40<E>> Enum40ObjectDispatcher<E> of(
+            final Class<E> enumClass,
+            final Class<? extends Enum40ObjectHandler> handlerType) {
+        return new Enum40ObjectDispatcher<E>(enumClass, handlerType);
+    }
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.util.proto.base40.AbstractEnum40Dispatcher#accepts(java.lang.reflect.Method)
+     */
+    @Override
+    protected boolean accepts(final Method method) {
+        final Class<?>[] params = method.getParameterTypes();
+        return !method.getReturnType().isPrimitive() && (params.length == 1)
+                && !params[0].isPrimitive();
+    }
+
+    /**
+     * Calls the handler method of value, with input. Since the dispatcher is
+     * not a constant for the JIT, this is slower than calling target().
+     *
+     * See Enum40LongDispatcher.handle() for measurements: this is slower
+     * than Enum40.handle() with few constants, and about equal with many.
+     * Only a target() stored in a static final field actually beats
+     * Enum40.handle().
+     */
+    @SuppressWarnings("unchecked")
+    public <INPUT, OUTPUT> OUTPUT handle(
+            final Enum40ObjectHandler<E, INPUT, OUTPUT> handler, final E value,
+            final INPUT input) {
+        try {
+            return (OUTPUT) (Object) target.invokeExact(
+                    (Enum40ObjectHandler<?, ?, ?>) handler, (Enum40<?>) value,
+                    (Object) input);
+        } catch (final Throwable t) {
+            throw rethrow(t);
+        }
+    }
+}
@@ -0,0 +1,484 @@
+/*
+ * Copyright (C) 2014 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.blockwithme.util.proto.base40;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * A Set of Enum40, implemented as a bitset over the ordinals, like
+ * java.util.EnumSet.
+ *
+ * Every Enum40 class in a "family" (a root class, and all its children) has
+ * its own range of 64 ordinals, so every class maps to exactly one long
+ * word. The set can contain the values of the element type, and the values
+ * of its children. Bit 0 of every word is never used, since it represents
+ * invalid values.
+ *
+ * It is not thread-safe, and the iterators are fail-fast.
+ *
+ * @author monster
+ */
+public class Enum40Set<E extends Enum40<E>> extends AbstractSet<E> implements
+        Cloneable {
+
+    /** Empty words. */
+    private static final long[] NO_WORDS = new long[0];
+
+    /** Empty ordinal table. */
+    private static final Enum40<?>[] NO_VALUES = new Enum40<?>[0];
+
+    /** The element type. */
+    private final Class<E> elementType;
+
+    /** The bits, one word per Enum40 class of the family. */
+    private long[] words;
+
+    /** The number of elements. */
+    private int size;
+
+    /** The modification count. */
+    private int modCount;
+
+    /** The ordinal table of the family, refreshed on demand. */
+    private Enum40<?>[] table = NO_VALUES;
+
+    /** Constructor. */
+    private Enum40Set(final Class<E> theElementType, final long[] theWords) {
+        elementType = Objects.requireNonNull(theElementType,
+                "theElementType");
+        words = theWords;
+        for (final long word : theWords) {
+            size += Long.bitCount(word);
+        }
+    }
+
+    /** Creates an empty set. */
+    public static <E extends Enum40<E>> Enum40Set<E> noneOf(
+            final Class<E> elementType) {
+        return new Enum40Set<E>(elementType, NO_WORDS);
+    }
+
+    /**
+     * Creates a set containing all the values of the element type, and of
+     * its children, that were initialized so far.
+     */
+    public static <E extends Enum40<E>> Enum40Set<E> allOf(
+            final Class<E> elementType) {
+        // Makes sure the constants were created.
+        Enum40.values(elementType);
+        final Enum40Set<E> result = noneOf(elementType);
+        for (final Enum40<?> e : Enum40.ordinalTable(elementType, -1)) {
+            if (elementType.isInstance(e)) {
+                result.add(elementType.cast(e));
+            }
+        }
+        return result;
+    }
+
+    /** Creates a set containing the given values. */
+    @SafeVarargs
+    public static <E extends Enum40<E>> Enum40Set<E> of(
+            final Class<E> elementType, final E... values) {
+        final Enum40Set<E> result = noneOf(elementType);
+        for (final E e : values) {
+            result.add(e);
+        }
+        return result;
+    }
+
+    /** Creates a set containing the given values. */
+    public static <E extends Enum40<E>> Enum40Set<E> copyOf(
+            final Class<E> elementType, final Collection<? extends E> values) {
+        if (values instanceof Enum40Set<?>) {
+            final Enum40Set<?> other = (Enum40Set<?>) values;
+            if (elementType.isAssignableFrom(other.elementType)) {
+                return new Enum40Set<E>(elementType, other.words.clone());
+            }
+        }
+        final Enum40Set<E> result = noneOf(elementType);
+        result.addAll(values);
+        return result;
+    }
+
+    /**
+     * Creates a set containing all the values of the element type (and of
+     * its children) that are not in the given set.
+     */
+    public static <E extends Enum40<E>> Enum40Set<E> complementOf(
+            final Enum40Set<E> set) {
+        final Enum40Set<E> result = allOf(set.elementType);
+        result.removeAll(set);
+        return result;
+    }
+
+    /**
+     * Creates a set from a single word, containing values of the class with
+     * the given first ordinal. This is the inverse of toLong(int).
+     */
+    public static <E extends Enum40<E>> Enum40Set<E> fromLong(
+            final Class<E> elementType, final int firstOrdinal,
+            final long bits) {
+        if ((firstOrdinal & 63) != 0) {
+            throw new IllegalArgumentException("Bad first ordinal: "
+                    + firstOrdinal);
+        }
+        final long[] words = new long[(firstOrdinal >>> 6) + 1];
+        words[firstOrdinal >>> 6] = bits;
+        final Enum40Set<E> result = new Enum40Set<E>(elementType, words);
+        for (int ordinal = result.nextOrdinal(0); ordinal >= 0; ordinal = result
+                .nextOrdinal(ordinal + 1)) {
+            final Enum40<?>[] table = Enum40.ordinalTable(elementType, ordinal);
+            if ((ordinal >= table.length)
+                    || !elementType.isInstance(table[ordinal])) {
+                throw new IllegalArgumentException("Bad bits for "
+                        + elementType + " at ordinal " + firstOrdinal + ": "
+                        + Long.toHexString(bits));
+            }
+        }
+        return result;
+    }
+
+    /** Returns the element type. */
+    public Class<E> elementType() {
+        return elementType;
+    }
+
+    /**
+     * Returns the word of the class with the given first ordinal. Bit
+     * (ordinal % 64) is set, for every value in this set.
+     */
+    public long toLong(final int firstOrdinal) {
+        final int index = firstOrdinal >>> 6;
+        return (index < words.length) ? words[index] : 0;
+    }
+
+    /** Returns the element with the given ordinal. */
+    @SuppressWarnings("unchecked")
+    private E element(final int ordinal) {
+        Enum40<?>[] values = table;
+        if ((ordinal >= values.length) || (values[ordinal] == null)) {
+            values = Enum40.ordinalTable(elementType, ordinal);
+            table = values;
+        }
+        // Only validated elements can be added.
+        return (E) values[ordinal];
+    }
+
+    /** Returns the ordinal of e, after validation. */
+    private int ordinalOf(final E e) {
+        if (!elementType.isInstance(e)) {
+            throw new ClassCastException(Objects.requireNonNull(e, "e")
+                    .getClass() + " is not a " + elementType);
+        }
+        final int ordinal = e.ordinal();
+        if (ordinal == 0) {
+            throw new IllegalArgumentException("Invalid Enum40: " + e);
+        }
+        return ordinal;
+    }
+
+    /* (non-Javadoc)
+     * @see java.util.AbstractCollection#contains(java.lang.Object)
+     */
+    @Override
+    public boolean contains(final Object obj) {
+        if (!elementType.isInstance(obj)) {
+            return false;
+        }
+        final int ordinal = ((Enum40<?>) obj).ordinal();
+        final int index = ordinal >>> 6;
+        return (ordinal != 0) && (index < words.length)
+                && ((words[index] & (1L << ordinal)) != 0);
+    }
+
+    /* (non-Javadoc)
+     * @see java.util.AbstractCollection#add(java.lang.Object)
+     */
+    @Override
+    public boolean add(final E e) {
+        final int ordinal = ordinalOf(e);
+        final int index = ordinal >>> 6;
+        if (index >= words.length) {
+            words = Arrays.copyOf(words, index + 1);
+        }
+        final long before = words[index];
+        final long after = before | (1L << ordinal);
+        if (before == after) {
+            return false;
+        }
+        words[index] = after;
+        size++;
+        modCount++;
+        return true;
+    }
+
+    /* (non-Javadoc)
+     * @see java.util.AbstractCollection#remove(java.lang.Object)
+     */
+    @Override
+    public boolean remove(final Object obj) {
+        if (!elementType.isInstance(obj)) {
+            return false;
+        }
+        final int ordinal = ((Enum40<?>) obj).ordinal();
+        final int index = ordinal >>> 6;
+        if ((ordinal == 0) || (index >= words.length)) {
+            return false;
+        }
+        final long before = words[index];
+        final long after = before & ~(1L << ordinal);
+        if (before == after) {
+            return false;
+        }
+        words[index] = after;
+        size--;
+        modCount++;
+        return true;
+    }
+
+    /* (non-Javadoc)
+     * @see java.util.AbstractCollection#size()
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /* (non-Javadoc)
+     * @see java.util.AbstractCollection#clear()
+     */
+    @Override
+    public void clear() {
+        Arrays.fill(words, 0L);
+        size = 0;
+        modCount++;
+    }
+
+    /**
+     * Returns the other collection as an Enum40Set of the same family, or
+     * null. Ordinals are only comparable within a family.
+     */
+    private Enum40Set<?> sameFamily(final Object other) {
+        if (other instanceof Enum40Set<?>) {
+            final Enum40Set<?> set = (Enum40Set<?>) other;
+            if (elementType.isAssignableFrom(set.elementType)
+                    || set.elementType.isAssignableFrom(elementType)) {
+                return set;
+            }
+        }
+        return null;
+    }
+
+    /** Recomputes the size, after a bulk operation. Returns true on change. */
+    private boolean recount() {
+        int count = 0;
+        for (final long word : words) {
+            count += Long.bitCount(word);
+        }
+        final boolean changed = (count != size);
+        if (changed) {
+            size = count;
+            modCount++;
+        }
+        return changed;
+    }
+
+    /* (non-Javadoc)
+     * @see java.util.AbstractCollection#containsAll(java.util.Collection)
+     */
+    @Override
+    public boolean containsAll(final Collection<?> other) {
+        final Enum40Set<?> set = sameFamily(other);
+        if (set == null) {
+            return super.containsAll(other);
+        }
+        final long[] otherWords = set.words;
+        for (int i = 0; i < otherWords.length; i++) {
+            final long word = (i < words.length) ? words[i] : 0;
+            if ((otherWords[i] & ~word) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /* (non-Javadoc)
+     * @see java.util.AbstractCollection#addAll(java.util.Collection)
+     */
+    @Override
+    public boolean addAll(final Collection<? extends E> other) {
+        final Enum40Set<?> set = sameFamily(other);
+        if ((set == null) || !elementType.isAssignableFrom(set.elementType)) {
+            return super.addAll(other);
+        }
+        final long[] otherWords = set.words;
+        if (otherWords.length > words.length) {
+            words = Arrays.copyOf(words, otherWords.length);
+        }
+        for (int i = 0; i < otherWords.length; i++) {
+            words[i] |= otherWords[i];
+        }
+        return recount();
+    }
+
+    /* (non-Javadoc)
+     * @see java.util.AbstractSet#removeAll(java.util.Collection)
+     */
+    @Override
+    public boolean removeAll(final Collection<?> other) {
+        final Enum40Set<?> set = sameFamily(other);
+        if (set != null) {
+            final long[] otherWords = set.words;
+            final int len = Math.min(words.length, otherWords.length);
+            for (int i = 0; i < len; i++) {
+                words[i] &= ~otherWords[i];
+            }
+            return recount();
+        }
+        return super.removeAll(other);
+    }
+
+    /* (non-Javadoc)
+     * @see java.util.AbstractCollection#retainAll(java.util.Collection)
+     */
+    @Override
+    public boolean retainAll(final Collection<?> other) {
+        final Enum40Set<?> set = sameFamily(other);
+        if (set != null) {
+            final long[] otherWords = set.words;
+            for (int i = 0; i < words.length; i++) {
+                words[i] &= (i < otherWords.length) ? otherWords[i] : 0;
+            }
+            return recount();
+        }
+        return super.retainAll(other);
+    }
+
+    /* (non-Javadoc)
+     * @see java.util.AbstractSet#equals(java.lang.Object)
+     */
+    @Override
+    public boolean equals(final Object obj) {
+        final Enum40Set<?> other = sameFamily(obj);
+        if (other != null) {
+            if (other.size != size) {
+                return false;
+            }
+            final long[] otherWords = other.words;
+            final int len = Math.max(words.length, otherWords.length);
+            for (int i = 0; i < len; i++) {
+                final long word = (i < words.length) ? words[i] : 0;
+                if (word != ((i < otherWords.length) ? otherWords[i] : 0)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return super.equals(obj);
+    }
+
+    /* (non-Javadoc)
+     * @see java.util.AbstractSet#hashCode()
+     */
+    @Override
+    public int hashCode() {
+        // Must be consistent with AbstractSet, because of equals()
+        return super.hashCode();
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#clone()
+     */
+    @Override
+    public Enum40Set<E> clone() {
+        final Enum40Set<E> result = new Enum40Set<E>(elementType,
+                words.clone());
+        result.table = table;
+        return result;
+    }
+
+    /* (non-Javadoc)
+     * @see java.util.AbstractCollection#iterator()
+     */
+    @Override
+    public Iterator<E> iterator() {
+        return new Iterator<E>() {
+            /** The next ordinal, or -1. */
+            private int next = nextOrdinal(1);
+            /** The last returned ordinal, or -1. */
+            private int last = -1;
+            /** The expected modification count. */
+            private int expectedModCount = modCount;
+
+            @Override
+            public boolean hasNext() {
+                return next >= 0;
+            }
+
+            @Override
+            public E next() {
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                if (next < 0) {
+                    throw new NoSuchElementException();
+                }
+                last = next;
+                next = nextOrdinal(next + 1);
+                return element(last);
+            }
+
+            @Override
+            public void remove() {
+                if (last < 0) {
+                    throw new IllegalStateException();
+                }
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                words[last >>> 6] &= ~(1L << last);
+                size--;
+                expectedModCount = ++modCount;
+                last = -1;
+            }
+        };
+    }
+
+    /** Returns the first ordinal in the set, starting at from, or -1. */
+    private int nextOrdinal(final int from) {
+        int index = from >>> 6;
+        if (index >= words.length) {
+            return -1;
+        }
+        long word = words[index] & (-1L << from);
+        while (true) {
+            if (word != 0) {
+                return (index << 6) + Long.numberOfTrailingZeros(word);
+            }
+            if (++index == words.length) {
+                return -1;
+            }
+            word = words[index];
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2014 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.blockwithme.util.proto.base40;
+
+import java.util.Objects;
+
+import com.blockwithme.util.base.SystemUtils;
+import com.blockwithme.util.shared.converters.ConfiguredConverter;
+import com.blockwithme.util.shared.converters.LongConverterBase;
+
+/**
+ * <code>Enum40SetConverter</code> implements a LongConverter for Enum40Sets
+ * of some Enum40 type. It is the Enum40 equivalent of EnumSetConverter.
+ *
+ * Since every Enum40 class has it's own range of 64 ordinals, any set of
+ * values of a single class fits in a long; bit (ordinal % 64) represents
+ * the value with the given ordinal. Children values are not supported,
+ * since they use other ranges.
+ *
+ * @author monster
+ *
+ * @param <E>
+ */
+public class Enum40SetConverter<CONTEXT, E extends Enum40<E>> extends
+        LongConverterBase<CONTEXT, Enum40Set<E>> implements
+        ConfiguredConverter<CONTEXT, Enum40Set<E>> {
+
+    /** Real Enum40 type. */
+    private final Class<E> enumType;
+
+    /** The first ordinal of the range of the Enum40 type. */
+    private final int firstOrdinal;
+
+    /**
+     * Constructor takes the Enum40 type, which must have constants of it's
+     * own.
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public Enum40SetConverter(final Class<E> theEnumType) {
+        super((Class) Enum40Set.class);
+        enumType = Objects.requireNonNull(theEnumType, "theEnumType");
+        final E[] values;
+        try {
+            // Also makes sure the constants were created.
+            values = Enum40.values(theEnumType);
+        } catch (final IllegalStateException e) {
+            throw new IllegalArgumentException(theEnumType
+                    + " is not a usable Enum40 type", e);
+        }
+        if (values.length == 0) {
+            throw new IllegalArgumentException(theEnumType
+                    + " has no constants of it's own");
+        }
+        firstOrdinal = values[0].ordinal() & ~63;
+    }
+
+    /** Constructor takes the Enum40 type name. */
+    @SuppressWarnings("unchecked")
+    public Enum40SetConverter(final String theEnumType) {
+        this((Class<E>) SystemUtils.forName(theEnumType));
+    }
+
+    @Override
+    public long fromObject(final CONTEXT context, final Enum40Set<E> theSet) {
+        if ((theSet == null) || theSet.isEmpty()) {
+            return 0;
+        }
+        final long result = theSet.toLong(firstOrdinal);
+        if (Long.bitCount(result) != theSet.size()) {
+            throw new IllegalArgumentException("Set contains values not in "
+                    + enumType + ": " + theSet);
+        }
+        return result;
+    }
+
+    @Override
+    public final Enum40Set<E> toObject(final CONTEXT context,
+            final long theValue) {
+        return Enum40Set.fromLong(enumType, firstOrdinal, theValue);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String getConfiguration() {
+        return enumType.getName();
+    }
+}
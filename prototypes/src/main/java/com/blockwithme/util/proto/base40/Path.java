@@ -17,6 +17,9 @@
 package com.blockwithme.util.proto.base40;
 
 import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Objects;
 
 import com.blockwithme.util.shared.AsLong;
 
@@ -25,46 +28,116 @@ import com.blockwithme.util.shared.AsLong;
  *
  * For a description of the base-40 encoding, see <code>Base40</code>.
  *
- * TODO: Test!
+ * A Path is stored as a flat array of base-40 segments. The parent is only
+ * created on demand.
+ *
+ * The natural order, and equality, is defined directly on the segments:
+ * segments are compared one by one, as unsigned longs, and a path is bigger
+ * then all of its prefixes. Comparing unsigned base-40 values is the same as
+ * comparing the fixed-size (MAX_LEN characters, left-padded with the
+ * character at index 0) textual forms, using the character set index order
+ * (digits, then letters, then the 4 last characters) instead of the Unicode
+ * order. In the variable-length textual form, it means shorter segments come
+ * first ("z" &lt; "10"). Paths with equal segments are ordered by character
+ * set. Use NAME_ORDER to order paths by their textual segments.
+ *
+ * PathTrie returns canonical instances, for which equals() succeeds on the
+ * identity check.
  */
 public final class Path implements Serializable, Comparable<Path>, AsLong {
 
     /** serialVersionUID */
-    private static final long serialVersionUID = 1L;
+    private static final long serialVersionUID = 2L;
 
     /** The path separator character */
     public static final char SEP = '/';
 
-    /** The parent, if any */
-    private final Path parent;
+    /**
+     * Orders paths by comparing the variable-length textual form of the
+     * segments, as Strings. This was the natural order of paths before they
+     * were compared numerically. It is much slower then the natural order.
+     */
+    public static final Comparator<Path> NAME_ORDER = new Comparator<Path>() {
+        @Override
+        public int compare(final Path o1, final Path o2) {
+            final int depth1 = o1.segments.length;
+            final int depth2 = o2.segments.length;
+            final int depth = Math.min(depth1, depth2);
+            for (int i = 0; i < depth; i++) {
+                final long s1 = o1.segments[i];
+                final long s2 = o2.segments[i];
+                if (s1 != s2) {
+                    final int result = o1.characterSet.toString(s1, false,
+                            false).compareTo(
+                            o2.characterSet.toString(s2, false, false));
+                    if (result != 0) {
+                        return result;
+                    }
+                }
+            }
+            return (depth1 < depth2) ? -1 : ((depth1 == depth2) ? 0 : 1);
+        }
+    };
 
-    /** The base-40 value */
-    private final long base40;
+    /** The base-40 segments; never empty. */
+    private final long[] segments;
 
     /** The character set. */
     private final CharacterSet characterSet;
 
+    /** The parent, if any; computed lazily. */
+    private transient Path parent;
+
     /** The textual form. */
     private transient String name;
 
     /** The hashcode. */
     private transient int hashcode;
 
-    /** The depth. */
-    private transient int depth;
-
-    /** Creates a path from it's string representation. */
+    /**
+     * Creates a path from it's string representation. Empty segments have
+     * the value 0, except at the end, where they are ignored.
+     */
     public static Path fromString(final CharacterSet characterSet,
             final String path) {
         if ((path == null) || path.isEmpty()) {
             return null;
         }
-        final String[] paths = path.split(String.valueOf(SEP));
-        Path result = new Path(characterSet, paths[0]);
-        for (int i = 1; i < paths.length; i++) {
-            result = new Path(characterSet, result, paths[i]);
+        // Trailing separators are ignored, like String.split() did.
+        int end = path.length();
+        while ((end > 0) && (path.charAt(end - 1) == SEP)) {
+            end--;
         }
-        return result;
+        if (end == 0) {
+            // "/", "//", ... : one single empty segment.
+            return new Path(characterSet, new long[1], null);
+        }
+        int count = 1;
+        for (int i = 0; i < end; i++) {
+            if (path.charAt(i) == SEP) {
+                count++;
+            }
+        }
+        final long[] segments = new long[count];
+        int start = 0;
+        for (int s = 0; s < count; s++) {
+            int stop = start;
+            while ((stop < end) && (path.charAt(stop) != SEP)) {
+                stop++;
+            }
+            segments[s] = characterSet.toLong(path, start, stop);
+            start = stop + 1;
+        }
+        return new Path(characterSet, segments, null);
+    }
+
+    /** Creates a path from it's segments. The array is copied. */
+    public static Path fromLongArray(final CharacterSet characterSet,
+            final long[] segments) {
+        if (segments.length == 0) {
+            throw new IllegalArgumentException("segments is empty");
+        }
+        return new Path(characterSet, segments.clone(), null);
     }
 
     /** Constructor */
@@ -86,9 +159,27 @@ public final class Path implements Serializable, Comparable<Path>, AsLong {
     /** Constructor */
     public Path(final CharacterSet characterSet, final Path parent,
             final long value) {
-        this.characterSet = characterSet;
-        this.parent = parent;
-        this.base40 = value;
+        this(characterSet, append(parent, value), parent);
+    }
+
+    /** Constructor. Takes ownership of the segments. */
+    Path(final CharacterSet theCharacterSet, final long[] theSegments,
+            final Path theParent) {
+        characterSet = Objects.requireNonNull(theCharacterSet,
+                "characterSet");
+        segments = theSegments;
+        parent = theParent;
+    }
+
+    /** Returns the segments of parent, followed by value. */
+    private static long[] append(final Path parent, final long value) {
+        if (parent == null) {
+            return new long[] { value };
+        }
+        final long[] result = Arrays.copyOf(parent.segments,
+                parent.segments.length + 1);
+        result[parent.segments.length] = value;
+        return result;
     }
 
     /* (non-Javadoc)
@@ -99,86 +190,78 @@ public final class Path implements Serializable, Comparable<Path>, AsLong {
         if (o == null) {
             return 1;
         }
-        return compareTo(depth(), o.depth(), o);
-    }
-
-    /** Compares to another path. */
-    private int compareTo(final int myDepth, final int otherDepth,
-            final Path other) {
-        int result;
-        if (other == this) {
-            result = 0;
-        } else if ((myDepth == 1) && (otherDepth == 1)) {
-            result = name().compareTo(other.name());
-        } else {
-            if (myDepth > otherDepth) {
-                result = parent.compareTo(myDepth - 1, otherDepth, other);
-                if (result == 0) {
-                    // I'm longer, so I'm bigger
-                    result = 1;
-                }
-            } else if (myDepth < otherDepth) {
-                result = -other.parent.compareTo(otherDepth - 1, myDepth, this);
-                if (result == 0) {
-                    // I'm shorter, so I'm smaller
-                    result = -1;
-                }
-            } else {
-                // Same depth, and > 1
-                result = parent.compareTo(myDepth - 1, otherDepth - 1,
-                        other.parent);
-                if (result == 0) {
-                    // Our parents are equal!
-                    result = name().compareTo(other.name());
-                }
+        if (o == this) {
+            return 0;
+        }
+        final long[] other = o.segments;
+        final int depth = Math.min(segments.length, other.length);
+        for (int i = 0; i < depth; i++) {
+            final long s1 = segments[i];
+            final long s2 = other[i];
+            if (s1 != s2) {
+                // Unsigned comparison
+                return ((s1 ^ Long.MIN_VALUE) < (s2 ^ Long.MIN_VALUE)) ? -1
+                        : 1;
             }
         }
-        return result;
+        if (segments.length != other.length) {
+            // The longer path is bigger
+            return (segments.length < other.length) ? -1 : 1;
+        }
+        return (characterSet == o.characterSet) ? 0 : characterSet
+                .compareTo(o.characterSet);
     }
 
     @Override
     public boolean equals(final Object obj) {
+        if (obj == this) {
+            return true;
+        }
         if ((obj == null) || (getClass() != obj.getClass())) {
             return false;
         }
         final Path other = (Path) obj;
-        return (compareTo(other) == 0);
+        return (hashCode() == other.hashCode())
+                && Arrays.equals(segments, other.segments)
+                && ((characterSet == other.characterSet) || characterSet
+                        .equals(other.characterSet));
     }
 
     @Override
     public int hashCode() {
         if (hashcode == 0) {
-            hashcode = (parent == null) ? 31 : parent.hashCode() * 31;
-            hashcode += (int) (base40 ^ (base40 >>> 32));
-            if (hashcode == 0) {
-                hashcode = 1;
+            // Same value as when paths were stored as a chain of parents,
+            // where each parent replaced a zero hash with 1.
+            int result = 1;
+            for (final long s : segments) {
+                result = 31 * result + (int) (s ^ (s >>> 32));
+                if (result == 0) {
+                    result = 1;
+                }
             }
+            hashcode = result;
         }
         return hashcode;
     }
 
     /** Returns the "depth of the path. */
     public int depth() {
-        if (depth == 0) {
-            Path p = this;
-            while (p != null) {
-                depth++;
-                p = p.parent;
-            }
-        }
-        return depth;
+        return segments.length;
+    }
+
+    /** Returns the base-40 segment at the given index (0 is the root). */
+    public long segment(final int index) {
+        return segments[index];
     }
 
     /** Returns the path as as array of long. */
     public long[] toLongArray() {
-        final int depth = depth();
-        final long[] result = new long[depth];
-        Path p = this;
-        for (int i = depth - 1; i >= 0; i--) {
-            result[i] = p.base40;
-            p = p.parent;
-        }
-        return result;
+        return segments.clone();
+    }
+
+    /** Returns the character set. */
+    public CharacterSet getCharacterSet() {
+        return characterSet;
     }
 
     /**
@@ -186,18 +269,20 @@ public final class Path implements Serializable, Comparable<Path>, AsLong {
      * It is not cached.
      */
     public String toFixedString() {
-        final StringBuilder buf = new StringBuilder();
-        toFixedString(buf);
-        return buf.toString();
+        return toString(true);
     }
 
-    /** Builds the string recursively in buf. */
-    private void toFixedString(final StringBuilder buf) {
-        if (parent != null) {
-            parent.toFixedString(buf);
-            buf.append(SEP);
+    /** Builds the string. */
+    private String toString(final boolean fixedSize) {
+        final StringBuilder buf = new StringBuilder(segments.length
+                * (CharacterSet.MAX_LEN + 1));
+        for (int i = 0; i < segments.length; i++) {
+            if (i != 0) {
+                buf.append(SEP);
+            }
+            characterSet.appendTo(segments[i], fixedSize, false, buf);
         }
-        buf.append(characterSet.toString(base40, true, false));
+        return buf.toString();
     }
 
     /**
@@ -205,7 +290,7 @@ public final class Path implements Serializable, Comparable<Path>, AsLong {
      */
     public String name() {
         if (name == null) {
-            name(new StringBuilder());
+            name = toString(false);
         }
         return name;
     }
@@ -213,11 +298,15 @@ public final class Path implements Serializable, Comparable<Path>, AsLong {
     /** Returns the base-40 value */
     @Override
     public long asLong() {
-        return base40;
+        return segments[segments.length - 1];
     }
 
     /** Returns the parent, if any */
     public Path parent() {
+        if ((parent == null) && (segments.length > 1)) {
+            parent = new Path(characterSet, Arrays.copyOf(segments,
+                    segments.length - 1), null);
+        }
         return parent;
     }
 
@@ -228,18 +317,4 @@ public final class Path implements Serializable, Comparable<Path>, AsLong {
     public String toString() {
         return name();
     }
-
-    /** Builds the string recursively in buf. */
-    private void name(final StringBuilder buf) {
-        if (name == null) {
-            if (parent != null) {
-                parent.name(buf);
-                buf.append(SEP);
-            }
-            buf.append(characterSet.toString(base40, false, false));
-            name = buf.toString();
-        } else {
-            buf.append(name);
-        }
-    }
 }
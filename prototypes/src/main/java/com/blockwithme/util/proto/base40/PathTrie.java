@@ -0,0 +1,397 @@
+/*
+ * Copyright (C) 2014 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.blockwithme.util.proto.base40;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <code>PathTrie</code> canonicalizes (interns) Paths of one CharacterSet.
+ *
+ * Interned paths with the same segments are the same instance, so equals()
+ * is an identity check, and the parent of an interned path is also the
+ * interned parent, so prefixes are shared.
+ *
+ * The trie only references the paths weakly. The nodes of paths that are
+ * not used anymore, and have no descendants, are removed eagerly. The
+ * children of a node are stored in a primitive long-keyed hash table.
+ *
+ * All methods are thread-safe.
+ *
+ * @author monster
+ */
+public final class PathTrie {
+
+    /** The shared tries, per CharacterSet. */
+    private static final ConcurrentHashMap<CharacterSet, PathTrie> TRIES = new ConcurrentHashMap<>();
+
+    /** The initial children table capacity. Must be a power of two. */
+    private static final int INITIAL_CAPACITY = 4;
+
+    /** Weak reference to a canonical Path, that knows it's node. */
+    private static final class PathRef extends WeakReference<Path> {
+        /** The node of the path. */
+        final Node node;
+
+        /** Constructor */
+        PathRef(final Path path, final Node theNode,
+                final ReferenceQueue<Path> queue) {
+            super(path, queue);
+            node = theNode;
+        }
+    }
+
+    /** A trie node. */
+    private static final class Node {
+        /** The parent node; null for the root. */
+        final Node parent;
+
+        /** The segment of this node. */
+        final long segment;
+
+        /** The canonical path of this node, if any. */
+        PathRef ref;
+
+        /** The children segments. Open-addressing (linear probing). */
+        long[] keys;
+
+        /** The children; null marks an empty slot. */
+        Node[] children;
+
+        /** The number of children. */
+        int size;
+
+        /** Constructor */
+        Node(final Node theParent, final long theSegment) {
+            parent = theParent;
+            segment = theSegment;
+        }
+
+        /** Returns the canonical path, if still alive. */
+        Path path() {
+            return (ref == null) ? null : ref.get();
+        }
+
+        /** Returns the slot of a segment, or of the free slot where it goes. */
+        private int slot(final long key) {
+            final int mask = keys.length - 1;
+            final int h = ((int) (key ^ (key >>> 32))) * 0x9E3779B9;
+            int i = (h ^ (h >>> 16)) & mask;
+            while ((children[i] != null) && (keys[i] != key)) {
+                i = (i + 1) & mask;
+            }
+            return i;
+        }
+
+        /** Returns the child with the given segment, or null. */
+        Node get(final long key) {
+            return (size == 0) ? null : children[slot(key)];
+        }
+
+        /** Adds a child. The segment must not be present yet. */
+        void add(final Node child) {
+            if (keys == null) {
+                keys = new long[INITIAL_CAPACITY];
+                children = new Node[INITIAL_CAPACITY];
+            } else if (2 * (size + 1) > keys.length) {
+                // Keep the load factor at most 50%
+                final long[] oldKeys = keys;
+                final Node[] oldChildren = children;
+                keys = new long[2 * oldKeys.length];
+                children = new Node[2 * oldKeys.length];
+                for (int i = 0; i < oldKeys.length; i++) {
+                    if (oldChildren[i] != null) {
+                        final int j = slot(oldKeys[i]);
+                        keys[j] = oldKeys[i];
+                        children[j] = oldChildren[i];
+                    }
+                }
+            }
+            final int i = slot(child.segment);
+            keys[i] = child.segment;
+            children[i] = child;
+            size++;
+        }
+
+        /** Removes a child, using backward-shift deletion. */
+        void remove(final long key) {
+            final int mask = keys.length - 1;
+            int i = slot(key);
+            if (children[i] == null) {
+                return;
+            }
+            children[i] = null;
+            size--;
+            if (size == 0) {
+                keys = null;
+                children = null;
+                return;
+            }
+            int j = i;
+            while (true) {
+                j = (j + 1) & mask;
+                final Node moved = children[j];
+                if (moved == null) {
+                    return;
+                }
+                final int h = ((int) (keys[j] ^ (keys[j] >>> 32))) * 0x9E3779B9;
+                final int home = (h ^ (h >>> 16)) & mask;
+                // Move it, if its home is not in the (cyclic) range (i,j]
+                if ((i <= j) ? ((home <= i) || (home > j))
+                        : ((home <= i) && (home > j))) {
+                    keys[i] = keys[j];
+                    children[i] = moved;
+                    children[j] = null;
+                    i = j;
+                }
+            }
+        }
+
+        /** Returns the children, ordered like Path segments (unsigned). */
+        Node[] sortedChildren() {
+            if (size == 0) {
+                return new Node[0];
+            }
+            final long[] sorted = new long[size];
+            int n = 0;
+            for (int i = 0; i < keys.length; i++) {
+                if (children[i] != null) {
+                    // Flip the sign bit, so that signed order is unsigned order
+                    sorted[n++] = keys[i] ^ Long.MIN_VALUE;
+                }
+            }
+            Arrays.sort(sorted);
+            final Node[] result = new Node[size];
+            for (int i = 0; i < size; i++) {
+                result[i] = get(sorted[i] ^ Long.MIN_VALUE);
+            }
+            return result;
+        }
+    }
+
+    /** The character set. */
+    private final CharacterSet characterSet;
+
+    /** The root node; it has no path. */
+    private final Node root = new Node(null, 0L);
+
+    /** The queue of the garbage-collected paths. */
+    private final ReferenceQueue<Path> queue = new ReferenceQueue<>();
+
+    /** The number of nodes with a path reference. */
+    private int size;
+
+    /** Returns the shared PathTrie of the given CharacterSet. */
+    public static PathTrie of(final CharacterSet characterSet) {
+        PathTrie result = TRIES.get(characterSet);
+        if (result == null) {
+            final PathTrie trie = new PathTrie(characterSet);
+            result = TRIES.putIfAbsent(characterSet, trie);
+            if (result == null) {
+                result = trie;
+            }
+        }
+        return result;
+    }
+
+    /** Constructor. */
+    public PathTrie(final CharacterSet theCharacterSet) {
+        characterSet = Objects.requireNonNull(theCharacterSet,
+                "theCharacterSet");
+    }
+
+    /** Returns the character set. */
+    public CharacterSet getCharacterSet() {
+        return characterSet;
+    }
+
+    /** Removes the nodes of garbage-collected paths. Must be synchronized. */
+    private void expunge() {
+        PathRef ref;
+        while ((ref = (PathRef) queue.poll()) != null) {
+            Node node = ref.node;
+            if (node.ref == ref) {
+                node.ref = null;
+                size--;
+                while ((node != root) && (node.ref == null)
+                        && (node.size == 0)) {
+                    node.parent.remove(node.segment);
+                    node = node.parent;
+                }
+            }
+        }
+    }
+
+    /** Returns the canonical path of a node, creating it if needed. */
+    private Path pathOf(final Node node, final Path parent) {
+        Path result = node.path();
+        if (result == null) {
+            final long[] segments;
+            if (parent == null) {
+                segments = new long[] { node.segment };
+            } else {
+                final int depth = parent.depth();
+                segments = Arrays.copyOf(parent.toLongArray(), depth + 1);
+                segments[depth] = node.segment;
+            }
+            result = new Path(characterSet, segments, parent);
+            if (node.ref == null) {
+                size++;
+            }
+            node.ref = new PathRef(result, node, queue);
+        }
+        return result;
+    }
+
+    /** Returns the child node, creating it if needed. */
+    private static Node child(final Node node, final long segment) {
+        Node result = node.get(segment);
+        if (result == null) {
+            result = new Node(node, segment);
+            node.add(result);
+        }
+        return result;
+    }
+
+    /** Checks that the path uses our character set. */
+    private void check(final Path path) {
+        final CharacterSet cs = path.getCharacterSet();
+        if ((cs != characterSet) && !characterSet.equals(cs)) {
+            throw new IllegalArgumentException("Path " + path
+                    + " does not use the character set " + characterSet);
+        }
+    }
+
+    /** Returns the node of a path, or null. Must be synchronized. */
+    private Node nodeOf(final Path path) {
+        Node node = root;
+        final int depth = path.depth();
+        for (int i = 0; (i < depth) && (node != null); i++) {
+            node = node.get(path.segment(i));
+        }
+        return node;
+    }
+
+    /** Returns the canonical instance of a path. */
+    public synchronized Path intern(final Path path) {
+        check(path);
+        expunge();
+        Node node = root;
+        Path result = null;
+        final int depth = path.depth();
+        for (int i = 0; i < depth; i++) {
+            node = child(node, path.segment(i));
+            result = pathOf(node, result);
+        }
+        return result;
+    }
+
+    /** Parses and interns a path. Returns null for null or empty text. */
+    public Path intern(final String path) {
+        final Path result = Path.fromString(characterSet, path);
+        return (result == null) ? null : intern(result);
+    }
+
+    /**
+     * Returns the canonical child of a path, which does not need to be
+     * canonical itself. If parent is null, it returns a root path.
+     */
+    public Path child(final Path parent, final long segment) {
+        final Path canonicalParent = (parent == null) ? null : intern(parent);
+        synchronized (this) {
+            final Node node = (parent == null) ? root : nodeOf(canonicalParent);
+            // node cannot have been removed, since canonicalParent is alive.
+            return pathOf(child(node, segment), canonicalParent);
+        }
+    }
+
+    /** Returns the canonical child of a path. */
+    public Path child(final Path parent, final String name) {
+        return child(parent, characterSet.toLong(name));
+    }
+
+    /** Returns the canonical instance of a path, if any, without interning it. */
+    public synchronized Path find(final Path path) {
+        if (path == null) {
+            return null;
+        }
+        expunge();
+        final Node node = nodeOf(path);
+        return (node == null) ? null : node.path();
+    }
+
+    /** Returns true, if the path is the canonical instance. */
+    public boolean isCanonical(final Path path) {
+        return (path != null) && (find(path) == path);
+    }
+
+    /** Returns the number of canonical paths. */
+    public synchronized int size() {
+        expunge();
+        return size;
+    }
+
+    /**
+     * Returns the canonical direct children of a path, in the Path natural
+     * order. If parent is null, returns the root paths.
+     */
+    public synchronized List<Path> children(final Path parent) {
+        expunge();
+        final Node node = (parent == null) ? root : nodeOf(parent);
+        final List<Path> result = new ArrayList<>();
+        if (node != null) {
+            for (final Node child : node.sortedChildren()) {
+                final Path path = child.path();
+                if (path != null) {
+                    result.add(path);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns a snapshot of the canonical paths starting with the given
+     * prefix (including the prefix itself), in the Path natural order.
+     * If prefix is null, returns all the canonical paths.
+     */
+    public synchronized List<Path> subtree(final Path prefix) {
+        expunge();
+        final Node node = (prefix == null) ? root : nodeOf(prefix);
+        final List<Path> result = new ArrayList<>();
+        if (node != null) {
+            collect(node, result);
+        }
+        return result;
+    }
+
+    /** Collects the paths of a node and it's descendants, depth first. */
+    private static void collect(final Node node, final List<Path> result) {
+        final Path path = node.path();
+        if (path != null) {
+            result.add(path);
+        }
+        for (final Node child : node.sortedChildren()) {
+            collect(child, result);
+        }
+    }
+}
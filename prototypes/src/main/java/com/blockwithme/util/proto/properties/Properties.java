@@ -120,6 +120,12 @@ public interface Properties<TIME extends Comparable<TIME>> extends
      */
     <E> E findRaw(final String path, final boolean executeGenerators);
 
+    /**
+     * Returns the property value, if any. Null if absent.
+     * Generators are executed, if executeGenerators is true.
+     */
+    <E> E findRaw(final PropertyPath path, final boolean executeGenerators);
+
     /**
      * Returns the property value, if any, or the default value.
      * An exception is thrown, if the property exists, but has the wrong type.
@@ -134,6 +140,21 @@ public interface Properties<TIME extends Comparable<TIME>> extends
      */
     <E> E find(final String path, final Class<E> type);
 
+    /**
+     * Returns the property value, if any, or the default value.
+     * An exception is thrown, if the property exists, but has the wrong type.
+     * Generators are executed (including Links).
+     */
+    <E> E find(final PropertyPath path, final Class<E> type,
+            final E defaultValue);
+
+    /**
+     * Returns the property value, if any, or null.
+     * An exception is thrown, if the property exists, but has the wrong type.
+     * Generators are executed (including Links).
+     */
+    <E> E find(final PropertyPath path, final Class<E> type);
+
     /**
      * Returns the property value, if present, or throw an exception.
      * An exception is also thrown, if the property exists, but has the wrong type.
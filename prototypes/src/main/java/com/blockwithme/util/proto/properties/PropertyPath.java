@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2014 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.util.proto.properties;
+
+import java.util.ArrayList;
+import java.util.Objects;
+
+/**
+ * A pre-parsed, and validated, Properties path.
+ *
+ * Parsing a path splits it in local keys, and validates each of them. Looking
+ * up a PropertyPath does not need to do this again, so frequently used paths
+ * should be parsed once, and kept in constants.
+ *
+ * "/" is the only valid path without local keys; it denotes the root.
+ *
+ * @author monster
+ */
+public final class PropertyPath {
+
+    /** The root path. */
+    public static final PropertyPath ROOT = new PropertyPath(
+            String.valueOf(Properties.SEPATATOR), true, new String[0]);
+
+    /** The path, as text. */
+    private final String path;
+
+    /** Is this an absolute path? */
+    private final boolean absolute;
+
+    /** The local keys. */
+    private final String[] keys;
+
+    /** Validates a local key. */
+    public static void checkLocalKey(final String localKey,
+            final String designation, final String fullPath) {
+        if (localKey == null) {
+            throw new IllegalArgumentException(designation + " is null");
+        }
+        if (localKey.isEmpty()) {
+            throw new IllegalArgumentException(designation + " is empty");
+        }
+        final int length = localKey.length();
+        for (int i = 0; i < length; i++) {
+            final char c = localKey.charAt(i);
+            final boolean lower = (c >= 'a') && (c <= 'z');
+            final boolean upper = (c >= 'A') && (c <= 'Z');
+            final boolean digit = (c >= '0') && (c <= '9');
+            if (!(lower || upper || digit)) {
+                throw new IllegalArgumentException(designation + "(" + fullPath
+                        + ") contains illegal character: '" + c + "'");
+            }
+        }
+    }
+
+    /** Parses and validates a path. */
+    public static PropertyPath parse(final String path) {
+        return parse(path, "path");
+    }
+
+    /** Parses and validates a path. */
+    public static PropertyPath parse(final String path,
+            final String designation) {
+        Objects.requireNonNull(path, designation);
+        final int length = path.length();
+        if ((length == 1) && (path.charAt(0) == Properties.SEPATATOR)) {
+            return ROOT;
+        }
+        final boolean absolute = (length > 0)
+                && (path.charAt(0) == Properties.SEPATATOR);
+        int start = absolute ? 1 : 0;
+        int index = path.indexOf(Properties.SEPATATOR, start);
+        if (index < 0) {
+            final String key = absolute ? path.substring(1) : path;
+            checkLocalKey(key, designation, path);
+            return new PropertyPath(path, absolute, new String[] { key });
+        }
+        final ArrayList<String> keys = new ArrayList<>();
+        while (index >= 0) {
+            if (index == start) {
+                throw new IllegalArgumentException("component of "
+                        + designation + " " + path + " is empty");
+            }
+            final String key = path.substring(start, index);
+            checkLocalKey(key, designation, path);
+            keys.add(key);
+            start = index + 1;
+            index = path.indexOf(Properties.SEPATATOR, start);
+        }
+        if (start == length) {
+            throw new IllegalArgumentException(designation
+                    + " cannot end with " + Properties.SEPATATOR);
+        }
+        final String key = path.substring(start);
+        checkLocalKey(key, designation, path);
+        keys.add(key);
+        return new PropertyPath(path, absolute, keys.toArray(new String[keys
+                .size()]));
+    }
+
+    /** Constructor */
+    private PropertyPath(final String thePath, final boolean theAbsolute,
+            final String[] theKeys) {
+        path = thePath;
+        absolute = theAbsolute;
+        keys = theKeys;
+    }
+
+    /** Is this an absolute path? */
+    public boolean isAbsolute() {
+        return absolute;
+    }
+
+    /** Is this path a single local key? */
+    public boolean isLocalKey() {
+        return !absolute && (keys.length == 1);
+    }
+
+    /** Returns the number of local keys. */
+    public int size() {
+        return keys.length;
+    }
+
+    /** Returns the local key at the given index. */
+    public String key(final int index) {
+        return keys[index];
+    }
+
+    /** Returns the last local key, or null for the root. */
+    public String last() {
+        return (keys.length == 0) ? null : keys[keys.length - 1];
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#hashCode()
+     */
+    @Override
+    public int hashCode() {
+        return path.hashCode();
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#equals(java.lang.Object)
+     */
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        return (obj instanceof PropertyPath)
+                && path.equals(((PropertyPath) obj).path);
+    }
+
+    /** Returns the path, as text. */
+    @Override
+    public String toString() {
+        return path;
+    }
+}
@@ -0,0 +1,581 @@
+/*
+ * Copyright (C) 2014 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.util.proto.properties.impl;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+import com.blockwithme.util.proto.properties.Properties;
+
+/**
+ * Binary files of GraphImpl/PropertiesImpl trees.
+ *
+ * The file contains a string table (local keys, String values, Link paths
+ * and LazyGen parameters), the current time, the pending future changes,
+ * and one record per Properties, which can be located directly.
+ *
+ * The loader maps the file in memory, and only materializes the content of
+ * a Properties when it is first accessed.
+ *
+ * The format is (all big-endian):
+ *
+ * int MAGIC, int VERSION,
+ * int stringCount, int[stringCount+1] char offsets, char[] UTF-16 text,
+ * int nodeCount, int[nodeCount] node file offsets,
+ * value time, int changeCount, changes, nodes.
+ *
+ * A change is: int node, int localKey, int setter, boolean forceWrite,
+ * value newValue, value when.
+ * A node is: int localKey, int count, then count times: int localKey,
+ * int setter, value.
+ * A setter is a node ID, or -1 for "the owning node". A value is a tag
+ * byte, followed by the tag-specific data. Values of other types are
+ * stored using Java serialization, if they are Serializable.
+ *
+ * @author monster
+ */
+public final class GraphFile {
+
+    /** The file magic number ("PGRF"). */
+    public static final int MAGIC = 0x50475246;
+
+    /** The current format version. */
+    public static final int VERSION = 1;
+
+    /** Value tags. */
+    private static final byte NULL = 0;
+    private static final byte TRUE = 1;
+    private static final byte FALSE = 2;
+    private static final byte BYTE = 3;
+    private static final byte SHORT = 4;
+    private static final byte CHAR = 5;
+    private static final byte INT = 6;
+    private static final byte LONG = 7;
+    private static final byte FLOAT = 8;
+    private static final byte DOUBLE = 9;
+    private static final byte STRING = 10;
+    private static final byte LINK = 11;
+    private static final byte LAZY_GEN = 12;
+    private static final byte NODE = 13;
+    private static final byte SERIALIZED = 14;
+
+    /** Encodes a graph. */
+    private static final class Writer<TIME extends Comparable<TIME>> {
+        /** The node IDs. */
+        final IdentityHashMap<PropertiesImpl<TIME>, Integer> nodeIds = new IdentityHashMap<>();
+
+        /** The nodes, in ID order. */
+        final List<PropertiesImpl<TIME>> nodes = new ArrayList<>();
+
+        /** The string IDs. */
+        final HashMap<String, Integer> stringIds = new HashMap<>();
+
+        /** The strings, in ID order. */
+        final List<String> strings = new ArrayList<>();
+
+        /** The graph. */
+        final GraphImpl<TIME> graph;
+
+        /** Constructor */
+        Writer(final GraphImpl<TIME> theGraph) {
+            graph = theGraph;
+        }
+
+        /** Returns the ID of a string. */
+        int string(final String str) {
+            Integer result = stringIds.get(str);
+            if (result == null) {
+                result = strings.size();
+                strings.add(str);
+                stringIds.put(str, result);
+            }
+            return result;
+        }
+
+        /**
+         * Returns the ID of a node. Only plain PropertiesImpl can be written,
+         * since the Reader always creates plain PropertiesImpl.
+         */
+        int node(final PropertiesImpl<TIME> node) {
+            if (node.getClass() != PropertiesImpl.class) {
+                throw new IllegalArgumentException("Cannot write a "
+                        + node.getClass().getName()
+                        + "; only PropertiesImpl are supported");
+            }
+            if (node.graph() != graph) {
+                throw new IllegalArgumentException(node
+                        + " is not part of the graph");
+            }
+            Integer result = nodeIds.get(node);
+            if (result == null) {
+                result = nodes.size();
+                nodes.add(node);
+                nodeIds.put(node, result);
+            }
+            return result;
+        }
+
+        /**
+         * Returns the ID of a setter, or -1 for the owner. Other setters
+         * must be PropertiesImpl of the same graph.
+         */
+        @SuppressWarnings("unchecked")
+        int setter(final Properties<TIME> setter, final Properties<TIME> owner) {
+            if (setter == owner) {
+                return -1;
+            }
+            if (!(setter instanceof PropertiesImpl<?>)) {
+                throw new IllegalArgumentException("Cannot write setter "
+                        + setter + " of " + owner
+                        + "; only PropertiesImpl are supported");
+            }
+            return node((PropertiesImpl<TIME>) setter);
+        }
+
+        /** Writes a value. */
+        @SuppressWarnings("unchecked")
+        void value(final DataOutputStream out, final Object value)
+                throws IOException {
+            if (value == null) {
+                out.writeByte(NULL);
+            } else if (value instanceof Boolean) {
+                out.writeByte((Boolean) value ? TRUE : FALSE);
+            } else if (value instanceof Byte) {
+                out.writeByte(BYTE);
+                out.writeByte((Byte) value);
+            } else if (value instanceof Short) {
+                out.writeByte(SHORT);
+                out.writeShort((Short) value);
+            } else if (value instanceof Character) {
+                out.writeByte(CHAR);
+                out.writeChar((Character) value);
+            } else if (value instanceof Integer) {
+                out.writeByte(INT);
+                out.writeInt((Integer) value);
+            } else if (value instanceof Long) {
+                out.writeByte(LONG);
+                out.writeLong((Long) value);
+            } else if (value instanceof Float) {
+                out.writeByte(FLOAT);
+                out.writeFloat((Float) value);
+            } else if (value instanceof Double) {
+                out.writeByte(DOUBLE);
+                out.writeDouble((Double) value);
+            } else if (value instanceof String) {
+                out.writeByte(STRING);
+                out.writeInt(string((String) value));
+            } else if (value instanceof Link) {
+                out.writeByte(LINK);
+                out.writeInt(string(((Link) value).path()));
+            } else if ((value instanceof LazyGen)
+                    && (value.getClass() == LazyGen.class)) {
+                out.writeByte(LAZY_GEN);
+                out.writeInt(string(((LazyGen) value).param()));
+            } else if (value instanceof PropertiesImpl<?>) {
+                out.writeByte(NODE);
+                out.writeInt(node((PropertiesImpl<TIME>) value));
+            } else if (value instanceof Serializable) {
+                final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                try (final ObjectOutputStream oos = new ObjectOutputStream(
+                        bytes)) {
+                    oos.writeObject(value);
+                }
+                out.writeByte(SERIALIZED);
+                out.writeInt(bytes.size());
+                bytes.writeTo(out);
+            } else {
+                throw new IllegalArgumentException("Cannot write value of type "
+                        + value.getClass().getName());
+            }
+        }
+
+        /** Writes a pending change. */
+        void change(final DataOutputStream out, final Change<TIME> change)
+                throws IOException {
+            if (!(change.properties instanceof PropertiesImpl<?>)) {
+                throw new IllegalArgumentException("Cannot write change of "
+                        + change.properties);
+            }
+            out.writeInt(node((PropertiesImpl<TIME>) change.properties));
+            out.writeInt(string(change.localKey));
+            out.writeInt(setter(change.setter, change.properties));
+            out.writeBoolean(change.forceWrite);
+            value(out, change.newValue);
+            value(out, change.when);
+        }
+
+        /** Writes a node. */
+        void node(final DataOutputStream out, final PropertiesImpl<TIME> node)
+                throws IOException {
+            final List<String> keys = new ArrayList<>();
+            for (final String key : node) {
+                keys.add(key);
+            }
+            out.writeInt(string(node.localKey()));
+            out.writeInt(keys.size());
+            for (final String key : keys) {
+                out.writeInt(string(key));
+                out.writeInt(setter(node.setterOf(key), node));
+                value(out, node.findLocalRaw(key));
+            }
+        }
+
+        /** Writes the graph. */
+        void write(final File file) throws IOException {
+            if (!(graph.root() instanceof PropertiesImpl<?>)) {
+                throw new IllegalArgumentException(
+                        "The root must be a PropertiesImpl: " + graph.root());
+            }
+            node((PropertiesImpl<TIME>) graph.root());
+            final ByteArrayOutputStream metaBytes = new ByteArrayOutputStream();
+            final DataOutputStream meta = new DataOutputStream(metaBytes);
+            value(meta, graph.getTime());
+            final List<Change<TIME>> changes = graph.pendingChanges();
+            meta.writeInt(changes.size());
+            for (final Change<TIME> change : changes) {
+                change(meta, change);
+            }
+            meta.flush();
+            final ByteArrayOutputStream bodyBytes = new ByteArrayOutputStream();
+            final DataOutputStream body = new DataOutputStream(bodyBytes);
+            final List<Integer> offsets = new ArrayList<>();
+            // Writing a node can add new nodes
+            for (int i = 0; i < nodes.size(); i++) {
+                offsets.add(body.size());
+                node(body, nodes.get(i));
+            }
+            body.flush();
+            long chars = 0;
+            for (final String str : strings) {
+                chars += str.length();
+            }
+            final long base = 8 + 4 + 4L * (strings.size() + 1) + 2 * chars
+                    + 4 + 4L * nodes.size() + metaBytes.size();
+            if (base + bodyBytes.size() > Integer.MAX_VALUE) {
+                throw new IOException("Graph too big");
+            }
+            try (final DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(file)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(strings.size());
+                int offset = 0;
+                out.writeInt(offset);
+                for (final String str : strings) {
+                    offset += str.length();
+                    out.writeInt(offset);
+                }
+                for (final String str : strings) {
+                    out.writeChars(str);
+                }
+                out.writeInt(nodes.size());
+                for (final Integer relative : offsets) {
+                    out.writeInt((int) (base + relative));
+                }
+                metaBytes.writeTo(out);
+                bodyBytes.writeTo(out);
+            }
+        }
+    }
+
+    /** Decodes a graph, lazily. */
+    private static final class Reader<TIME extends Comparable<TIME>> {
+        /** The file, for error messages. */
+        final File file;
+
+        /** The mapped file. */
+        final ByteBuffer buffer;
+
+        /** The string offsets, in chars. */
+        final int[] stringOffsets;
+
+        /** Start of the string text, in bytes. */
+        final int textStart;
+
+        /** The decoded strings. */
+        final String[] strings;
+
+        /** The node offsets, in bytes. */
+        final int[] nodeOffsets;
+
+        /** The created nodes. */
+        final PropertiesImpl<TIME>[] nodes;
+
+        /** The graph. */
+        GraphImpl<TIME> graph;
+
+        /**
+         * Constructor. Validates the header, the string table and the node
+         * table, so that a truncated or corrupt file fails with an
+         * IOException.
+         */
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        Reader(final ByteBuffer theBuffer, final File theFile)
+                throws IOException {
+            file = theFile;
+            buffer = theBuffer;
+            final int size = buffer.limit();
+            if ((size < 12) || (buffer.getInt() != MAGIC)
+                    || (buffer.getInt() != VERSION)) {
+                throw new IOException(file + " is not a version " + VERSION
+                        + " GraphFile");
+            }
+            final int stringCount = buffer.getInt();
+            if ((stringCount < 0)
+                    || (buffer.position() + 4L * (stringCount + 1L) > size)) {
+                throw new IOException(file + " has a bad string count: "
+                        + stringCount);
+            }
+            stringOffsets = new int[stringCount + 1];
+            buffer.asIntBuffer().get(stringOffsets);
+            textStart = buffer.position() + 4 * (stringCount + 1);
+            if (stringOffsets[0] != 0) {
+                throw new IOException(file + " has a bad first string offset: "
+                        + stringOffsets[0]);
+            }
+            for (int i = 0; i < stringCount; i++) {
+                if (stringOffsets[i + 1] < stringOffsets[i]) {
+                    throw new IOException(file
+                            + " has a bad string offset at index " + (i + 1)
+                            + ": " + stringOffsets[i + 1]);
+                }
+            }
+            final long textEnd = textStart + 2L * stringOffsets[stringCount];
+            if (textEnd + 4 > size) {
+                throw new IOException(file + " is truncated");
+            }
+            strings = new String[stringCount];
+            buffer.position((int) textEnd);
+            final int nodeCount = buffer.getInt();
+            final long nodeTableEnd = textEnd + 4 + 4L * nodeCount;
+            if ((nodeCount <= 0) || (nodeTableEnd > size)) {
+                throw new IOException(file + " has a bad node count: "
+                        + nodeCount);
+            }
+            nodeOffsets = new int[nodeCount];
+            buffer.asIntBuffer().get(nodeOffsets);
+            for (int i = 0; i < nodeCount; i++) {
+                // A node is at least it's local key and count
+                final int offset = nodeOffsets[i];
+                if ((offset < nodeTableEnd) || (offset > size - 8)) {
+                    throw new IOException(file + " has a bad node offset at index "
+                            + i + ": " + offset);
+                }
+            }
+            buffer.position((int) nodeTableEnd);
+            nodes = new PropertiesImpl[nodeCount];
+        }
+
+        /** Returns a string. */
+        String string(final int id) {
+            if ((id < 0) || (id >= strings.length)) {
+                throw new IndexOutOfBoundsException("Bad string id: " + id);
+            }
+            String result = strings[id];
+            if (result == null) {
+                final int start = stringOffsets[id];
+                final char[] chars = new char[stringOffsets[id + 1] - start];
+                final int pos = textStart + 2 * start;
+                for (int i = 0; i < chars.length; i++) {
+                    chars[i] = buffer.getChar(pos + 2 * i);
+                }
+                result = new String(chars);
+                strings[id] = result;
+            }
+            return result;
+        }
+
+        /** Returns a node, creating it, without content, if needed. */
+        PropertiesImpl<TIME> node(final int id) {
+            if ((id < 0) || (id >= nodes.length)) {
+                throw new IndexOutOfBoundsException("Bad node id: " + id);
+            }
+            PropertiesImpl<TIME> result = nodes[id];
+            if (result == null) {
+                result = new PropertiesImpl<>(graph,
+                        string(buffer.getInt(nodeOffsets[id])));
+                final PropertiesImpl.Loader<TIME> loader = new PropertiesImpl.Loader<TIME>() {
+                    @Override
+                    public void load(final PropertiesImpl<TIME> target) {
+                        Reader.this.load(target, id);
+                    }
+                };
+                result.loadLazily(loader);
+                nodes[id] = result;
+            }
+            return result;
+        }
+
+        /** Returns a setter. */
+        Properties<TIME> setter(final int id, final Properties<TIME> owner) {
+            return (id < 0) ? owner : node(id);
+        }
+
+        /** Reads a value. */
+        Object value(final ByteBuffer in) {
+            final byte tag = in.get();
+            switch (tag) {
+            case NULL:
+                return null;
+            case TRUE:
+                return Boolean.TRUE;
+            case FALSE:
+                return Boolean.FALSE;
+            case BYTE:
+                return in.get();
+            case SHORT:
+                return in.getShort();
+            case CHAR:
+                return in.getChar();
+            case INT:
+                return in.getInt();
+            case LONG:
+                return in.getLong();
+            case FLOAT:
+                return in.getFloat();
+            case DOUBLE:
+                return in.getDouble();
+            case STRING:
+                return string(in.getInt());
+            case LINK:
+                return Link.cache(string(in.getInt()));
+            case LAZY_GEN:
+                return new LazyGen(string(in.getInt()));
+            case NODE:
+                return node(in.getInt());
+            case SERIALIZED:
+                final int length = in.getInt();
+                if ((length < 0) || (length > in.remaining())) {
+                    throw new IndexOutOfBoundsException(
+                            "Bad serialized value length: " + length);
+                }
+                final byte[] bytes = new byte[length];
+                in.get(bytes);
+                try (final ObjectInputStream ois = new ObjectInputStream(
+                        new ByteArrayInputStream(bytes))) {
+                    return ois.readObject();
+                } catch (final IOException | ClassNotFoundException e) {
+                    throw new IllegalStateException(
+                            "Cannot deserialize value", e);
+                }
+            default:
+                throw new IllegalStateException("Unknown value tag: " + tag);
+            }
+        }
+
+        /**
+         * Loads the content of a node. Since this happens lazily, a corrupt
+         * record fails with an IllegalStateException naming the file and
+         * the node.
+         */
+        void load(final PropertiesImpl<TIME> target, final int id) {
+            try {
+                final ByteBuffer in = buffer.duplicate();
+                in.position(nodeOffsets[id] + 4);
+                final int count = in.getInt();
+                for (int i = 0; i < count; i++) {
+                    final String key = string(in.getInt());
+                    final Properties<TIME> setter = setter(in.getInt(), target);
+                    target.putLoaded(key, setter, value(in));
+                }
+            } catch (final BufferUnderflowException
+                    | IndexOutOfBoundsException | IllegalStateException e) {
+                throw new IllegalStateException(file
+                        + " has a corrupt record for node " + id + " ("
+                        + target.localKey() + ")", e);
+            }
+        }
+
+        /** Reads the graph, without the node content. */
+        @SuppressWarnings("unchecked")
+        GraphImpl<TIME> read(final boolean indexed) {
+            graph = new GraphImpl<>((TIME) value(buffer), indexed);
+            graph.root(node(0));
+            final int count = buffer.getInt();
+            for (int i = 0; i < count; i++) {
+                final Change<TIME> change = new Change<>();
+                change.properties = node(buffer.getInt());
+                change.localKey = string(buffer.getInt());
+                change.setter = setter(buffer.getInt(), change.properties);
+                change.forceWrite = (buffer.get() != 0);
+                change.newValue = value(buffer);
+                change.when = (TIME) value(buffer);
+                graph.onFutureChange(change);
+            }
+            return graph;
+        }
+    }
+
+    /** No instances. */
+    private GraphFile() {
+        // NOP
+    }
+
+    /**
+     * Writes a graph to a file. The root, and all the Properties, must be
+     * PropertiesImpl.
+     */
+    public static <TIME extends Comparable<TIME>> void write(
+            final GraphImpl<TIME> graph, final File file) throws IOException {
+        new Writer<>(graph).write(file);
+    }
+
+    /**
+     * Reads a graph from a file, by mapping it in memory. The content of the
+     * Properties is only read on first access.
+     */
+    public static <TIME extends Comparable<TIME>> GraphImpl<TIME> read(
+            final File file) throws IOException {
+        return read(file, false);
+    }
+
+    /**
+     * Reads a graph from a file, by mapping it in memory. The content of the
+     * Properties is only read on first access.
+     */
+    public static <TIME extends Comparable<TIME>> GraphImpl<TIME> read(
+            final File file, final boolean indexed) throws IOException {
+        final MappedByteBuffer buffer;
+        try (final RandomAccessFile raf = new RandomAccessFile(file, "r");
+                final FileChannel channel = raf.getChannel()) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    channel.size());
+        }
+        try {
+            return new Reader<TIME>(buffer, file).read(indexed);
+        } catch (final BufferUnderflowException
+                | IndexOutOfBoundsException | IllegalStateException e) {
+            throw new IOException(file + " is truncated or corrupt", e);
+        }
+    }
+}
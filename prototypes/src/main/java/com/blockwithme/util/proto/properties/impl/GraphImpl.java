@@ -17,6 +17,8 @@ package com.blockwithme.util.proto.properties.impl;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Objects;
 import java.util.TreeMap;
 
@@ -43,11 +45,40 @@ public class GraphImpl<TIME extends Comparable<TIME>> implements Graph<TIME>,
     /** The current time. */
     private TIME now;
 
+    /** The structure version. */
+    private long structureVersion;
+
+    /** Do the Properties maintain a secondary index of their values? */
+    private final boolean indexed;
+
+    /** Are snapshots published? */
+    private boolean snapshots;
+
+    /** The latest published snapshot, if snapshots are enabled. */
+    private volatile GraphSnapshot<TIME> snapshot;
+
+    /** The number of nested batches currently being applied. */
+    private int batchDepth;
+
+    /** Must a snapshot be published at the end of the current batch? */
+    private boolean publishPending;
+
     /**
      * @param now
      */
     public GraphImpl(final TIME now) {
+        this(now, false);
+    }
+
+    /**
+     * @param now
+     * @param indexed Should the Properties maintain a secondary index of
+     *        their values, to speed up keysOf(), contains(), nextIndex()
+     *        and listValues()?
+     */
+    public GraphImpl(final TIME now, final boolean indexed) {
         this.now = Objects.requireNonNull(now, "now");
+        this.indexed = indexed;
     }
 
     /* (non-Javadoc)
@@ -76,18 +107,42 @@ public class GraphImpl<TIME extends Comparable<TIME>> implements Graph<TIME>,
                     + now + " newTime=" + newTime);
         }
         if (cmp < 0) {
-            // Perform buffered updates
-            for (final TIME when : new ArrayList<>(changes.keySet())) {
-                if (newTime.compareTo(when) >= 0) {
-                    for (final Change<TIME> change : changes.remove(when)) {
+            // Perform buffered updates; only the due ones are visited.
+            final NavigableMap<TIME, List<Change<TIME>>> due = changes
+                    .headMap(newTime, true);
+            List<Change<TIME>> performed = null;
+            batchDepth++;
+            try {
+                Map.Entry<TIME, List<Change<TIME>>> entry;
+                while ((entry = due.pollFirstEntry()) != null) {
+                    if (performed == null) {
+                        performed = new ArrayList<>();
+                    }
+                    for (final Change<TIME> change : entry.getValue()) {
                         change.perform();
+                        performed.add(change);
                     }
                 }
+                now = newTime;
+                publishSnapshot();
+            } finally {
+                endBatch();
+            }
+            if (performed != null) {
+                onChanges(performed);
             }
-            now = newTime;
         }
     }
 
+    /** Returns all the buffered future changes, in time order. */
+    final List<Change<TIME>> pendingChanges() {
+        final List<Change<TIME>> result = new ArrayList<>();
+        for (final List<Change<TIME>> list : changes.values()) {
+            result.addAll(list);
+        }
+        return result;
+    }
+
     /** Records a future change. */
     private void recordChange(final Change<TIME> change) {
         List<Change<TIME>> changeList = changes.get(change.when);
@@ -135,6 +190,170 @@ public class GraphImpl<TIME extends Comparable<TIME>> implements Graph<TIME>,
         }
     }
 
+    /* (non-Javadoc)
+     * @see com.blockwithme.util.proto.properties.impl.ImplGraph#applyAll(java.util.List)
+     */
+    @Override
+    public final void applyAll(final List<Change<TIME>> batch) {
+        for (final Change<TIME> change : batch) {
+            Objects.requireNonNull(change.setter, "change.setter");
+            if (!(change.properties instanceof PropertiesImpl<?>)
+                    || (change.properties.graph() != this)) {
+                throw new IllegalArgumentException(
+                        "change.properties must be a PropertiesImpl of this graph: "
+                                + change.properties);
+            }
+            PropertiesImpl.checkLocalKey(change.localKey, "change.localKey",
+                    change.localKey);
+        }
+        final List<Change<TIME>> performed = new ArrayList<>(batch.size());
+        final List<Change<TIME>> recorded = new ArrayList<>();
+        final List<Object> saved = new ArrayList<>(batch.size());
+        boolean done = false;
+        batchDepth++;
+        try {
+            for (final Change<TIME> change : batch) {
+                if ((change.when == null)
+                        || (now.compareTo(change.when) >= 0)) {
+                    saved.add(((PropertiesImpl<TIME>) change.properties)
+                            .saveLocal(change.localKey));
+                    performed.add(change);
+                    change.perform();
+                } else {
+                    recordChange(change);
+                    recorded.add(change);
+                }
+            }
+            done = true;
+        } finally {
+            if (!done) {
+                rollback(performed, saved, recorded);
+            }
+            endBatch();
+        }
+        if (!performed.isEmpty()) {
+            onChanges(performed);
+        }
+    }
+
+    /**
+     * Undoes the changes of a failed batch, in reverse order. The values
+     * are restored without onChange() notifications.
+     */
+    private void rollback(final List<Change<TIME>> performed,
+            final List<Object> saved, final List<Change<TIME>> recorded) {
+        for (int i = performed.size() - 1; i >= 0; i--) {
+            final Change<TIME> change = performed.get(i);
+            ((PropertiesImpl<TIME>) change.properties).restoreLocal(
+                    change.localKey, saved.get(i));
+        }
+        for (final Change<TIME> change : recorded) {
+            final List<Change<TIME>> changeList = changes.get(change.when);
+            if (changeList != null) {
+                changeList.remove(change);
+                if (changeList.isEmpty()) {
+                    changes.remove(change.when);
+                }
+            }
+        }
+    }
+
+    /** Ends a batch, publishing the snapshot if needed. */
+    private void endBatch() {
+        batchDepth--;
+        if ((batchDepth == 0) && publishPending) {
+            publishSnapshot();
+        }
+    }
+
+    /**
+     * Enables, or disables, the publication of snapshots. When enabled, a
+     * new GraphSnapshot is published after every immediate change, and
+     * after every batch of changes (including the ones applied by
+     * setTime()). The root must be a PropertiesImpl.
+     */
+    public final void setSnapshots(final boolean enabled) {
+        if (enabled && !(root instanceof PropertiesImpl<?>)) {
+            throw new IllegalStateException(
+                    "Snapshots require a PropertiesImpl root: " + root);
+        }
+        if (enabled && !snapshots) {
+            // Parents were not tracked while disabled
+            PropertiesImpl.trackParents((PropertiesImpl<TIME>) root);
+        }
+        snapshots = enabled;
+        snapshot = null;
+        publishSnapshot();
+    }
+
+    /**
+     * Returns the latest published snapshot. Unlike the graph itself, it
+     * can be called, and the snapshot used, from any thread.
+     */
+    public final GraphSnapshot<TIME> snapshot() {
+        final GraphSnapshot<TIME> result = snapshot;
+        if (result == null) {
+            throw new IllegalStateException("Snapshots are not enabled");
+        }
+        return result;
+    }
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.util.proto.properties.impl.ImplGraph#snapshots()
+     */
+    @Override
+    public final boolean snapshots() {
+        return snapshots;
+    }
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.util.proto.properties.impl.ImplGraph#publishSnapshot()
+     */
+    @Override
+    public final void publishSnapshot() {
+        if (batchDepth > 0) {
+            publishPending = true;
+        } else {
+            publishPending = false;
+            if (snapshots) {
+                snapshot = new GraphSnapshot<>(now,
+                        ((PropertiesImpl<TIME>) root).snapshot());
+            }
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.util.proto.properties.impl.ImplGraph#onChanges(java.util.List)
+     */
+    @Override
+    public void onChanges(final List<Change<TIME>> performed) {
+        // NOP
+    }
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.util.proto.properties.impl.ImplGraph#structureVersion()
+     */
+    @Override
+    public final long structureVersion() {
+        return structureVersion;
+    }
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.util.proto.properties.impl.ImplGraph#indexed()
+     */
+    @Override
+    public final boolean indexed() {
+        return indexed;
+    }
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.util.proto.properties.impl.ImplGraph#onStructureChange()
+     */
+    @Override
+    public void onStructureChange() {
+        structureVersion++;
+    }
+
     /* (non-Javadoc)
      * @see com.blockwithme.properties.impl.Graph#onChange(com.blockwithme.properties.Properties, com.blockwithme.properties.Properties, java.lang.String, java.lang.Object, java.lang.Object)
      */
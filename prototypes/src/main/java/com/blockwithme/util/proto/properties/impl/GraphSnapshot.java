@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2014 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.util.proto.properties.impl;
+
+import com.blockwithme.util.proto.properties.Graph;
+import com.blockwithme.util.proto.properties.Properties;
+import com.blockwithme.util.proto.properties.meta.Concept;
+
+/**
+ * An immutable snapshot of a graph, as published by GraphImpl.
+ *
+ * Snapshots can be read from any number of threads, without locking. The
+ * unchanged parts of the tree are shared between successive snapshots.
+ *
+ * @author monster
+ */
+public final class GraphSnapshot<TIME extends Comparable<TIME>> implements
+        Graph<TIME> {
+
+    /** The time of the snapshot. */
+    private final TIME time;
+
+    /** The root of the snapshot. */
+    private final PropertiesSnapshot<TIME> root;
+
+    /** Constructor */
+    GraphSnapshot(final TIME theTime, final PropertiesSnapshot.Data theRoot) {
+        time = theTime;
+        root = new PropertiesSnapshot<>(this, theRoot);
+    }
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.util.proto.properties.Graph#root()
+     */
+    @Override
+    public Properties<TIME> root() {
+        return root;
+    }
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.util.proto.properties.Graph#getTime()
+     */
+    @Override
+    public TIME getTime() {
+        return time;
+    }
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.util.proto.properties.Graph#setTime(java.lang.Comparable)
+     */
+    @Override
+    public void setTime(final TIME now) {
+        throw new UnsupportedOperationException("Snapshots are read-only");
+    }
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.util.proto.properties.Graph#concepts()
+     */
+    @Override
+    public Concept[] concepts() {
+        return root.listValues(Concept.class, false);
+    }
+
+    /** toString */
+    @Override
+    public String toString() {
+        return "GraphSnapshot(" + time + ")";
+    }
+}
@@ -15,6 +15,8 @@
  */
 package com.blockwithme.util.proto.properties.impl;
 
+import java.util.List;
+
 import com.blockwithme.util.proto.properties.Graph;
 import com.blockwithme.util.proto.properties.Properties;
 
@@ -36,11 +38,60 @@ public interface ImplGraph<TIME extends Comparable<TIME>> extends Graph<TIME> {
     /** Receives changes that will only be applied in the future. */
     void onFutureChange(final Change<TIME> change);
 
+    /**
+     * Applies a batch of changes. Changes that are not in the future are
+     * performed immediately, in list order, and the others are buffered.
+     * onChanges() is then called once, with the performed changes.
+     *
+     * The batch is atomic: if any change fails, the already performed
+     * changes are undone, the buffered ones are dropped, onChanges() is not
+     * called, and the exception is rethrown. onChange() might already have
+     * been called for the undone changes.
+     */
+    void applyAll(final List<Change<TIME>> changes);
+
+    /**
+     * Returns the structure version. It changes every time a Properties or a
+     * Generator is added to, or removed from, the graph. It is used to
+     * invalidate cached path resolutions.
+     */
+    long structureVersion();
+
+    /** Informs the root that the structure of the graph changed. */
+    void onStructureChange();
+
+    /**
+     * Returns true, if the Properties of this graph should maintain a
+     * secondary index of their values.
+     */
+    boolean indexed();
+
+    /**
+     * Returns true, if snapshots are published. Only then do the Properties
+     * track their parents, and which of them changed since the last
+     * snapshot.
+     */
+    boolean snapshots();
+
+    /**
+     * Publishes a new snapshot, if snapshots are enabled. While a batch is
+     * being applied, the publication is delayed until the end of the batch.
+     */
+    void publishSnapshot();
+
     /** Informs the root of changes. */
     void onChange(final Properties<TIME> setter,
             final Properties<TIME> properties, final String localKey,
             final Object oldValue, final Object newValue);
 
+    /**
+     * Informs the root that a batch of changes was performed, either by
+     * applyAll(), or by setTime() reaching the time of buffered changes.
+     * It is called once per batch, after the onChange() calls of every
+     * change in the batch.
+     */
+    void onChanges(final List<Change<TIME>> performed);
+
     /**
      * Returns true, if the first instance has lower priority as the second
      * instance. The default implementation always returns false, which results
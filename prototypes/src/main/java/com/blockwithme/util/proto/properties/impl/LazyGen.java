@@ -15,7 +15,22 @@
  */
 package com.blockwithme.util.proto.properties.impl;
 
-import java.lang.reflect.Constructor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import com.blockwithme.util.proto.properties.Generator;
 import com.blockwithme.util.proto.properties.Properties;
@@ -26,21 +41,72 @@ import com.blockwithme.util.proto.properties.Properties;
  *
  * It is mostly there as an example of what Generators can be used for.
  *
+ * The real generator classes, and their String constructors, are looked up
+ * once, and cached per class loader.
+ *
  * @author monster
  */
 public class LazyGen implements Generator {
 
+    /** The String constructors of the Generators, per class. */
+    private static final ClassValue<MethodHandle> CONSTRUCTORS = new ClassValue<MethodHandle>() {
+        @Override
+        protected MethodHandle computeValue(final Class<?> type) {
+            if (!Generator.class.isAssignableFrom(type)) {
+                throw new IllegalStateException(type.getName()
+                        + " is not a Generator");
+            }
+            try {
+                return MethodHandles
+                        .publicLookup()
+                        .findConstructor(type,
+                                MethodType.methodType(void.class, String.class))
+                        .asType(MethodType.methodType(Generator.class,
+                                String.class));
+            } catch (final NoSuchMethodException | IllegalAccessException e) {
+                throw new IllegalStateException(
+                        "Cannot find String constructor for class "
+                                + type.getName(), e);
+            }
+        }
+    };
+
+    /** The shared pool of resolveAll(Properties), created on first use. */
+    private static final class SharedPool {
+        /** The pool. It's threads are daemon threads. */
+        static final ForkJoinPool POOL = new ForkJoinPool();
+    }
+
+    /**
+     * The Generator classes, per name, per class loader. Neither the class
+     * loaders, nor the classes, are strongly referenced.
+     */
+    private static final Map<ClassLoader, ConcurrentHashMap<String, WeakReference<Class<?>>>> CLASSES = new WeakHashMap<>();
+
     /** The class name of the generator to create. */
     private final String genType;
 
     /** The parameter the generator to create. */
     private final String genParam;
 
+    /** The class loader used to load the generator class. */
+    private final ClassLoader loader;
+
     /**
      * Creates a LazyGen with a parameter in the form:
      * full-class-name-of-real-generator(parameter-to-real-generator)
      */
     public LazyGen(final String param) {
+        this(param, LazyGen.class.getClassLoader());
+    }
+
+    /**
+     * Creates a LazyGen with a parameter in the form:
+     * full-class-name-of-real-generator(parameter-to-real-generator)
+     * The generator class is loaded with the given class loader.
+     */
+    public LazyGen(final String param, final ClassLoader theLoader) {
+        loader = theLoader;
         final int openIndex = param.indexOf('(');
         final int closeIndex = param.lastIndexOf(')');
         if ((openIndex <= 0) || (closeIndex < param.length() - 1)) {
@@ -50,6 +116,14 @@ public class LazyGen implements Generator {
         genParam = param.substring(openIndex + 1, closeIndex);
     }
 
+    /**
+     * Returns the parameter, as given to the constructor:
+     * full-class-name-of-real-generator(parameter-to-real-generator)
+     */
+    public String param() {
+        return genType + "(" + genParam + ")";
+    }
+
     /** toString */
     @Override
     public String toString() {
@@ -97,32 +171,53 @@ public class LazyGen implements Generator {
     /* (non-Javadoc)
      * @see com.blockwithme.properties.Generator#generate(com.blockwithme.properties.Properties, java.lang.String, java.lang.Class)
      */
-    @SuppressWarnings("unchecked")
     @Override
     public <E> E generate(final Properties<?> prop, final String name,
             final Class<E> expectedType) {
-        // Creates an instance of type genType using parameter genParam ...
-        final Class<Generator> type;
-        try {
-            type = (Class<Generator>) Class.forName(genType);
-        } catch (final ClassNotFoundException e) {
-            throw new IllegalStateException(
-                    "Cannot find/load class " + genType, e);
+        return generate(prop, name, expectedType, newGenerator());
+    }
+
+    /** Returns the (cached) generator class. */
+    private Class<?> generatorType() {
+        ConcurrentHashMap<String, WeakReference<Class<?>>> classes;
+        synchronized (CLASSES) {
+            classes = CLASSES.get(loader);
+            if (classes == null) {
+                classes = new ConcurrentHashMap<>();
+                CLASSES.put(loader, classes);
+            }
         }
-        final Constructor<Generator> ctr;
-        try {
-            ctr = type.getConstructor(new Class[] { String.class });
-        } catch (final Exception e) {
-            throw new IllegalStateException(
-                    "Cannot find String constructor for class " + genType, e);
+        final WeakReference<Class<?>> ref = classes.get(genType);
+        Class<?> result = (ref == null) ? null : ref.get();
+        if (result == null) {
+            try {
+                result = Class.forName(genType, true, loader);
+            } catch (final ClassNotFoundException e) {
+                throw new IllegalStateException("Cannot find/load class "
+                        + genType, e);
+            }
+            classes.put(genType, new WeakReference<Class<?>>(result));
         }
-        final Generator realGen;
+        return result;
+    }
+
+    /** Creates an instance of type genType using parameter genParam. */
+    public Generator newGenerator() {
+        final MethodHandle ctr = CONSTRUCTORS.get(generatorType());
         try {
-            realGen = ctr.newInstance(genParam);
-        } catch (final Exception e) {
+            return (Generator) ctr.invokeExact(genParam);
+        } catch (final Error e) {
+            throw e;
+        } catch (final Throwable e) {
             throw new IllegalStateException("Cannot create class instance of "
                     + genType + " with '" + genParam + "'", e);
         }
+    }
+
+    /** Calls the real generator, and replaces the LazyGen with the result. */
+    @SuppressWarnings("unchecked")
+    private static <E> E generate(final Properties<?> prop, final String name,
+            final Class<E> expectedType, final Generator realGen) {
         // Calls real generator
         @SuppressWarnings("rawtypes")
         final Properties untyped = prop;
@@ -131,4 +226,90 @@ public class LazyGen implements Generator {
         untyped.set(untyped, name, value);
         return value;
     }
+
+    /** Collects all the LazyGen in a Properties tree. */
+    private static void collect(final Properties<?> prop,
+            final IdentityHashMap<Properties<?>, Properties<?>> visited,
+            final List<Properties<?>> props, final List<String> names,
+            final List<LazyGen> lazyGens) {
+        if (visited.put(prop, prop) != null) {
+            return;
+        }
+        for (final String name : prop) {
+            final Object value = prop.findRaw(name, false);
+            if (value instanceof LazyGen) {
+                props.add(prop);
+                names.add(name);
+                lazyGens.add((LazyGen) value);
+            } else if (value instanceof Properties<?>) {
+                collect((Properties<?>) value, visited, props, names, lazyGens);
+            }
+        }
+    }
+
+    /**
+     * Eagerly resolves all the LazyGen in a Properties tree, using a shared
+     * ForkJoinPool. Returns the number of resolved LazyGen.
+     */
+    public static int resolveAll(final Properties<?> root) {
+        return resolveAll(root, SharedPool.POOL);
+    }
+
+    /**
+     * Eagerly resolves all the LazyGen in a Properties tree. Returns the
+     * number of resolved LazyGen. The executor is not shut down.
+     *
+     * Since Properties are not thread-safe, only the loading of the generator
+     * classes, and the creation of the real generators, is done in the
+     * executor.
+     * The real generators are then called from the current thread. LazyGens
+     * within generated values are not resolved.
+     */
+    public static int resolveAll(final Properties<?> root,
+            final ExecutorService executor) {
+        Objects.requireNonNull(root, "root");
+        Objects.requireNonNull(executor, "executor");
+        final List<Properties<?>> props = new ArrayList<>();
+        final List<String> names = new ArrayList<>();
+        final List<LazyGen> lazyGens = new ArrayList<>();
+        collect(root, new IdentityHashMap<Properties<?>, Properties<?>>(),
+                props, names, lazyGens);
+        final List<Callable<Generator>> tasks = new ArrayList<>(
+                lazyGens.size());
+        for (final LazyGen lazyGen : lazyGens) {
+            tasks.add(new Callable<Generator>() {
+                @Override
+                public Generator call() {
+                    return lazyGen.newGenerator();
+                }
+            });
+        }
+        final List<Future<Generator>> generators;
+        try {
+            generators = executor.invokeAll(tasks);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted", e);
+        }
+        for (int i = 0; i < generators.size(); i++) {
+            final Generator realGen;
+            try {
+                realGen = generators.get(i).get();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted", e);
+            } catch (final ExecutionException e) {
+                final Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new IllegalStateException(cause);
+            }
+            generate(props.get(i), names.get(i), null, realGen);
+        }
+        return lazyGens.size();
+    }
 }
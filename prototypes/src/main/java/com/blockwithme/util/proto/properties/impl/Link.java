@@ -19,6 +19,7 @@ import java.util.concurrent.ConcurrentHashMap;
 
 import com.blockwithme.util.proto.properties.Generator;
 import com.blockwithme.util.proto.properties.Properties;
+import com.blockwithme.util.proto.properties.PropertyPath;
 
 /**
  * A link, used as a Property value in a Properties object, simply returns some
@@ -34,12 +35,17 @@ public final class Link implements Generator {
     private static final ConcurrentHashMap<String, Link> CACHE = new ConcurrentHashMap<>();
 
     /** The link path. */
-    private final String path;
+    private final PropertyPath path;
 
     /** Creates a link with the given path */
     public Link(final String path) {
         PropertiesImpl.checkPath(path, "path");
-        this.path = path;
+        this.path = PropertyPath.parse(path);
+    }
+
+    /** Returns the link path. */
+    public String path() {
+        return path.toString();
     }
 
     /** toString */
@@ -85,6 +91,10 @@ public final class Link implements Generator {
     @Override
     public <E> E generate(final Properties<?> prop, final String name,
             final Class<E> expectedType) {
+        if (expectedType == null) {
+            // Happens when the link is an intermediate step of a path
+            return prop.findRaw(path, true);
+        }
         return prop.find(path, expectedType);
     }
 
@@ -77,6 +77,7 @@ public class NumbersLastStringComparator implements Comparator<String> {
             }
             return result;
         }
-        return -1;
+        // Numbers are bigger then non-numbers
+        return 1;
     }
 }
@@ -18,16 +18,20 @@ package com.blockwithme.util.proto.properties.impl;
 import java.lang.reflect.Array;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.TreeMap;
+import java.util.TreeSet;
 
 import com.blockwithme.util.proto.properties.Filter;
 import com.blockwithme.util.proto.properties.Generator;
 import com.blockwithme.util.proto.properties.Graph;
 import com.blockwithme.util.proto.properties.Properties;
+import com.blockwithme.util.proto.properties.PropertyPath;
 
 /**
  * Base class for Properties.
@@ -37,15 +41,44 @@ import com.blockwithme.util.proto.properties.Properties;
 public class PropertiesImpl<TIME extends Comparable<TIME>> implements
         Properties<TIME> {
 
+    /** Loads the content of a PropertiesImpl lazily, on first access. */
+    interface Loader<TIME extends Comparable<TIME>> {
+        /** Loads the content, using putLoaded(). */
+        void load(final PropertiesImpl<TIME> target);
+    }
+
     /** Keeps a record of the setter with the value, so the strongest setter wins. */
     private static final class SetterValue<TIME extends Comparable<TIME>> {
         public Properties<TIME> setter;
         public Object value;
     }
 
+    /** A path, resolved up to the Properties containing the last local key. */
+    private static final class ResolvedPath<TIME extends Comparable<TIME>> {
+        public final PropertyPath path;
+        public final PropertiesImpl<TIME> parent;
+
+        /** Constructor */
+        public ResolvedPath(final PropertyPath thePath,
+                final PropertiesImpl<TIME> theParent) {
+            path = thePath;
+            parent = theParent;
+        }
+
+        /** Finds the value of the last local key. */
+        public Object find(final Class<?> type, final boolean executeGenerators) {
+            final String last = path.last();
+            return PropertiesLookup.resolve(parent.findLocalRaw(last),
+                    parent, last, type, executeGenerators);
+        }
+    }
+
     /** The root path. */
     protected static final String ROOT_PATH = String.valueOf(SEPATATOR);
 
+    /** Maximum number of resolved paths cached per Properties. */
+    private static final int MAX_RESOLVED_PATHS = 1024;
+
     /** The local key. */
     private final String localKey;
 
@@ -56,25 +89,31 @@ public class PropertiesImpl<TIME extends Comparable<TIME>> implements
     private final TreeMap<String, SetterValue<TIME>> properties = new TreeMap<>(
             NumbersLastStringComparator.CMP);
 
+    /** The paths looked up from this Properties, by text. Created lazily. */
+    private HashMap<String, ResolvedPath<TIME>> resolvedPaths;
+
+    /** The graph structure version, at the time resolvedPaths was valid. */
+    private long resolvedPathsVersion;
+
+    /** The secondary index, if the graph is indexed. Created lazily. */
+    private PropertiesIndex index;
+
+    /** The Properties containing this Properties, if any. */
+    private ArrayList<PropertiesImpl<TIME>> parents;
+
+    /** Did this Properties change since the last snapshot? */
+    private boolean dirty = true;
+
+    /** The last snapshot of this Properties. */
+    private PropertiesSnapshot.Data snapshot;
+
+    /** The lazy content loader, until the content is loaded. */
+    private Loader<TIME> loader;
+
     /** Validates a local key. */
     public static void checkLocalKey(final String localKey,
             final String designation, final String fullPath) {
-        if (localKey == null) {
-            throw new IllegalArgumentException(designation + " is null");
-        }
-        if (localKey.isEmpty()) {
-            throw new IllegalArgumentException(designation + " is empty");
-        }
-        for (final char c : localKey.toCharArray()) {
-            final boolean lower = (c >= 'a') && (c <= 'z');
-            final boolean upper = (c >= 'A') && (c <= 'Z');
-            final boolean digit = (c >= '0') && (c <= '9');
-            final boolean other = ((c == '_') || (c == '$'));
-            if (!(lower || upper || digit) || other) {
-                throw new IllegalArgumentException(designation + "(" + fullPath
-                        + ") contains illegal character: '" + c + "'");
-            }
-        }
+        PropertyPath.checkLocalKey(localKey, designation, fullPath);
     }
 
     /** Validates path. */
@@ -84,23 +123,7 @@ public class PropertiesImpl<TIME extends Comparable<TIME>> implements
             throw new IllegalArgumentException(designation + " cannot only be "
                     + ROOT_PATH);
         }
-        String rest = path.startsWith(ROOT_PATH) ? path.substring(1) : path;
-        int index = rest.indexOf(SEPATATOR);
-        while (index > 0) {
-            final String localKey = rest.substring(0, index);
-            if (localKey.isEmpty()) {
-                throw new IllegalArgumentException("component of "
-                        + designation + " " + path + " is empty");
-            }
-            checkLocalKey(localKey, designation, path);
-            rest = rest.substring(index + 1);
-            index = rest.indexOf(SEPATATOR);
-        }
-        if (rest.isEmpty()) {
-            throw new IllegalArgumentException(designation
-                    + " cannot end with " + ROOT_PATH);
-        }
-        checkLocalKey(rest, designation, path);
+        PropertyPath.parse(path, designation);
     }
 
     /**
@@ -227,21 +250,31 @@ public class PropertiesImpl<TIME extends Comparable<TIME>> implements
     /* (non-Javadoc)
      * @see com.blockwithme.properties.Properties#find(java.lang.String, java.lang.Class, java.lang.Object)
      */
-    @SuppressWarnings("unchecked")
     @Override
     public final <E> E find(final String path, final Class<E> type,
             final E defaultValue) {
         Objects.requireNonNull(type, "type");
-        final Object obj = findRaw(path, type, true);
-        if (obj == null) {
-            return defaultValue;
-        }
-        if (!type.isInstance(obj)) {
-            throw new IllegalStateException("Property '" + path + "' type is: "
-                    + obj.getClass().getName() + " but expected type is: "
-                    + type);
-        }
-        return (E) obj;
+        return PropertiesLookup.checkType(path, findRaw(path, type, true),
+                type, defaultValue);
+    }
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.util.proto.properties.Properties#find(com.blockwithme.util.proto.properties.PropertyPath, java.lang.Class, java.lang.Object)
+     */
+    @Override
+    public final <E> E find(final PropertyPath path, final Class<E> type,
+            final E defaultValue) {
+        Objects.requireNonNull(type, "type");
+        return PropertiesLookup.checkType(path, findRaw(path, type, true),
+                type, defaultValue);
+    }
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.util.proto.properties.Properties#find(com.blockwithme.util.proto.properties.PropertyPath, java.lang.Class)
+     */
+    @Override
+    public final <E> E find(final PropertyPath path, final Class<E> type) {
+        return find(path, type, null);
     }
 
     /* (non-Javadoc)
@@ -257,79 +290,95 @@ public class PropertiesImpl<TIME extends Comparable<TIME>> implements
      */
     @Override
     public final <E> E get(final String path, final Class<E> type) {
-        final E result = find(path, type, null);
-        if (result == null) {
-            throw new IllegalStateException("Property '" + path
-                    + "' not found!");
+        return PropertiesLookup.get(this, path, type);
+    }
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.properties.Properties#findRaw(java.lang.String, boolean)
+     */
+    private final Object findRaw(final String path, final Class<?> type,
+            final boolean executeGenerators) {
+        if (isLocalKey(path, "path", path)) {
+            return PropertiesLookup.resolve(findLocalRaw(path), this, path,
+                    type, executeGenerators);
         }
-        return result;
+        final ResolvedPath<TIME> resolved = resolvedPaths().get(path);
+        if (resolved != null) {
+            return resolved.find(type, executeGenerators);
+        }
+        return findRaw(PropertyPath.parse(path), type, executeGenerators);
     }
 
-    /**
-     * If value is not a generator, it does not check the type, and just returns it.
-     * If it is a generator, then the generator is called.
-     */
-    private static Object resolve(final Object value,
-            final PropertiesImpl<?> owner, final String localKey,
-            final Class<?> type, final boolean executeGenerators) {
-        if (executeGenerators && (value instanceof Generator)) {
-            final Generator gen = (Generator) value;
-            final Object result = gen.generate(owner, localKey, type);
-            if (result instanceof Generator) {
-                throw new IllegalStateException("Generator "
-                        + gen.getClass().getName() + " for property "
-                        + localKey + " returned another generator: "
-                        + result.getClass().getName());
-            }
-            return result;
+    /** Returns the resolved paths cache, cleared if the structure changed. */
+    private HashMap<String, ResolvedPath<TIME>> resolvedPaths() {
+        final long version = graph.structureVersion();
+        if (resolvedPaths == null) {
+            resolvedPaths = new HashMap<>();
+        } else if (resolvedPathsVersion != version) {
+            resolvedPaths.clear();
         }
-        return value;
+        resolvedPathsVersion = version;
+        return resolvedPaths;
     }
 
-    /* (non-Javadoc)
-     * @see com.blockwithme.properties.Properties#findRaw(java.lang.String, boolean)
+    /**
+     * Finds a property by path. For paths of more than one local key, the
+     * Properties containing the last local key is cached, until the next
+     * structural change of the graph.
      */
     @SuppressWarnings("unchecked")
-    private final Object findRaw(final String path, final Class<?> type,
+    private final Object findRaw(final PropertyPath path, final Class<?> type,
             final boolean executeGenerators) {
-        if (isLocalKey(path, "path", path)) {
-            return resolve(findLocalRaw(path), this, path, type,
-                    executeGenerators);
-        }
-        PropertiesImpl<TIME> prop = this;
-        String relPath = path;
-        if (path.charAt(0) == SEPATATOR) {
-            // Absolute path ...
-            prop = (PropertiesImpl<TIME>) graph();
-            relPath = path.substring(1);
-            if (relPath.isEmpty()) {
-                return prop;
-            }
+        Objects.requireNonNull(path, "path");
+        if (path.isLocalKey()) {
+            final String key = path.key(0);
+            return PropertiesLookup.resolve(findLocalRaw(key), this, key,
+                    type, executeGenerators);
         }
-        while (true) {
-            // Property from ancestor
-            if (isLocalKey(relPath, "path component", path)) {
-                return resolve(prop.findLocalRaw(relPath), prop, relPath, type,
-                        executeGenerators);
+        final HashMap<String, ResolvedPath<TIME>> cache = resolvedPaths();
+        final String text = path.toString();
+        ResolvedPath<TIME> resolved = cache.get(text);
+        if (resolved == null) {
+            PropertiesImpl<TIME> prop = this;
+            if (path.isAbsolute()) {
+                prop = (PropertiesImpl<TIME>) graph.root();
+                if (path.size() == 0) {
+                    return prop;
+                }
             }
-            // Not ancestor; go back down again ...
-            final int index = relPath.indexOf(SEPATATOR);
-            final String head = relPath.substring(0, index);
-            // We cannot use the type here, because we are not at the end of the path.
-            final Object value = resolve(prop.findLocalRaw(head), prop, head,
-                    null, executeGenerators);
-            if (value == null) {
-                return null;
+            // Only Links are known to resolve the same way until the next
+            // structural change.
+            boolean cacheable = true;
+            final int last = path.size() - 1;
+            for (int i = 0; i < last; i++) {
+                final String head = path.key(i);
+                final Object raw = prop.findLocalRaw(head);
+                if ((raw instanceof Generator) && !(raw instanceof Link)) {
+                    cacheable = false;
+                }
+                // We cannot use the type here, because we are not at the end of the path.
+                final Object value = PropertiesLookup.resolve(raw, prop, head,
+                        null, executeGenerators);
+                if (value == null) {
+                    return null;
+                }
+                if (value instanceof PropertiesImpl) {
+                    prop = (PropertiesImpl<TIME>) value;
+                } else {
+                    throw new IllegalArgumentException("Encontered "
+                            + value.getClass().getName()
+                            + " while expecting a Properties");
+                }
             }
-            if (value instanceof PropertiesImpl) {
-                prop = (PropertiesImpl<TIME>) value;
-                relPath = relPath.substring(index + 1);
-            } else {
-                throw new IllegalArgumentException("Encontered "
-                        + value.getClass().getName()
-                        + " while expecting a Properties");
+            resolved = new ResolvedPath<>(path, prop);
+            if (cacheable && (last > 0)) {
+                if (cache.size() >= MAX_RESOLVED_PATHS) {
+                    cache.clear();
+                }
+                cache.put(text, resolved);
             }
         }
+        return resolved.find(type, executeGenerators);
     }
 
     /* (non-Javadoc)
@@ -342,6 +391,16 @@ public class PropertiesImpl<TIME extends Comparable<TIME>> implements
         return (E) findRaw(path, null, executeGenerators);
     }
 
+    /* (non-Javadoc)
+     * @see com.blockwithme.util.proto.properties.Properties#findRaw(com.blockwithme.util.proto.properties.PropertyPath, boolean)
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public final <E> E findRaw(final PropertyPath path,
+            final boolean executeGenerators) {
+        return (E) findRaw(path, null, executeGenerators);
+    }
+
     /**
      * Only the parent of Properties can directly reference it, so we have to
      * convert reference to Properties into links (or generated Properties).
@@ -437,6 +496,10 @@ public class PropertiesImpl<TIME extends Comparable<TIME>> implements
      */
     @Override
     public final boolean contains(final Object value) {
+        final PropertiesIndex index = index();
+        if ((index != null) && (index.keysOf(value) != null)) {
+            return true;
+        }
         return !keysOf(value).isEmpty();
     }
 
@@ -445,12 +508,29 @@ public class PropertiesImpl<TIME extends Comparable<TIME>> implements
      */
     @Override
     public final List<String> keysOf(final Object value) {
-        return query(new Filter() {
-            @Override
-            public boolean accept(final String key, final Object obj) {
-                return Objects.equals(value, obj);
+        final PropertiesIndex index = index();
+        if (index != null) {
+            final TreeSet<String> keys = index.keysOf(value);
+            if (index.generatorKeys().isEmpty()) {
+                if (keys == null) {
+                    return Collections.emptyList();
+                }
+                return new ArrayList<>(keys);
+            }
+            // Generators must be resolved (and can replace themselves)
+            final TreeSet<String> result = new TreeSet<>(
+                    NumbersLastStringComparator.CMP);
+            if (keys != null) {
+                result.addAll(keys);
             }
-        });
+            for (final String key : new ArrayList<>(index.generatorKeys())) {
+                if (Objects.equals(value, findRaw(key, true))) {
+                    result.add(key);
+                }
+            }
+            return new ArrayList<>(result);
+        }
+        return PropertiesLookup.keysOf(this, value);
     }
 
     /* (non-Javadoc)
@@ -458,6 +538,18 @@ public class PropertiesImpl<TIME extends Comparable<TIME>> implements
      */
     @Override
     public final String nextIndex() {
+        final PropertiesIndex index = index();
+        if (index != null) {
+            for (final Map.Entry<Integer, TreeSet<String>> e : index.indexed()
+                    .descendingMap().entrySet()) {
+                for (final String key : new ArrayList<>(e.getValue())) {
+                    if (findRaw(key, true) != null) {
+                        return String.valueOf(e.getKey() + 1);
+                    }
+                }
+            }
+            return "0";
+        }
         int last = -1;
         for (final String key : this) {
             try {
@@ -480,19 +572,7 @@ public class PropertiesImpl<TIME extends Comparable<TIME>> implements
      */
     @Override
     public final List<String> query(final Filter query) {
-        List<String> result = null;
-        for (final String key : this) {
-            if (query.accept(key, findRaw(key, true))) {
-                if (result == null) {
-                    result = new ArrayList<>();
-                }
-                result.add(key);
-            }
-        }
-        if (result == null) {
-            result = Collections.emptyList();
-        }
-        return result;
+        return PropertiesLookup.query(this, query);
     }
 
     /* (non-Javadoc)
@@ -518,34 +598,22 @@ public class PropertiesImpl<TIME extends Comparable<TIME>> implements
     @Override
     public final <E> E[] listValues(final Class<E> expectedType,
             final boolean onlyIndexed) {
+        final PropertiesIndex valueIndex = onlyIndexed ? index() : null;
+        if (valueIndex == null) {
+            return PropertiesLookup.listValues(this, expectedType, onlyIndexed);
+        }
+        final ArrayList<TreeSet<String>> sets = new ArrayList<>();
+        for (final TreeSet<String> keys : valueIndex.indexed().values()) {
+            sets.add(new TreeSet<>(keys));
+        }
         final ArrayList<E> result = new ArrayList<>();
-        if (onlyIndexed) {
-            for (final String key : this) {
-                try {
-                    final int index = Integer.parseInt(key, 10);
-                    final E obj = find(key, expectedType);
-                    if (obj != null) {
-                        // ArrayList doesn't have set size, so we need to grow it
-                        while (result.size() <= index) {
-                            result.add(null);
-                        }
-                        result.set(index, obj);
-                    }
-                } catch (final NumberFormatException e) {
-                    // NOP
-                }
-            }
-            // Drop all null
-            while (result.remove(null)) {
-                // NOP
-            }
-        } else {
-            // By default, we get string order of properties, so result is sorted.
-            for (final String key : this) {
-                try {
-                    result.add(get(key, expectedType));
-                } catch (final Exception e) {
-                    // NOP
+        for (final TreeSet<String> keys : sets) {
+            // Like the unindexed lookup, the last key of an index wins.
+            for (final String key : keys.descendingSet()) {
+                final E obj = find(key, expectedType);
+                if (obj != null) {
+                    result.add(obj);
+                    break;
                 }
             }
         }
@@ -556,21 +624,18 @@ public class PropertiesImpl<TIME extends Comparable<TIME>> implements
     /* (non-Javadoc)
      * @see com.blockwithme.properties.Properties#listChildValues(java.lang.String, java.lang.Class)
      */
-    @SuppressWarnings("unchecked")
     @Override
     public final <E> E[] listChildValues(final String proerpty,
             final Class<E> expectedType, final boolean onlyIndexed) {
-        final Properties<TIME> prop = find(proerpty, Properties.class);
-        if (prop != null) {
-            return prop.listValues(expectedType, onlyIndexed);
-        }
-        return (E[]) Array.newInstance(expectedType, 0);
+        return PropertiesLookup.listChildValues(this, proerpty, expectedType,
+                onlyIndexed);
     }
 
     /**
      * Returns the property value, if any. Null if absent.
      */
     protected Object findLocalRaw(final String localKey) {
+        ensureLoaded();
         final SetterValue<TIME> sv = properties.get(localKey);
         return (sv == null) ? null : sv.value;
     }
@@ -580,9 +645,221 @@ public class PropertiesImpl<TIME extends Comparable<TIME>> implements
      */
     @Override
     public Iterator<String> iterator() {
+        ensureLoaded();
         return properties.keySet().iterator();
     }
 
+    /** Sets the loader, that will load the content on first access. */
+    final void loadLazily(final Loader<TIME> theLoader) {
+        if (!properties.isEmpty()) {
+            throw new IllegalStateException(this + " is not empty");
+        }
+        loader = theLoader;
+    }
+
+    /** Loads the content, if it was not loaded yet. */
+    private void ensureLoaded() {
+        final Loader<TIME> toCall = loader;
+        if (toCall != null) {
+            loader = null;
+            toCall.load(this);
+        }
+    }
+
+    /**
+     * Adds a loaded property, without validation or notification.
+     * Only for use by Loaders.
+     */
+    @SuppressWarnings("unchecked")
+    final void putLoaded(final String localKey, final Properties<TIME> setter,
+            final Object value) {
+        final SetterValue<TIME> sv = new SetterValue<>();
+        sv.setter = setter;
+        sv.value = value;
+        properties.put(localKey, sv);
+        if ((value instanceof PropertiesImpl<?>) && graph.snapshots()) {
+            ((PropertiesImpl<TIME>) value).addParent(this);
+        }
+    }
+
+    /**
+     * Returns a copy of the state of a local property, or null if it was
+     * never set. Only for use by GraphImpl, to roll back a failed batch.
+     */
+    final Object saveLocal(final String localKey) {
+        ensureLoaded();
+        final SetterValue<TIME> sv = properties.get(localKey);
+        if (sv == null) {
+            return null;
+        }
+        final SetterValue<TIME> result = new SetterValue<>();
+        result.setter = sv.setter;
+        result.value = sv.value;
+        return result;
+    }
+
+    /**
+     * Restores a local property to a state returned by saveLocal(), without
+     * validation or notification. Only for use by GraphImpl, to roll back a
+     * failed batch.
+     */
+    @SuppressWarnings("unchecked")
+    final void restoreLocal(final String localKey, final Object saved) {
+        final SetterValue<TIME> sv = (SetterValue<TIME>) saved;
+        final SetterValue<TIME> current = (sv == null) ? properties
+                .remove(localKey) : properties.put(localKey, sv);
+        final Object oldValue = (current == null) ? null : current.value;
+        final Object value = (sv == null) ? null : sv.value;
+        if (index != null) {
+            if (sv == null) {
+                index.remove(localKey, oldValue);
+            } else {
+                index.update(localKey, oldValue, value);
+            }
+        }
+        if (oldValue != value) {
+            final ImplGraph<TIME> root = (ImplGraph<TIME>) graph();
+            if (structural(oldValue) || structural(value)) {
+                root.onStructureChange();
+            }
+            onValueChange(root, oldValue, value);
+        }
+    }
+
+    /** Returns the setter of a local property, if any. */
+    final Properties<TIME> setterOf(final String localKey) {
+        ensureLoaded();
+        final SetterValue<TIME> sv = properties.get(localKey);
+        return (sv == null) ? null : sv.setter;
+    }
+
+    /** Returns the secondary index, if the graph is indexed, otherwise null. */
+    private PropertiesIndex index() {
+        if ((index == null) && graph.indexed()) {
+            ensureLoaded();
+            index = new PropertiesIndex();
+            for (final Map.Entry<String, SetterValue<TIME>> e : properties
+                    .entrySet()) {
+                index.update(e.getKey(), null, e.getValue().value);
+            }
+        }
+        return index;
+    }
+
+    /** Adds a parent to this Properties. */
+    private void addParent(final PropertiesImpl<TIME> parent) {
+        if (parents == null) {
+            parents = new ArrayList<>(1);
+        }
+        parents.add(parent);
+    }
+
+    /**
+     * Updates the parents of the children, and publishes the change. Only
+     * needed if snapshots are enabled.
+     */
+    @SuppressWarnings("unchecked")
+    private void onValueChange(final ImplGraph<TIME> root,
+            final Object oldValue, final Object newValue) {
+        if (!root.snapshots()) {
+            return;
+        }
+        if (oldValue instanceof PropertiesImpl<?>) {
+            final ArrayList<PropertiesImpl<TIME>> oldParents = ((PropertiesImpl<TIME>) oldValue).parents;
+            if (oldParents != null) {
+                oldParents.remove(this);
+            }
+        }
+        if (newValue instanceof PropertiesImpl<?>) {
+            ((PropertiesImpl<TIME>) newValue).addParent(this);
+        }
+        markDirty();
+        root.publishSnapshot();
+    }
+
+    /**
+     * Recomputes the parents of all the Properties reachable from root, and
+     * marks them all as changed. Called when snapshots get enabled, since
+     * the parents are not tracked otherwise.
+     */
+    @SuppressWarnings("unchecked")
+    static <TIME extends Comparable<TIME>> void trackParents(
+            final PropertiesImpl<TIME> root) {
+        final IdentityHashMap<PropertiesImpl<TIME>, PropertiesImpl<TIME>> visited = new IdentityHashMap<>();
+        final ArrayList<PropertiesImpl<TIME>> todo = new ArrayList<>();
+        visited.put(root, root);
+        todo.add(root);
+        // First pass: find them all, and forget the old parents.
+        for (int i = 0; i < todo.size(); i++) {
+            final PropertiesImpl<TIME> prop = todo.get(i);
+            prop.ensureLoaded();
+            prop.parents = null;
+            prop.dirty = true;
+            for (final SetterValue<TIME> sv : prop.properties.values()) {
+                if (sv.value instanceof PropertiesImpl<?>) {
+                    final PropertiesImpl<TIME> child = (PropertiesImpl<TIME>) sv.value;
+                    if (visited.put(child, child) == null) {
+                        todo.add(child);
+                    }
+                }
+            }
+        }
+        // Second pass: record the current parents.
+        for (final PropertiesImpl<TIME> prop : todo) {
+            for (final SetterValue<TIME> sv : prop.properties.values()) {
+                if (sv.value instanceof PropertiesImpl<?>) {
+                    ((PropertiesImpl<TIME>) sv.value).addParent(prop);
+                }
+            }
+        }
+    }
+
+    /** Marks this Properties, and all it's ancestors, as changed. */
+    private void markDirty() {
+        if (!dirty) {
+            dirty = true;
+            if (parents != null) {
+                for (final PropertiesImpl<TIME> parent : parents) {
+                    parent.markDirty();
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns an up-to-date snapshot of the content of this Properties.
+     * Only the changed Properties are copied; the others are reused.
+     */
+    @SuppressWarnings("unchecked")
+    final PropertiesSnapshot.Data snapshot() {
+        if (dirty) {
+            ensureLoaded();
+            // Cleared first, in case the Properties contain themselves.
+            dirty = false;
+            final int size = properties.size();
+            final String[] keys = new String[size];
+            final Object[] values = new Object[size];
+            int i = 0;
+            for (final Map.Entry<String, SetterValue<TIME>> e : properties
+                    .entrySet()) {
+                Object value = e.getValue().value;
+                if (value instanceof PropertiesImpl<?>) {
+                    value = ((PropertiesImpl<TIME>) value).snapshot();
+                }
+                keys[i] = e.getKey();
+                values[i] = value;
+                i++;
+            }
+            snapshot = new PropertiesSnapshot.Data(localKey, keys, values);
+        }
+        return snapshot;
+    }
+
+    /** Returns true, if the value can be part of a path resolution. */
+    private static boolean structural(final Object value) {
+        return (value instanceof Properties<?>) || (value instanceof Generator);
+    }
+
     /** Returns true, if this is a built-in property. */
     protected boolean builtIn(final String localKey) {
         return false;
@@ -595,6 +872,7 @@ public class PropertiesImpl<TIME extends Comparable<TIME>> implements
             final String localKey, final Object value, final TIME when,
             final boolean forceWrite) {
         checkLocalKey(localKey, "localKey", localKey);
+        ensureLoaded();
         if (builtIn(localKey)) {
             throw new UnsupportedOperationException(
                     "Cannot remove a built-in property: " + localKey);
@@ -614,6 +892,15 @@ public class PropertiesImpl<TIME extends Comparable<TIME>> implements
                 sv.setter = setter;
                 sv.value = value;
                 properties.put(localKey, sv);
+                if (index != null) {
+                    index.update(localKey, oldValue, value);
+                }
+                if (structural(value)) {
+                    root.onStructureChange();
+                }
+                if (value != null) {
+                    onValueChange(root, oldValue, value);
+                }
                 if (!Objects.equals(oldValue, value)) {
                     root.onChange(setter, this, localKey, oldValue, value);
                 }
@@ -622,6 +909,16 @@ public class PropertiesImpl<TIME extends Comparable<TIME>> implements
                 final Object oldValue = sv.value;
                 sv.setter = setter;
                 sv.value = value;
+                if (index != null) {
+                    index.update(localKey, oldValue, value);
+                }
+                if ((oldValue != value)
+                        && (structural(oldValue) || structural(value))) {
+                    root.onStructureChange();
+                }
+                if (oldValue != value) {
+                    onValueChange(root, oldValue, value);
+                }
                 if (!Objects.equals(oldValue, value)) {
                     root.onChange(setter, this, localKey, oldValue, value);
                 }
@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2014 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.util.proto.properties.impl;
+
+import java.util.HashMap;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import com.blockwithme.util.proto.properties.Generator;
+
+/**
+ * Secondary index of the raw values of a PropertiesImpl.
+ *
+ * It maps the values to their keys, keeps track of the keys of Generators
+ * (which must still be resolved on lookup), and of the integer keys with a
+ * non-null value, in numeric order. Since "7" and "007" have the same
+ * index, each index maps to a set of keys, so clearing one spelling never
+ * drops another one that still has a value.
+ *
+ * Values are indexed by equals()/hashCode(), so mutable values must not be
+ * modified after being set.
+ *
+ * @author monster
+ */
+final class PropertiesIndex {
+
+    /** The keys of each (non-Generator) value. */
+    private final HashMap<Object, TreeSet<String>> keysByValue = new HashMap<>();
+
+    /** The keys containing Generators. */
+    private final TreeSet<String> generatorKeys = new TreeSet<>(
+            NumbersLastStringComparator.CMP);
+
+    /** The integer keys with a non-null value, by index. */
+    private final TreeMap<Integer, TreeSet<String>> indexed = new TreeMap<>();
+
+    /** Returns the integer value of a key, or null if not an integer. */
+    private static Integer toIndex(final String key) {
+        final int length = key.length();
+        if ((length == 0) || (length > 10)) {
+            return null;
+        }
+        for (int i = 0; i < length; i++) {
+            final char c = key.charAt(i);
+            if ((c < '0') || (c > '9')) {
+                return null;
+            }
+        }
+        final long value = Long.parseLong(key);
+        return (value > Integer.MAX_VALUE) ? null : Integer.valueOf((int) value);
+    }
+
+    /** Updates the index after a property changed. */
+    public void update(final String key, final Object oldValue,
+            final Object newValue) {
+        if (oldValue instanceof Generator) {
+            generatorKeys.remove(key);
+        } else {
+            final TreeSet<String> keys = keysByValue.get(oldValue);
+            if ((keys != null) && keys.remove(key) && keys.isEmpty()) {
+                keysByValue.remove(oldValue);
+            }
+        }
+        if (newValue instanceof Generator) {
+            generatorKeys.add(key);
+        } else {
+            TreeSet<String> keys = keysByValue.get(newValue);
+            if (keys == null) {
+                keys = new TreeSet<>(NumbersLastStringComparator.CMP);
+                keysByValue.put(newValue, keys);
+            }
+            keys.add(key);
+        }
+        final Integer index = toIndex(key);
+        if (index != null) {
+            TreeSet<String> keys = indexed.get(index);
+            if (newValue == null) {
+                if ((keys != null) && keys.remove(key) && keys.isEmpty()) {
+                    indexed.remove(index);
+                }
+            } else {
+                if (keys == null) {
+                    keys = new TreeSet<>(NumbersLastStringComparator.CMP);
+                    indexed.put(index, keys);
+                }
+                keys.add(key);
+            }
+        }
+    }
+
+    /** Updates the index after a property was removed altogether. */
+    public void remove(final String key, final Object oldValue) {
+        update(key, oldValue, null);
+        final TreeSet<String> keys = keysByValue.get(null);
+        if ((keys != null) && keys.remove(key) && keys.isEmpty()) {
+            keysByValue.remove(null);
+        }
+    }
+
+    /** Returns the keys of a (non-Generator) value, or null if none. */
+    public TreeSet<String> keysOf(final Object value) {
+        return keysByValue.get(value);
+    }
+
+    /** Returns the keys containing Generators. */
+    public TreeSet<String> generatorKeys() {
+        return generatorKeys;
+    }
+
+    /**
+     * Returns the integer keys with a non-null value, by index, in numeric
+     * order.
+     */
+    public NavigableMap<Integer, TreeSet<String>> indexed() {
+        return indexed;
+    }
+}
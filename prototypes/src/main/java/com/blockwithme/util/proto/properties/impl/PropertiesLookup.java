@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2014 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.util.proto.properties.impl;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+import com.blockwithme.util.proto.properties.Filter;
+import com.blockwithme.util.proto.properties.Generator;
+import com.blockwithme.util.proto.properties.Properties;
+
+/**
+ * The lookup logic shared by PropertiesImpl and PropertiesSnapshot. It only
+ * relies on the Properties interface; the implementations keep their own
+ * storage, and their own (indexed or cached) fast paths.
+ *
+ * @author monster
+ */
+final class PropertiesLookup {
+
+    /** No instances. */
+    private PropertiesLookup() {
+    }
+
+    /** Returns obj if of the right type, or the default value if null. */
+    @SuppressWarnings("unchecked")
+    static <E> E checkType(final Object path, final Object obj,
+            final Class<E> type, final E defaultValue) {
+        if (obj == null) {
+            return defaultValue;
+        }
+        if (!type.isInstance(obj)) {
+            throw new IllegalStateException("Property '" + path + "' type is: "
+                    + obj.getClass().getName() + " but expected type is: "
+                    + type);
+        }
+        return (E) obj;
+    }
+
+    /**
+     * If value is not a generator, it does not check the type, and just returns it.
+     * If it is a generator, then the generator is called.
+     */
+    static Object resolve(final Object value, final Properties<?> owner,
+            final String localKey, final Class<?> type,
+            final boolean executeGenerators) {
+        if (executeGenerators && (value instanceof Generator)) {
+            final Generator gen = (Generator) value;
+            final Object result = gen.generate(owner, localKey, type);
+            if (result instanceof Generator) {
+                throw new IllegalStateException("Generator "
+                        + gen.getClass().getName() + " for property "
+                        + localKey + " returned another generator: "
+                        + result.getClass().getName());
+            }
+            return result;
+        }
+        return value;
+    }
+
+    /** Returns the value of a property, failing if it is missing. */
+    static <E> E get(final Properties<?> prop, final String path,
+            final Class<E> type) {
+        final E result = prop.find(path, type, null);
+        if (result == null) {
+            throw new IllegalStateException("Property '" + path
+                    + "' not found!");
+        }
+        return result;
+    }
+
+    /** Returns the keys of the properties accepted by the query. */
+    static List<String> query(final Properties<?> prop, final Filter query) {
+        List<String> result = null;
+        for (final String key : prop) {
+            if (query.accept(key, prop.findRaw(key, true))) {
+                if (result == null) {
+                    result = new ArrayList<>();
+                }
+                result.add(key);
+            }
+        }
+        if (result == null) {
+            result = Collections.emptyList();
+        }
+        return result;
+    }
+
+    /** Returns the keys of the properties equal to value. */
+    static List<String> keysOf(final Properties<?> prop, final Object value) {
+        return query(prop, new Filter() {
+            @Override
+            public boolean accept(final String key, final Object obj) {
+                return Objects.equals(value, obj);
+            }
+        });
+    }
+
+    /** Returns the values of the right type, optionally only the indexed ones. */
+    @SuppressWarnings("unchecked")
+    static <E> E[] listValues(final Properties<?> prop,
+            final Class<E> expectedType, final boolean onlyIndexed) {
+        final ArrayList<E> result = new ArrayList<>();
+        if (onlyIndexed) {
+            for (final String key : prop) {
+                try {
+                    final int index = Integer.parseInt(key, 10);
+                    final E obj = prop.find(key, expectedType);
+                    if (obj != null) {
+                        // ArrayList doesn't have set size, so we need to grow it
+                        while (result.size() <= index) {
+                            result.add(null);
+                        }
+                        result.set(index, obj);
+                    }
+                } catch (final NumberFormatException e) {
+                    // NOP
+                }
+            }
+            // Drop all null
+            while (result.remove(null)) {
+                // NOP
+            }
+        } else {
+            // By default, we get string order of properties, so result is sorted.
+            for (final String key : prop) {
+                try {
+                    result.add(get(prop, key, expectedType));
+                } catch (final Exception e) {
+                    // NOP
+                }
+            }
+        }
+        return result.toArray((E[]) Array.newInstance(expectedType,
+                result.size()));
+    }
+
+    /** Returns the values of the right type, of a child Properties. */
+    @SuppressWarnings("unchecked")
+    static <E> E[] listChildValues(final Properties<?> prop,
+            final String property, final Class<E> expectedType,
+            final boolean onlyIndexed) {
+        final Properties<?> child = prop.find(property, Properties.class);
+        if (child != null) {
+            return child.listValues(expectedType, onlyIndexed);
+        }
+        return (E[]) Array.newInstance(expectedType, 0);
+    }
+}
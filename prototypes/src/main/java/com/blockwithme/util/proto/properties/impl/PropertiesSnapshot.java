@@ -0,0 +1,348 @@
+/*
+ * Copyright (C) 2014 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.util.proto.properties.impl;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+
+import com.blockwithme.util.proto.properties.Filter;
+import com.blockwithme.util.proto.properties.Graph;
+import com.blockwithme.util.proto.properties.Properties;
+import com.blockwithme.util.proto.properties.PropertyPath;
+
+/**
+ * A read-only view of a Properties, within a GraphSnapshot.
+ *
+ * The content is immutable, and shared between successive snapshots, as
+ * long as it does not change. Generators are executed on every lookup; the
+ * LazyGen are not replaced by their values, since snapshots cannot be
+ * modified. Generators that try to modify the Properties will fail.
+ *
+ * @author monster
+ */
+public final class PropertiesSnapshot<TIME extends Comparable<TIME>>
+        implements Properties<TIME> {
+
+    /** The immutable content of a snapshot of a Properties. */
+    static final class Data {
+        /** The local key. */
+        final String localKey;
+
+        /** The keys, in NumbersLastStringComparator order. */
+        final String[] keys;
+
+        /** The values. The Properties children are represented as Data. */
+        final Object[] values;
+
+        /** Constructor */
+        Data(final String theLocalKey, final String[] theKeys,
+                final Object[] theValues) {
+            localKey = theLocalKey;
+            keys = theKeys;
+            values = theValues;
+        }
+    }
+
+    /** The graph snapshot. */
+    private final GraphSnapshot<TIME> graph;
+
+    /** The content. */
+    private final Data data;
+
+    /** Constructor */
+    PropertiesSnapshot(final GraphSnapshot<TIME> theGraph, final Data theData) {
+        graph = theGraph;
+        data = theData;
+    }
+
+    /** toString */
+    @Override
+    public String toString() {
+        final StringBuilder buf = new StringBuilder(256);
+        buf.append(getClass().getSimpleName()).append("(").append(
+                data.localKey);
+        for (int i = 0; i < data.keys.length; i++) {
+            buf.append(", ").append(data.keys[i]).append("=");
+            final Object value = data.values[i];
+            if (value instanceof Data) {
+                buf.append(getClass().getSimpleName());
+            } else {
+                buf.append(value);
+            }
+        }
+        buf.append(")");
+        return buf.toString();
+    }
+
+    /** Returns a read-only exception. */
+    private static UnsupportedOperationException readOnly() {
+        return new UnsupportedOperationException("Snapshots are read-only");
+    }
+
+    /** Returns the raw local value, with children wrapped. */
+    private Object findLocalRaw(final String localKey) {
+        final int index = Arrays.binarySearch(data.keys, localKey,
+                NumbersLastStringComparator.CMP);
+        if (index < 0) {
+            return null;
+        }
+        final Object value = data.values[index];
+        if (value instanceof Data) {
+            return new PropertiesSnapshot<>(graph, (Data) value);
+        }
+        return value;
+    }
+
+    /**
+     * Executes generators, if required. LazyGen are bypassed, since they
+     * would try to replace themselves.
+     */
+    private Object resolve(final Object value, final String localKey,
+            final Class<?> type, final boolean executeGenerators) {
+        Object gen = value;
+        if (executeGenerators && (value instanceof LazyGen)) {
+            gen = ((LazyGen) value).newGenerator();
+        }
+        return PropertiesLookup.resolve(gen, this, localKey, type,
+                executeGenerators);
+    }
+
+    /** Finds a property by path. */
+    @SuppressWarnings("unchecked")
+    private Object findRaw(final PropertyPath path, final Class<?> type,
+            final boolean executeGenerators) {
+        Objects.requireNonNull(path, "path");
+        PropertiesSnapshot<TIME> prop = this;
+        if (path.isAbsolute()) {
+            prop = (PropertiesSnapshot<TIME>) graph.root();
+            if (path.size() == 0) {
+                return prop;
+            }
+        }
+        final int last = path.size() - 1;
+        for (int i = 0; i < last; i++) {
+            final String head = path.key(i);
+            final Object value = prop.resolve(prop.findLocalRaw(head), head,
+                    null, executeGenerators);
+            if (value == null) {
+                return null;
+            }
+            if (value instanceof PropertiesSnapshot) {
+                prop = (PropertiesSnapshot<TIME>) value;
+            } else {
+                throw new IllegalArgumentException("Encontered "
+                        + value.getClass().getName()
+                        + " while expecting a Properties");
+            }
+        }
+        final String key = path.key(last);
+        return prop.resolve(prop.findLocalRaw(key), key, type,
+                executeGenerators);
+    }
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.util.proto.properties.Properties#graph()
+     */
+    @Override
+    public Graph<TIME> graph() {
+        return graph;
+    }
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.util.proto.properties.Properties#localKey()
+     */
+    @Override
+    public String localKey() {
+        return data.localKey;
+    }
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.util.proto.properties.Properties#query(com.blockwithme.util.proto.properties.Filter)
+     */
+    @Override
+    public List<String> query(final Filter query) {
+        return PropertiesLookup.query(this, query);
+    }
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.util.proto.properties.Properties#keysOf(java.lang.Object)
+     */
+    @Override
+    public List<String> keysOf(final Object value) {
+        return PropertiesLookup.keysOf(this, value);
+    }
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.util.proto.properties.Properties#contains(java.lang.Object)
+     */
+    @Override
+    public boolean contains(final Object value) {
+        return !keysOf(value).isEmpty();
+    }
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.util.proto.properties.Properties#findRaw(java.lang.String, boolean)
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public <E> E findRaw(final String path, final boolean executeGenerators) {
+        return (E) findRaw(PropertyPath.parse(path), null, executeGenerators);
+    }
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.util.proto.properties.Properties#findRaw(com.blockwithme.util.proto.properties.PropertyPath, boolean)
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public <E> E findRaw(final PropertyPath path,
+            final boolean executeGenerators) {
+        return (E) findRaw(path, null, executeGenerators);
+    }
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.util.proto.properties.Properties#find(java.lang.String, java.lang.Class, java.lang.Object)
+     */
+    @Override
+    public <E> E find(final String path, final Class<E> type,
+            final E defaultValue) {
+        return find(PropertyPath.parse(path), type, defaultValue);
+    }
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.util.proto.properties.Properties#find(java.lang.String, java.lang.Class)
+     */
+    @Override
+    public <E> E find(final String path, final Class<E> type) {
+        return find(path, type, null);
+    }
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.util.proto.properties.Properties#find(com.blockwithme.util.proto.properties.PropertyPath, java.lang.Class, java.lang.Object)
+     */
+    @Override
+    public <E> E find(final PropertyPath path, final Class<E> type,
+            final E defaultValue) {
+        Objects.requireNonNull(type, "type");
+        return PropertiesLookup.checkType(path, findRaw(path, type, true),
+                type, defaultValue);
+    }
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.util.proto.properties.Properties#find(com.blockwithme.util.proto.properties.PropertyPath, java.lang.Class)
+     */
+    @Override
+    public <E> E find(final PropertyPath path, final Class<E> type) {
+        return find(path, type, null);
+    }
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.util.proto.properties.Properties#get(java.lang.String, java.lang.Class)
+     */
+    @Override
+    public <E> E get(final String path, final Class<E> type) {
+        return PropertiesLookup.get(this, path, type);
+    }
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.util.proto.properties.Properties#set(com.blockwithme.util.proto.properties.Properties, java.lang.String, java.lang.Object)
+     */
+    @Override
+    public void set(final Properties<TIME> setter, final String path,
+            final Object value) {
+        throw readOnly();
+    }
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.util.proto.properties.Properties#set(com.blockwithme.util.proto.properties.Properties, java.lang.String, java.lang.Object, java.lang.Comparable, boolean)
+     */
+    @Override
+    public void set(final Properties<TIME> setter, final String path,
+            final Object value, final TIME when, final boolean forceWrite) {
+        throw readOnly();
+    }
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.util.proto.properties.Properties#clear(com.blockwithme.util.proto.properties.Properties, com.blockwithme.util.proto.properties.Filter)
+     */
+    @Override
+    public void clear(final Properties<TIME> setter, final Filter query) {
+        throw readOnly();
+    }
+
+    /** Returns the integer value of a key, or -1 if not an integer. */
+    private static int toIndex(final String key) {
+        try {
+            return Integer.parseInt(key, 10);
+        } catch (final NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.util.proto.properties.Properties#nextIndex()
+     */
+    @Override
+    public String nextIndex() {
+        // Numbers are last, in numeric order
+        for (int i = data.keys.length - 1; i >= 0; i--) {
+            final String key = data.keys[i];
+            final int index = toIndex(key);
+            if ((index >= 0) && (findRaw(key, true) != null)) {
+                return String.valueOf(index + 1);
+            }
+        }
+        return "0";
+    }
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.util.proto.properties.Properties#isEmptyList()
+     */
+    @Override
+    public boolean isEmptyList() {
+        return "0".equals(nextIndex());
+    }
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.util.proto.properties.Properties#listValues(java.lang.Class, boolean)
+     */
+    @Override
+    public <E> E[] listValues(final Class<E> expectedType,
+            final boolean onlyIndexed) {
+        return PropertiesLookup.listValues(this, expectedType, onlyIndexed);
+    }
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.util.proto.properties.Properties#listChildValues(java.lang.String, java.lang.Class, boolean)
+     */
+    @Override
+    public <E> E[] listChildValues(final String property,
+            final Class<E> expectedType, final boolean onlyIndexed) {
+        return PropertiesLookup.listChildValues(this, property, expectedType,
+                onlyIndexed);
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Iterable#iterator()
+     */
+    @Override
+    public Iterator<String> iterator() {
+        return Collections.unmodifiableList(Arrays.asList(data.keys))
+                .iterator();
+    }
+}
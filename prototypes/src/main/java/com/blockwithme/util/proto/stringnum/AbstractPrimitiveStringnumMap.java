@@ -0,0 +1,197 @@
+/*
+ * Copyright (C) 2014 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.util.proto.stringnum;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Base class of the lightweight maps from String to a primitive value.
+ *
+ * It uses a Stringnum internally, and supports reuse of the Stringnum in
+ * multiple maps. The values are stored in primitive arrays indexed by the
+ * Stringnum index, so that nothing is boxed; a bitset tells which keys have
+ * a value.
+ *
+ * The keys can be iterated without allocation:
+ * for (int i = map.nextIndex(0); i >= 0; i = map.nextIndex(i + 1)) { ... }
+ *
+ * Note that the data array size is proportional to the Stringum size.
+ *
+ * It is NOT thread-safe.
+ *
+ * @author monster
+ */
+public abstract class AbstractPrimitiveStringnumMap {
+
+    /** Empty array. */
+    private static final long[] EMPTY = new long[0];
+
+    /** Our stringnum */
+    protected final Stringnum stringnum;
+
+    /** The presence bits, per Stringnum index. */
+    private long[] present = EMPTY;
+
+    /** The capacity of the value arrays. */
+    private int capacity;
+
+    /** Number of values. */
+    private int size;
+
+    /** Constructor. */
+    protected AbstractPrimitiveStringnumMap(final Stringnum stringnum) {
+        this.stringnum = Objects.requireNonNull(stringnum);
+    }
+
+    /** Our stringnum */
+    public final Stringnum stringnum() {
+        return stringnum;
+    }
+
+    /** Returns the number of values. */
+    public final int size() {
+        return size;
+    }
+
+    /** Returns true if there are no values. */
+    public final boolean isEmpty() {
+        return size == 0;
+    }
+
+    /** Returns the Stringnum index of the key, or -1. */
+    protected final int indexOf(final String key) {
+        return stringnum.indexOf(key);
+    }
+
+    /** Returns the Stringnum index of the key, adding it if needed. */
+    protected final int indexFor(final String key) {
+        final int index = stringnum.putString(key);
+        if (index >= capacity) {
+            final int newCapacity = Math.max(index + 1, stringnum.size());
+            present = Arrays.copyOf(present, (newCapacity + 63) >>> 6);
+            grow(newCapacity);
+            capacity = newCapacity;
+        }
+        return index;
+    }
+
+    /** Grows the value array(s) to the given capacity. */
+    protected abstract void grow(final int newCapacity);
+
+    /** Clears the value at the given index, if needed. */
+    protected abstract void clearValue(final int index);
+
+    /** Returns true if there is a value at the given Stringnum index. */
+    public final boolean containsIndex(final int index) {
+        return (index >= 0) && (index < capacity)
+                && ((present[index >>> 6] & (1L << index)) != 0);
+    }
+
+    /** Returns true if there is a value for the given key. */
+    public final boolean containsKey(final String key) {
+        return containsIndex(indexOf(key));
+    }
+
+    /**
+     * Marks the given index as present. Returns true if it was absent.
+     * The index must be within the capacity.
+     */
+    protected final boolean markPresent(final int index) {
+        final long bit = 1L << index;
+        final long word = present[index >>> 6];
+        if ((word & bit) == 0) {
+            present[index >>> 6] = word | bit;
+            size++;
+            return true;
+        }
+        return false;
+    }
+
+    /** Removes the value at the given Stringnum index. Returns true if present. */
+    public final boolean removeIndex(final int index) {
+        if (containsIndex(index)) {
+            present[index >>> 6] &= ~(1L << index);
+            size--;
+            clearValue(index);
+            return true;
+        }
+        return false;
+    }
+
+    /** Removes the value of the given key. Returns true if present. */
+    public final boolean remove(final String key) {
+        return removeIndex(indexOf(key));
+    }
+
+    /** Removes all values. */
+    public final void clear() {
+        for (int i = nextIndex(0); i >= 0; i = nextIndex(i + 1)) {
+            clearValue(i);
+        }
+        Arrays.fill(present, 0L);
+        size = 0;
+    }
+
+    /**
+     * Returns the first Stringnum index, greater or equal to from, that has
+     * a value, or -1 if none.
+     */
+    public final int nextIndex(final int from) {
+        if (from < 0) {
+            throw new IndexOutOfBoundsException("from: " + from);
+        }
+        int w = from >>> 6;
+        if (w >= present.length) {
+            return -1;
+        }
+        long word = present[w] & (-1L << from);
+        while (true) {
+            if (word != 0) {
+                return (w << 6) + Long.numberOfTrailingZeros(word);
+            }
+            if (++w == present.length) {
+                return -1;
+            }
+            word = present[w];
+        }
+    }
+
+    /** Returns the key of the given Stringnum index. */
+    public final String keyAt(final int index) {
+        return stringnum.get(index);
+    }
+
+    /** Appends the value at the given index to buf, for toString(). */
+    protected abstract void appendValue(final StringBuilder buf,
+            final int index);
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public final String toString() {
+        final StringBuilder buf = new StringBuilder("{");
+        for (int i = nextIndex(0); i >= 0; i = nextIndex(i + 1)) {
+            if (buf.length() > 1) {
+                buf.append(", ");
+            }
+            buf.append(keyAt(i)).append('=');
+            appendValue(buf, i);
+        }
+        return buf.append('}').toString();
+    }
+}
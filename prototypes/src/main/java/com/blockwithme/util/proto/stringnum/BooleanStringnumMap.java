@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2014 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.util.proto.stringnum;
+
+import java.util.Arrays;
+
+/**
+ * A lightweight map from String to boolean, without boxing. The values are
+ * stored in a bitset, like the presence bits.
+ *
+ * See AbstractPrimitiveStringnumMap.
+ *
+ * It is NOT thread-safe.
+ *
+ * @author monster
+ */
+public final class BooleanStringnumMap extends AbstractPrimitiveStringnumMap {
+
+    /** Empty array. */
+    private static final long[] EMPTY = new long[0];
+
+    /** The value bits, per Stringnum index. */
+    private long[] values = EMPTY;
+
+    /** Constructor. */
+    public BooleanStringnumMap(final Stringnum stringnum) {
+        super(stringnum);
+    }
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.util.proto.stringnum.AbstractPrimitiveStringnumMap#grow(int)
+     */
+    @Override
+    protected void grow(final int newCapacity) {
+        values = Arrays.copyOf(values, (newCapacity + 63) >>> 6);
+    }
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.util.proto.stringnum.AbstractPrimitiveStringnumMap#clearValue(int)
+     */
+    @Override
+    protected void clearValue(final int index) {
+        values[index >>> 6] &= ~(1L << index);
+    }
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.util.proto.stringnum.AbstractPrimitiveStringnumMap#appendValue(java.lang.StringBuilder, int)
+     */
+    @Override
+    protected void appendValue(final StringBuilder buf, final int index) {
+        buf.append((values[index >>> 6] & (1L << index)) != 0);
+    }
+
+    /**
+     * Returns the value at the given Stringnum index, or defaultValue if
+     * absent.
+     */
+    public boolean getAt(final int index, final boolean defaultValue) {
+        return containsIndex(index) ? ((values[index >>> 6] & (1L << index)) != 0)
+                : defaultValue;
+    }
+
+    /** Returns the value of the key, or defaultValue if absent. */
+    public boolean get(final String key, final boolean defaultValue) {
+        return getAt(indexOf(key), defaultValue);
+    }
+
+    /** Returns the value of the key, or false if absent. */
+    public boolean get(final String key) {
+        return getAt(indexOf(key), false);
+    }
+
+    /**
+     * Sets the value of the key. Returns the previous value, or false if
+     * absent.
+     */
+    public boolean put(final String key, final boolean value) {
+        final int index = indexFor(key);
+        final long bit = 1L << index;
+        final long word = values[index >>> 6];
+        values[index >>> 6] = value ? (word | bit) : (word & ~bit);
+        markPresent(index);
+        return (word & bit) != 0;
+    }
+
+    /** Returns the number of keys with the value true. */
+    public int countTrue() {
+        int result = 0;
+        for (final long word : values) {
+            result += Long.bitCount(word);
+        }
+        return result;
+    }
+}
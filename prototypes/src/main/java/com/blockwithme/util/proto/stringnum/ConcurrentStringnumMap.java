@@ -0,0 +1,404 @@
+/*
+ * Copyright (C) 2014 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.util.proto.stringnum;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * A thread-safe map from String to anything, for many readers and
+ * occasional writers.
+ *
+ * It uses a Stringnum internally, and supports reuse of the Stringnum in
+ * multiple maps, like the other StringnumMaps.
+ *
+ * The values are stored in fixed-size chunks (AtomicReferenceArray), so
+ * every slot is read and written with volatile semantic, and can be updated
+ * with CAS. Growing only copies the (small) chunk directory; the existing
+ * chunks are shared with the new directory.
+ *
+ * Like in ConcurrentHashMap, null values are not allowed, and the iterators
+ * are weakly consistent.
+ *
+ * @author monster
+ */
+public final class ConcurrentStringnumMap<V> extends AbstractMap<String, V>
+        implements ConcurrentMap<String, V> {
+
+    /** Computes a new value from the old one. */
+    public interface Remapping<V> {
+        /**
+         * Returns the new value, given the key and the old value (null if
+         * absent). Returning null removes the value. It can be called more
+         * then once, if there is contention.
+         */
+        V apply(String key, V oldValue);
+    }
+
+    /** The log2 of the chunk size. */
+    private static final int CHUNK_BITS = 6;
+
+    /** The chunk size. */
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+    /** The index mask within a chunk. */
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    /** Empty directory. */
+    private static final AtomicReferenceArray<?>[] EMPTY = new AtomicReferenceArray<?>[0];
+
+    /** CAS directory updater. */
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<ConcurrentStringnumMap, AtomicReferenceArray[]> UPDATER = AtomicReferenceFieldUpdater
+            .newUpdater(ConcurrentStringnumMap.class,
+                    AtomicReferenceArray[].class, "chunks");
+
+    /** Our stringnum */
+    private final Stringnum stringnum;
+
+    /** The chunk directory. Replaced, never modified, when growing. */
+    private volatile AtomicReferenceArray<?>[] chunks = EMPTY;
+
+    /** Number of values. */
+    private final AtomicInteger size = new AtomicInteger();
+
+    /** The optional entry set. */
+    private Set<Map.Entry<String, V>> entrySet;
+
+    /** Constructor. */
+    public ConcurrentStringnumMap(final Stringnum stringnum) {
+        this.stringnum = Objects.requireNonNull(stringnum);
+    }
+
+    /** Our stringnum */
+    public Stringnum stringnum() {
+        return stringnum;
+    }
+
+    /** Returns the chunk of an index, or null if not allocated yet. */
+    @SuppressWarnings("unchecked")
+    private AtomicReferenceArray<V> chunk(final int index) {
+        final AtomicReferenceArray<?>[] dir = chunks;
+        final int c = index >>> CHUNK_BITS;
+        return (c < dir.length) ? (AtomicReferenceArray<V>) dir[c] : null;
+    }
+
+    /** Returns the chunk of an index, allocating it if needed. */
+    @SuppressWarnings("unchecked")
+    private AtomicReferenceArray<V> chunkFor(final int index) {
+        final int c = index >>> CHUNK_BITS;
+        while (true) {
+            final AtomicReferenceArray<?>[] before = chunks;
+            if (c < before.length) {
+                return (AtomicReferenceArray<V>) before[c];
+            }
+            // Allocate for all the current strings at once.
+            final int needed = Math.max(c + 1,
+                    (stringnum.size() + CHUNK_MASK) >>> CHUNK_BITS);
+            final AtomicReferenceArray<?>[] after = Arrays.copyOf(before,
+                    needed);
+            for (int i = before.length; i < needed; i++) {
+                after[i] = new AtomicReferenceArray<V>(CHUNK_SIZE);
+            }
+            if (UPDATER.compareAndSet(this, before, after)) {
+                return (AtomicReferenceArray<V>) after[c];
+            }
+        }
+    }
+
+    /** Returns the value at the given Stringnum index. */
+    public V valueAt(final int index) {
+        final AtomicReferenceArray<V> chunk = chunk(index);
+        return (chunk == null) ? null : chunk.get(index & CHUNK_MASK);
+    }
+
+    /* (non-Javadoc)
+     * @see java.util.Map#get(java.lang.Object)
+     */
+    @Override
+    public V get(final Object key) {
+        final int index = stringnum.indexOf(key);
+        return (index < 0) ? null : valueAt(index);
+    }
+
+    /* (non-Javadoc)
+     * @see java.util.Map#containsKey(java.lang.Object)
+     */
+    @Override
+    public boolean containsKey(final Object key) {
+        return get(key) != null;
+    }
+
+    /* (non-Javadoc)
+     * @see java.util.Map#size()
+     */
+    @Override
+    public int size() {
+        return size.get();
+    }
+
+    /** Updates the size, after replacing before with after. */
+    private void count(final V before, final V after) {
+        if (before == null) {
+            if (after != null) {
+                size.incrementAndGet();
+            }
+        } else if (after == null) {
+            size.decrementAndGet();
+        }
+    }
+
+    /** Checks a value. */
+    private static void check(final Object value) {
+        if (value == null) {
+            throw new NullPointerException("value");
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see java.util.Map#put(java.lang.Object, java.lang.Object)
+     */
+    @Override
+    public V put(final String key, final V value) {
+        check(value);
+        final int index = stringnum.putString(key);
+        final V result = chunkFor(index).getAndSet(index & CHUNK_MASK, value);
+        count(result, value);
+        return result;
+    }
+
+    /* (non-Javadoc)
+     * @see java.util.concurrent.ConcurrentMap#putIfAbsent(java.lang.Object, java.lang.Object)
+     */
+    @Override
+    public V putIfAbsent(final String key, final V value) {
+        check(value);
+        final int index = stringnum.putString(key);
+        final AtomicReferenceArray<V> chunk = chunkFor(index);
+        final int slot = index & CHUNK_MASK;
+        while (true) {
+            final V before = chunk.get(slot);
+            if (before != null) {
+                return before;
+            }
+            if (chunk.compareAndSet(slot, null, value)) {
+                count(null, value);
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Atomically replaces the value of key with the result of remapping.
+     * Returns the new value (null if removed).
+     */
+    public V computeValue(final String key, final Remapping<V> remapping) {
+        final int index = stringnum.putString(key);
+        final AtomicReferenceArray<V> chunk = chunkFor(index);
+        final int slot = index & CHUNK_MASK;
+        while (true) {
+            final V before = chunk.get(slot);
+            final V after = remapping.apply(key, before);
+            if ((before == after) || chunk.compareAndSet(slot, before, after)) {
+                count(before, after);
+                return after;
+            }
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see java.util.Map#remove(java.lang.Object)
+     */
+    @Override
+    public V remove(final Object key) {
+        final int index = stringnum.indexOf(key);
+        final AtomicReferenceArray<V> chunk = (index < 0) ? null
+                : chunk(index);
+        if (chunk == null) {
+            return null;
+        }
+        final V result = chunk.getAndSet(index & CHUNK_MASK, null);
+        count(result, null);
+        return result;
+    }
+
+    /* (non-Javadoc)
+     * @see java.util.concurrent.ConcurrentMap#remove(java.lang.Object, java.lang.Object)
+     */
+    @Override
+    public boolean remove(final Object key, final Object value) {
+        return (value != null) && replaceIfSame(key, value, null);
+    }
+
+    /* (non-Javadoc)
+     * @see java.util.concurrent.ConcurrentMap#replace(java.lang.Object, java.lang.Object, java.lang.Object)
+     */
+    @Override
+    public boolean replace(final String key, final V oldValue,
+            final V newValue) {
+        check(oldValue);
+        check(newValue);
+        return replaceIfSame(key, oldValue, newValue);
+    }
+
+    /** Replaces the value, if it is equal to oldValue. */
+    private boolean replaceIfSame(final Object key, final Object oldValue,
+            final V newValue) {
+        final int index = stringnum.indexOf(key);
+        final AtomicReferenceArray<V> chunk = (index < 0) ? null
+                : chunk(index);
+        if (chunk == null) {
+            return false;
+        }
+        final int slot = index & CHUNK_MASK;
+        while (true) {
+            final V before = chunk.get(slot);
+            if ((before == null) || !before.equals(oldValue)) {
+                return false;
+            }
+            if (chunk.compareAndSet(slot, before, newValue)) {
+                count(before, newValue);
+                return true;
+            }
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see java.util.concurrent.ConcurrentMap#replace(java.lang.Object, java.lang.Object)
+     */
+    @Override
+    public V replace(final String key, final V value) {
+        check(value);
+        final int index = stringnum.indexOf(key);
+        final AtomicReferenceArray<V> chunk = (index < 0) ? null
+                : chunk(index);
+        if (chunk == null) {
+            return null;
+        }
+        final int slot = index & CHUNK_MASK;
+        while (true) {
+            final V before = chunk.get(slot);
+            if (before == null) {
+                return null;
+            }
+            if (chunk.compareAndSet(slot, before, value)) {
+                return before;
+            }
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see java.util.Map#clear()
+     */
+    @Override
+    public void clear() {
+        final AtomicReferenceArray<?>[] dir = chunks;
+        for (int c = 0; c < dir.length; c++) {
+            for (int i = 0; i < CHUNK_SIZE; i++) {
+                if (dir[c].getAndSet(i, null) != null) {
+                    size.decrementAndGet();
+                }
+            }
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see java.util.Map#entrySet()
+     */
+    @Override
+    public Set<Map.Entry<String, V>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new AbstractSet<Map.Entry<String, V>>() {
+                @Override
+                public Iterator<Map.Entry<String, V>> iterator() {
+                    return new Iterator<Map.Entry<String, V>>() {
+                        /** The index of the next entry. */
+                        private int next = -1;
+
+                        /** The value of the next entry. */
+                        private V nextValue;
+
+                        /** The key of the last entry. */
+                        private String last;
+
+                        {
+                            advance();
+                        }
+
+                        /** Finds the next non-null value. */
+                        private void advance() {
+                            nextValue = null;
+                            final int end = stringnum.size();
+                            while ((nextValue == null) && (++next < end)) {
+                                nextValue = valueAt(next);
+                            }
+                        }
+
+                        @Override
+                        public boolean hasNext() {
+                            return nextValue != null;
+                        }
+
+                        @Override
+                        public Map.Entry<String, V> next() {
+                            if (nextValue == null) {
+                                throw new NoSuchElementException();
+                            }
+                            last = stringnum.get(next);
+                            final Map.Entry<String, V> result = new SimpleEntry<String, V>(
+                                    last, nextValue) {
+                                private static final long serialVersionUID = 1L;
+
+                                @Override
+                                public V setValue(final V value) {
+                                    super.setValue(value);
+                                    return put(getKey(), value);
+                                }
+                            };
+                            advance();
+                            return result;
+                        }
+
+                        @Override
+                        public void remove() {
+                            if (last == null) {
+                                throw new IllegalStateException();
+                            }
+                            ConcurrentStringnumMap.this.remove(last);
+                            last = null;
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return ConcurrentStringnumMap.this.size();
+                }
+            };
+        }
+        return entrySet;
+    }
+}
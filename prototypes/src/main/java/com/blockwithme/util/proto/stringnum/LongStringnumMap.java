@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2014 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.util.proto.stringnum;
+
+import java.util.Arrays;
+
+/**
+ * A lightweight map from String to long, without boxing.
+ *
+ * See AbstractPrimitiveStringnumMap.
+ *
+ * It is NOT thread-safe.
+ *
+ * @author monster
+ */
+public final class LongStringnumMap extends AbstractPrimitiveStringnumMap {
+
+    /** Empty array. */
+    private static final long[] EMPTY = new long[0];
+
+    /** The values, per Stringnum index. */
+    private long[] values = EMPTY;
+
+    /** Constructor. */
+    public LongStringnumMap(final Stringnum stringnum) {
+        super(stringnum);
+    }
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.util.proto.stringnum.AbstractPrimitiveStringnumMap#grow(int)
+     */
+    @Override
+    protected void grow(final int newCapacity) {
+        values = Arrays.copyOf(values, newCapacity);
+    }
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.util.proto.stringnum.AbstractPrimitiveStringnumMap#clearValue(int)
+     */
+    @Override
+    protected void clearValue(final int index) {
+        values[index] = 0;
+    }
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.util.proto.stringnum.AbstractPrimitiveStringnumMap#appendValue(java.lang.StringBuilder, int)
+     */
+    @Override
+    protected void appendValue(final StringBuilder buf, final int index) {
+        buf.append(values[index]);
+    }
+
+    /**
+     * Returns the value at the given Stringnum index, or defaultValue if
+     * absent.
+     */
+    public long getAt(final int index, final long defaultValue) {
+        return containsIndex(index) ? values[index] : defaultValue;
+    }
+
+    /** Returns the value of the key, or defaultValue if absent. */
+    public long get(final String key, final long defaultValue) {
+        return getAt(indexOf(key), defaultValue);
+    }
+
+    /** Returns the value of the key, or 0 if absent. */
+    public long get(final String key) {
+        return getAt(indexOf(key), 0);
+    }
+
+    /** Sets the value of the key. Returns the previous value, or 0 if absent. */
+    public long put(final String key, final long value) {
+        final int index = indexFor(key);
+        final long result = values[index];
+        values[index] = value;
+        markPresent(index);
+        return result;
+    }
+
+    /**
+     * Adds delta to the value of the key (0 if absent), and returns the new
+     * value.
+     */
+    public long add(final String key, final long delta) {
+        final int index = indexFor(key);
+        final long result = values[index] + delta;
+        values[index] = result;
+        markPresent(index);
+        return result;
+    }
+
+    /** Adds 1 to the value of the key (0 if absent), and returns the new value. */
+    public long increment(final String key) {
+        return add(key, 1);
+    }
+}
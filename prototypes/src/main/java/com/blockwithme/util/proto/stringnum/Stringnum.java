@@ -20,6 +20,7 @@ import java.lang.reflect.Field;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
@@ -217,9 +218,11 @@ public class Stringnum implements List<String>, Set<String> {
      */
     public final int putString(final String str) {
         while (true) {
+            // before must be read *before* the lookup, otherwise a String
+            // added concurrently could be added a second time.
+            final String[] before = strings;
             int index = indexOf(str);
             if (index == -1) {
-                final String[] before = strings;
                 index = before.length;
                 final String[] after = Arrays.copyOf(before, index + 1);
                 final String hacked = putStringNoCheck(after, str, index);
@@ -274,7 +277,7 @@ public class Stringnum implements List<String>, Set<String> {
                 }
             }
             if (missing > 0) {
-                int index = strs.length;
+                int index = before.length;
                 final String[] after = Arrays.copyOf(before, index + missing);
                 for (int i = 0; i < toAdd.length; i++) {
                     final String str = toAdd[i];
@@ -313,6 +316,46 @@ public class Stringnum implements List<String>, Set<String> {
         return result;
     }
 
+    /**
+     * Restores, in one bulk operation, Strings previously returned by
+     * toArray(), such that every String gets back the same index. The
+     * Strings are given without the empty String, so strs[i] gets the index
+     * (i+1).
+     *
+     * This is only possible as long as nothing but the empty String was
+     * added yet.
+     *
+     * @throws java.lang.IllegalStateException if Strings were added already.
+     * @throws java.lang.IllegalArgumentException if a String is null, empty
+     *          or duplicated.
+     */
+    public final void restore(final String... strs) {
+        final HashSet<String> seen = new HashSet<>(strs.length * 2);
+        for (final String str : strs) {
+            if ((str == null) || str.isEmpty() || !seen.add(str)) {
+                throw new IllegalArgumentException("Bad or duplicate String: "
+                        + str);
+            }
+        }
+        final String[] before = strings;
+        if (before.length != 1) {
+            throw new IllegalStateException("Stringnum is not empty");
+        }
+        final String[] after = new String[strs.length + 1];
+        after[0] = before[0];
+        final String[] hacked = new String[strs.length];
+        for (int i = 0; i < strs.length; i++) {
+            hacked[i] = putStringNoCheck(after, strs[i], i + 1);
+        }
+        if (!replace(before, after)) {
+            throw new IllegalStateException("Stringnum is not empty");
+        }
+        onGrow(strs.length);
+        for (int i = 0; i < strs.length; i++) {
+            onNewString(strs[i], hacked[i]);
+        }
+    }
+
     /* (non-Javadoc)
      * @see java.util.List#isEmpty()
      */
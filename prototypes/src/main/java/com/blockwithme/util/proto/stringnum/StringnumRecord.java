@@ -0,0 +1,290 @@
+/*
+ * Copyright (C) 2014 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.util.proto.stringnum;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A record, mapping the names of a shared Stringnum "schema" to values.
+ *
+ * The values are stored in an array indexed by the Stringnum index, so a
+ * record is much smaller and faster then a HashMap&lt;String,Object&gt;,
+ * as long as most names of the schema are used. The schema can be shared by
+ * any number of records. Setting a value for an unknown name adds the name
+ * to the schema.
+ *
+ * Null values mean "absent". copy() is copy-on-write: the copy shares the
+ * values array, until either record is modified.
+ *
+ * The names returned by the record are the (hacked) Stringnum Strings; see
+ * Stringnum for the restrictions.
+ *
+ * It is NOT thread-safe.
+ *
+ * @author monster
+ */
+public final class StringnumRecord {
+
+    /** Empty array. */
+    private static final Object[] EMPTY = new Object[0];
+
+    /** The schema. */
+    private final Stringnum schema;
+
+    /** The values, per schema index. */
+    private Object[] values;
+
+    /** Is the values array shared with another record? */
+    private boolean shared;
+
+    /** Constructor. */
+    public StringnumRecord(final Stringnum theSchema) {
+        schema = Objects.requireNonNull(theSchema, "theSchema");
+        values = (theSchema.size() == 0) ? EMPTY
+                : new Object[theSchema.size()];
+    }
+
+    /** Creates a record from a map. Null values are ignored. */
+    public static StringnumRecord fromMap(final Stringnum schema,
+            final Map<String, ?> map) {
+        final StringnumRecord result = new StringnumRecord(schema);
+        result.putAll(map);
+        return result;
+    }
+
+    /**
+     * Creates a record from a MiniMap properties array. Null values are
+     * ignored.
+     */
+    public static StringnumRecord fromProperties(final Stringnum schema,
+            final Object[] properties) {
+        final StringnumRecord result = new StringnumRecord(schema);
+        result.setProperties(properties);
+        return result;
+    }
+
+    /** Returns the schema. */
+    public Stringnum schema() {
+        return schema;
+    }
+
+    /** Returns a copy-on-write copy of this record. */
+    public StringnumRecord copy() {
+        final StringnumRecord result = new StringnumRecord(schema, values);
+        if (values != EMPTY) {
+            shared = true;
+            result.shared = true;
+        }
+        return result;
+    }
+
+    /** Constructor, for copy(). */
+    private StringnumRecord(final Stringnum theSchema, final Object[] theValues) {
+        schema = theSchema;
+        values = theValues;
+    }
+
+    /** Returns the values array, ready for modification at index. */
+    private Object[] writable(final int index) {
+        if (shared || (index >= values.length)) {
+            final int length = Math.max(values.length,
+                    Math.max(index + 1, schema.size()));
+            values = Arrays.copyOf(values, length);
+            shared = false;
+        }
+        return values;
+    }
+
+    /** Returns the value at the given schema index, or null. */
+    @SuppressWarnings("unchecked")
+    public <E> E getAt(final int index) {
+        return ((index >= 0) && (index < values.length)) ? (E) values[index]
+                : null;
+    }
+
+    /** Returns the value of the given name, or null. */
+    public <E> E get(final String name) {
+        return getAt(schema.indexOf(name));
+    }
+
+    /**
+     * Sets the value at the given schema index. Null means "remove".
+     * Returns the previous value.
+     */
+    @SuppressWarnings("unchecked")
+    public <E> E setAt(final int index, final Object value) {
+        if ((index < 0) || (index >= schema.size())) {
+            throw new IndexOutOfBoundsException("index: " + index);
+        }
+        final Object before = getAt(index);
+        if (before != value) {
+            writable(index)[index] = value;
+        }
+        return (E) before;
+    }
+
+    /**
+     * Sets the value of the given name. Null means "remove". Returns the
+     * previous value.
+     */
+    public <E> E set(final String name, final Object value) {
+        final int index = (value == null) ? schema.indexOf(name) : schema
+                .putString(name);
+        return (index < 0) ? null : this.<E> setAt(index, value);
+    }
+
+    /** Returns the number of non-null values. */
+    public int size() {
+        int result = 0;
+        for (final Object value : values) {
+            if (value != null) {
+                result++;
+            }
+        }
+        return result;
+    }
+
+    /** Removes all values. */
+    public void clear() {
+        values = EMPTY;
+        shared = false;
+    }
+
+    /** Sets all the values of the map. Null values mean "remove". */
+    public void putAll(final Map<String, ?> map) {
+        schema.addAll(map.keySet());
+        final Object[] array = writable(schema.size() - 1);
+        for (final Map.Entry<String, ?> e : map.entrySet()) {
+            array[schema.indexOf(e.getKey())] = e.getValue();
+        }
+    }
+
+    /**
+     * Returns the non-null values as a map. The map uses the same schema,
+     * and is independent of this record.
+     */
+    public NonNullValueStringnumMap<Object> toMap() {
+        final NonNullValueStringnumMap<Object> result = new NonNullValueStringnumMap<>(
+                schema);
+        for (int i = 0; i < values.length; i++) {
+            final Object value = values[i];
+            if (value != null) {
+                result.put(schema.get(i), value);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Sets all the values of a MiniMap properties array (name, value, name,
+     * value, ...). Null values mean "remove".
+     */
+    public void setProperties(final Object[] properties) {
+        final int count = properties.length / 2;
+        for (int i = 0; i < count; i++) {
+            final String name = (String) properties[2 * i];
+            if (properties[2 * i + 1] != null) {
+                schema.putString(name);
+            }
+        }
+        final Object[] array = writable(schema.size() - 1);
+        for (int i = 0; i < count; i++) {
+            final int index = schema.indexOf((String) properties[2 * i]);
+            if (index >= 0) {
+                array[index] = properties[2 * i + 1];
+            }
+        }
+    }
+
+    /**
+     * Returns the non-null values as a MiniMap properties array (name,
+     * value, name, value, ...), in schema order.
+     */
+    public Object[] toProperties() {
+        final Object[] result = new Object[2 * size()];
+        int next = 0;
+        for (int i = 0; i < values.length; i++) {
+            final Object value = values[i];
+            if (value != null) {
+                result[next++] = schema.get(i);
+                result[next++] = value;
+            }
+        }
+        return result;
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#hashCode()
+     */
+    @Override
+    public int hashCode() {
+        int result = 1;
+        for (int i = 0; i < values.length; i++) {
+            final Object value = values[i];
+            if (value != null) {
+                result += i ^ value.hashCode();
+            }
+        }
+        return result;
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#equals(java.lang.Object)
+     */
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof StringnumRecord)) {
+            return false;
+        }
+        final StringnumRecord other = (StringnumRecord) obj;
+        if (schema != other.schema) {
+            return false;
+        }
+        if (values == other.values) {
+            return true;
+        }
+        final int length = Math.max(values.length, other.values.length);
+        for (int i = 0; i < length; i++) {
+            if (!Objects.equals(getAt(i), other.getAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        final StringBuilder buf = new StringBuilder("{");
+        for (int i = 0; i < values.length; i++) {
+            final Object value = values[i];
+            if (value != null) {
+                if (buf.length() > 1) {
+                    buf.append(", ");
+                }
+                buf.append(schema.get(i)).append('=').append(value);
+            }
+        }
+        return buf.append('}').toString();
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2014 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.util.proto;
+
+/**
+ * Compares allocate/use/release cycles of pooled GenericObjects with
+ * creating a new GenericObject every time.
+ *
+ * Just run main(); the results are printed in nanoseconds per cycle.
+ *
+ * @author monster
+ */
+public class GenericObjectPoolBenchmark {
+
+    /** Object capacity of the generic objects. */
+    private static final int OBJECTS = 8;
+
+    /** Data capacity of the generic objects. */
+    private static final int DATA = 32;
+
+    /** Number of generic objects in use at the same time. */
+    private static final int LIVE = 64;
+
+    /** Number of cycles per round. */
+    private static final int LOOPS = 5000000;
+
+    /** Number of rounds; the first ones are the warm-up. */
+    private static final int ROUNDS = 5;
+
+    /** Prevents dead-code elimination. */
+    private static long sink;
+
+    /** Uses a generic object. */
+    private static void use(final GenericObject obj, final int i) {
+        for (int d = 0; d < DATA; d++) {
+            obj.setLong(d, i + d);
+        }
+        obj.setObject(0, obj);
+        sink += obj.getLong(i % DATA);
+    }
+
+    /** With new GenericObject(). */
+    private static long allocate() {
+        final GenericObject[] live = new GenericObject[LIVE];
+        final long start = System.nanoTime();
+        for (int i = 0; i < LOOPS; i++) {
+            final GenericObject obj = new GenericObject(OBJECTS, DATA);
+            use(obj, i);
+            live[i % LIVE] = obj;
+        }
+        return System.nanoTime() - start;
+    }
+
+    /** With the pool. */
+    private static long pooled(final GenericObjectPool pool) {
+        final GenericObject[] live = new GenericObject[LIVE];
+        final long start = System.nanoTime();
+        for (int i = 0; i < LOOPS; i++) {
+            final GenericObject obj = pool.acquire();
+            use(obj, i);
+            final int slot = i % LIVE;
+            if (live[slot] != null) {
+                pool.release(live[slot]);
+            }
+            live[slot] = obj;
+        }
+        for (final GenericObject obj : live) {
+            pool.release(obj);
+        }
+        return System.nanoTime() - start;
+    }
+
+    /** Runs the benchmark. */
+    public static void main(final String[] args) {
+        final GenericObjectPool pool = new GenericObjectPool(OBJECTS, DATA,
+                2 * LIVE);
+        for (int round = 0; round < ROUNDS; round++) {
+            final double a = allocate() / (double) LOOPS;
+            final double p = pooled(pool) / (double) LOOPS;
+            System.out.println("Round " + round + ": new GenericObject()=" + a
+                    + "ns GenericObjectPool=" + p + "ns");
+        }
+        System.out.println(pool.getStatistics());
+        System.out.println(sink);
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2014 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.util.proto;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests GenericObjectPool.
+ *
+ * @author monster
+ */
+public class GenericObjectPoolTest {
+
+    @Test
+    public void testAcquireRelease() {
+        final GenericObjectPool pool = new GenericObjectPool(4, 16, 2);
+        final GenericObject a = pool.acquire();
+        assertTrue(a.getObjectsCapacity() >= 4);
+        assertTrue(a.getDataCapacity() >= 16);
+        a.setInt(3, 42).setObject(1, "x").setProperty("p", "v");
+        a.setDataIndex(5);
+        pool.release(a);
+        final GenericObject b = pool.acquire();
+        assertSame(a, b);
+        assertEquals(0, b.getInt(3));
+        assertNull(b.getObject(1));
+        assertNull(b.getProperty("p"));
+        assertEquals(0, b.getDataIndex());
+        final GenericObject c = pool.acquire();
+        final GenericObject d = pool.acquire();
+        pool.release(b);
+        pool.release(c);
+        pool.release(d);
+        final GenericObjectPool.Statistics stats = pool.getStatistics();
+        assertEquals(3, stats.created);
+        assertEquals(4, stats.acquired);
+        assertEquals(4, stats.released);
+        assertEquals(1, stats.discarded);
+        assertEquals(0, stats.outstanding());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testDoubleRelease() {
+        final GenericObjectPool pool = new GenericObjectPool(4, 4, 4);
+        final GenericObject a = pool.acquire();
+        pool.release(a);
+        pool.release(a);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testDoubleReleaseDiscarded() {
+        final GenericObjectPool pool = new GenericObjectPool(4, 4, 0);
+        final GenericObject a = pool.acquire();
+        pool.release(a);
+        pool.release(a);
+    }
+
+    @Test
+    public void testDeadThreadFreeList() throws InterruptedException {
+        final GenericObjectPool pool = new GenericObjectPool(4, 4, 4);
+        pool.release(pool.acquire());
+        final Thread thread = new Thread() {
+            @Override
+            public void run() {
+                pool.release(pool.acquire());
+                pool.release(pool.acquire());
+            }
+        };
+        thread.start();
+        thread.join();
+        final GenericObjectPool.Statistics stats = pool.getStatistics();
+        assertEquals(1, pool.freeListCount());
+        assertEquals(2, stats.created);
+        assertEquals(3, stats.acquired);
+        assertEquals(3, stats.released);
+        assertEquals(0, stats.outstanding());
+    }
+}
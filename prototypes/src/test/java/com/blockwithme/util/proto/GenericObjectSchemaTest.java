@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2014 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.util.proto;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Tests GenericObjectSchema.
+ *
+ * @author monster
+ */
+public class GenericObjectSchemaTest {
+
+    @Test
+    public void testPacking() {
+        final GenericObjectSchema.Builder builder = GenericObjectSchema
+                .builder();
+        for (int i = 0; i < 64; i++) {
+            builder.addBoolean("b" + i);
+        }
+        for (int i = 0; i < 8; i++) {
+            builder.addByte("y" + i);
+        }
+        final GenericObjectSchema schema = builder.build();
+        assertEquals(2, schema.dataSlots());
+        assertEquals(0, schema.objectSlots());
+        final GenericObject obj = schema.newInstance();
+        for (int i = 0; i < 64; i++) {
+            schema.booleanField("b" + i).set(obj, (i % 3) == 0);
+        }
+        for (int i = 0; i < 8; i++) {
+            schema.byteField("y" + i).set(obj, (byte) (i * 37 - 128));
+        }
+        for (int i = 0; i < 64; i++) {
+            assertEquals((i % 3) == 0, schema.booleanField("b" + i).get(obj));
+        }
+        for (int i = 0; i < 8; i++) {
+            assertEquals((byte) (i * 37 - 128), schema.byteField("y" + i)
+                    .get(obj));
+        }
+    }
+
+    @Test
+    public void testTypes() {
+        final GenericObjectSchema schema = GenericObjectSchema.builder()
+                .addBoolean("flag").addShort("s").addChar("c").addInt("i")
+                .addFloat("f").addLong("l").addDouble("d")
+                .addObject("name", String.class).build();
+        // long, double, int+float, short+char+boolean
+        assertEquals(4, schema.dataSlots());
+        assertEquals(1, schema.objectSlots());
+        final GenericObject obj = schema.newInstance();
+        schema.booleanField("flag").set(obj, true);
+        schema.shortField("s").set(obj, (short) -2);
+        schema.charField("c").set(obj, '\uFFFE');
+        schema.intField("i").set(obj, -3);
+        schema.floatField("f").set(obj, -1.5f);
+        schema.longField("l").set(obj, Long.MIN_VALUE);
+        schema.doubleField("d").set(obj, Math.PI);
+        schema.objectField("name", String.class).set(obj, "x");
+        assertEquals(true, schema.booleanField("flag").get(obj));
+        assertEquals(-2, schema.shortField("s").get(obj));
+        assertEquals('\uFFFE', schema.charField("c").get(obj));
+        assertEquals(-3, schema.intField("i").get(obj));
+        assertEquals(-1.5f, schema.floatField("f").get(obj), 0.0f);
+        assertEquals(Long.MIN_VALUE, schema.longField("l").get(obj));
+        assertEquals(Math.PI, schema.doubleField("d").get(obj), 0.0);
+        assertEquals("x", schema.objectField("name", String.class).get(obj));
+        schema.shortField("s").set(obj, (short) 5);
+        assertEquals(true, schema.booleanField("flag").get(obj));
+        assertEquals('\uFFFE', schema.charField("c").get(obj));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWrongType() {
+        GenericObjectSchema.builder().addInt("i").build().longField("i");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDuplicate() {
+        GenericObjectSchema.builder().addInt("i").addByte("i");
+    }
+}
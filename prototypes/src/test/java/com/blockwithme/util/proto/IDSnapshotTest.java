@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2014 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.util.proto;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.junit.Test;
+
+import com.blockwithme.util.proto.stringnum.Stringnum;
+import com.blockwithme.util.shared.converters.StringConverter;
+import com.blockwithme.util.shared.domains.GenericLazyDomain;
+
+/**
+ * Tests IDSnapshot.
+ *
+ * @author monster
+ */
+public class IDSnapshotTest {
+
+    @SuppressWarnings("unchecked")
+    private static final StringConverter<Object, String> CONV = (StringConverter<Object, String>) StringConverter.DEFAULT;
+
+    @Test
+    public void testStringnum() throws IOException {
+        final Stringnum sn = new Stringnum();
+        sn.putString("c");
+        sn.putString("a");
+        sn.putString("bé");
+        final File file = File.createTempFile("stringnum", ".ids");
+        try {
+            IDSnapshot.of(sn).write(file);
+            final Stringnum copy = new Stringnum();
+            IDSnapshot.read(file).restore(copy);
+            assertEquals(4, copy.size());
+            assertEquals(1, copy.indexOf("c"));
+            assertEquals(2, copy.indexOf("a"));
+            assertEquals(3, copy.indexOf("bé"));
+            assertEquals(4, copy.putString("d"));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testDomain() throws IOException {
+        final GenericLazyDomain<String> domain = new GenericLazyDomain<String>(
+                String.class, true, 0);
+        assertEquals(1, domain.getID("x"));
+        assertEquals(2, domain.getID("y"));
+        assertEquals(3, domain.getID(""));
+        final File file = File.createTempFile("domain", ".ids");
+        try {
+            IDSnapshot.of(domain, CONV, null).write(file);
+            final GenericLazyDomain<String> copy = new GenericLazyDomain<String>(
+                    String.class, true, 0);
+            IDSnapshot.read(file).restore(copy, CONV, null);
+            assertEquals(3, copy.size());
+            assertEquals("x", copy.getValue(1));
+            assertEquals("", copy.getValue(3));
+            assertEquals(2, copy.getID("y"));
+            assertEquals(4, copy.getID("z"));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testBadOffsets() throws IOException {
+        final File file = File.createTempFile("bad", ".ids");
+        try {
+            new IDSnapshot(1, new String[] { "ab", "c" }).write(file);
+            try (final RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                // Header is 16 bytes; swap the middle offset past the end.
+                raf.seek(16 + 4);
+                raf.writeInt(5);
+            }
+            try {
+                IDSnapshot.read(file);
+                fail("offsets not validated");
+            } catch (final IOException e) {
+                // expected
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testNonEmpty() {
+        final Stringnum sn = new Stringnum();
+        sn.putString("a");
+        new IDSnapshot(1, new String[] { "b" }).restore(sn);
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2014 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.util.proto;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests InternalizerImpl and StripedInternalizer.
+ *
+ * @author monster
+ */
+public class InternalizerTest {
+
+    /** Returns a new String instance, equal to value. */
+    private static String copy(final String value) {
+        return new String(value.toCharArray());
+    }
+
+    @Test
+    public void testInternalizerImpl() {
+        final InternalizerImpl<String> parent = new InternalizerImpl<>();
+        final String a = copy("a");
+        assertSame(a, parent.intern(a));
+        assertSame(a, parent.intern(copy("a")));
+        assertSame(a, parent.getInterned(copy("a")));
+        assertNull(parent.getInterned("b"));
+        final InternalizerImpl<String> child = new InternalizerImpl<>(parent);
+        assertSame(a, child.intern(copy("a")));
+        final String b = copy("b");
+        assertSame(b, child.intern(b));
+        assertNull(parent.getInterned(b));
+    }
+
+    @Test
+    public void testStrong() {
+        final StripedInternalizer<String> intern = new StripedInternalizer<>();
+        final String a = copy("a");
+        assertNull(intern.intern(null));
+        assertSame(a, intern.intern(a));
+        assertSame(a, intern.intern(a));
+        final String a2 = copy("a");
+        assertSame(a, intern.intern(a2));
+        assertSame(a, intern.getInterned(copy("a")));
+        assertEquals(1, intern.size());
+        final StripedInternalizer.Statistics stats = intern.getStatistics();
+        assertEquals(3, stats.requests);
+        assertEquals(1, stats.hits);
+        assertEquals(1, stats.size);
+        assertEquals(1 / 3.0, stats.dedupRatio(), 0.0001);
+        assertEquals(40, stats.memorySaved(40));
+        assertTrue(stats.report(40).contains("dedup ratio 33.3%"));
+        intern.clear();
+        assertEquals(0, intern.size());
+        assertNotSame(a, intern.intern(a2));
+    }
+
+    @Test
+    public void testParent() {
+        final InternalizerImpl<String> parent = new InternalizerImpl<>();
+        final String a = parent.intern(copy("a"));
+        final StripedInternalizer<String> intern = new StripedInternalizer<>(
+                false, 0, 4, parent);
+        assertSame(a, intern.intern(copy("a")));
+        assertSame(a, intern.getInterned(copy("a")));
+        assertEquals(0, intern.size());
+        assertEquals(1, intern.getStatistics().hits);
+    }
+
+    @Test
+    public void testBounded() {
+        final StripedInternalizer<String> intern = new StripedInternalizer<>(
+                false, 100, 1, null);
+        final String first = intern.intern(copy("0"));
+        for (int i = 1; i < 1000; i++) {
+            intern.intern(String.valueOf(i));
+        }
+        assertEquals(100, intern.size());
+        assertEquals(900, intern.getStatistics().evicted);
+        assertNotSame(first, intern.intern(copy("0")));
+        // Recently used instances are kept
+        final String last = intern.getInterned(copy("999"));
+        assertEquals("999", last);
+        assertSame(last, intern.intern(copy("999")));
+    }
+
+    @Test
+    public void testBoundedStripes() {
+        final StripedInternalizer<Integer> intern = StripedInternalizer
+                .bounded(64);
+        for (int i = 0; i < 10000; i++) {
+            intern.intern(i);
+        }
+        assertTrue(intern.size() <= 64);
+    }
+
+    @Test
+    public void testWeak() throws InterruptedException {
+        final StripedInternalizer<String> intern = StripedInternalizer.weak();
+        final List<String> kept = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            final String value = intern.intern(String.valueOf(i));
+            if (i % 10 == 0) {
+                kept.add(value);
+            }
+        }
+        for (int i = 0; (i < 50) && (intern.size() > kept.size()); i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertEquals(kept.size(), intern.size());
+        for (final String value : kept) {
+            assertSame(value, intern.intern(copy(value)));
+        }
+        int count = 0;
+        for (final String value : intern) {
+            assertTrue(kept.contains(value));
+            count++;
+        }
+        assertEquals(kept.size(), count);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWeakAndBounded() {
+        new StripedInternalizer<String>(true, 10, 1, null);
+    }
+}
@@ -31,6 +31,11 @@ import com.blockwithme.util.shared.annotations.KVMap;
  */
 @KVMap({ @E({ "abc", "123" }), @E({ "def", "4*5" }) })
 public class AnnTest {
+    /** Scripts with values outside of the Integer cache, or failing. */
+    @KVMap({ @E({ "big", "4000*5" }), @E({ "bad", "1/0" }) })
+    private static final class Other {
+    }
+
     @Test
     public void testIt() {
         final Map<String, Object[]> map = KVMapHelper
@@ -46,4 +51,34 @@ public class AnnTest {
         Assert.assertEquals(123, abc[0]);
         Assert.assertEquals(20, def[0]);
     }
+
+    @Test
+    public void testPrecompile() {
+        Assert.assertEquals(2, KVMapHelper.precompile(getClass()));
+        final Object def = KVMapHelper.findGroovyValue(getClass(), "def");
+        Assert.assertEquals(20, def);
+        Assert.assertSame(def, KVMapHelper.findGroovyValue(getClass(), "def"));
+    }
+
+    @Test
+    public void testPrecompileConstant() {
+        Assert.assertEquals(2, KVMapHelper.precompile(Other.class));
+        final Object big = KVMapHelper.findGroovyValue(Other.class, "big");
+        Assert.assertEquals(20000, big);
+        // Only the same instance if the value was cached
+        Assert.assertSame(big, KVMapHelper.findGroovyValue(Other.class, "big"));
+    }
+
+    @Test
+    public void testPrecompileFailure() {
+        Assert.assertEquals(2, KVMapHelper.precompile(Other.class));
+        for (int i = 0; i < 2; i++) {
+            try {
+                KVMapHelper.findGroovyValue(Other.class, "bad");
+                Assert.fail("1/0 evaluated");
+            } catch (final ArithmeticException e) {
+                // expected, each time
+            }
+        }
+    }
 }
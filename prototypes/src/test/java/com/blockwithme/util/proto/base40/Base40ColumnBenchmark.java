@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2014 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.blockwithme.util.proto.base40;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Compares the Base40Column bulk operations with doing the same one value
+ * at a time: decoding with toString(), prefix search by scanning the text,
+ * and export as 8 bytes per value.
+ *
+ * Just run main(); the results are printed in nanoseconds per value, or
+ * per search.
+ *
+ * @author monster
+ */
+public class Base40ColumnBenchmark {
+
+    private static final CharacterSet CS = Base40.getDefaultCharacterSet();
+
+    /** Number of values. */
+    private static final int VALUES = 100000;
+
+    /** Number of repetitions per round. */
+    private static final int LOOPS = 50;
+
+    /** Number of prefix searches per round. */
+    private static final int SEARCHES = 200;
+
+    /** Number of rounds; the first ones are the warm-up. */
+    private static final int ROUNDS = 5;
+
+    /** Prevents dead-code elimination. */
+    private static long sink;
+
+    private static long decodeOneByOne(final long[] values) {
+        final long start = System.nanoTime();
+        for (int l = 0; l < LOOPS; l++) {
+            for (final long value : values) {
+                sink += CS.toString(value, false, false).length();
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long decodeBulk(final Base40Column column) {
+        final int[] ends = new int[column.size()];
+        final long start = System.nanoTime();
+        for (int l = 0; l < LOOPS; l++) {
+            sink += column.decode(false, false, ends).length;
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long scan(final String[] texts, final String[] prefixes) {
+        final long start = System.nanoTime();
+        for (final String prefix : prefixes) {
+            for (final String text : texts) {
+                if (text.startsWith(prefix)) {
+                    sink++;
+                }
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long search(final Base40Column column,
+            final String[] prefixes) {
+        final long start = System.nanoTime();
+        for (final String prefix : prefixes) {
+            sink += column.countPrefix(prefix);
+        }
+        return System.nanoTime() - start;
+    }
+
+    public static void main(final String[] args) throws IOException {
+        final Random rnd = new Random(1);
+        final String[] words = { "player", "block", "chunk", "item", "mob",
+                "world", "entity", "tile" };
+        final Base40Column column = new Base40Column(CS, VALUES);
+        for (int i = 0; i < VALUES; i++) {
+            column.add(words[rnd.nextInt(words.length)] + "_"
+                    + rnd.nextInt(100000));
+        }
+        column.sort();
+        final long[] values = column.toLongArray();
+        final String[] texts = CS.toStrings(values, false, false);
+        final String[] prefixes = new String[SEARCHES];
+        for (int i = 0; i < SEARCHES; i++) {
+            final String text = texts[rnd.nextInt(VALUES)];
+            prefixes[i] = text.substring(0, 2 + rnd.nextInt(5));
+        }
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (final DataOutputStream out = new DataOutputStream(bytes)) {
+            column.writeTo(out);
+        }
+        System.out.printf("Export: %d bytes, %.2f bytes/value (vs 8)%n",
+                bytes.size(), bytes.size() / (double) VALUES);
+        for (int round = 0; round < ROUNDS; round++) {
+            System.out.println("Round " + round);
+            System.out.printf("toString() per value  %8.2f ns%n",
+                    decodeOneByOne(values) / (double) (LOOPS * VALUES));
+            System.out.printf("bulk decode per value %8.2f ns%n",
+                    decodeBulk(column) / (double) (LOOPS * VALUES));
+            System.out.printf("text scan per prefix  %8.0f ns%n",
+                    scan(texts, prefixes) / (double) SEARCHES);
+            System.out.printf("findPrefix per prefix %8.0f ns%n",
+                    search(column, prefixes) / (double) SEARCHES);
+        }
+        System.out.println(sink);
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright (C) 2014 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.blockwithme.util.proto.base40;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests Base40Column.
+ *
+ * @author monster
+ */
+public class Base40ColumnTest {
+
+    private static final CharacterSet CS = Base40.getDefaultCharacterSet();
+
+    /** Returns random values, of all text lengths. */
+    private static long[] randomValues(final Random rnd, final int count) {
+        final long[] result = new long[count];
+        for (int i = 0; i < count; i++) {
+            final int len = 1 + rnd.nextInt(CharacterSet.MAX_LEN);
+            result[i] = (len == CharacterSet.MAX_LEN) ? rnd.nextLong() | (1L << 63)
+                    : rnd.nextLong() >>> (64 - 5 * len);
+        }
+        return result;
+    }
+
+    private static Base40Column column(final String... texts) {
+        final Base40Column result = new Base40Column(CS);
+        for (final String text : texts) {
+            result.add(text);
+        }
+        return result;
+    }
+
+    @Test
+    public void testAddSort() {
+        final Base40Column column = column("b", "a", "ab", "a");
+        assertEquals(4, column.size());
+        assertFalse(column.isSorted());
+        assertEquals("ab", column.getString(2));
+        column.sort();
+        assertTrue(column.isSorted());
+        assertEquals("[a, a, b, ab]", column.toString());
+        column.sortDistinct();
+        assertEquals("[a, b, ab]", column.toString());
+        assertEquals(2, column.indexOf(CS.toLong("ab")));
+        assertEquals(-1, column.indexOf(CS.toLong("c")));
+        column.clear();
+        assertTrue(column.isEmpty());
+        assertTrue(column.isSorted());
+    }
+
+    @Test
+    public void testUnsignedSort() {
+        final Base40Column column = new Base40Column(CS, new long[] { -1L, 5,
+                Long.MIN_VALUE, Long.MAX_VALUE, 0 });
+        column.sort();
+        assertArrayEquals(new long[] { 0, 5, Long.MAX_VALUE, Long.MIN_VALUE,
+                -1L }, column.toLongArray());
+        assertEquals(3, column.indexOf(Long.MIN_VALUE));
+    }
+
+    @Test
+    public void testPrefixRanges() {
+        assertArrayEquals(new long[] { 0, -1L }, column().prefixRanges(""));
+        assertArrayEquals(new long[] { 0, 0 }, column().prefixRanges("0"));
+        assertArrayEquals(new long[0], column().prefixRanges("0a"));
+        final long[] ranges = column().prefixRanges("ab");
+        // 13 characters starting with "ab" do not fit in 64 bits.
+        assertEquals(2 * (CharacterSet.MAX_LEN - 2), ranges.length);
+        assertEquals(CS.toLong("ab"), ranges[0]);
+        assertEquals(CS.toLong("ab"), ranges[1]);
+        assertEquals(CS.toLong("ab0"), ranges[2]);
+        assertEquals(CS.toLong("ab'"), ranges[3]);
+    }
+
+    @Test
+    public void testFindPrefix() {
+        final Random rnd = new Random(42);
+        final Base40Column column = new Base40Column(CS, randomValues(rnd,
+                5000));
+        column.add("abc");
+        column.add("abcd");
+        column.add("ab");
+        column.add("a");
+        column.sort();
+        final String[] texts = CS.toStrings(column.toLongArray(), false,
+                false);
+        final String[] prefixes = new String[200];
+        for (int i = 0; i < prefixes.length; i++) {
+            final String text = texts[rnd.nextInt(texts.length)];
+            prefixes[i] = text.substring(0, 1 + rnd.nextInt(text.length()));
+        }
+        prefixes[0] = "ab";
+        prefixes[1] = "";
+        prefixes[2] = "1";
+        for (final String prefix : prefixes) {
+            int expected = 0;
+            for (final String text : texts) {
+                if (text.startsWith(prefix)) {
+                    expected++;
+                }
+            }
+            assertEquals(prefix, expected, column.countPrefix(prefix));
+            final int[] ranges = column.findPrefix(prefix);
+            for (int r = 0; r < ranges.length; r += 2) {
+                for (int i = ranges[r]; i < ranges[r + 1]; i++) {
+                    assertTrue(prefix, texts[i].startsWith(prefix));
+                }
+            }
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testFindPrefixUnsorted() {
+        column("b", "a").findPrefix("a");
+    }
+
+    @Test
+    public void testDecode() {
+        final Random rnd = new Random(7);
+        final Base40Column column = new Base40Column(CS, randomValues(rnd,
+                1000));
+        final int[] ends = new int[column.size()];
+        final char[] chars = column.decode(false, true, ends);
+        assertEquals(chars.length, ends[ends.length - 1]);
+        for (int i = 0; i < column.size(); i++) {
+            final int start = (i == 0) ? 0 : ends[i - 1];
+            assertEquals(CS.toString(column.get(i), false, true), new String(
+                    chars, start, ends[i] - start));
+        }
+        final char[] fixed = column.decode(true, false, ends);
+        assertEquals(CharacterSet.MAX_LEN * column.size(), fixed.length);
+        assertEquals("a|b0", column("a", "b0").appendTo(new StringBuilder(),
+                "|", false).toString());
+    }
+
+    private static Base40Column roundTrip(final Base40Column column)
+            throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (final DataOutputStream out = new DataOutputStream(bytes)) {
+            column.writeTo(out);
+        }
+        try (final DataInputStream in = new DataInputStream(
+                new ByteArrayInputStream(bytes.toByteArray()))) {
+            final Base40Column result = Base40Column.readFrom(in, CS);
+            assertEquals(-1, in.read());
+            return result;
+        }
+    }
+
+    @Test
+    public void testExport() throws IOException {
+        final Random rnd = new Random(3);
+        final Base40Column column = new Base40Column(CS, randomValues(rnd,
+                2000));
+        column.add(0);
+        column.add(-1L);
+        column.add(Long.MIN_VALUE);
+        Base40Column copy = roundTrip(column);
+        assertEquals(column, copy);
+        assertFalse(copy.isSorted());
+        column.sort();
+        copy = roundTrip(column);
+        assertEquals(column, copy);
+        assertTrue(copy.isSorted());
+        assertEquals(new Base40Column(CS), roundTrip(new Base40Column(CS)));
+    }
+
+    @Test
+    public void testCompression() throws IOException {
+        // Short sorted names compress well
+        final Base40Column column = new Base40Column(CS);
+        for (int i = 0; i < 1000; i++) {
+            column.add("name" + i);
+        }
+        column.sort();
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (final DataOutputStream out = new DataOutputStream(bytes)) {
+            column.writeTo(out);
+        }
+        assertTrue(String.valueOf(bytes.size()), bytes.size() < 4 * 1000);
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2014 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.util.proto.base40;
+
+import java.util.Random;
+
+/**
+ * Compares the allocation-free CharacterSet conversions with the way they
+ * used to be done (case conversion and copy of the whole input, and
+ * trimmed copy of a MAX_LEN array for output).
+ *
+ * Just run main(); the results are printed in nanoseconds per conversion.
+ *
+ * @author monster
+ */
+public class CharacterSetBenchmark {
+
+    private static final CharacterSet CS = Base40.getDefaultCharacterSet();
+
+    /** Number of distinct values. */
+    private static final int VALUES = 4096;
+
+    /** Number of conversions per round. */
+    private static final int LOOPS = 5000000;
+
+    /** Number of rounds; the first ones are the warm-up. */
+    private static final int ROUNDS = 5;
+
+    /** Prevents dead-code elimination. */
+    private static long sink;
+
+    /** The old toLong(String). */
+    private static long oldToLong(final String value) {
+        final String cased = value.toLowerCase();
+        final char[] chars = cased.toCharArray();
+        long v = 0;
+        for (int i = 0; i < chars.length; i++) {
+            v = v * CharacterSet.RADIX + CS.indexOf(chars[i]);
+        }
+        return v;
+    }
+
+    /** The old toString(long), for non-negative values. */
+    private static String oldToString(long value) {
+        final char[] chars = CS.getCharacterSet();
+        final char[] array = new char[CharacterSet.MAX_LEN];
+        int i = CharacterSet.MAX_LEN - 1;
+        while (value != 0) {
+            array[i--] = chars[(int) (value % CharacterSet.RADIX)];
+            value /= CharacterSet.RADIX;
+        }
+        int len = CharacterSet.MAX_LEN - i - 1;
+        if (len == 0) {
+            len = 1;
+        }
+        while (i >= 0) {
+            array[i--] = '0';
+        }
+        return new String(java.util.Arrays.copyOfRange(array,
+                CharacterSet.MAX_LEN - len, CharacterSet.MAX_LEN));
+    }
+
+    private static long parseOld(final String[] texts) {
+        final long start = System.nanoTime();
+        for (int i = 0; i < LOOPS; i++) {
+            sink += oldToLong(texts[i % VALUES]);
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long parseNew(final String[] texts) {
+        final long start = System.nanoTime();
+        for (int i = 0; i < LOOPS; i++) {
+            final String text = texts[i % VALUES];
+            sink += CS.toLong(text, 0, text.length());
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long formatOld(final long[] values) {
+        final long start = System.nanoTime();
+        for (int i = 0; i < LOOPS; i++) {
+            sink += oldToString(values[i % VALUES]).length();
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long formatString(final long[] values) {
+        final long start = System.nanoTime();
+        for (int i = 0; i < LOOPS; i++) {
+            sink += CS.toString(values[i % VALUES], false, false).length();
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long formatBuilder(final long[] values) {
+        final StringBuilder buf = new StringBuilder(64);
+        final long start = System.nanoTime();
+        for (int i = 0; i < LOOPS; i++) {
+            buf.setLength(0);
+            sink += CS.appendTo(values[i % VALUES], false, false, buf)
+                    .length();
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long formatArray(final long[] values) {
+        final char[] array = new char[CharacterSet.MAX_LEN];
+        final long start = System.nanoTime();
+        for (int i = 0; i < LOOPS; i++) {
+            sink += CS.appendTo(values[i % VALUES], false, false, array, 0);
+        }
+        return System.nanoTime() - start;
+    }
+
+    /** Prints one result. */
+    private static void print(final String what, final long nanos) {
+        System.out.println(what + ": " + (nanos / (double) LOOPS) + " ns/op");
+    }
+
+    /** Just run it. */
+    public static void main(final String[] args) {
+        final Random rnd = new Random(42);
+        final long[] values = new long[VALUES];
+        for (int i = 0; i < VALUES; i++) {
+            // 1 to 12 characters
+            values[i] = rnd.nextLong() >>> (2 + 5 * rnd.nextInt(12));
+        }
+        final String[] texts = CS.toStrings(values, false, true);
+        for (int round = 0; round < ROUNDS; round++) {
+            System.out.println("Round " + round);
+            print("  old toLong(String)         ", parseOld(texts));
+            print("  toLong(CharSequence,int,int)", parseNew(texts));
+            print("  old toString(long)         ", formatOld(values));
+            print("  toString(long)             ", formatString(values));
+            print("  appendTo(StringBuilder)    ", formatBuilder(values));
+            print("  appendTo(char[])           ", formatArray(values));
+        }
+        System.out.println("(" + sink + ")");
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2014 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.util.proto.base40;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests CharacterSet.
+ *
+ * @author monster
+ */
+public class CharacterSetTest {
+
+    private static final CharacterSet CS = Base40.getDefaultCharacterSet();
+
+    /** The reference implementation, using BigInteger. */
+    private static String reference(final CharacterSet cs, final long value) {
+        final char[] chars = cs.getCharacterSet();
+        final BigInteger radix = BigInteger.valueOf(CharacterSet.RADIX);
+        BigInteger n = Base40.toUnsigned(value);
+        final StringBuilder buf = new StringBuilder();
+        do {
+            buf.append(chars[n.mod(radix).intValue()]);
+            n = n.divide(radix);
+        } while (n.signum() != 0);
+        return buf.reverse().toString();
+    }
+
+    @Test
+    public void testToString() {
+        final Random rnd = new Random(7);
+        final StringBuilder buf = new StringBuilder();
+        final char[] array = new char[CharacterSet.MAX_LEN + 2];
+        for (int i = 0; i < 100000; i++) {
+            long value = rnd.nextLong();
+            value >>>= rnd.nextInt(64);
+            final String expected = reference(CS, value);
+            assertEquals(expected, CS.toString(value, false, false));
+            assertEquals(expected.length(), CharacterSet.length(value));
+            buf.setLength(0);
+            buf.append('/');
+            assertEquals("/" + expected,
+                    CS.appendTo(value, false, false, buf).toString());
+            final int len = CS.appendTo(value, true, false, array, 2);
+            assertEquals(CharacterSet.MAX_LEN, len);
+            assertEquals(expected, new String(array, 2, len).replaceFirst(
+                    "^0+(?=.)", ""));
+            assertEquals(value, CS.toLong(expected));
+        }
+        assertEquals("0", CS.toString(0, false, false));
+        assertEquals("0000000000000", CS.toString(0, true, false));
+    }
+
+    @Test
+    public void testCapitalize() {
+        assertEquals("Ab_Cd", CS.toString(CS.toLong("ab_cd"), false, true));
+        final StringBuilder buf = new StringBuilder("x");
+        assertEquals("xAb_Cd",
+                CS.appendTo(CS.toLong("ab_cd"), false, true, buf).toString());
+    }
+
+    @Test
+    public void testToLong() {
+        final String text = "xx/Hello.World/yy";
+        assertEquals(CS.toLong("hello.world"), CS.toLong(text, 3, 14));
+        assertEquals(CS.toLong("HELLO"), CS.toLong("hello"));
+        assertEquals(0, CS.toLong(text, 2, 2));
+        final CharacterSet upper = CharacterSet.newUpperDefaultCharacterSet();
+        assertEquals(upper.toLong("HELLO"), upper.toLong("hello"));
+        assertEquals(CS.toLong("hello"), upper.toLong("hello"));
+        assertEquals(CS.toLong("a_"), CS.toLongLenient("A?"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadChar() {
+        CS.toLong("a b", 0, 3);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTooLong() {
+        CS.toLong("abcdefghijklmn", 0, 14);
+    }
+
+    @Test
+    public void testBulk() {
+        final long[] values = { 0, 1, -1, CS.toLong("abc"), Long.MAX_VALUE };
+        final String[] strings = CS.toStrings(values, false, false);
+        assertEquals("abc", strings[3]);
+        assertArrayEquals(values, CS.toLongs(strings));
+        assertEquals(CharacterSet.MAX_LEN,
+                CS.toStrings(values, true, false)[3].length());
+    }
+}
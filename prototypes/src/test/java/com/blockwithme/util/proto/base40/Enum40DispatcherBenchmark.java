@@ -0,0 +1,264 @@
+/*
+ * Copyright (C) 2014 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.blockwithme.util.proto.base40;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+/**
+ * Compares Enum40.handle(), which is megamorphic as soon as more than two
+ * constants go through the call site, with Enum40LongDispatcher, for 2, 8
+ * and 64 constants. The dispatcher is used both through handle(), and
+ * through it's target(), stored in a static final field.
+ *
+ * Every constant needs it's own class and handler method, so the code of
+ * each case is generated, compiled and loaded at startup. This needs a JDK.
+ * Each case gets it's own call sites, so the cases do not pollute each
+ * other's profiles. Since an Enum40 class is limited to 62 constants, the
+ * 64 constants are split between a root class and a child class.
+ *
+ * Just run main(); the results are printed in nanoseconds per call.
+ *
+ * @author monster
+ */
+public class Enum40DispatcherBenchmark {
+
+    /** Number of calls per round. */
+    private static final int LOOPS = 10000000;
+
+    /** Number of rounds; the first ones are the warm-up. */
+    private static final int ROUNDS = 5;
+
+    /** Size of the random sequence of constants. */
+    private static final int SEQUENCE = 1024;
+
+    /** The numbers of constants. */
+    private static final int[] COUNTS = { 2, 8, 64 };
+
+    /** Maximum number of constants in the root class. */
+    private static final int ROOT_MAX = 32;
+
+    /** The generated code. */
+    private static final class Source {
+        /** The text. */
+        private final StringBuilder text = new StringBuilder();
+
+        /** Appends a line, replacing # with the constant index. */
+        Source line(final String line, final int index) {
+            text.append(line.replace("#", String.valueOf(index))).append('\n');
+            return this;
+        }
+
+        /** Appends a line. */
+        Source line(final String line) {
+            return line(line, -1);
+        }
+
+        /* (non-Javadoc)
+         * @see java.lang.Object#toString()
+         */
+        @Override
+        public String toString() {
+            return text.toString();
+        }
+    }
+
+    /** Generates the constants of one class, from first to end (exclusive). */
+    private static void constants(final Source src, final String type,
+            final String handler, final int first, final int end) {
+        for (int i = first; i < end; i++) {
+            src.line("public static final " + type + " C# = new " + type
+                    + "() {", i);
+            src.line("private static final long serialVersionUID = 1L;");
+            src.line("@Override public long handle("
+                    + "final Enum40LongHandler<E> h, final long in) {");
+            src.line("return ((" + handler + ") h).c#(in);", i);
+            src.line("}};");
+        }
+    }
+
+    /**
+     * Generates the benchmark for count constants. The class has a static
+     * run() method, that returns the nanoseconds taken by handle(), the
+     * dispatcher and the target.
+     */
+    private static String generate(final String name, final int count) {
+        final int root = Math.min(count, ROOT_MAX);
+        final boolean child = (count > root);
+        final String handlerType = child ? "ChildHandler" : "Handler";
+        final Source src = new Source();
+        src.line("import " + Enum40.class.getName() + ";");
+        src.line("import " + Enum40LongHandler.class.getName() + ";");
+        src.line("import " + Enum40LongDispatcher.class.getName() + ";");
+        src.line("import java.lang.invoke.MethodHandle;");
+        src.line("public class " + name + " {");
+        src.line("public interface Handler extends Enum40LongHandler<E> {");
+        for (int i = 0; i < root; i++) {
+            src.line("long c#(long in);", i);
+        }
+        src.line("}");
+        if (child) {
+            src.line("public interface ChildHandler extends Handler {");
+            for (int i = root; i < count; i++) {
+                src.line("long c#(long in);", i);
+            }
+            src.line("}");
+        }
+        src.line("public static class E extends Enum40<E> {");
+        src.line("private static final long serialVersionUID = 1L;");
+        constants(src, "E", "Handler", 0, root);
+        src.line("private E() { this(E.class); }");
+        src.line("protected E(final Class<? extends E> type) "
+                + "{ super(type); }");
+        src.line("protected E(final Class<? extends E> type, "
+                + "final long base40) { super(type, base40); }");
+        src.line("@Override protected E newInstance(final long base40) "
+                + "{ return new E(E.class, base40); }");
+        src.line("}");
+        if (child) {
+            src.line("public static class Child extends E {");
+            src.line("private static final long serialVersionUID = 1L;");
+            constants(src, "Child", "ChildHandler", root, count);
+            src.line("private Child() { super(Child.class); }");
+            src.line("@Override protected E newInstance(final long base40) "
+                    + "{ return new E(Child.class, base40); }");
+            src.line("}");
+        }
+        src.line("public static final class Impl implements " + handlerType
+                + " {");
+        src.line("@Override public long unknown(final E unknown, "
+                + "final long in) { return in; }");
+        for (int i = 0; i < count; i++) {
+            src.line("@Override public long c#(final long in) "
+                    + "{ return in + #; }", i);
+        }
+        src.line("}");
+        src.line("private static final E[] ALL = new E[" + count + "];");
+        src.line("static {");
+        for (int i = 0; i < count; i++) {
+            src.line("ALL[#] = " + ((i < root) ? "E" : "Child") + ".C#;", i);
+        }
+        src.line("}");
+        src.line("private static final Enum40LongDispatcher<E> DISPATCHER = "
+                + "Enum40LongDispatcher.of(E.class, " + handlerType
+                + ".class);");
+        src.line("private static final MethodHandle DISPATCH = "
+                + "DISPATCHER.target();");
+        src.line("private static final E[] VALUES = new E[" + SEQUENCE + "];");
+        src.line("static {");
+        src.line("final java.util.Random rnd = new java.util.Random("
+                + count + ");");
+        src.line("for (int i = 0; i < VALUES.length; i++) {");
+        src.line("VALUES[i] = ALL[rnd.nextInt(ALL.length)];");
+        src.line("}}");
+        src.line("public static long sink;");
+        src.line("public static long[] run() throws Throwable {");
+        src.line("final Impl handler = new Impl();");
+        src.line("final long[] result = new long[3];");
+        src.line("long sum = 0;");
+        src.line("long start = System.nanoTime();");
+        src.line("for (int i = 0; i < " + LOOPS + "; i++) {");
+        src.line("sum += VALUES[i & " + (SEQUENCE - 1)
+                + "].handle(handler, i);");
+        src.line("}");
+        src.line("result[0] = System.nanoTime() - start;");
+        src.line("start = System.nanoTime();");
+        src.line("for (int i = 0; i < " + LOOPS + "; i++) {");
+        src.line("sum += DISPATCHER.handle(handler, VALUES[i & "
+                + (SEQUENCE - 1) + "], i);");
+        src.line("}");
+        src.line("result[1] = System.nanoTime() - start;");
+        src.line("start = System.nanoTime();");
+        src.line("for (int i = 0; i < " + LOOPS + "; i++) {");
+        src.line("sum += (long) DISPATCH.invokeExact((Enum40LongHandler<?>) "
+                + "handler, (Enum40<?>) VALUES[i & " + (SEQUENCE - 1)
+                + "], (long) i);");
+        src.line("}");
+        src.line("result[2] = System.nanoTime() - start;");
+        src.line("sink += sum;");
+        src.line("return result;");
+        src.line("}}");
+        return src.toString();
+    }
+
+    /** Generates and compiles the benchmarks, and returns their run(). */
+    private static Method[] compile() throws IOException,
+            ClassNotFoundException, NoSuchMethodException {
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            throw new IllegalStateException("This benchmark needs a JDK");
+        }
+        final File dir = File.createTempFile("bench", "");
+        if (!dir.delete() || !dir.mkdir()) {
+            throw new IOException("Cannot create " + dir);
+        }
+        final String[] args = new String[COUNTS.length + 4];
+        args[0] = "-d";
+        args[1] = dir.getPath();
+        args[2] = "-cp";
+        args[3] = System.getProperty("java.class.path");
+        for (int i = 0; i < COUNTS.length; i++) {
+            final String name = "Enum40Dispatch" + COUNTS[i];
+            final File file = new File(dir, name + ".java");
+            try (final Writer out = new OutputStreamWriter(
+                    new FileOutputStream(file), StandardCharsets.UTF_8)) {
+                out.write(generate(name, COUNTS[i]));
+            }
+            args[i + 4] = file.getPath();
+        }
+        if (compiler.run(null, null, null, args) != 0) {
+            throw new IllegalStateException("Compilation failed in " + dir);
+        }
+        @SuppressWarnings("resource")
+        final ClassLoader loader = new URLClassLoader(
+                new URL[] { dir.toURI().toURL() },
+                Enum40DispatcherBenchmark.class.getClassLoader());
+        final Method[] result = new Method[COUNTS.length];
+        for (int i = 0; i < COUNTS.length; i++) {
+            result[i] = loader.loadClass("Enum40Dispatch" + COUNTS[i])
+                    .getMethod("run");
+        }
+        return result;
+    }
+
+    private static void print(final String name, final long nanos) {
+        System.out.printf("%-24s %6.2f ns%n", name, nanos / (double) LOOPS);
+    }
+
+    public static void main(final String[] args) throws Throwable {
+        final Method[] runs = compile();
+        for (int round = 0; round < ROUNDS; round++) {
+            System.out.println("Round " + round);
+            for (int i = 0; i < runs.length; i++) {
+                final long[] nanos = (long[]) runs[i].invoke(null);
+                print("handle() " + COUNTS[i], nanos[0]);
+                print("dispatcher " + COUNTS[i], nanos[1]);
+                print("target " + COUNTS[i], nanos[2]);
+            }
+        }
+    }
+}
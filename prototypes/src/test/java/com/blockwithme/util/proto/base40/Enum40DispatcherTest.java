@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2014 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.blockwithme.util.proto.base40;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+/**
+ * Tests Enum40LongDispatcher and Enum40ObjectDispatcher.
+ *
+ * @author monster
+ */
+public class Enum40DispatcherTest {
+
+    public static class Op extends Enum40<Op> {
+        private static final long serialVersionUID = 1L;
+        public static final Op Add = new Op();
+        public static final Op Neg = new Op();
+        /** Has no handler method. */
+        public static final Op Nop = new Op();
+
+        private Op() {
+            this(Op.class);
+        }
+
+        protected Op(final Class<? extends Op> type) {
+            super(type);
+        }
+    }
+
+    public static class ChildOp extends Op {
+        private static final long serialVersionUID = 1L;
+        public static final ChildOp Twice = new ChildOp();
+
+        private ChildOp() {
+            super(ChildOp.class);
+        }
+    }
+
+    public interface OpLongHandler extends Enum40LongHandler<Op> {
+        long add(long input);
+
+        long neg(long input);
+    }
+
+    public interface ChildOpLongHandler extends OpLongHandler {
+        long twice(long input);
+    }
+
+    public interface OpObjectHandler<INPUT, OUTPUT> extends
+            Enum40ObjectHandler<Op, INPUT, OUTPUT> {
+        OUTPUT add(INPUT input);
+
+        OUTPUT neg(INPUT input);
+    }
+
+    public interface AmbiguousHandler extends Enum40LongHandler<Op> {
+        long add(long input);
+
+        long ADD(long input);
+    }
+
+    private static final class LongHandler implements ChildOpLongHandler {
+        @Override
+        public long unknown(final Op unknow, final long input) {
+            return 42;
+        }
+
+        @Override
+        public long add(final long input) {
+            return input + 1;
+        }
+
+        @Override
+        public long neg(final long input) {
+            return -input;
+        }
+
+        @Override
+        public long twice(final long input) {
+            return input * 2;
+        }
+    }
+
+    private static final class ObjectHandler implements
+            OpObjectHandler<String, String> {
+        @Override
+        public String unknown(final Op unknow, final String input) {
+            return "?" + unknow;
+        }
+
+        @Override
+        public String add(final String input) {
+            return input + "+";
+        }
+
+        @Override
+        public String neg(final String input) {
+            return "-" + input;
+        }
+    }
+
+    /** Makes sure the child constants exist. */
+    private static Op twice() {
+        return ChildOp.Twice;
+    }
+
+    @Test
+    public void testLong() {
+        final Op twice = twice();
+        final Enum40LongDispatcher<Op> dispatcher = Enum40LongDispatcher.of(
+                Op.class, ChildOpLongHandler.class);
+        assertEquals(3, dispatcher.methods());
+        assertSame(Op.class, dispatcher.enumClass());
+        final LongHandler handler = new LongHandler();
+        assertEquals(6, dispatcher.handle(handler, Op.Add, 5));
+        assertEquals(-5, dispatcher.handle(handler, Op.Neg, 5));
+        assertEquals(10, dispatcher.handle(handler, twice, 5));
+        // No handler method: falls back to Enum40.handle()
+        assertEquals(42, dispatcher.handle(handler, Op.Nop, 5));
+    }
+
+    @Test
+    public void testParentHandler() {
+        twice();
+        final Enum40LongDispatcher<Op> dispatcher = Enum40LongDispatcher.of(
+                Op.class, OpLongHandler.class);
+        assertEquals(2, dispatcher.methods());
+        assertEquals(42, dispatcher.handle(new LongHandler(), ChildOp.Twice, 5));
+    }
+
+    @Test
+    public void testObject() {
+        final Enum40ObjectDispatcher<Op> dispatcher = Enum40ObjectDispatcher
+                .of(Op.class, OpObjectHandler.class);
+        assertEquals(2, dispatcher.methods());
+        final ObjectHandler handler = new ObjectHandler();
+        assertEquals("x+", dispatcher.handle(handler, Op.Add, "x"));
+        assertEquals("-x", dispatcher.handle(handler, Op.Neg, "x"));
+        assertEquals("?Nop", dispatcher.handle(handler, Op.Nop, "x"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAmbiguous() {
+        Enum40LongDispatcher.of(Op.class, AmbiguousHandler.class);
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2014 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.blockwithme.util.proto.base40;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.blockwithme.util.proto.base40.Base40Test.TestEnum40;
+import com.blockwithme.util.proto.base40.Base40Test.TestEnum40Child;
+import com.blockwithme.util.proto.base40.Base40Test.TestEnum40GrandChild;
+
+/**
+ * Tests Enum40Map.
+ *
+ * @author monster
+ */
+public class Enum40MapTest {
+
+    @Test
+    public void testPutGet() {
+        final Enum40Map<TestEnum40, String> map = new Enum40Map<>(
+                TestEnum40.class);
+        assertTrue(map.isEmpty());
+        assertNull(map.put(TestEnum40.One, "one"));
+        assertEquals("one", map.put(TestEnum40.One, "1"));
+        assertNull(map.put(TestEnum40GrandChild.Six, null));
+        assertEquals(2, map.size());
+        assertEquals("1", map.get(TestEnum40.One));
+        assertNull(map.get(TestEnum40.Two));
+        assertNull(map.get("One"));
+        assertTrue(map.containsKey(TestEnum40GrandChild.Six));
+        assertFalse(map.containsKey(TestEnum40Child.Three));
+        assertTrue(map.containsValue(null));
+        assertTrue(map.containsValue("1"));
+        assertFalse(map.containsValue("one"));
+        assertEquals("1", map.remove(TestEnum40.One));
+        assertNull(map.remove(TestEnum40.One));
+        assertNull(map.remove(TestEnum40GrandChild.Six));
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    public void testEquivalence() {
+        final Enum40Map<TestEnum40, Integer> map = new Enum40Map<>(
+                TestEnum40.class);
+        final Map<TestEnum40, Integer> expected = new HashMap<>();
+        final TestEnum40[] keys = { TestEnum40Child.Four, TestEnum40.Two,
+                TestEnum40GrandChild.Five };
+        for (int i = 0; i < keys.length; i++) {
+            map.put(keys[i], i);
+            expected.put(keys[i], i);
+        }
+        assertEquals(expected, map);
+        assertEquals(map, expected);
+        assertEquals(expected.hashCode(), map.hashCode());
+        assertEquals(map, new Enum40Map<>(TestEnum40.class, expected));
+        assertEquals(map, map.clone());
+    }
+
+    @Test
+    public void testIterator() {
+        final Enum40Map<TestEnum40, Integer> map = new Enum40Map<>(
+                TestEnum40.class);
+        map.put(TestEnum40GrandChild.Five, 5);
+        map.put(TestEnum40.One, 1);
+        map.put(TestEnum40Child.Three, 3);
+        int last = 0;
+        int sum = 0;
+        final Iterator<Map.Entry<TestEnum40, Integer>> it = map.entrySet()
+                .iterator();
+        while (it.hasNext()) {
+            final Map.Entry<TestEnum40, Integer> e = it.next();
+            assertTrue(e.getKey().ordinal() > last);
+            last = e.getKey().ordinal();
+            sum += e.getValue();
+            if (e.getKey() == TestEnum40.One) {
+                assertEquals(Integer.valueOf(1), e.setValue(10));
+            } else if (e.getKey() == TestEnum40Child.Three) {
+                it.remove();
+            }
+        }
+        assertEquals(9, sum);
+        assertEquals(2, map.size());
+        assertEquals(Integer.valueOf(10), map.get(TestEnum40.One));
+        assertFalse(map.containsKey(TestEnum40Child.Three));
+    }
+}
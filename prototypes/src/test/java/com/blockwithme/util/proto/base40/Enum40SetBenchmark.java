@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2014 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.blockwithme.util.proto.base40;
+
+import java.util.EnumMap;
+import java.util.EnumSet;
+
+/**
+ * Compares Enum40Set and Enum40Map with java.util.EnumSet and EnumMap.
+ *
+ * Just run main(); the results are printed in nanoseconds per operation.
+ *
+ * @author monster
+ */
+public class Enum40SetBenchmark {
+
+    /** The Java enum. */
+    public enum Color {
+        Red, Green, Blue, Cyan, Magenta, Yellow, Black, White
+    }
+
+    /** The equivalent Enum40. */
+    public static class Color40 extends Enum40<Color40> {
+        private static final long serialVersionUID = 1L;
+        public static final Color40 Red = new Color40();
+        public static final Color40 Green = new Color40();
+        public static final Color40 Blue = new Color40();
+        public static final Color40 Cyan = new Color40();
+        public static final Color40 Magenta = new Color40();
+        public static final Color40 Yellow = new Color40();
+        public static final Color40 Black = new Color40();
+        public static final Color40 White = new Color40();
+
+        private Color40() {
+            super(Color40.class);
+        }
+    }
+
+    /** Number of operations per round. */
+    private static final int LOOPS = 10000000;
+
+    /** Number of rounds; the first ones are the warm-up. */
+    private static final int ROUNDS = 5;
+
+    /** Prevents dead-code elimination. */
+    private static long sink;
+
+    private static long setOps(final EnumSet<Color> set, final Color[] values) {
+        final long start = System.nanoTime();
+        for (int i = 0; i < LOOPS; i++) {
+            final Color e = values[i & 7];
+            if (!set.add(e)) {
+                set.remove(e);
+            }
+        }
+        sink += set.size();
+        return System.nanoTime() - start;
+    }
+
+    private static long setOps(final Enum40Set<Color40> set,
+            final Color40[] values) {
+        final long start = System.nanoTime();
+        for (int i = 0; i < LOOPS; i++) {
+            final Color40 e = values[i & 7];
+            if (!set.add(e)) {
+                set.remove(e);
+            }
+        }
+        sink += set.size();
+        return System.nanoTime() - start;
+    }
+
+    private static long iterate(final EnumSet<Color> set) {
+        final long start = System.nanoTime();
+        for (int i = 0; i < LOOPS / 8; i++) {
+            for (final Color e : set) {
+                sink += e.ordinal();
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long iterate(final Enum40Set<Color40> set) {
+        final long start = System.nanoTime();
+        for (int i = 0; i < LOOPS / 8; i++) {
+            for (final Color40 e : set) {
+                sink += e.ordinal();
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long mapOps(final EnumMap<Color, Integer> map,
+            final Color[] values) {
+        final Integer one = 1;
+        final long start = System.nanoTime();
+        for (int i = 0; i < LOOPS; i++) {
+            final Color e = values[i & 7];
+            if (map.put(e, one) != null) {
+                map.remove(e);
+            }
+        }
+        sink += map.size();
+        return System.nanoTime() - start;
+    }
+
+    private static long mapOps(final Enum40Map<Color40, Integer> map,
+            final Color40[] values) {
+        final Integer one = 1;
+        final long start = System.nanoTime();
+        for (int i = 0; i < LOOPS; i++) {
+            final Color40 e = values[i & 7];
+            if (map.put(e, one) != null) {
+                map.remove(e);
+            }
+        }
+        sink += map.size();
+        return System.nanoTime() - start;
+    }
+
+    private static void print(final String name, final long nanos,
+            final int ops) {
+        System.out.printf("%-28s %6.2f ns%n", name, nanos / (double) ops);
+    }
+
+    public static void main(final String[] args) {
+        final Color[] colors = Color.values();
+        final Color40[] colors40 = Enum40.values(Color40.class);
+        final EnumSet<Color> all = EnumSet.allOf(Color.class);
+        final Enum40Set<Color40> all40 = Enum40Set.allOf(Color40.class);
+        for (int round = 0; round < ROUNDS; round++) {
+            System.out.println("Round " + round);
+            print("EnumSet add/remove", setOps(EnumSet.noneOf(Color.class),
+                    colors), LOOPS);
+            print("Enum40Set add/remove",
+                    setOps(Enum40Set.noneOf(Color40.class), colors40), LOOPS);
+            print("EnumSet iterate", iterate(all), LOOPS);
+            print("Enum40Set iterate", iterate(all40), LOOPS);
+            print("EnumMap put/remove", mapOps(
+                    new EnumMap<Color, Integer>(Color.class), colors), LOOPS);
+            print("Enum40Map put/remove", mapOps(
+                    new Enum40Map<Color40, Integer>(Color40.class), colors40),
+                    LOOPS);
+        }
+        System.out.println(sink);
+    }
+}
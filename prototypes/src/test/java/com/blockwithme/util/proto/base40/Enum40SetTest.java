@@ -0,0 +1,189 @@
+/*
+ * Copyright (C) 2014 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.blockwithme.util.proto.base40;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.blockwithme.util.proto.base40.Base40Test.TestEnum40;
+import com.blockwithme.util.proto.base40.Base40Test.TestEnum40Child;
+import com.blockwithme.util.proto.base40.Base40Test.TestEnum40GrandChild;
+
+/**
+ * Tests Enum40Set, and Enum40SetConverter.
+ *
+ * @author monster
+ */
+public class Enum40SetTest {
+
+    /** Child "enumerations" do not match the generic signatures. */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static Enum40SetConverter<Object, TestEnum40> converter(
+            final Class type) {
+        return new Enum40SetConverter(type);
+    }
+
+    /** An Enum40 type without constants, that only exists to be extended. */
+    public static class NoValues extends Enum40<NoValues> {
+        private static final long serialVersionUID = 1L;
+
+        protected NoValues(final Class<? extends NoValues> type) {
+            super(type);
+        }
+    }
+
+    /** Makes sure all the test classes are initialized. */
+    private static Enum40Set<TestEnum40> all() {
+        assertEquals(TestEnum40Child.class,
+                TestEnum40Child.Three.getDeclaringClass());
+        assertEquals(TestEnum40GrandChild.class,
+                TestEnum40GrandChild.Five.getDeclaringClass());
+        return Enum40Set.allOf(TestEnum40.class);
+    }
+
+    @Test
+    public void testAddRemove() {
+        final Enum40Set<TestEnum40> set = Enum40Set.noneOf(TestEnum40.class);
+        assertTrue(set.isEmpty());
+        assertTrue(set.add(TestEnum40.One));
+        assertFalse(set.add(TestEnum40.One));
+        assertTrue(set.add(TestEnum40Child.Four));
+        assertEquals(2, set.size());
+        assertTrue(set.contains(TestEnum40.One));
+        assertTrue(set.contains(TestEnum40Child.Four));
+        assertFalse(set.contains(TestEnum40.Two));
+        assertFalse(set.contains(TestEnum40GrandChild.Six));
+        assertFalse(set.contains("One"));
+        assertTrue(set.remove(TestEnum40.One));
+        assertFalse(set.remove(TestEnum40.One));
+        assertEquals(1, set.size());
+        set.clear();
+        assertTrue(set.isEmpty());
+    }
+
+    @Test
+    public void testAllOf() {
+        final Enum40Set<TestEnum40> all = all();
+        assertEquals(6, all.size());
+        final Set<TestEnum40> expected = new HashSet<TestEnum40>(Arrays.asList(
+                TestEnum40.One, TestEnum40.Two, TestEnum40Child.Three,
+                TestEnum40Child.Four, TestEnum40GrandChild.Five,
+                TestEnum40GrandChild.Six));
+        assertEquals(expected, all);
+        assertEquals(all, expected);
+        assertEquals(expected.hashCode(), all.hashCode());
+    }
+
+    @Test
+    public void testIterator() {
+        final Enum40Set<TestEnum40> all = all();
+        int last = 0;
+        int count = 0;
+        final Iterator<TestEnum40> it = all.iterator();
+        while (it.hasNext()) {
+            final TestEnum40 e = it.next();
+            assertTrue(e.ordinal() > last);
+            last = e.ordinal();
+            count++;
+            if (e == TestEnum40Child.Three) {
+                it.remove();
+            }
+        }
+        assertEquals(6, count);
+        assertEquals(5, all.size());
+        assertFalse(all.contains(TestEnum40Child.Three));
+    }
+
+    @Test
+    public void testBulk() {
+        final Enum40Set<TestEnum40> a = Enum40Set.of(TestEnum40.class,
+                TestEnum40.One, TestEnum40Child.Three);
+        final Enum40Set<TestEnum40> b = Enum40Set.of(TestEnum40.class,
+                TestEnum40.One, TestEnum40GrandChild.Five);
+        final Enum40Set<TestEnum40> union = a.clone();
+        assertTrue(union.addAll(b));
+        assertEquals(3, union.size());
+        assertTrue(union.containsAll(a));
+        assertTrue(union.containsAll(b));
+        assertFalse(a.containsAll(union));
+        final Enum40Set<TestEnum40> inter = a.clone();
+        assertTrue(inter.retainAll(b));
+        assertEquals(Enum40Set.of(TestEnum40.class, TestEnum40.One), inter);
+        final Enum40Set<TestEnum40> diff = a.clone();
+        assertTrue(diff.removeAll(b));
+        assertFalse(diff.removeAll(b));
+        assertEquals(
+                Enum40Set.of(TestEnum40.class, (TestEnum40) TestEnum40Child.Three),
+                diff);
+        all();
+        final Enum40Set<TestEnum40> complement = Enum40Set.complementOf(a);
+        assertEquals(4, complement.size());
+        assertFalse(complement.contains(TestEnum40.One));
+        assertEquals(a, Enum40Set.copyOf(TestEnum40.class,
+                new HashSet<TestEnum40>(a)));
+    }
+
+    @Test
+    public void testConverter() {
+        final Enum40SetConverter<Object, TestEnum40> conv = new Enum40SetConverter<>(
+                TestEnum40.class);
+        final Enum40Set<TestEnum40> set = Enum40Set.of(TestEnum40.class,
+                TestEnum40.One);
+        final long bits = conv.fromObject(null, set);
+        assertEquals(1L << TestEnum40.One.ordinal(), bits);
+        assertEquals(set, conv.toObject(null, bits));
+        assertEquals(0L, conv.fromObject(null, null));
+        assertTrue(conv.toObject(null, 0L).isEmpty());
+        assertEquals(TestEnum40.class.getName(), conv.getConfiguration());
+
+        final Enum40SetConverter<Object, TestEnum40> childConv = converter(TestEnum40Child.class);
+        final Enum40Set<TestEnum40> children = Enum40Set.of(TestEnum40.class,
+                TestEnum40Child.Three, TestEnum40Child.Four);
+        final long childBits = childConv.fromObject(null, children);
+        assertEquals(2, Long.bitCount(childBits));
+        final Enum40Set<TestEnum40> back = childConv.toObject(null, childBits);
+        assertEquals(children, back);
+        assertSame(TestEnum40Child.class, back.elementType());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConverterWrongType() {
+        new Enum40SetConverter<Object, TestEnum40>(TestEnum40.class)
+                .fromObject(null, Enum40Set.of(TestEnum40.class,
+                        TestEnum40.One, TestEnum40Child.Three));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConverterNoValues() {
+        new Enum40SetConverter<Object, NoValues>(NoValues.class);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConverterBadBits() {
+        new Enum40SetConverter<Object, TestEnum40>(TestEnum40.class).toObject(
+                null, 1L << 40);
+    }
+}
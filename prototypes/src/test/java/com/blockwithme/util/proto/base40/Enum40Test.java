@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2014 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.util.proto.base40;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import com.blockwithme.util.proto.base40.Base40Test.TestEnum40;
+import com.blockwithme.util.proto.base40.Base40Test.TestEnum40Child;
+import com.blockwithme.util.proto.base40.Base40Test.TestEnum40GrandChild;
+
+/**
+ * Tests the Enum40 lookups.
+ *
+ * @author monster
+ */
+public class Enum40Test {
+
+    /** Child "enumerations" do not match the generic signatures. */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static Object[] values(final Class type) {
+        return Enum40.values(type);
+    }
+
+    /** Child "enumerations" do not match the generic signatures. */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static Object valueOf(final Class type, final String name) {
+        return Enum40.valueOf(type, name);
+    }
+
+    /** Child "enumerations" do not match the generic signatures. */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static Object valueOf(final Class type, final long base40) {
+        return Enum40.valueOf(type, base40);
+    }
+
+    @Test
+    public void testValues() {
+        final TestEnum40[] values = Enum40.values(TestEnum40.class);
+        assertArrayEquals(new TestEnum40[] { TestEnum40.Two, TestEnum40.One },
+                values);
+        values[0] = null;
+        assertNotSame(values, Enum40.values(TestEnum40.class));
+        assertSame(TestEnum40.Two, Enum40.values(TestEnum40.class)[0]);
+        assertArrayEquals(new TestEnum40Child[] { TestEnum40Child.Three,
+                TestEnum40Child.Four }, values(TestEnum40Child.class));
+        assertEquals(2, values(TestEnum40GrandChild.class).length);
+    }
+
+    @Test
+    public void testValueOfName() {
+        assertSame(TestEnum40.One, Enum40.valueOf(TestEnum40.class, "One"));
+        assertSame(TestEnum40Child.Four,
+                valueOf(TestEnum40Child.class, "Four"));
+        assertSame(TestEnum40GrandChild.Six,
+                valueOf(TestEnum40GrandChild.class, "Six"));
+    }
+
+    @Test
+    public void testValueOfBase40() {
+        for (final TestEnum40 e : Enum40.values(TestEnum40.class)) {
+            assertSame(e, Enum40.valueOf(TestEnum40.class, e.asLong()));
+        }
+        assertSame(TestEnum40Child.Three,
+                valueOf(TestEnum40Child.class, TestEnum40Child.Three.asLong()));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testUnknownName() {
+        Enum40.valueOf(TestEnum40.class, "Three");
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testNullName() {
+        Enum40.valueOf(TestEnum40.class, (String) null);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testUnknownBase40() {
+        Enum40.valueOf(TestEnum40.class, TestEnum40Child.Three.asLong());
+    }
+
+    @Test
+    public void testSerialization() throws Exception {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (final ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(TestEnum40.One);
+            out.writeObject(TestEnum40Child.Three);
+        }
+        try (final ObjectInputStream in = new ObjectInputStream(
+                new ByteArrayInputStream(bytes.toByteArray()))) {
+            assertSame(TestEnum40.One, in.readObject());
+            assertSame(TestEnum40Child.Three, in.readObject());
+        }
+    }
+
+    @Test
+    public void testOrdinalTableCached() {
+        final Enum40<?>[] table = Enum40.ordinalTable(TestEnum40.class,
+                TestEnum40GrandChild.Six.ordinal());
+        assertSame(TestEnum40GrandChild.Six,
+                table[TestEnum40GrandChild.Six.ordinal()]);
+        // Nothing was registered since, so the table is not rebuilt.
+        assertSame(table, Enum40.ordinalTable(TestEnum40.class, -1));
+        assertSame(table, Enum40.ordinalTable(TestEnum40.class, table.length));
+        assertSame(table, Enum40.ordinalTable(TestEnum40.class, 0));
+    }
+
+    @Test
+    public void testConcurrentLookups() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final Callable<Integer> task = new Callable<Integer>() {
+                @Override
+                public Integer call() {
+                    int found = 0;
+                    for (int i = 0; i < 10000; i++) {
+                        if (Enum40.valueOf(TestEnum40.class,
+                                TestEnum40.One.asLong()) == TestEnum40.One) {
+                            found++;
+                        }
+                        if (Enum40.valueOf(TestEnum40.class, "Two") == TestEnum40.Two) {
+                            found++;
+                        }
+                    }
+                    return found;
+                }
+            };
+            final Future<?>[] futures = new Future<?>[4];
+            for (int i = 0; i < futures.length; i++) {
+                futures[i] = executor.submit(task);
+            }
+            for (final Future<?> future : futures) {
+                assertEquals(20000, future.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
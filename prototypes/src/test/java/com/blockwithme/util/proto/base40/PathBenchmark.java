@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2014 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.util.proto.base40;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * Measures Path parsing, and Path as HashMap/TreeMap key. The TreeMap is
+ * measured both with the natural (numeric) order, and with NAME_ORDER (the
+ * old, textual, order). The text of the paths as HashMap key serves as
+ * reference.
+ *
+ * Just run main(); the results are printed in nanoseconds per operation.
+ *
+ * @author monster
+ */
+public class PathBenchmark {
+
+    private static final CharacterSet CS = Base40.getDefaultCharacterSet();
+
+    /** Number of distinct paths. */
+    private static final int PATHS = 10000;
+
+    /** Number of operations per round. */
+    private static final int LOOPS = 2000000;
+
+    /** Number of rounds; the first ones are the warm-up. */
+    private static final int ROUNDS = 5;
+
+    /** Prevents dead-code elimination. */
+    private static long sink;
+
+    /** Creates random paths text. */
+    private static String[] texts() {
+        final Random rnd = new Random(42);
+        final String[] result = new String[PATHS];
+        final StringBuilder buf = new StringBuilder();
+        for (int i = 0; i < PATHS; i++) {
+            buf.setLength(0);
+            final int depth = 2 + rnd.nextInt(4);
+            for (int d = 0; d < depth; d++) {
+                if (d != 0) {
+                    buf.append(Path.SEP);
+                }
+                final int len = 1 + rnd.nextInt(10);
+                for (int c = 0; c < len; c++) {
+                    buf.append((char) ('a' + rnd.nextInt(26)));
+                }
+            }
+            result[i] = buf.toString();
+        }
+        return result;
+    }
+
+    /** Parses with String.split(), as Path.fromString() used to. */
+    private static long split(final String[] texts) {
+        final long start = System.nanoTime();
+        for (int i = 0; i < LOOPS; i++) {
+            final String[] parts = texts[i % PATHS].split(String
+                    .valueOf(Path.SEP));
+            Path result = new Path(CS, parts[0]);
+            for (int p = 1; p < parts.length; p++) {
+                result = new Path(CS, result, parts[p]);
+            }
+            sink += result.asLong();
+        }
+        return System.nanoTime() - start;
+    }
+
+    /** Parses with Path.fromString(). */
+    private static long parse(final String[] texts) {
+        final long start = System.nanoTime();
+        for (int i = 0; i < LOOPS; i++) {
+            sink += Path.fromString(CS, texts[i % PATHS]).asLong();
+        }
+        return System.nanoTime() - start;
+    }
+
+    /** Lookups in a Map, with equal (but not identical) keys. */
+    private static <K> long lookup(final Map<K, Integer> map, final K[] keys) {
+        final long start = System.nanoTime();
+        for (int i = 0; i < LOOPS; i++) {
+            sink += map.get(keys[i % PATHS]);
+        }
+        return System.nanoTime() - start;
+    }
+
+    /** Fills a map with the keys. */
+    private static <K> Map<K, Integer> fill(final Map<K, Integer> map,
+            final K[] keys) {
+        for (int i = 0; i < keys.length; i++) {
+            map.put(keys[i], i);
+        }
+        return map;
+    }
+
+    /** Prints one result. */
+    private static void print(final String what, final long nanos) {
+        System.out.println(what + ": " + (nanos / (double) LOOPS) + " ns/op");
+    }
+
+    /** Just run it. */
+    public static void main(final String[] args) {
+        final String[] texts = texts();
+        final String[] textKeys = new String[PATHS];
+        final Path[] keys = new Path[PATHS];
+        final Path[] lookupKeys = new Path[PATHS];
+        for (int i = 0; i < PATHS; i++) {
+            textKeys[i] = new String(texts[i].toCharArray());
+            keys[i] = Path.fromString(CS, texts[i]);
+            lookupKeys[i] = Path.fromString(CS, texts[i]);
+            // Like the old Path, cache the textual form.
+            lookupKeys[i].name();
+        }
+        final Map<String, Integer> stringMap = fill(
+                new HashMap<String, Integer>(), texts);
+        final Map<Path, Integer> hashMap = fill(new HashMap<Path, Integer>(),
+                keys);
+        final Map<Path, Integer> treeMap = fill(new TreeMap<Path, Integer>(),
+                keys);
+        final Map<Path, Integer> nameTreeMap = fill(new TreeMap<Path, Integer>(
+                Path.NAME_ORDER), keys);
+        for (int round = 0; round < ROUNDS; round++) {
+            System.out.println("Round " + round);
+            print("  String.split() parse", split(texts));
+            print("  Path.fromString()    ", parse(texts));
+            print("  HashMap<String>      ", lookup(stringMap, textKeys));
+            print("  HashMap<Path>        ", lookup(hashMap, lookupKeys));
+            print("  TreeMap<Path>        ", lookup(treeMap, lookupKeys));
+            print("  TreeMap<Path> by name", lookup(nameTreeMap, lookupKeys));
+        }
+        System.out.println("(" + sink + ")");
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2014 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.util.proto.base40;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests Path.
+ *
+ * @author monster
+ */
+public class PathTest {
+
+    private static final CharacterSet CS = Base40.getDefaultCharacterSet();
+
+    private static Path path(final String text) {
+        return Path.fromString(CS, text);
+    }
+
+    @Test
+    public void testFromString() {
+        assertNull(path(""));
+        assertNull(path(null));
+        final Path p = path("Abc/d_e/0/x");
+        assertEquals(4, p.depth());
+        assertEquals("abc/d_e/0/x", p.name());
+        assertEquals(CS.toLong("abc"), p.segment(0));
+        assertEquals(CS.toLong("x"), p.asLong());
+        assertArrayEquals(new long[] { CS.toLong("abc"), CS.toLong("d_e"), 0,
+                CS.toLong("x") }, p.toLongArray());
+        assertEquals("abc/d_e/0/x", path("abc/d_e/0/x/").name());
+        assertEquals("a/0/b", path("a//b").name());
+        assertEquals("0/a", path("/a").name());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTooLong() {
+        path("a/abcdefghijklmn");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadChar() {
+        path("a/b c");
+    }
+
+    @Test
+    public void testParentChain() {
+        final Path a = new Path(CS, "a");
+        final Path ab = new Path(CS, a, "b");
+        final Path abc = new Path(CS, ab, "c");
+        assertEquals(path("a/b/c"), abc);
+        assertEquals(path("a/b/c").hashCode(), abc.hashCode());
+        assertEquals(ab, abc.parent());
+        assertEquals(a, path("a/b/c").parent().parent());
+        assertNull(a.parent());
+        assertEquals("a/b/c", abc.toString());
+        assertEquals(3 * CharacterSet.MAX_LEN + 2, abc.toFixedString()
+                .length());
+    }
+
+    @Test
+    public void testEquals() {
+        assertEquals(path("a/b"), path("A/B"));
+        assertNotEquals(path("a/b"), path("a/b/c"));
+        assertNotEquals(path("a/b"), path("a/c"));
+        assertNotEquals(path("a/b"), Path.fromString(
+                CharacterSet.newUpperDefaultCharacterSet(), "a/b"));
+    }
+
+    @Test
+    public void testCompareTo() {
+        assertEquals(0, path("a/b").compareTo(path("a/b")));
+        assertTrue(path("a").compareTo(path("a/b")) < 0);
+        assertTrue(path("a/b").compareTo(path("a")) > 0);
+        assertTrue(path("a/b").compareTo(path("a/c")) < 0);
+        assertTrue(path("b").compareTo(path("a/c")) > 0);
+        // Shorter segments first
+        assertTrue(path("z").compareTo(path("10")) < 0);
+        // Unsigned
+        final Path big = Path.fromLongArray(CS, new long[] { -1L });
+        assertTrue(path("zzz").compareTo(big) < 0);
+        assertTrue(big.compareTo(path("zzz")) > 0);
+    }
+
+    @Test
+    public void testFixedNameOrder() {
+        // The natural order matches the order of the fixed-size names,
+        // when only digits and letters are used.
+        final List<Path> paths = new ArrayList<>();
+        for (final String s : new String[] { "z", "10", "a/b", "a", "abc",
+                "0zz/a", "b/a", "ab" }) {
+            paths.add(path(s));
+        }
+        final List<Path> byName = new ArrayList<>(paths);
+        Collections.sort(paths);
+        Collections.sort(byName, new java.util.Comparator<Path>() {
+            @Override
+            public int compare(final Path o1, final Path o2) {
+                return o1.toFixedString().compareTo(o2.toFixedString());
+            }
+        });
+        assertEquals(byName, paths);
+    }
+
+    @Test
+    public void testNameOrder() {
+        assertTrue(Path.NAME_ORDER.compare(path("z"), path("10")) > 0);
+        assertTrue(Path.NAME_ORDER.compare(path("a"), path("a/b")) < 0);
+        assertEquals(0, Path.NAME_ORDER.compare(path("a/b"), path("a/b")));
+    }
+}
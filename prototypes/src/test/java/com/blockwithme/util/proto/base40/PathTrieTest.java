@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2014 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.util.proto.base40;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests PathTrie.
+ *
+ * @author monster
+ */
+public class PathTrieTest {
+
+    private static final CharacterSet CS = Base40.getDefaultCharacterSet();
+
+    @Test
+    public void testIntern() {
+        final PathTrie trie = new PathTrie(CS);
+        final Path abc = Path.fromString(CS, "a/b/c");
+        final Path interned = trie.intern(abc);
+        assertEquals(abc, interned);
+        assertSame(interned, trie.intern(Path.fromString(CS, "A/B/C")));
+        assertSame(interned, trie.intern("a/b/c"));
+        assertSame(interned.parent(), trie.intern("a/b"));
+        assertSame(interned.parent().parent(), trie.find(new Path(CS, "a")));
+        assertTrue(trie.isCanonical(interned));
+        assertFalse(trie.isCanonical(abc));
+        assertEquals(3, trie.size());
+        assertNull(trie.find(Path.fromString(CS, "a/x")));
+    }
+
+    @Test
+    public void testChild() {
+        final PathTrie trie = new PathTrie(CS);
+        final Path a = trie.child(null, "a");
+        final Path ab = trie.child(a, "b");
+        assertSame(ab, trie.intern("a/b"));
+        assertSame(a, ab.parent());
+        assertSame(ab, trie.child(new Path(CS, "a"), CS.toLong("b")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOtherCharacterSet() {
+        new PathTrie(CS).intern(Path.fromString(
+                CharacterSet.newUpperIDCharacterSet(), "a"));
+    }
+
+    @Test
+    public void testShared() {
+        assertSame(PathTrie.of(CS),
+                PathTrie.of(CharacterSet.newLowerDefaultCharacterSet()));
+    }
+
+    @Test
+    public void testSubtree() {
+        final PathTrie trie = new PathTrie(CS);
+        final List<Path> keep = new ArrayList<>();
+        for (final String s : new String[] { "b/x", "a/c", "a/b/d", "a/b",
+                "a", "c", "10" }) {
+            keep.add(trie.intern(s));
+        }
+        assertEquals(Arrays.asList(trie.intern("a"), trie.intern("a/b"),
+                trie.intern("a/b/d"), trie.intern("a/c")),
+                trie.subtree(new Path(CS, "a")));
+        assertEquals(Arrays.asList(trie.intern("a"), trie.intern("b"),
+                trie.intern("c"), trie.intern("10")), trie.children(null));
+        assertEquals(Arrays.asList(trie.intern("a/b"), trie.intern("a/c")),
+                trie.children(new Path(CS, "a")));
+        assertEquals(8, trie.subtree(null).size());
+        assertTrue(trie.subtree(new Path(CS, "zz")).isEmpty());
+    }
+
+    @Test
+    public void testManyChildren() {
+        final PathTrie trie = new PathTrie(CS);
+        final Path root = trie.intern("root");
+        final List<Path> keep = new ArrayList<>();
+        final Random rnd = new Random(1);
+        for (int i = 0; i < 1000; i++) {
+            keep.add(trie.child(root, rnd.nextLong()));
+        }
+        for (final Path p : keep) {
+            assertSame(p, trie.find(Path.fromLongArray(CS, p.toLongArray())));
+        }
+        final List<Path> children = trie.children(root);
+        assertEquals(1000, children.size());
+        for (int i = 1; i < children.size(); i++) {
+            assertTrue(children.get(i - 1).compareTo(children.get(i)) < 0);
+        }
+    }
+
+    @Test
+    public void testEviction() throws InterruptedException {
+        final PathTrie trie = new PathTrie(CS);
+        final Path kept = trie.intern("a/b");
+        for (int i = 0; i < 1000; i++) {
+            trie.intern("a/x" + i + "/y");
+        }
+        trie.intern("c/d");
+        for (int i = 0; (i < 50) && (trie.size() > 2); i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertEquals(2, trie.size());
+        assertSame(kept, trie.intern("a/b"));
+        assertEquals(Arrays.asList(kept.parent(), kept),
+                trie.subtree(null));
+        assertEquals("c/d", trie.intern("c/d").name());
+        assertEquals(4, trie.size());
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2014 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.util.proto.properties.impl;
+
+import com.blockwithme.util.proto.properties.Properties;
+import com.blockwithme.util.proto.properties.PropertyPath;
+
+/**
+ * Compares deep path lookups, as they were done before PropertyPath (split
+ * and validate every segment, on every lookup), with the cached String
+ * lookups, and with the PropertyPath lookups.
+ *
+ * Just run main(); the results are printed in nanoseconds per lookup.
+ *
+ * @author monster
+ */
+public class FindBenchmark {
+
+    /** Depth of the looked up paths. */
+    private static final int DEPTH = 8;
+
+    /** Number of distinct looked up paths. */
+    private static final int PATHS = 256;
+
+    /** Number of lookups per round. */
+    private static final int LOOPS = 2000000;
+
+    /** Number of rounds; the first ones are the warm-up. */
+    private static final int ROUNDS = 5;
+
+    /** Prevents dead-code elimination. */
+    private static int sink;
+
+    /** The lookup, as done before PropertyPath. */
+    private static Object legacyFind(final Properties<Long> start,
+            final String path) {
+        Properties<?> prop = start;
+        String relPath = path;
+        while (true) {
+            final int index = relPath.indexOf(Properties.SEPATATOR);
+            if (index < 0) {
+                PropertiesImpl.checkLocalKey(relPath, "path component", path);
+                return prop.findRaw(relPath, true);
+            }
+            final String head = relPath.substring(0, index);
+            PropertiesImpl.checkLocalKey(head, "path component", path);
+            final Object value = prop.findRaw(head, true);
+            if (value == null) {
+                return null;
+            }
+            prop = (Properties<?>) value;
+            relPath = relPath.substring(index + 1);
+        }
+    }
+
+    /** Builds a tree with PATHS leaves, each at DEPTH. */
+    private static PropertiesImpl<Long> build(final String[] paths) {
+        final GraphImpl<Long> graph = new GraphImpl<>(0L);
+        final PropertiesImpl<Long> root = new PropertiesImpl<>(graph, "root");
+        graph.root(root);
+        for (int p = 0; p < PATHS; p++) {
+            final StringBuilder buf = new StringBuilder();
+            PropertiesImpl<Long> prop = root;
+            for (int d = 0; d < DEPTH - 1; d++) {
+                final String key = "level" + d + "node" + (p % (d + 2));
+                buf.append(key).append(Properties.SEPATATOR);
+                PropertiesImpl<Long> child = prop.findRaw(key, false);
+                if (child == null) {
+                    child = new PropertiesImpl<>(graph, key);
+                    prop.set(prop, key, child);
+                }
+                prop = child;
+            }
+            final String leaf = "leaf" + p;
+            prop.set(prop, leaf, p);
+            paths[p] = buf.append(leaf).toString();
+        }
+        return root;
+    }
+
+    /** Runs the benchmark. */
+    public static void main(final String[] args) {
+        final String[] texts = new String[PATHS];
+        final PropertiesImpl<Long> root = build(texts);
+        final PropertyPath[] paths = new PropertyPath[PATHS];
+        for (int p = 0; p < PATHS; p++) {
+            paths[p] = PropertyPath.parse(texts[p]);
+        }
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < LOOPS; i++) {
+                sink += legacyFind(root, texts[i % PATHS]).hashCode();
+            }
+            final double legacy = (System.nanoTime() - start) / (double) LOOPS;
+            start = System.nanoTime();
+            for (int i = 0; i < LOOPS; i++) {
+                sink += root.findRaw(texts[i % PATHS], true).hashCode();
+            }
+            final double text = (System.nanoTime() - start) / (double) LOOPS;
+            start = System.nanoTime();
+            for (int i = 0; i < LOOPS; i++) {
+                sink += root.findRaw(paths[i % PATHS], true).hashCode();
+            }
+            final double path = (System.nanoTime() - start) / (double) LOOPS;
+            System.out.println("Round " + round + ": legacy=" + legacy
+                    + "ns String=" + text + "ns PropertyPath=" + path + "ns");
+        }
+        System.out.println(sink);
+    }
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright (C) 2014 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.util.proto.properties.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Date;
+
+import org.junit.Test;
+
+import com.blockwithme.util.proto.properties.Properties;
+
+/**
+ * Tests GraphFile.
+ *
+ * @author monster
+ */
+public class GraphFileTest {
+
+    @Test
+    public void testWriteRead() throws IOException {
+        final GraphImpl<Long> graph = new GraphImpl<>(5L);
+        final PropertiesImpl<Long> root = new PropertiesImpl<>(graph, "root");
+        graph.root(root);
+        final PropertiesImpl<Long> child = new PropertiesImpl<>(graph, "child");
+        root.set(root, "child", child);
+        root.set(root, "b", true);
+        root.set(root, "i", 42);
+        root.set(root, "l", Long.MAX_VALUE);
+        root.set(root, "d", 1.5);
+        root.set(root, "s", "hello");
+        root.set(root, "n", null);
+        root.set(root, "list", Arrays.asList("x", "y"));
+        root.set(root, "link", new Link("child/a"));
+        root.set(root, "lazy", new LazyGen(LazyGenTest.UpperGen.class
+                .getName() + "(abc)"));
+        child.set(child, "a", "hello");
+        child.set(child, "0", 'c');
+        child.set(root, "1", (short) 7);
+        child.set(child, "a", "later", 10L, false);
+        final File file = File.createTempFile("graph", ".bin");
+        try {
+            GraphFile.write(graph, file);
+            final GraphImpl<Long> copy = GraphFile.read(file);
+            assertEquals(Long.valueOf(5L), copy.getTime());
+            final Properties<Long> r = copy.root();
+            assertEquals("root", r.localKey());
+            assertEquals(Boolean.TRUE, r.find("b", Boolean.class));
+            assertEquals(42, r.find("i", Integer.class).intValue());
+            assertEquals(Long.MAX_VALUE, r.find("l", Long.class).longValue());
+            assertEquals(1.5, r.find("d", Double.class), 0.0);
+            assertEquals("hello", r.find("s", String.class));
+            assertNull(r.findRaw("n", false));
+            assertEquals(Arrays.asList("x", "y"), r.findRaw("list", false));
+            assertEquals("hello", r.find("link", String.class));
+            assertEquals("ABC", r.find("lazy", String.class));
+            assertArrayEquals(new Object[] { 'c', (short) 7 },
+                    r.listChildValues("child", Object.class, true));
+            @SuppressWarnings("unchecked")
+            final PropertiesImpl<Long> c = r.find("child", PropertiesImpl.class);
+            assertSame(r, c.setterOf("1"));
+            assertSame(c, c.setterOf("0"));
+            copy.setTime(10L);
+            assertEquals("later", r.find("child/a", String.class));
+        } finally {
+            file.delete();
+        }
+    }
+
+    /** A PropertiesImpl subclass; cannot be read back as such. */
+    private static final class SubProperties extends PropertiesImpl<Long> {
+        SubProperties(final ImplGraph<Long> graph) {
+            super(graph, "sub");
+        }
+    }
+
+    private static void assertNotWritable(final GraphImpl<Long> graph)
+            throws IOException {
+        final File file = File.createTempFile("graph", ".bin");
+        try {
+            GraphFile.write(graph, file);
+            fail("graph was written");
+        } catch (final IllegalArgumentException e) {
+            // expected
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testSubclassSetter() throws IOException {
+        final GraphImpl<Long> graph = new GraphImpl<>(0L);
+        final PropertiesImpl<Long> root = new PropertiesImpl<>(graph, "root");
+        graph.root(root);
+        root.set(new SubProperties(graph), "a", 1);
+        assertNotWritable(graph);
+    }
+
+    @Test
+    public void testOtherGraphSetter() throws IOException {
+        final GraphImpl<Long> graph = new GraphImpl<>(0L);
+        final PropertiesImpl<Long> root = new PropertiesImpl<>(graph, "root");
+        graph.root(root);
+        final GraphImpl<Long> other = new GraphImpl<>(0L);
+        root.set(new PropertiesImpl<>(other, "other"), "a", 1);
+        assertNotWritable(graph);
+    }
+
+    @Test
+    public void testSubclassNode() throws IOException {
+        final GraphImpl<Long> graph = new GraphImpl<>(0L);
+        final PropertiesImpl<Long> root = new PropertiesImpl<>(graph, "root");
+        graph.root(root);
+        root.set(root, "sub", new SubProperties(graph));
+        assertNotWritable(graph);
+    }
+
+    @Test
+    public void testCorrupt() throws IOException {
+        final GraphImpl<Long> graph = new GraphImpl<>(0L);
+        final PropertiesImpl<Long> root = new PropertiesImpl<>(graph, "root");
+        graph.root(root);
+        root.set(root, "a", "hello");
+        final File file = File.createTempFile("graph", ".bin");
+        try {
+            GraphFile.write(graph, file);
+            final long length = file.length();
+            // Bad string count, bad offset, then truncated files
+            for (final long[] patch : new long[][] { { 8, 0x7FFFFFFF },
+                    { 16, -5 }, { -1, 20 }, { -1, 9 } }) {
+                GraphFile.write(graph, file);
+                try (final RandomAccessFile raf = new RandomAccessFile(file,
+                        "rw")) {
+                    if (patch[0] < 0) {
+                        raf.setLength(patch[1]);
+                    } else {
+                        raf.seek(patch[0]);
+                        raf.writeInt((int) patch[1]);
+                    }
+                }
+                try {
+                    GraphFile.read(file).root().find("a", String.class);
+                    fail("corrupt file read: " + Arrays.toString(patch));
+                } catch (final IOException e) {
+                    // expected
+                }
+            }
+            assertTrue(length > 20);
+        } finally {
+            file.delete();
+        }
+    }
+
+    /** Overwrites the int at position (from the end, if negative). */
+    private static void patch(final File file, final long position,
+            final int value) throws IOException {
+        try (final RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek((position < 0) ? raf.length() + position : position);
+            raf.writeInt(value);
+        }
+    }
+
+    /** Checks that loading the root content fails, naming the file. */
+    private static void assertCorruptRoot(final File file) throws IOException {
+        final GraphImpl<Long> copy = GraphFile.read(file);
+        try {
+            copy.root().findRaw("a", false);
+            fail("corrupt node record loaded");
+        } catch (final IllegalStateException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(file.toString()));
+            assertTrue(e.getMessage(), e.getMessage().contains("root"));
+        }
+    }
+
+    @Test
+    public void testCorruptNodeRecord() throws IOException {
+        final GraphImpl<Long> graph = new GraphImpl<>(0L);
+        final PropertiesImpl<Long> root = new PropertiesImpl<>(graph, "root");
+        graph.root(root);
+        root.set(root, "a", "hello");
+        final File file = File.createTempFile("graph", ".bin");
+        try {
+            // The root record ends with the string id of "hello"
+            for (final int id : new int[] { -1, 0x7FFFFFFF }) {
+                GraphFile.write(graph, file);
+                patch(file, -4, id);
+                assertCorruptRoot(file);
+            }
+            root.set(root, "a", new Date(0));
+            // The root record ends with the serialized Date
+            for (final int length : new int[] { -1, 0x7FFFFFFF }) {
+                GraphFile.write(graph, file);
+                final byte[] bytes = Files.readAllBytes(file.toPath());
+                int magic = bytes.length - 2;
+                while ((bytes[magic] != (byte) 0xAC)
+                        || (bytes[magic + 1] != (byte) 0xED)) {
+                    magic--;
+                }
+                patch(file, magic - 4, length);
+                assertCorruptRoot(file);
+            }
+        } finally {
+            file.delete();
+        }
+    }
+}
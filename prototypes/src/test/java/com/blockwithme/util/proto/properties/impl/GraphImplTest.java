@@ -0,0 +1,246 @@
+/*
+ * Copyright (C) 2014 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.util.proto.properties.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.blockwithme.util.proto.properties.Filter;
+import com.blockwithme.util.proto.properties.Properties;
+
+import org.junit.Test;
+
+/**
+ * Tests GraphImpl.
+ *
+ * @author monster
+ */
+public class GraphImplTest {
+
+    /** Counts the batch notifications. */
+    private static final class CountingGraph extends GraphImpl<Long> {
+        final List<Integer> batches = new ArrayList<>();
+
+        CountingGraph() {
+            super(0L);
+        }
+
+        @Override
+        public void onChanges(final List<Change<Long>> performed) {
+            batches.add(performed.size());
+        }
+    }
+
+    private static Change<Long> change(final PropertiesImpl<Long> props,
+            final String key, final Object value, final Long when) {
+        final Change<Long> result = new Change<>();
+        result.properties = props;
+        result.setter = props;
+        result.localKey = key;
+        result.newValue = value;
+        result.when = when;
+        return result;
+    }
+
+    @Test
+    public void testSetTime() {
+        final CountingGraph graph = new CountingGraph();
+        final PropertiesImpl<Long> root = new PropertiesImpl<>(graph, "root");
+        graph.root(root);
+        root.set(root, "a", "a10", 10L, false);
+        root.set(root, "b", "b20", 20L, false);
+        root.set(root, "c", "c30", 30L, false);
+        root.set(root, "a", "a5", 5L, false);
+        graph.setTime(4L);
+        assertNull(root.find("a", Object.class));
+        assertEquals(0, graph.batches.size());
+        graph.setTime(20L);
+        assertEquals("a10", root.find("a", Object.class));
+        assertEquals("b20", root.find("b", Object.class));
+        assertNull(root.find("c", Object.class));
+        assertEquals(Arrays.asList(3), graph.batches);
+        graph.setTime(40L);
+        assertEquals("c30", root.find("c", Object.class));
+        assertEquals(Arrays.asList(3, 1), graph.batches);
+    }
+
+    @Test
+    public void testApplyAll() {
+        final CountingGraph graph = new CountingGraph();
+        final PropertiesImpl<Long> root = new PropertiesImpl<>(graph, "root");
+        graph.root(root);
+        graph.setTime(10L);
+        graph.applyAll(Arrays.asList(change(root, "a", 1, null),
+                change(root, "b", 2, 5L), change(root, "c", 3, 15L)));
+        assertEquals(1, root.find("a", Object.class));
+        assertEquals(2, root.find("b", Object.class));
+        assertNull(root.find("c", Object.class));
+        assertEquals(Arrays.asList(2), graph.batches);
+        graph.setTime(15L);
+        assertEquals(3, root.find("c", Object.class));
+        assertEquals(Arrays.asList(2, 1), graph.batches);
+    }
+
+    @Test
+    public void testApplyAllRollback() {
+        final CountingGraph graph = new CountingGraph();
+        final PropertiesImpl<Long> root = new PropertiesImpl<>(graph, "root");
+        graph.root(root);
+        final PropertiesImpl<Long> child = new PropertiesImpl<>(graph, "child");
+        root.set(root, "a", 1);
+        graph.setTime(10L);
+        final long version = graph.structureVersion();
+        try {
+            // Arrays cannot contain Properties, so the last change fails
+            graph.applyAll(Arrays.asList(change(root, "a", 2, null),
+                    change(root, "b", child, null),
+                    change(root, "c", 3, 15L),
+                    change(root, "d", new Object[] { child }, null)));
+            fail("expected IllegalArgumentException");
+        } catch (final IllegalArgumentException e) {
+            // expected
+        }
+        assertEquals(1, root.find("a", Object.class));
+        assertNull(root.find("b", Object.class));
+        assertNull(root.find("d", Object.class));
+        assertEquals(Arrays.asList("a"), root.query(new Filter() {
+            @Override
+            public boolean accept(final String key, final Object value) {
+                return true;
+            }
+        }));
+        assertTrue(graph.pendingChanges().isEmpty());
+        assertTrue(graph.batches.isEmpty());
+        assertTrue(graph.structureVersion() != version);
+        graph.setTime(20L);
+        assertNull(root.find("c", Object.class));
+        assertTrue(graph.batches.isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testApplyAllOtherGraph() {
+        final GraphImpl<Long> graph = new GraphImpl<>(0L);
+        final GraphImpl<Long> other = new GraphImpl<>(0L);
+        final PropertiesImpl<Long> root = new PropertiesImpl<>(other, "root");
+        graph.applyAll(Arrays.asList(change(root, "a", 1, null)));
+    }
+
+    @Test
+    public void testSnapshots() throws InterruptedException {
+        final GraphImpl<Long> graph = new GraphImpl<>(0L);
+        final PropertiesImpl<Long> root = new PropertiesImpl<>(graph, "root");
+        graph.root(root);
+        final PropertiesImpl<Long> child = new PropertiesImpl<>(graph, "child");
+        root.set(root, "child", child);
+        child.set(child, "a", 1);
+        root.set(root, "b", 2);
+        root.set(root, "l", new Link("child/a"));
+        graph.setSnapshots(true);
+        final GraphSnapshot<Long> first = graph.snapshot();
+        assertEquals(1, first.root().find("child/a", Integer.class)
+                .intValue());
+        assertEquals(1, first.root().find("l", Integer.class).intValue());
+
+        // Immediate set
+        child.set(child, "a", 3);
+        final GraphSnapshot<Long> second = graph.snapshot();
+        assertEquals(1, first.root().find("child/a", Integer.class)
+                .intValue());
+        assertEquals(3, second.root().find("/child/a", Integer.class)
+                .intValue());
+        assertEquals(3, second.root().find("l", Integer.class).intValue());
+
+        // Batch: published once, at the end
+        child.set(child, "a", 4, 10L, false);
+        root.set(root, "b", 5, 10L, false);
+        graph.setTime(10L);
+        final GraphSnapshot<Long> third = graph.snapshot();
+        assertEquals(Long.valueOf(10L), third.getTime());
+        assertEquals(4, third.root().find("child/a", Integer.class)
+                .intValue());
+        assertEquals(5, third.root().find("b", Integer.class).intValue());
+        assertEquals(2, second.root().find("b", Integer.class).intValue());
+
+        // Unchanged subtrees are shared, and readable from other threads
+        final Object childData = child.snapshot();
+        root.set(root, "b", 6);
+        assertSame(childData, child.snapshot());
+        final AtomicReference<Object> read = new AtomicReference<>();
+        final Thread reader = new Thread() {
+            @Override
+            public void run() {
+                final Properties<Long> snap = graph.snapshot().root();
+                read.set(snap.find("child/a", Integer.class));
+            }
+        };
+        reader.start();
+        reader.join();
+        assertEquals(4, read.get());
+    }
+
+    @Test
+    public void testSnapshotsEnabledLater() {
+        final GraphImpl<Long> graph = new GraphImpl<>(0L);
+        final PropertiesImpl<Long> root = new PropertiesImpl<>(graph, "root");
+        graph.root(root);
+        final PropertiesImpl<Long> child = new PropertiesImpl<>(graph, "child");
+        final PropertiesImpl<Long> grandChild = new PropertiesImpl<>(graph,
+                "grandChild");
+        // Parents are not tracked yet
+        root.set(root, "child", child);
+        child.set(child, "grandChild", grandChild);
+        grandChild.set(grandChild, "a", 1);
+        graph.setSnapshots(true);
+        assertEquals(1, graph.snapshot().root()
+                .find("child/grandChild/a", Integer.class).intValue());
+        grandChild.set(grandChild, "a", 2);
+        assertEquals(2, graph.snapshot().root()
+                .find("child/grandChild/a", Integer.class).intValue());
+
+        // Changes while disabled are seen once enabled again
+        graph.setSnapshots(false);
+        child.set(child, "grandChild", null);
+        final PropertiesImpl<Long> other = new PropertiesImpl<>(graph, "other");
+        child.set(child, "other", other);
+        other.set(other, "b", 3);
+        grandChild.set(grandChild, "a", 4);
+        graph.setSnapshots(true);
+        assertEquals(3, graph.snapshot().root()
+                .find("child/other/b", Integer.class).intValue());
+        assertNull(graph.snapshot().root().find("child/grandChild",
+                Properties.class));
+        other.set(other, "b", 5);
+        assertEquals(5, graph.snapshot().root()
+                .find("child/other/b", Integer.class).intValue());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testReadOnlySnapshots() {
+        final GraphImpl<Long> graph = new GraphImpl<>(0L);
+        final PropertiesImpl<Long> root = new PropertiesImpl<>(graph, "root");
+        graph.root(root);
+        graph.setSnapshots(true);
+        graph.snapshot().root().set(root, "a", 1);
+    }
+}
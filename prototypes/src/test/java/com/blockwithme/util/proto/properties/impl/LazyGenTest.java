@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2014 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.util.proto.properties.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+
+import com.blockwithme.util.proto.properties.Generator;
+import com.blockwithme.util.proto.properties.Properties;
+
+/**
+ * Tests LazyGen.
+ *
+ * @author monster
+ */
+public class LazyGenTest {
+
+    /** Generates its parameter, in upper case. */
+    public static final class UpperGen implements Generator {
+        private final String param;
+
+        public UpperGen(final String theParam) {
+            param = theParam;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public <E> E generate(final Properties<?> prop, final String name,
+                final Class<E> expectedType) {
+            return (E) param.toUpperCase();
+        }
+    }
+
+    /** Cannot be created. */
+    public static final class FailingGen implements Generator {
+        public FailingGen(final String theParam) {
+            throw new AssertionError(theParam);
+        }
+
+        @Override
+        public <E> E generate(final Properties<?> prop, final String name,
+                final Class<E> expectedType) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static final String GEN = UpperGen.class.getName();
+
+    private static PropertiesImpl<Long> newRoot() {
+        final GraphImpl<Long> graph = new GraphImpl<>(0L);
+        final PropertiesImpl<Long> root = new PropertiesImpl<>(graph, "root");
+        graph.root(root);
+        return root;
+    }
+
+    @Test
+    public void testGenerate() {
+        final PropertiesImpl<Long> root = newRoot();
+        root.set(root, "a", new LazyGen(GEN + "(abc)"));
+        root.set(root, "b", new LazyGen(GEN + "(xyz)"));
+        assertEquals("ABC", root.find("a", String.class));
+        assertEquals("XYZ", root.find("b", String.class));
+        assertEquals("ABC", root.findRaw("a", false));
+    }
+
+    @Test
+    public void testResolveAll() {
+        final PropertiesImpl<Long> root = newRoot();
+        final PropertiesImpl<Long> child = new PropertiesImpl<>(
+                (ImplGraph<Long>) root.graph(), "child");
+        root.set(root, "child", child);
+        root.set(root, "a", new LazyGen(GEN + "(abc)"));
+        child.set(child, "b", new LazyGen(GEN + "(xyz)"));
+        child.set(child, "c", 42);
+        assertEquals(2, LazyGen.resolveAll(root));
+        assertEquals("ABC", root.findRaw("a", false));
+        assertEquals("XYZ", root.findRaw("child/b", false));
+        assertEquals(0, LazyGen.resolveAll(root));
+    }
+
+    @Test
+    public void testResolveAllExecutor() {
+        final PropertiesImpl<Long> root = newRoot();
+        root.set(root, "a", new LazyGen(GEN + "(abc)"));
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            assertEquals(1, LazyGen.resolveAll(root, executor));
+            assertFalse(executor.isShutdown());
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals("ABC", root.findRaw("a", false));
+    }
+
+    @Test(expected = AssertionError.class)
+    public void testErrorNotWrapped() {
+        new LazyGen(FailingGen.class.getName() + "(abc)").newGenerator();
+    }
+
+    @Test(expected = AssertionError.class)
+    public void testResolveAllErrorNotWrapped() {
+        final PropertiesImpl<Long> root = newRoot();
+        root.set(root, "a", new LazyGen(FailingGen.class.getName() + "(abc)"));
+        LazyGen.resolveAll(root);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testUnknownClass() {
+        final PropertiesImpl<Long> root = newRoot();
+        root.set(root, "a", new LazyGen("no.such.Gen(abc)"));
+        root.find("a", String.class);
+    }
+}
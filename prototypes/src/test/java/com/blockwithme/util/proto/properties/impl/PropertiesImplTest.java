@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2014 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.util.proto.properties.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+import com.blockwithme.util.proto.properties.PropertyPath;
+
+/**
+ * Tests PropertiesImpl.
+ *
+ * @author monster
+ */
+public class PropertiesImplTest {
+
+    /** Creates a graph with a root. */
+    private static PropertiesImpl<Long> newRoot() {
+        return newRoot(false);
+    }
+
+    /** Creates a graph with a root. */
+    private static PropertiesImpl<Long> newRoot(final boolean indexed) {
+        final GraphImpl<Long> graph = new GraphImpl<>(0L, indexed);
+        final PropertiesImpl<Long> root = new PropertiesImpl<>(graph, "root");
+        graph.root(root);
+        return root;
+    }
+
+    /** Creates a child of parent. */
+    private static PropertiesImpl<Long> child(
+            final PropertiesImpl<Long> parent, final String key) {
+        @SuppressWarnings("unchecked")
+        final PropertiesImpl<Long> result = new PropertiesImpl<>(
+                (ImplGraph<Long>) parent.graph(), key);
+        parent.set(parent, key, result);
+        return result;
+    }
+
+    @Test
+    public void testPropertyPath() {
+        final PropertyPath path = PropertyPath.parse("/a/b1/C");
+        assertEquals(true, path.isAbsolute());
+        assertEquals(3, path.size());
+        assertEquals("b1", path.key(1));
+        assertEquals("C", path.last());
+        assertEquals(true, PropertyPath.parse("x").isLocalKey());
+        assertSame(PropertyPath.ROOT, PropertyPath.parse("/"));
+        assertEquals(PropertyPath.parse("a/b"), PropertyPath.parse("a/b"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEmptyComponent() {
+        PropertyPath.parse("a//b");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTrailingSeparator() {
+        PropertyPath.parse("a/b/");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIllegalCharacter() {
+        PropertyPath.parse("a/b_c");
+    }
+
+    @Test
+    public void testDeepLookup() {
+        final PropertiesImpl<Long> root = newRoot();
+        final PropertiesImpl<Long> a = child(root, "a");
+        final PropertiesImpl<Long> b = child(a, "b");
+        b.set(b, "c", 1);
+        final PropertyPath path = PropertyPath.parse("a/b/c");
+        assertEquals(1, root.find(path, Integer.class).intValue());
+        assertEquals(1, root.find("a/b/c", Integer.class).intValue());
+        assertEquals(1, a.find("/a/b/c", Integer.class).intValue());
+        assertSame(root, b.findRaw(PropertyPath.ROOT, false));
+        // Value change, but not structural
+        b.set(b, "c", 2);
+        assertEquals(2, root.find(path, Integer.class).intValue());
+        // Structural change
+        final PropertiesImpl<Long> b2 = child(a, "b");
+        assertNull(root.find(path, Integer.class));
+        b2.set(b2, "c", 3);
+        assertEquals(3, root.find("a/b/c", Integer.class).intValue());
+        a.set(a, "b", null);
+        assertNull(root.find("a/b/c", Integer.class));
+    }
+
+    @Test
+    public void testLinkLookup() {
+        final PropertiesImpl<Long> root = newRoot();
+        final PropertiesImpl<Long> a = child(root, "a");
+        final PropertiesImpl<Long> b = child(a, "b");
+        b.set(b, "c", 1);
+        root.set(root, "l", new Link("a/b"));
+        assertEquals(1, root.find("l/c", Integer.class).intValue());
+        b.set(b, "c", 2);
+        assertEquals(2, root.find("l/c", Integer.class).intValue());
+        final PropertiesImpl<Long> b2 = child(a, "b");
+        b2.set(b2, "c", 3);
+        assertEquals(3, root.find("l/c", Integer.class).intValue());
+    }
+
+    /** Checks the lookups by value. */
+    private static void checkIndex(final boolean indexed) {
+        final PropertiesImpl<Long> root = newRoot(indexed);
+        assertEquals("0", root.nextIndex());
+        root.set(root, "a", "x");
+        root.set(root, "0", "x");
+        root.set(root, "1", "y");
+        root.set(root, "12", "z");
+        root.set(root, "2", "y");
+        root.set(root, "b", new Link("a"));
+        assertEquals(Arrays.asList("a", "b", "0"), root.keysOf("x"));
+        assertEquals(Arrays.asList("1", "2"), root.keysOf("y"));
+        assertEquals(true, root.contains("z"));
+        assertEquals(false, root.contains("w"));
+        assertEquals("13", root.nextIndex());
+        assertArrayEquals(new String[] { "x", "y", "y", "z" },
+                root.listValues(String.class, true));
+        root.set(root, "12", null);
+        root.set(root, "a", "w");
+        assertEquals("3", root.nextIndex());
+        assertEquals(Collections.singletonList("0"), root.keysOf("x"));
+        assertEquals(Arrays.asList("a", "b"), root.keysOf("w"));
+        root.clear(root, null);
+        assertEquals("0", root.nextIndex());
+        assertEquals(false, root.contains("y"));
+        assertEquals(0, root.listValues(String.class, true).length);
+    }
+
+    /** Checks integer keys with leading zeros; "007" is the same key as "7". */
+    private static void checkLeadingZeros(final boolean indexed) {
+        final PropertiesImpl<Long> root = newRoot(indexed);
+        root.set(root, "007", "a");
+        assertEquals("8", root.nextIndex());
+        root.set(root, "7", "b");
+        assertArrayEquals(new String[] { "b" },
+                root.listValues(String.class, true));
+        root.set(root, "07", null);
+        assertEquals("0", root.nextIndex());
+        assertEquals(0, root.listValues(String.class, true).length);
+        root.set(root, "7", "c");
+        assertEquals("8", root.nextIndex());
+        assertArrayEquals(new String[] { "c" },
+                root.listValues(String.class, true));
+    }
+
+    @Test
+    public void testValueLookup() {
+        checkIndex(false);
+        checkLeadingZeros(false);
+    }
+
+    @Test
+    public void testIndexedValueLookup() {
+        checkIndex(true);
+        checkLeadingZeros(true);
+    }
+}
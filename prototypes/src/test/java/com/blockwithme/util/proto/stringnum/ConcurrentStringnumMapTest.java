@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2014 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.util.proto.stringnum;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+/**
+ * Tests ConcurrentStringnumMap.
+ *
+ * @author monster
+ */
+public class ConcurrentStringnumMapTest {
+
+    /** Increments a counter. */
+    private static final ConcurrentStringnumMap.Remapping<Integer> INC = new ConcurrentStringnumMap.Remapping<Integer>() {
+        @Override
+        public Integer apply(final String key, final Integer oldValue) {
+            return (oldValue == null) ? 1 : oldValue + 1;
+        }
+    };
+
+    @Test
+    public void testBasics() {
+        final ConcurrentStringnumMap<String> map = new ConcurrentStringnumMap<>(
+                new Stringnum());
+        assertTrue(map.isEmpty());
+        assertNull(map.put("a", "1"));
+        assertEquals("1", map.put("a", "2"));
+        assertNull(map.putIfAbsent("b", "3"));
+        assertEquals("3", map.putIfAbsent("b", "4"));
+        assertEquals(2, map.size());
+        assertEquals("2", map.get("a"));
+        assertNull(map.get("c"));
+        assertNull(map.get(1));
+        assertTrue(map.containsKey("b"));
+        assertFalse(map.replace("a", "1", "5"));
+        assertTrue(map.replace("a", "2", "5"));
+        assertEquals("5", map.replace("a", "6"));
+        assertNull(map.replace("c", "6"));
+        assertFalse(map.remove("a", "5"));
+        assertTrue(map.remove("a", "6"));
+        assertEquals(1, map.size());
+        assertEquals("3", map.remove("b"));
+        assertNull(map.remove("b"));
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    public void testGrowthAndIteration() {
+        final Stringnum sn = new Stringnum();
+        final ConcurrentStringnumMap<Integer> map = new ConcurrentStringnumMap<>(
+                sn);
+        final Map<String, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 1000; i++) {
+            if (i % 3 != 0) {
+                map.put("k" + i, i);
+                expected.put("k" + i, i);
+            } else {
+                sn.putString("k" + i);
+            }
+        }
+        assertEquals(expected, map);
+        assertEquals(expected.size(), map.entrySet().size());
+        for (final Map.Entry<String, Integer> e : map.entrySet()) {
+            e.setValue(e.getValue() + 1);
+        }
+        assertEquals(Integer.valueOf(2), map.get("k1"));
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertNull(map.get("k1"));
+    }
+
+    @Test
+    public void testComputeValue() {
+        final ConcurrentStringnumMap<Integer> map = new ConcurrentStringnumMap<>(
+                new Stringnum());
+        assertEquals(Integer.valueOf(1), map.computeValue("a", INC));
+        assertEquals(Integer.valueOf(2), map.computeValue("a", INC));
+        assertNull(map.computeValue("a",
+                new ConcurrentStringnumMap.Remapping<Integer>() {
+                    @Override
+                    public Integer apply(final String key,
+                            final Integer oldValue) {
+                        return null;
+                    }
+                }));
+        assertTrue(map.isEmpty());
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testNullValue() {
+        new ConcurrentStringnumMap<String>(new Stringnum()).put("a", null);
+    }
+
+    @Test
+    public void testConcurrentComputeValue() throws Exception {
+        final ConcurrentStringnumMap<Integer> map = new ConcurrentStringnumMap<>(
+                new Stringnum());
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final Runnable task = new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 10000; i++) {
+                        map.computeValue("k" + (i % 200), INC);
+                    }
+                }
+            };
+            final Future<?>[] futures = new Future<?>[4];
+            for (int i = 0; i < futures.length; i++) {
+                futures[i] = executor.submit(task);
+            }
+            for (final Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(200, map.size());
+        for (int i = 0; i < 200; i++) {
+            assertEquals(Integer.valueOf(200), map.get("k" + i));
+        }
+    }
+}
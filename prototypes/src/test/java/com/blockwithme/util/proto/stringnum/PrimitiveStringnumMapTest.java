@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2014 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.util.proto.stringnum;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests the primitive StringnumMaps.
+ *
+ * @author monster
+ */
+public class PrimitiveStringnumMapTest {
+
+    @Test
+    public void testInt() {
+        final Stringnum sn = new Stringnum();
+        final IntStringnumMap map = new IntStringnumMap(sn);
+        assertTrue(map.isEmpty());
+        assertEquals(-1, map.get("a", -1));
+        assertEquals(0, map.put("a", 5));
+        assertEquals(5, map.put("a", 6));
+        assertEquals(1, map.increment("b"));
+        assertEquals(2, map.increment("b"));
+        assertEquals(12, map.add("a", 6));
+        assertEquals(2, map.size());
+        assertEquals(12, map.get("a"));
+        assertEquals(12, map.getAt(sn.indexOf("a"), -1));
+        assertTrue(map.containsKey("b"));
+        assertFalse(map.containsKey("c"));
+        assertEquals("{a=12, b=2}", map.toString());
+        assertTrue(map.remove("a"));
+        assertFalse(map.remove("a"));
+        assertEquals(-1, map.get("a", -1));
+        assertEquals(1, map.increment("a"));
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertEquals(0, map.get("b"));
+    }
+
+    @Test
+    public void testSharedStringnum() {
+        final Stringnum sn = new Stringnum();
+        final LongStringnumMap longs = new LongStringnumMap(sn);
+        final DoubleStringnumMap doubles = new DoubleStringnumMap(sn);
+        for (int i = 0; i < 200; i++) {
+            longs.add("k" + i, i);
+            if (i % 2 == 0) {
+                doubles.add("k" + i, i / 2.0);
+            }
+        }
+        assertEquals(200, longs.size());
+        assertEquals(100, doubles.size());
+        assertEquals(199L, longs.get("k199"));
+        assertEquals(99.0, doubles.get("k198"), 0.0);
+        assertEquals(Double.NaN, doubles.get("k199", Double.NaN), 0.0);
+        int count = 0;
+        long sum = 0;
+        for (int i = doubles.nextIndex(0); i >= 0; i = doubles
+                .nextIndex(i + 1)) {
+            assertTrue(doubles.keyAt(i).startsWith("k"));
+            sum += longs.getAt(i, 0);
+            count++;
+        }
+        assertEquals(100, count);
+        assertEquals(99 * 100, sum);
+        assertEquals(-1, longs.nextIndex(1000));
+    }
+
+    @Test
+    public void testBoolean() {
+        final BooleanStringnumMap map = new BooleanStringnumMap(new Stringnum());
+        assertTrue(map.get("a", true));
+        assertFalse(map.put("a", true));
+        assertTrue(map.put("a", false));
+        assertFalse(map.get("a", true));
+        for (int i = 0; i < 100; i++) {
+            map.put("k" + i, i % 3 == 0);
+        }
+        assertEquals(101, map.size());
+        assertEquals(34, map.countTrue());
+        assertTrue(map.get("k99"));
+        assertTrue(map.remove("k99"));
+        assertFalse(map.get("k99"));
+        assertEquals(33, map.countTrue());
+        final BooleanStringnumMap other = new BooleanStringnumMap(
+                map.stringnum());
+        assertEquals("{}", other.toString());
+        other.put("k1", true);
+        other.put("a", false);
+        assertEquals("{a=false, k1=true}", other.toString());
+    }
+}
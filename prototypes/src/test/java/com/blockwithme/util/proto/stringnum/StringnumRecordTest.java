@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2014 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.util.proto.stringnum;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.blockwithme.util.shared.MiniMap;
+
+/**
+ * Tests StringnumRecord.
+ *
+ * @author monster
+ */
+public class StringnumRecordTest {
+
+    @Test
+    public void testGetSet() {
+        final Stringnum schema = new Stringnum();
+        schema.addAll("name", "age");
+        final StringnumRecord record = new StringnumRecord(schema);
+        assertNull(record.get("name"));
+        assertNull(record.set("name", "joe"));
+        assertEquals("joe", record.set("name", "jack"));
+        assertEquals("jack", record.get("name"));
+        record.set("age", 42);
+        final Integer age = record.get("age");
+        assertEquals(Integer.valueOf(42), age);
+        assertEquals(2, record.size());
+        // Unknown names are added to the schema
+        record.set("city", "Paris");
+        assertEquals(4, schema.size());
+        assertEquals("Paris", record.getAt(schema.indexOf("city")));
+        assertNull(record.set("unknown", null));
+        assertEquals(4, schema.size());
+        assertEquals("jack", record.set("name", null));
+        assertEquals(2, record.size());
+        assertEquals("{age=42, city=Paris}", record.toString());
+    }
+
+    @Test
+    public void testCopyOnWrite() {
+        final Stringnum schema = new Stringnum();
+        final StringnumRecord a = new StringnumRecord(schema);
+        a.set("x", 1);
+        a.set("y", 2);
+        final StringnumRecord b = a.copy();
+        assertEquals(a, b);
+        assertEquals(a.hashCode(), b.hashCode());
+        b.set("x", 3);
+        assertEquals(Integer.valueOf(1), a.get("x"));
+        assertEquals(Integer.valueOf(3), b.get("x"));
+        assertNotEquals(a, b);
+        a.set("y", 4);
+        assertEquals(Integer.valueOf(2), b.get("y"));
+        final StringnumRecord c = a.copy();
+        a.clear();
+        assertEquals(0, a.size());
+        assertEquals(Integer.valueOf(4), c.get("y"));
+    }
+
+    @Test
+    public void testMap() {
+        final Stringnum schema = new Stringnum();
+        final Map<String, Object> map = new HashMap<>();
+        map.put("a", "A");
+        map.put("b", 2);
+        final StringnumRecord record = StringnumRecord.fromMap(schema, map);
+        assertEquals(2, record.size());
+        assertEquals(map, record.toMap());
+        // Works with non-hacked Strings too
+        assertEquals("A", record.toMap().get(new String("a".toCharArray())));
+        map.put("a", null);
+        record.putAll(map);
+        assertNull(record.get("a"));
+        assertEquals(1, record.toMap().size());
+        assertEquals(2, record.toMap().get("b"));
+    }
+
+    @Test
+    public void testProperties() {
+        final Stringnum schema = new Stringnum();
+        Object[] props = MiniMap.setProperty(new Object[0], "b", "B");
+        props = MiniMap.setProperty(props, "a", "A");
+        final StringnumRecord record = StringnumRecord.fromProperties(schema,
+                props);
+        assertEquals("A", record.get("a"));
+        assertArrayEquals(new Object[] { "b", "B", "a", "A" },
+                record.toProperties());
+        assertEquals("A", MiniMap.getProperty(record.toProperties(), "a"));
+        record.setProperties(new Object[] { "b", null, "c", "C" });
+        assertArrayEquals(new Object[] { "a", "A", "c", "C" },
+                record.toProperties());
+    }
+}
@@ -15,6 +15,9 @@
  */
 package com.blockwithme.util.server;
 
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
 import java.lang.reflect.UndeclaredThrowableException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
@@ -108,6 +111,41 @@ public class DefaultSystemUtilsImpl extends SystemUtils {
         }
     }
 
+    /** Provider calling a cached public no-argument constructor. */
+    private static final class ConstructorProvider<T> implements Provider<T> {
+        /** The constructor. */
+        private final Constructor<T> constructor;
+
+        /** Constructor */
+        public ConstructorProvider(final Constructor<T> theConstructor) {
+            constructor = theConstructor;
+        }
+
+        /* (non-Javadoc)
+         * @see javax.inject.Provider#get()
+         */
+        @Override
+        public T get() {
+            try {
+                return constructor.newInstance(NO_ARGS);
+            } catch (final InvocationTargetException e) {
+                final Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new UndeclaredThrowableException(cause);
+            } catch (InstantiationException | IllegalAccessException e) {
+                throw new UndeclaredThrowableException(e);
+            }
+        }
+    }
+
+    /** The (empty) arguments of no-argument constructors. */
+    private static final Object[] NO_ARGS = new Object[0];
+
     /** Logger */
     private static final Logger LOG = Logger
             .getLogger(DefaultSystemUtilsImpl.class.getName());
@@ -172,21 +210,19 @@ public class DefaultSystemUtilsImpl extends SystemUtils {
     @SuppressWarnings({ "unchecked", "rawtypes" })
     @Override
     protected <T> Provider<T>[] providersForImpl(final Class<T> clazz) {
+        final int modifiers = clazz.getModifiers();
+        if (clazz.isInterface() || clazz.isPrimitive() || clazz.isArray()
+                || Modifier.isAbstract(modifiers)
+                || !Modifier.isPublic(modifiers)) {
+            return NO_PROVIDER;
+        }
+        final Constructor<T> constructor;
         try {
-            clazz.newInstance();
-        } catch (final Throwable t) {
+            constructor = clazz.getConstructor();
+        } catch (final ReflectiveOperationException e) {
             return NO_PROVIDER;
         }
-        return new Provider[] { new Provider() {
-            @Override
-            public Object get() {
-                try {
-                    return clazz.newInstance();
-                } catch (InstantiationException | IllegalAccessException e) {
-                    throw new UndeclaredThrowableException(e);
-                }
-            }
-        } };
+        return new Provider[] { new ConstructorProvider<T>(constructor) };
     }
 
     /* (non-Javadoc)
@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2014 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.util.server;
+
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.ArrayList;
+
+import javax.inject.Provider;
+
+import com.blockwithme.util.base.SystemUtils;
+
+/**
+ * Compares SystemUtils.newInstance() with the reflective Class.newInstance()
+ * path it used before.
+ *
+ * Just run main(); the results are printed in nanoseconds per instance.
+ *
+ * @author monster
+ */
+public class ProvidersBenchmark {
+
+    /** Number of instances created per round. */
+    private static final int LOOPS = 10000000;
+
+    /** Number of rounds; the first ones are the warm-up. */
+    private static final int ROUNDS = 5;
+
+    /** Prevents dead-code elimination. */
+    private static int sink;
+
+    /** The reflective Provider, as previously returned by DefaultSystemUtilsImpl. */
+    private static final class ReflectiveProvider implements Provider<Object> {
+        /** The class to instantiate. */
+        private final Class<?> clazz;
+
+        /** Constructor */
+        ReflectiveProvider(final Class<?> theClazz) {
+            clazz = theClazz;
+        }
+
+        @SuppressWarnings("deprecation")
+        @Override
+        public Object get() {
+            try {
+                return clazz.newInstance();
+            } catch (InstantiationException | IllegalAccessException e) {
+                throw new UndeclaredThrowableException(e);
+            }
+        }
+    }
+
+    /** Through the old, reflective, Provider. */
+    private static long reflective(final Class<?> clazz) {
+        final Provider<?> provider = new ReflectiveProvider(clazz);
+        final long start = System.nanoTime();
+        for (int i = 0; i < LOOPS; i++) {
+            sink += provider.get().hashCode();
+        }
+        return System.nanoTime() - start;
+    }
+
+    /** Through the Provider cache. */
+    private static long newInstance(final Class<?> clazz) {
+        final long start = System.nanoTime();
+        for (int i = 0; i < LOOPS; i++) {
+            sink += SystemUtils.newInstance(clazz).hashCode();
+        }
+        return System.nanoTime() - start;
+    }
+
+    /** Directly through the Provider. */
+    private static long provider(final Class<?> clazz) {
+        final Provider<?> provider = SystemUtils.providersFor(clazz)[0];
+        final long start = System.nanoTime();
+        for (int i = 0; i < LOOPS; i++) {
+            sink += provider.get().hashCode();
+        }
+        return System.nanoTime() - start;
+    }
+
+    /** Runs the benchmark. */
+    public static void main(final String[] args) {
+        SystemUtils.setImplementation(new DefaultSystemUtilsImpl());
+        final Class<?> clazz = ArrayList.class;
+        for (int round = 0; round < ROUNDS; round++) {
+            final double r = reflective(clazz) / (double) LOOPS;
+            final double n = newInstance(clazz) / (double) LOOPS;
+            final double p = provider(clazz) / (double) LOOPS;
+            System.out.println("Round " + round + ": reflective Provider.get()=" + r
+                    + "ns SystemUtils.newInstance()=" + n
+                    + "ns Constructor Provider.get()=" + p + "ns");
+        }
+        System.out.println(sink);
+    }
+}
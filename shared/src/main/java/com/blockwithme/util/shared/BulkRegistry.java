@@ -0,0 +1,36 @@
+/*
+ * Copyright (C) 2014 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.blockwithme.util.shared;
+
+import java.util.Map;
+
+/**
+ * <code>BulkRegistry</code> is a Registry that can also register many
+ * key-value pairs in one call.
+ */
+public interface BulkRegistry<K, V> extends Registry<K, V> {
+    /**
+     * Registers all the key-value pairs of the map.
+     * All keys and values are validated first, so that nothing is
+     * registered if any of them fails the validation tests.
+     * If update is true, the values of already registered keys will be replaced.
+     * The pairs are not necessarily published atomically; concurrent readers
+     * can see some of them before the others.
+     */
+    void registerAll(final Map<? extends K, ? extends V> map,
+            final boolean update);
+}
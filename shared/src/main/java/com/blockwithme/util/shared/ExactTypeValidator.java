@@ -24,7 +24,7 @@ package com.blockwithme.util.shared;
  *
  * @param <E>
  */
-public class ExactTypeValidator<E> implements Validator<E> {
+public class ExactTypeValidator<E> implements FastValidator<E> {
 
     /** The expected type. */
     private final Class<E> type;
@@ -37,6 +37,11 @@ public class ExactTypeValidator<E> implements Validator<E> {
         type = theType;
     }
 
+    @Override
+    public boolean isValid(final E value) {
+        return (value != null) && (value.getClass() == type);
+    }
+
     @Override
     public String validate(final E value, final Object name) {
         if (value == null) {
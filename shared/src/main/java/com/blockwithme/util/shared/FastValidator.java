@@ -0,0 +1,36 @@
+/*
+ * Copyright (C) 2014 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.util.shared;
+
+/**
+ * A Validator with a boolean fast path.
+ *
+ * Validators that do not implement it are still supported everywhere;
+ * Validators.isValid() then falls back to validate().
+ *
+ * @author monster
+ */
+public interface FastValidator<E> extends Validator<E> {
+    /**
+     * Returns true for valid values.
+     *
+     * This is the fast path; it must not allocate. validate() is only
+     * called to build the error message, once a value was rejected.
+     *
+     * @param value The value to be checked
+     */
+    boolean isValid(final E value);
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2014 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.util.shared;
+
+/**
+ * <code>LongKeyRegistry</code> is a registry with primitive long keys.
+ *
+ * It is the primitive specialization of Registry<Long, V>, and never boxes
+ * the keys.
+ */
+public interface LongKeyRegistry<V> {
+    /**
+     * Registers a key-value pair.
+     * The value must pass the validation tests.
+     * If the key was already registered, it will be returned.
+     * If the key was already registered, and update is true, the value will be replaced.
+     */
+    V register(final long key, final V value, final boolean update);
+
+    /**
+     * Registers all the key-value pairs; values[i] goes with keys[i].
+     * All values are validated first, so that nothing is registered if
+     * any of them fails the validation tests.
+     * If update is true, the values of already registered keys will be replaced.
+     * The pairs are not published atomically; concurrent readers can see
+     * some of them before the others.
+     */
+    void registerAll(final long[] keys, final V[] values,
+            final boolean update);
+
+    /** Resolve a value, from a key. Returns null if not resolved. */
+    V find(final long key);
+
+    /**
+     * Resolve a value, from a key.
+     * If no value can be resolved, an exception will be thrown.
+     * @throws java.lang.IllegalStateException
+     */
+    V get(final long key);
+}
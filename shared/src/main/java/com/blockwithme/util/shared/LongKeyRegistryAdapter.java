@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2014 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.util.shared;
+
+import java.util.Map;
+
+/**
+ * <code>LongKeyRegistryAdapter</code> exposes a LongKeyRegistry as a
+ * BulkRegistry<Long, V>, for code that only knows about generic registries.
+ *
+ * Null keys are not supported.
+ */
+public class LongKeyRegistryAdapter<V> implements BulkRegistry<Long, V> {
+    /** The wrapped registry. */
+    private final LongKeyRegistry<V> registry;
+
+    /** Constructor. */
+    public LongKeyRegistryAdapter(final LongKeyRegistry<V> theRegistry) {
+        if (theRegistry == null) {
+            throw new NullPointerException("theRegistry");
+        }
+        registry = theRegistry;
+    }
+
+    /** Returns the wrapped registry. */
+    public LongKeyRegistry<V> getLongKeyRegistry() {
+        return registry;
+    }
+
+    @Override
+    public V register(final Long key, final V value, final boolean update) {
+        // Intentional NullPointerException
+        return registry.register(key.longValue(), value, update);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public void registerAll(final Map<? extends Long, ? extends V> map,
+            final boolean update) {
+        final long[] keys = new long[map.size()];
+        final V[] values = (V[]) new Object[keys.length];
+        int i = 0;
+        for (final Map.Entry<? extends Long, ? extends V> e : map.entrySet()) {
+            // Intentional NullPointerException
+            keys[i] = e.getKey().longValue();
+            values[i] = e.getValue();
+            i++;
+        }
+        registry.registerAll(keys, values, update);
+    }
+
+    @Override
+    public V find(final Long key) {
+        // Intentional NullPointerException
+        return registry.find(key.longValue());
+    }
+
+    @Override
+    public V get(final Long key) {
+        // Intentional NullPointerException
+        return registry.get(key.longValue());
+    }
+}
@@ -0,0 +1,263 @@
+/*
+ * Copyright (C) 2014 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.util.shared;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * <code>LongKeyRegistryImpl</code> is a LongKeyRegistry, backed by a
+ * primitive open-addressing hash table.
+ *
+ * It is thread-safe, and can delegate/fallback to another registry.
+ * Lookups never lock, and never allocate. Registrations are serialized.
+ *
+ * Values cannot be null, since a null value marks an empty slot.
+ */
+public class LongKeyRegistryImpl<V> implements LongKeyRegistry<V> {
+    /** The initial table capacity. Must be a power of two. */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Open-addressing (linear probing) table.
+     *
+     * A slot is used, when it's value is not null. The key is always written
+     * before the value, and the values are accessed with volatile semantic,
+     * so a reader that sees a value also sees the matching key.
+     *
+     * Keys are never removed, and a Table is never modified after being
+     * replaced by a bigger one.
+     */
+    private static final class Table {
+        /** The keys. */
+        final long[] keys;
+
+        /** The values. */
+        final AtomicReferenceArray<Object> values;
+
+        /** The index mask. */
+        final int mask;
+
+        /** The number of used slots. Only accessed while locked. */
+        int size;
+
+        /** Creates a Table. capacity must be a power of two. */
+        Table(final int capacity) {
+            keys = new long[capacity];
+            values = new AtomicReferenceArray<Object>(capacity);
+            mask = capacity - 1;
+        }
+    }
+
+    /** The current table. */
+    private volatile Table table = new Table(INITIAL_CAPACITY);
+
+    /** Parent registry. */
+    private final LongKeyRegistryImpl<V> parent;
+
+    /** The value validator */
+    private final Validator<V> valueValidator;
+
+    /** Returns the first slot for a key. */
+    private static int slot(final long key, final int mask) {
+        final int h = ((int) (key ^ (key >>> 32))) * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    /** Returns the value of the key in the table, or null. */
+    private static Object find(final Table t, final long key) {
+        final int mask = t.mask;
+        int i = slot(key, mask);
+        while (true) {
+            final Object value = t.values.get(i);
+            if (value == null) {
+                return null;
+            }
+            if (t.keys[i] == key) {
+                return value;
+            }
+            i = (i + 1) & mask;
+        }
+    }
+
+    /** Adds a new key in the table. The key must not be present yet. */
+    private static void insert(final Table t, final long key,
+            final Object value) {
+        final int mask = t.mask;
+        int i = slot(key, mask);
+        while (t.values.get(i) != null) {
+            i = (i + 1) & mask;
+        }
+        t.keys[i] = key;
+        t.values.set(i, value);
+        t.size++;
+    }
+
+    /**
+     * Constructor, with optional parent.
+     * If the validator is null, any non-null value is accepted
+     */
+    @SuppressWarnings("unchecked")
+    public LongKeyRegistryImpl(final Validator<V> theValueValidator,
+            final LongKeyRegistryImpl<V> theParent) {
+        valueValidator = (theValueValidator == null) ? (Validator<V>) (Validator<?>) Validators
+                .any() : theValueValidator;
+        parent = theParent;
+    }
+
+    /**
+     * Constructor, with optional parent.
+     * If the type is null, any non-null value is accepted
+     */
+    @SuppressWarnings("unchecked")
+    public LongKeyRegistryImpl(final Class<V> theValueType,
+            final LongKeyRegistryImpl<V> theParent) {
+        valueValidator = (theValueType == null) ? (Validator<V>) (Validator<?>) Validators
+                .any() : new ExactTypeValidator<V>(theValueType);
+        parent = theParent;
+    }
+
+    /**
+     * Constructor.
+     * If the validator is null, any non-null value is accepted
+     */
+    public LongKeyRegistryImpl(final Validator<V> theValueValidator) {
+        this(theValueValidator, null);
+    }
+
+    /**
+     * Constructor.
+     * If the type is null, any non-null value is accepted
+     */
+    public LongKeyRegistryImpl(final Class<V> theValueType) {
+        this(theValueType, null);
+    }
+
+    /**
+     * Constructor, with optional parent.
+     */
+    public LongKeyRegistryImpl(final LongKeyRegistryImpl<V> theParent) {
+        this((Validator<V>) null, theParent);
+    }
+
+    /**
+     * Constructor.
+     */
+    public LongKeyRegistryImpl() {
+        this((Validator<V>) null, null);
+    }
+
+    @Override
+    public V register(final long key, final V value, final boolean update) {
+        if (value == null) {
+            throw new NullPointerException("value");
+        }
+        if (!Validators.isValid(valueValidator, value)) {
+            throw new IllegalArgumentException(valueValidator.validate(value,
+                    "value"));
+        }
+        V result = find(key);
+        if (update) {
+            put(key, value, true);
+        } else if (result == null) {
+            result = put(key, value, false);
+        }
+        return result;
+    }
+
+    @Override
+    public void registerAll(final long[] keys, final V[] values,
+            final boolean update) {
+        if (keys.length != values.length) {
+            throw new IllegalArgumentException("keys.length="
+                    + keys.length + " but values.length=" + values.length);
+        }
+        for (final V value : values) {
+            if (value == null) {
+                throw new NullPointerException("value");
+            }
+            if (!Validators.isValid(valueValidator, value)) {
+                throw new IllegalArgumentException(valueValidator.validate(
+                        value, "value"));
+            }
+        }
+        synchronized (this) {
+            for (int i = 0; i < keys.length; i++) {
+                final long key = keys[i];
+                if (update || (parent == null) || (parent.find(key) == null)) {
+                    put(key, values[i], update);
+                }
+            }
+        }
+    }
+
+    /** Stores the value locally. Returns the previous local value, if any. */
+    @SuppressWarnings("unchecked")
+    private synchronized V put(final long key, final V value,
+            final boolean update) {
+        Table t = table;
+        final int mask = t.mask;
+        int i = slot(key, mask);
+        while (true) {
+            final Object before = t.values.get(i);
+            if (before == null) {
+                break;
+            }
+            if (t.keys[i] == key) {
+                if (update) {
+                    t.values.set(i, value);
+                }
+                return (V) before;
+            }
+            i = (i + 1) & mask;
+        }
+        // Keep the load factor at most 50%, so probe sequences stay short.
+        if (2 * (t.size + 1) > t.keys.length) {
+            final Table bigger = new Table(2 * t.keys.length);
+            for (int j = 0; j < t.keys.length; j++) {
+                final Object v = t.values.get(j);
+                if (v != null) {
+                    insert(bigger, t.keys[j], v);
+                }
+            }
+            insert(bigger, key, value);
+            table = bigger;
+        } else {
+            t.keys[i] = key;
+            t.values.set(i, value);
+            t.size++;
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public V find(final long key) {
+        V result = (V) find(table, key);
+        if ((result == null) && (parent != null)) {
+            result = parent.find(key);
+        }
+        return result;
+    }
+
+    @Override
+    public V get(final long key) {
+        final V result = find(key);
+        if (result == null) {
+            throw new IllegalStateException("value missing for key " + key);
+        }
+        return result;
+    }
+}
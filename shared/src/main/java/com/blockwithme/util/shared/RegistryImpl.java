@@ -16,6 +16,7 @@
 
 package com.blockwithme.util.shared;
 
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -23,7 +24,7 @@ import java.util.concurrent.ConcurrentHashMap;
  *
  * It is thread-safe, and can delegate/fallback to another registry.
  */
-public class RegistryImpl<K, V> implements Registry<K, V> {
+public class RegistryImpl<K, V> implements BulkRegistry<K, V> {
     /** Registered converters. */
     private final ConcurrentHashMap<K, V> registry = new ConcurrentHashMap<K, V>();
 
@@ -98,17 +99,55 @@ public class RegistryImpl<K, V> implements Registry<K, V> {
         this((Validator<K>) null, (Validator<V>) null, null);
     }
 
+    /** Validates a key-value pair. Messages are only built on failure. */
+    private void check(final K key, final V value) {
+        if (!Validators.isValid(keyValidator, key)) {
+            throw new IllegalArgumentException(keyValidator.validate(key,
+                    "key"));
+        }
+        if (!Validators.isValid(valueValidator, value)) {
+            throw new IllegalArgumentException(valueValidator.validate(value,
+                    "value"));
+        }
+    }
+
     @Override
     public V register(final K key, final V value, final boolean update) {
-        final String checkKey = keyValidator.validate(key, "key");
-        if (checkKey != null) {
-            throw new IllegalArgumentException(checkKey);
+        check(key, value);
+        return register2(key, value, update);
+    }
+
+    /**
+     * Registers all the key-value pairs of the map, after validating them.
+     * The pairs are put one at a time in the underlying map, so concurrent
+     * readers can see some of them before the others. Use a
+     * SnapshotRegistryImpl if the batch must become visible atomically.
+     */
+    @Override
+    public void registerAll(final Map<? extends K, ? extends V> map,
+            final boolean update) {
+        for (final Map.Entry<? extends K, ? extends V> e : map.entrySet()) {
+            final K key = e.getKey();
+            final V value = e.getValue();
+            // Checked up front, as the underlying map would only fail midway
+            if (key == null) {
+                throw new NullPointerException("key");
+            }
+            if (value == null) {
+                throw new NullPointerException("value");
+            }
+            check(key, value);
         }
-        final String checkValue = valueValidator.validate(value, "value");
-        if (checkValue != null) {
-            throw new IllegalArgumentException(checkValue);
+        if (update) {
+            registry.putAll(map);
+        } else {
+            for (final Map.Entry<? extends K, ? extends V> e : map.entrySet()) {
+                final K key = e.getKey();
+                if ((parent == null) || (parent.find(key) == null)) {
+                    registry.putIfAbsent(key, e.getValue());
+                }
+            }
         }
-        return register2(key, value, update);
     }
 
     private V register2(final K key, final V value, final boolean update) {
@@ -0,0 +1,34 @@
+/*
+ * Copyright (C) 2014 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.util.shared;
+
+import java.util.Map;
+
+/**
+ * Receives the changes of a SnapshotRegistry.
+ */
+public interface RegistryListener<K, V> {
+    /**
+     * Called after a new snapshot was published.
+     * Both maps are immutable snapshots.
+     *
+     * @param registry The changed registry.
+     * @param before The snapshot before the change.
+     * @param after The snapshot after the change.
+     */
+    void onChange(final SnapshotRegistry<K, V> registry,
+            final Map<K, V> before, final Map<K, V> after);
+}
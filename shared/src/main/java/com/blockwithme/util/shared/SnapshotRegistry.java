@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2014 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.util.shared;
+
+import java.util.Map;
+
+/**
+ * <code>SnapshotRegistry</code> is a registry that publishes immutable
+ * snapshots of it's content, so it can be enumerated consistently.
+ */
+public interface SnapshotRegistry<K, V> extends BulkRegistry<K, V> {
+    /**
+     * Returns the current immutable snapshot of the locally registered
+     * entries. The parent registry, if any, is not included.
+     */
+    Map<K, V> snapshot();
+
+    /**
+     * Visits all the entries of the current snapshot.
+     * Changes made while visiting are not seen.
+     */
+    void forEach(final RegistryVisitor<? super K, ? super V> visitor);
+
+    /** Adds a change listener. */
+    void addListener(final RegistryListener<K, V> listener);
+
+    /** Removes a change listener. */
+    void removeListener(final RegistryListener<K, V> listener);
+}
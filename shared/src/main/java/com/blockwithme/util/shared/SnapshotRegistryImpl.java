@@ -0,0 +1,267 @@
+/*
+ * Copyright (C) 2014 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.util.shared;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * <code>SnapshotRegistryImpl</code> is a copy-on-write SnapshotRegistry.
+ *
+ * It is thread-safe, and can delegate/fallback to another registry.
+ * Readers never lock; they always see a consistent, immutable snapshot.
+ * Writers are serialized, and copy the whole map on every change, so use
+ * registerAll() for bursts of registrations, like configuration reloads.
+ *
+ * Listeners are called by the writing thread, after the new snapshot was
+ * published, in the order of the changes.
+ */
+public class SnapshotRegistryImpl<K, V> implements SnapshotRegistry<K, V> {
+    /** The empty snapshot. */
+    @SuppressWarnings("rawtypes")
+    private static final Map EMPTY = Collections.emptyMap();
+
+    /** The current snapshot. */
+    @SuppressWarnings("unchecked")
+    private volatile Map<K, V> snapshot = EMPTY;
+
+    /** The empty listener array. */
+    @SuppressWarnings("rawtypes")
+    private static final RegistryListener[] NO_LISTENERS = new RegistryListener[0];
+
+    /**
+     * The listeners. Replaced (under lock), never modified, so that it
+     * also compiles with GWT, which has no CopyOnWriteArrayList.
+     */
+    @SuppressWarnings("unchecked")
+    private volatile RegistryListener<K, V>[] listeners = NO_LISTENERS;
+
+    /** Parent registry. */
+    private final Registry<K, V> parent;
+
+    /** The key validator */
+    private final Validator<K> keyValidator;
+
+    /** The value validator */
+    private final Validator<V> valueValidator;
+
+    /**
+     * Constructor, with optional parent.
+     * If a validator is null, any non-null key or value respectively is accepted
+     */
+    @SuppressWarnings("unchecked")
+    public SnapshotRegistryImpl(final Validator<K> theKeyValidator,
+            final Validator<V> theValueValidator, final Registry<K, V> theParent) {
+        final Validator<?> nonNull = Validators.nonNull();
+        keyValidator = (theKeyValidator == null) ? (Validator<K>) nonNull
+                : theKeyValidator;
+        valueValidator = (theValueValidator == null) ? (Validator<V>) nonNull
+                : theValueValidator;
+        parent = theParent;
+    }
+
+    /**
+     * Constructor, with optional parent.
+     * If a type is null, any non-null key or value respectively is accepted
+     */
+    public SnapshotRegistryImpl(final Class<K> theKeyType,
+            final Class<V> theValueType, final Registry<K, V> theParent) {
+        this((theKeyType == null) ? null : Validators.type(theKeyType),
+                (theValueType == null) ? null : Validators.type(theValueType),
+                theParent);
+    }
+
+    /**
+     * Constructor.
+     * If a validator is null, any non-null key or value respectively is accepted
+     */
+    public SnapshotRegistryImpl(final Validator<K> theKeyValidator,
+            final Validator<V> theValueValidator) {
+        this(theKeyValidator, theValueValidator, null);
+    }
+
+    /**
+     * Constructor.
+     * If a type is null, any non-null key or value respectively is accepted
+     */
+    public SnapshotRegistryImpl(final Class<K> theKeyType,
+            final Class<V> theValueType) {
+        this(theKeyType, theValueType, null);
+    }
+
+    /**
+     * Constructor, with optional parent.
+     */
+    public SnapshotRegistryImpl(final Registry<K, V> theParent) {
+        this((Validator<K>) null, (Validator<V>) null, theParent);
+    }
+
+    /**
+     * Constructor.
+     */
+    public SnapshotRegistryImpl() {
+        this((Validator<K>) null, (Validator<V>) null, null);
+    }
+
+    /** Validates a key-value pair. Messages are only built on failure. */
+    private void check(final K key, final V value) {
+        if ((key == null) || !Validators.isValid(keyValidator, key)) {
+            throw new IllegalArgumentException((key == null) ? "key is null"
+                    : keyValidator.validate(key, "key"));
+        }
+        if ((value == null) || !Validators.isValid(valueValidator, value)) {
+            throw new IllegalArgumentException(
+                    (value == null) ? "value is null" : valueValidator
+                            .validate(value, "value"));
+        }
+    }
+
+    /** Publishes a new snapshot, and informs the listeners. */
+    private void publish(final Map<K, V> before, final HashMap<K, V> next) {
+        final Map<K, V> after = Collections.unmodifiableMap(next);
+        snapshot = after;
+        for (final RegistryListener<K, V> listener : listeners) {
+            listener.onChange(this, before, after);
+        }
+    }
+
+    /** Should the pair be stored locally? */
+    private boolean accept(final Map<K, V> current, final K key,
+            final boolean update) {
+        if (update) {
+            return true;
+        }
+        return !current.containsKey(key)
+                && ((parent == null) || (parent.find(key) == null));
+    }
+
+    @Override
+    public V register(final K key, final V value, final boolean update) {
+        check(key, value);
+        final V result = find(key);
+        if (update || (result == null)) {
+            synchronized (this) {
+                final Map<K, V> before = snapshot;
+                if (!accept(before, key, update)) {
+                    return find(key);
+                }
+                if (value.equals(before.get(key))) {
+                    return result;
+                }
+                final HashMap<K, V> next = new HashMap<K, V>(before);
+                next.put(key, value);
+                publish(before, next);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void registerAll(final Map<? extends K, ? extends V> map,
+            final boolean update) {
+        for (final Map.Entry<? extends K, ? extends V> e : map.entrySet()) {
+            check(e.getKey(), e.getValue());
+        }
+        synchronized (this) {
+            final Map<K, V> before = snapshot;
+            final HashMap<K, V> next = new HashMap<K, V>(before);
+            boolean changed = false;
+            for (final Map.Entry<? extends K, ? extends V> e : map.entrySet()) {
+                final K key = e.getKey();
+                final V value = e.getValue();
+                if (accept(next, key, update) && !value.equals(next.get(key))) {
+                    next.put(key, value);
+                    changed = true;
+                }
+            }
+            if (changed) {
+                publish(before, next);
+            }
+        }
+    }
+
+    @Override
+    public V find(final K key) {
+        V result = snapshot.get(key);
+        if ((result == null) && (parent != null)) {
+            result = parent.find(key);
+        }
+        return result;
+    }
+
+    @Override
+    public V get(final K key) {
+        final V result = find(key);
+        if (result == null) {
+            throw new IllegalStateException("value missing for key " + key);
+        }
+        return result;
+    }
+
+    @Override
+    public Map<K, V> snapshot() {
+        return snapshot;
+    }
+
+    @Override
+    public void forEach(final RegistryVisitor<? super K, ? super V> visitor) {
+        for (final Map.Entry<K, V> e : snapshot.entrySet()) {
+            if (!visitor.visit(e.getKey(), e.getValue())) {
+                break;
+            }
+        }
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    @Override
+    public void addListener(final RegistryListener<K, V> listener) {
+        if (listener == null) {
+            throw new NullPointerException("listener");
+        }
+        synchronized (this) {
+            final RegistryListener<K, V>[] before = listeners;
+            for (final RegistryListener<K, V> l : before) {
+                if (l.equals(listener)) {
+                    return;
+                }
+            }
+            final RegistryListener<K, V>[] after = new RegistryListener[
+                    before.length + 1];
+            System.arraycopy(before, 0, after, 0, before.length);
+            after[before.length] = listener;
+            listeners = after;
+        }
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    @Override
+    public void removeListener(final RegistryListener<K, V> listener) {
+        synchronized (this) {
+            final RegistryListener<K, V>[] before = listeners;
+            for (int i = 0; i < before.length; i++) {
+                if (before[i].equals(listener)) {
+                    final RegistryListener<K, V>[] after = new RegistryListener[
+                            before.length - 1];
+                    System.arraycopy(before, 0, after, 0, i);
+                    System.arraycopy(before, i + 1, after, i, after.length - i);
+                    listeners = after;
+                    return;
+                }
+            }
+        }
+    }
+}
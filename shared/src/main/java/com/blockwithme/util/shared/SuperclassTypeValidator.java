@@ -26,7 +26,7 @@ import com.blockwithme.util.base.SystemUtils;
  *
  * @param <E>
  */
-public class SuperclassTypeValidator<E> implements Validator<E> {
+public class SuperclassTypeValidator<E> implements FastValidator<E> {
 
     /** The expected type. */
     private final Class<E> type;
@@ -39,6 +39,11 @@ public class SuperclassTypeValidator<E> implements Validator<E> {
         type = theType;
     }
 
+    @Override
+    public boolean isValid(final E value) {
+        return (value != null) && SystemUtils.isInstance(type, value);
+    }
+
     @Override
     public String validate(final E value, final Object name) {
         if (value == null) {
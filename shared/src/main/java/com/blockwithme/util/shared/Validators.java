@@ -13,17 +13,25 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
-
 package com.blockwithme.util.shared;
 
 /**
- * Some pre-defined validators.
+ * Some pre-defined validators, and validator combinators.
+ *
+ * All the validators returned here are immutable FastValidators, and
+ * evaluate isValid() without allocating; the error messages are only built
+ * on failure. The combinators also accept plain Validators.
  *
  * @author monster
  */
 public class Validators {
     /** Returns true for any value */
-    private static final class AnyValidator implements Validator<Object> {
+    private static final class AnyValidator implements FastValidator<Object> {
+        @Override
+        public boolean isValid(final Object value) {
+            return true;
+        }
+
         @Override
         public String validate(final Object value, final Object name) {
             return null;
@@ -31,20 +39,244 @@ public class Validators {
     };
 
     /** Returns true for non-null values. */
-    private static final class NotNullValidator implements Validator<Object> {
+    private static final class NotNullValidator implements
+            FastValidator<Object> {
+        @Override
+        public boolean isValid(final Object value) {
+            return value != null;
+        }
+
         @Override
         public String validate(final Object value, final Object name) {
             return (value == null) ? name + " cannot be null" : null;
         }
     };
 
+    /** Returns true if all validators return true. */
+    private static final class AndValidator<E> implements FastValidator<E> {
+        /** The validators, flattened. */
+        private final Validator<? super E>[] validators;
+
+        /** Constructor */
+        AndValidator(final Validator<? super E>[] theValidators) {
+            validators = theValidators;
+        }
+
+        @Override
+        public boolean isValid(final E value) {
+            for (final Validator<? super E> v : validators) {
+                if (!Validators.isValid(v, value)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public String validate(final E value, final Object name) {
+            for (final Validator<? super E> v : validators) {
+                if (!Validators.isValid(v, value)) {
+                    return v.validate(value, name);
+                }
+            }
+            return null;
+        }
+    };
+
+    /** Returns true if any validator returns true. */
+    private static final class OrValidator<E> implements FastValidator<E> {
+        /** The validators, flattened. */
+        private final Validator<? super E>[] validators;
+
+        /** Constructor */
+        OrValidator(final Validator<? super E>[] theValidators) {
+            validators = theValidators;
+        }
+
+        @Override
+        public boolean isValid(final E value) {
+            for (final Validator<? super E> v : validators) {
+                if (Validators.isValid(v, value)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public String validate(final E value, final Object name) {
+            if (isValid(value)) {
+                return null;
+            }
+            final StringBuilder buf = new StringBuilder();
+            for (final Validator<? super E> v : validators) {
+                if (buf.length() > 0) {
+                    buf.append(" and ");
+                }
+                buf.append(v.validate(value, name));
+            }
+            return buf.toString();
+        }
+    };
+
+    /** Returns true if the validator returns false. */
+    private static final class NotValidator<E> implements FastValidator<E> {
+        /** The negated validator. */
+        private final Validator<? super E> validator;
+
+        /** Constructor */
+        NotValidator(final Validator<? super E> theValidator) {
+            validator = theValidator;
+        }
+
+        @Override
+        public boolean isValid(final E value) {
+            return !Validators.isValid(validator, value);
+        }
+
+        @Override
+        public String validate(final E value, final Object name) {
+            return Validators.isValid(validator, value) ? name + " cannot be " + value
+                    : null;
+        }
+    };
+
+    /** Returns true if min <= value <= max. */
+    private static final class RangeValidator<E extends Comparable<? super E>>
+            implements FastValidator<E> {
+        /** The minimum, inclusive. */
+        private final E min;
+
+        /** The maximum, inclusive. */
+        private final E max;
+
+        /** Constructor */
+        RangeValidator(final E theMin, final E theMax) {
+            min = theMin;
+            max = theMax;
+        }
+
+        @Override
+        public boolean isValid(final E value) {
+            return (value != null) && (min.compareTo(value) <= 0)
+                    && (max.compareTo(value) >= 0);
+        }
+
+        @Override
+        public String validate(final E value, final Object name) {
+            if (isValid(value)) {
+                return null;
+            }
+            return name + " is " + value + " but must be between " + min
+                    + " and " + max;
+        }
+    };
+
+    /** The AnyValidator singleton. */
+    private static final Validator<Object> ANY = new AnyValidator();
+
+    /** The NotNullValidator singleton. */
+    private static final Validator<Object> NON_NULL = new NotNullValidator();
+
+    /** Returns the validators, with nested validators of the same kind inlined. */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static <E> Validator<? super E>[] flatten(final boolean and,
+            final Validator<? super E> first, final Validator<? super E> second) {
+        final Validator<? super E>[] a = parts(and, first);
+        final Validator<? super E>[] b = parts(and, second);
+        final Validator<? super E>[] result = new Validator[a.length
+                + b.length];
+        System.arraycopy(a, 0, result, 0, a.length);
+        System.arraycopy(b, 0, result, a.length, b.length);
+        return result;
+    }
+
+    /** Returns the parts of a validator, if it is an and/or validator. */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static <E> Validator<? super E>[] parts(final boolean and,
+            final Validator<? super E> validator) {
+        if (validator == null) {
+            throw new NullPointerException("validator");
+        }
+        if (and && (validator instanceof AndValidator)) {
+            return ((AndValidator) validator).validators;
+        }
+        if (!and && (validator instanceof OrValidator)) {
+            return ((OrValidator) validator).validators;
+        }
+        return new Validator[] { validator };
+    }
+
+    /**
+     * Returns true for valid values. Uses the FastValidator fast path if
+     * available, and otherwise checks if validate() returns null.
+     */
+    @SuppressWarnings("unchecked")
+    public static <E> boolean isValid(final Validator<? super E> validator,
+            final E value) {
+        if (validator instanceof FastValidator) {
+            return ((FastValidator<? super E>) validator).isValid(value);
+        }
+        return validator.validate(value, "value") == null;
+    }
+
     /** Returns true for any value */
     public static Validator<Object> any() {
-        return new AnyValidator();
+        return ANY;
     }
 
     /** Returns true for non-null values. */
     public static Validator<Object> nonNull() {
-        return new NotNullValidator();
+        return NON_NULL;
+    }
+
+    /** Returns true for non-null values of exactly the given type. */
+    public static <E> FastValidator<E> type(final Class<E> type) {
+        return new ExactTypeValidator<E>(type);
+    }
+
+    /** Returns true for non-null values of the given type, or a subtype. */
+    public static <E> FastValidator<E> instanceOf(final Class<E> type) {
+        return new SuperclassTypeValidator<E>(type);
+    }
+
+    /** Returns true for non-null values, such that min <= value <= max. */
+    public static <E extends Comparable<? super E>> FastValidator<E> range(
+            final E min, final E max) {
+        if (min == null) {
+            throw new NullPointerException("min");
+        }
+        if (max == null) {
+            throw new NullPointerException("max");
+        }
+        return new RangeValidator<E>(min, max);
+    }
+
+    /** Returns true if both validators return true. Evaluated in order. */
+    public static <E> FastValidator<E> and(final Validator<? super E> first,
+            final Validator<? super E> second) {
+        return new AndValidator<E>(Validators.<E> flatten(true, first, second));
+    }
+
+    /** Returns true if at least one validator returns true. Evaluated in order. */
+    public static <E> FastValidator<E> or(final Validator<? super E> first,
+            final Validator<? super E> second) {
+        return new OrValidator<E>(Validators.<E> flatten(false, first, second));
+    }
+
+    /** Returns true if the validator returns false. */
+    @SuppressWarnings("unchecked")
+    public static <E> FastValidator<E> not(
+            final Validator<? super E> validator) {
+        if (validator == null) {
+            throw new NullPointerException("validator");
+        }
+        if (validator instanceof NotValidator) {
+            final Validator<?> inner = ((NotValidator<?>) validator).validator;
+            if (inner instanceof FastValidator) {
+                return (FastValidator<E>) inner;
+            }
+        }
+        return new NotValidator<E>(validator);
     }
 }
@@ -78,4 +78,25 @@ public final class BooleanDomain implements Domain<Boolean> {
         }
         throw new IllegalArgumentException(String.valueOf(id));
     }
+
+    /**
+     * Returns the ID for a primitive boolean, without boxing.
+     */
+    public int getID(final boolean value) {
+        return value ? 1 : 0;
+    }
+
+    /**
+     * Returns the primitive boolean for this ID, without boxing.
+     * @throws IllegalArgumentException if id is invalid, or the null ID.
+     */
+    public boolean getBooleanValue(final int id) {
+        if (id == 0) {
+            return false;
+        }
+        if (id == 1) {
+            return true;
+        }
+        throw new IllegalArgumentException(String.valueOf(id));
+    }
 }
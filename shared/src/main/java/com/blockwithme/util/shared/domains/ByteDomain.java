@@ -20,7 +20,7 @@ package com.blockwithme.util.shared.domains;
  *
  * @author monster
  */
-public final class ByteDomain implements Domain<Byte> {
+public final class ByteDomain implements Domain<Byte>, IntDomain {
     /**
      * Creates the ByteDomain.
      */
@@ -76,4 +76,34 @@ public final class ByteDomain implements Domain<Byte> {
         }
         throw new IllegalArgumentException(String.valueOf(id));
     }
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.util.shared.domains.IntDomain#getPrimitiveType()
+     */
+    @Override
+    public Class<?> getPrimitiveType() {
+        return byte.class;
+    }
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.util.shared.domains.IntDomain#getID(int)
+     */
+    @Override
+    public int getID(final int value) {
+        if ((value >= Byte.MIN_VALUE) && (value <= Byte.MAX_VALUE)) {
+            return value;
+        }
+        throw new IllegalArgumentException(String.valueOf(value));
+    }
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.util.shared.domains.IntDomain#getIntValue(int)
+     */
+    @Override
+    public int getIntValue(final int id) {
+        if ((id >= Byte.MIN_VALUE) && (id <= Byte.MAX_VALUE)) {
+            return id;
+        }
+        throw new IllegalArgumentException(String.valueOf(id));
+    }
 }
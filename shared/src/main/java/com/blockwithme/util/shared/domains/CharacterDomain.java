@@ -20,7 +20,7 @@ package com.blockwithme.util.shared.domains;
  *
  * @author monster
  */
-public final class CharacterDomain implements Domain<Character> {
+public final class CharacterDomain implements Domain<Character>, IntDomain {
     private static final Character[] CACHE = new Character[Domains.CACHE_SIZE];
     static {
         for (int i = 0; i < Domains.CACHE_SIZE; i++) {
@@ -86,4 +86,34 @@ public final class CharacterDomain implements Domain<Character> {
         }
         throw new IllegalArgumentException(String.valueOf(id));
     }
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.util.shared.domains.IntDomain#getPrimitiveType()
+     */
+    @Override
+    public Class<?> getPrimitiveType() {
+        return char.class;
+    }
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.util.shared.domains.IntDomain#getID(int)
+     */
+    @Override
+    public int getID(final int value) {
+        if ((value >= Character.MIN_VALUE) && (value <= Character.MAX_VALUE)) {
+            return value;
+        }
+        throw new IllegalArgumentException(String.valueOf(value));
+    }
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.util.shared.domains.IntDomain#getIntValue(int)
+     */
+    @Override
+    public int getIntValue(final int id) {
+        if ((id >= Character.MIN_VALUE) && (id <= Character.MAX_VALUE)) {
+            return id;
+        }
+        throw new IllegalArgumentException(String.valueOf(id));
+    }
 }
@@ -85,4 +85,23 @@ public final class FloatDomain implements Domain<Float> {
         }
         return Float.intBitsToFloat(id);
     }
+
+    /**
+     * Returns the ID for a primitive float, without boxing.
+     * Same as getID(Float), but cannot be null.
+     */
+    public int getID(final float value) {
+        return Float.floatToIntBits(value);
+    }
+
+    /**
+     * Returns the primitive float for this ID, without boxing.
+     * @throws IllegalArgumentException if id is the null ID.
+     */
+    public float getFloatValue(final int id) {
+        if (id == Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(String.valueOf(id));
+        }
+        return Float.intBitsToFloat(id);
+    }
 }
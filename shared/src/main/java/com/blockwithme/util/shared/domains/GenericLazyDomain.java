@@ -17,6 +17,7 @@ package com.blockwithme.util.shared.domains;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Objects;
 
 import com.blockwithme.util.base.SystemUtils;
@@ -113,7 +114,7 @@ public final class GenericLazyDomain<E> implements Domain<E> {
                     id++;
                 }
                 result = id;
-                id2Value.set(id, value);
+                id2Value.add(value);
                 value2ID.put(value, result);
             }
             return result;
@@ -135,4 +136,67 @@ public final class GenericLazyDomain<E> implements Domain<E> {
             return id2Value.get(id);
         }
     }
+
+    /** Returns the lowest ID given to a non-null value. */
+    public int firstID() {
+        return ZERO.equals(nullID) ? 1 : 0;
+    }
+
+    /** Returns the number of non-null values currently mapped. */
+    public int size() {
+        synchronized (id2Value) {
+            return id2Value.size();
+        }
+    }
+
+    /**
+     * Returns a copy of the currently mapped non-null values, in ID order.
+     * The value at index i has the ID (firstID() + i).
+     */
+    public List<E> values() {
+        synchronized (id2Value) {
+            return new ArrayList<E>(id2Value);
+        }
+    }
+
+    /**
+     * Restores, in one bulk operation, the values previously returned by
+     * values(), such that every value gets back the same ID.
+     *
+     * The Domain must still be empty.
+     *
+     * @throws java.lang.IllegalStateException if the Domain is not empty.
+     * @throws java.lang.IllegalArgumentException if a value is null, of the
+     *          wrong type, or duplicated.
+     */
+    public void restore(final List<? extends E> values) {
+        final HashMap<E, Integer> map = new HashMap<>(values.size() * 2);
+        int id = firstID();
+        for (final E value : values) {
+            if (value == null) {
+                throw new IllegalArgumentException("null value at ID " + id);
+            }
+            final Class<?> valueType = value.getClass();
+            if (!type.equals(valueType)) {
+                if (exactType
+                        || !SystemUtils.isAssignableFrom(type, valueType)) {
+                    throw new IllegalArgumentException("Expecting " + type
+                            + " but got " + valueType);
+                }
+            }
+            if (map.put(value, id) != null) {
+                throw new IllegalArgumentException("Duplicate value " + value
+                        + " at ID " + id);
+            }
+            id++;
+        }
+        synchronized (id2Value) {
+            if (!id2Value.isEmpty()) {
+                throw new IllegalStateException("Domain of " + type
+                        + " is not empty");
+            }
+            id2Value.addAll(values);
+            value2ID.putAll(map);
+        }
+    }
 }
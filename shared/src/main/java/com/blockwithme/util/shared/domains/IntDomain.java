@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2014 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.util.shared.domains;
+
+/**
+ * Represents a Domain of primitive int-compatible values, each with an
+ * integer ID. Unlike Domain<E>, it never boxes.
+ *
+ * Null values are not part of an IntDomain; they are only supported by
+ * the Domain<E> view, if any.
+ *
+ * @author monster
+ */
+public interface IntDomain {
+    /** Returns the primitive type of the Domain, for example int.class. */
+    Class<?> getPrimitiveType();
+
+    /**
+     * Returns the ID for a value.
+     * @throws RuntimeException if the value is out of the Domain range.
+     */
+    int getID(int value);
+
+    /**
+     * Returns the value for this ID.
+     * @throws RuntimeException if id is invalid.
+     */
+    int getIntValue(int id);
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2014 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.util.shared.domains;
+
+import java.util.Objects;
+
+/**
+ * Exposes an IntDomain as a Domain<Integer>, for code that only knows
+ * about generic Domains. Null values are not supported.
+ *
+ * Callers that know they have an IntDomain should use it directly, to
+ * avoid the boxing.
+ *
+ * @author monster
+ */
+public final class IntDomainAdapter implements Domain<Integer> {
+    /** The wrapped IntDomain. */
+    private final IntDomain domain;
+
+    /**
+     * Creates an IntDomainAdapter.
+     * @param domain cannot be null.
+     */
+    public IntDomainAdapter(final IntDomain domain) {
+        this.domain = Objects.requireNonNull(domain, "domain");
+    }
+
+    /** Returns the wrapped IntDomain. */
+    public IntDomain getIntDomain() {
+        return domain;
+    }
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.util.shared.Domain#getType()
+     */
+    @Override
+    public Class<Integer> getType() {
+        return Integer.class;
+    }
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.util.shared.Domain#exactType()
+     */
+    @Override
+    public boolean exactType() {
+        return true;
+    }
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.util.shared.Domain#supportNull()
+     */
+    @Override
+    public boolean supportsNull() {
+        return false;
+    }
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.util.shared.Domain#getID(java.lang.Object)
+     */
+    @Override
+    public int getID(final Integer value) {
+        // Intentional NullPointerException
+        return domain.getID(value.intValue());
+    }
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.util.shared.Domain#getValue(int)
+     */
+    @Override
+    public Integer getValue(final int id) {
+        return Domains.INTEGER.getValue(domain.getIntValue(id));
+    }
+}
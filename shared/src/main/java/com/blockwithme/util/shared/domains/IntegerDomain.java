@@ -20,7 +20,7 @@ package com.blockwithme.util.shared.domains;
  *
  * @author monster
  */
-public final class IntegerDomain implements Domain<Integer> {
+public final class IntegerDomain implements Domain<Integer>, IntDomain {
     private static final Integer[] CACHE = new Integer[Domains.CACHE_SIZE];
     static {
         for (int i = 0; i < Domains.CACHE_SIZE; i++) {
@@ -77,4 +77,28 @@ public final class IntegerDomain implements Domain<Integer> {
         }
         return id;
     }
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.util.shared.domains.IntDomain#getPrimitiveType()
+     */
+    @Override
+    public Class<?> getPrimitiveType() {
+        return int.class;
+    }
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.util.shared.domains.IntDomain#getID(int)
+     */
+    @Override
+    public int getID(final int value) {
+        return value;
+    }
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.util.shared.domains.IntDomain#getIntValue(int)
+     */
+    @Override
+    public int getIntValue(final int id) {
+        return id;
+    }
 }
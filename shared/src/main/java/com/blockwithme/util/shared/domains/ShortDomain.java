@@ -20,7 +20,7 @@ package com.blockwithme.util.shared.domains;
  *
  * @author monster
  */
-public final class ShortDomain implements Domain<Short> {
+public final class ShortDomain implements Domain<Short>, IntDomain {
     private static final Short[] CACHE = new Short[Domains.CACHE_SIZE];
     static {
         for (int i = 0; i < Domains.CACHE_SIZE; i++) {
@@ -80,9 +80,39 @@ public final class ShortDomain implements Domain<Short> {
         if ((id >= 0) && (id < Domains.CACHE_SIZE)) {
             return CACHE[id];
         }
-        if ((id >= Short.MIN_VALUE) && (id <= Short.MIN_VALUE)) {
+        if ((id >= Short.MIN_VALUE) && (id <= Short.MAX_VALUE)) {
             return (short) id;
         }
         throw new IllegalArgumentException(String.valueOf(id));
     }
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.util.shared.domains.IntDomain#getPrimitiveType()
+     */
+    @Override
+    public Class<?> getPrimitiveType() {
+        return short.class;
+    }
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.util.shared.domains.IntDomain#getID(int)
+     */
+    @Override
+    public int getID(final int value) {
+        if ((value >= Short.MIN_VALUE) && (value <= Short.MAX_VALUE)) {
+            return value;
+        }
+        throw new IllegalArgumentException(String.valueOf(value));
+    }
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.util.shared.domains.IntDomain#getIntValue(int)
+     */
+    @Override
+    public int getIntValue(final int id) {
+        if ((id >= Short.MIN_VALUE) && (id <= Short.MAX_VALUE)) {
+            return id;
+        }
+        throw new IllegalArgumentException(String.valueOf(id));
+    }
 }
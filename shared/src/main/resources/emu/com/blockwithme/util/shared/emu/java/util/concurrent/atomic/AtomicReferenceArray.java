@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2014 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package java.util.concurrent.atomic;
+
+import java.util.Arrays;
+
+/**
+ * Minimal emulation of {@link java.util.concurrent.atomic.AtomicReferenceArray}.
+ * Since the javascript interpreter is single-threaded, it is just a plain
+ * array.
+ *
+ * @param <E> the element type
+ * @author monster
+ */
+public class AtomicReferenceArray<E> implements java.io.Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /** The values. */
+    private final Object[] array;
+
+    /** Creates an array of the given length, with all elements null. */
+    public AtomicReferenceArray(final int length) {
+        array = new Object[length];
+    }
+
+    /** Creates an array with a copy of the given elements. */
+    public AtomicReferenceArray(final E[] values) {
+        array = new Object[values.length];
+        System.arraycopy(values, 0, array, 0, values.length);
+    }
+
+    /** Returns the length of the array. */
+    public final int length() {
+        return array.length;
+    }
+
+    /** Returns the element at index i. */
+    @SuppressWarnings("unchecked")
+    public final E get(final int i) {
+        return (E) array[i];
+    }
+
+    /** Sets the element at index i. */
+    public final void set(final int i, final E newValue) {
+        array[i] = newValue;
+    }
+
+    /** Sets the element at index i. */
+    public final void lazySet(final int i, final E newValue) {
+        array[i] = newValue;
+    }
+
+    /** Sets the element at index i, and returns the old value. */
+    public final E getAndSet(final int i, final E newValue) {
+        final E result = get(i);
+        array[i] = newValue;
+        return result;
+    }
+
+    /** Sets the element at index i, if it is currently expect. */
+    public final boolean compareAndSet(final int i, final E expect,
+            final E update) {
+        if (array[i] == expect) {
+            array[i] = update;
+            return true;
+        }
+        return false;
+    }
+
+    /** Same as compareAndSet(). */
+    public final boolean weakCompareAndSet(final int i, final E expect,
+            final E update) {
+        return compareAndSet(i, expect, update);
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return Arrays.toString(array);
+    }
+}
@@ -0,0 +1,62 @@
+/**
+ *
+ */
+package com.blockwithme.util.shared;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+/** Test class for LongKeyRegistryImpl.
+ *
+ * @author monster
+ *
+ */
+public class LongKeyRegistryImplTest {
+
+    @Test
+    public void testRegister() {
+        final LongKeyRegistryImpl<String> reg = new LongKeyRegistryImpl<String>(
+                String.class);
+        assertNull(reg.find(0));
+        assertNull(reg.register(0, "zero", false));
+        assertNull(reg.register(Long.MIN_VALUE, "min", false));
+        assertEquals("zero", reg.register(0, "other", false));
+        assertEquals("zero", reg.get(0));
+        assertEquals("zero", reg.register(0, "other", true));
+        assertEquals("other", reg.get(0));
+        assertEquals("min", reg.get(Long.MIN_VALUE));
+    }
+
+    @Test
+    public void testGrowAndParent() {
+        final LongKeyRegistryImpl<Long> parent = new LongKeyRegistryImpl<Long>(
+                Long.class);
+        final LongKeyRegistryImpl<Long> reg = new LongKeyRegistryImpl<Long>(
+                Long.class, parent);
+        parent.register(-1, -1L, false);
+        for (long i = 0; i < 10000; i++) {
+            reg.register(i * 0x100000000L, i, false);
+        }
+        for (long i = 0; i < 10000; i++) {
+            assertEquals(Long.valueOf(i), reg.get(i * 0x100000000L));
+        }
+        assertEquals(Long.valueOf(-1), reg.get(-1));
+        assertNull(reg.find(1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadType() {
+        @SuppressWarnings({ "rawtypes", "unchecked" })
+        final LongKeyRegistryImpl<Object> reg = new LongKeyRegistryImpl(
+                String.class);
+        reg.register(1, 1, false);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testMissing() {
+        new LongKeyRegistryAdapter<String>(new LongKeyRegistryImpl<String>())
+                .get(42L);
+    }
+}
@@ -0,0 +1,106 @@
+/**
+ *
+ */
+package com.blockwithme.util.shared;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+/** Test class for SnapshotRegistryImpl.
+ *
+ * @author monster
+ *
+ */
+public class SnapshotRegistryImplTest {
+
+    @Test
+    public void testSnapshot() {
+        final SnapshotRegistryImpl<String, Integer> reg = new SnapshotRegistryImpl<String, Integer>(
+                String.class, Integer.class);
+        assertTrue(reg.snapshot().isEmpty());
+        assertNull(reg.register("a", 1, false));
+        final Map<String, Integer> first = reg.snapshot();
+        assertEquals(Integer.valueOf(1), reg.register("a", 2, false));
+        assertEquals(Integer.valueOf(1), reg.register("a", 2, true));
+        assertEquals(Integer.valueOf(2), reg.get("a"));
+        // Old snapshots are never modified
+        assertEquals(Integer.valueOf(1), first.get("a"));
+        assertEquals(1, first.size());
+    }
+
+    @Test
+    public void testListenersAndBulk() {
+        final SnapshotRegistryImpl<String, Integer> parent = new SnapshotRegistryImpl<String, Integer>();
+        parent.register("p", 0, false);
+        final SnapshotRegistryImpl<String, Integer> reg = new SnapshotRegistryImpl<String, Integer>(
+                parent);
+        final List<Map<String, Integer>> changes = new ArrayList<Map<String, Integer>>();
+        reg.addListener(new RegistryListener<String, Integer>() {
+            @Override
+            public void onChange(
+                    final SnapshotRegistry<String, Integer> registry,
+                    final Map<String, Integer> before,
+                    final Map<String, Integer> after) {
+                changes.add(after);
+            }
+        });
+        final Map<String, Integer> map = new HashMap<String, Integer>();
+        map.put("p", 1);
+        map.put("a", 2);
+        map.put("b", 3);
+        reg.registerAll(map, false);
+        assertEquals(1, changes.size());
+        assertEquals(2, changes.get(0).size());
+        assertFalse(changes.get(0).containsKey("p"));
+        assertEquals(Integer.valueOf(0), reg.get("p"));
+        // Nothing changes, so no notification
+        reg.registerAll(map, false);
+        assertEquals(1, changes.size());
+        final int[] sum = new int[1];
+        reg.forEach(new RegistryVisitor<String, Integer>() {
+            @Override
+            public boolean visit(final String key, final Integer value) {
+                sum[0] += value;
+                return true;
+            }
+        });
+        assertEquals(5, sum[0]);
+    }
+
+    @Test
+    public void testAddRemoveListener() {
+        final SnapshotRegistryImpl<String, Integer> reg = new SnapshotRegistryImpl<String, Integer>();
+        final int[] calls = new int[1];
+        final RegistryListener<String, Integer> listener = new RegistryListener<String, Integer>() {
+            @Override
+            public void onChange(
+                    final SnapshotRegistry<String, Integer> registry,
+                    final Map<String, Integer> before,
+                    final Map<String, Integer> after) {
+                calls[0]++;
+            }
+        };
+        reg.addListener(listener);
+        // Added only once
+        reg.addListener(listener);
+        reg.register("a", 1, false);
+        assertEquals(1, calls[0]);
+        reg.removeListener(listener);
+        reg.register("b", 2, false);
+        assertEquals(1, calls[0]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNullValue() {
+        new SnapshotRegistryImpl<String, Integer>().register("a", null, true);
+    }
+}
@@ -0,0 +1,117 @@
+/**
+ *
+ */
+package com.blockwithme.util.shared;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+/** Test class for Validators.
+ *
+ * @author monster
+ *
+ */
+public class ValidatorsTest {
+
+    @Test
+    public void testSingletons() {
+        assertSame(Validators.any(), Validators.any());
+        assertSame(Validators.nonNull(), Validators.nonNull());
+        assertTrue(Validators.isValid(Validators.any(), null));
+        assertFalse(Validators.isValid(Validators.nonNull(), null));
+        assertEquals("x cannot be null", Validators.nonNull()
+                .validate(null, "x"));
+    }
+
+    @Test
+    public void testCombinators() {
+        final FastValidator<Integer> small = Validators.range(0, 9);
+        final FastValidator<Integer> big = Validators.range(100, 199);
+        final FastValidator<Integer> either = Validators.or(small, big);
+        assertTrue(either.isValid(5));
+        assertTrue(either.isValid(150));
+        assertFalse(either.isValid(50));
+        assertNull(either.validate(5, "v"));
+        assertEquals("v is 50 but must be between 0 and 9"
+                + " and v is 50 but must be between 100 and 199",
+                either.validate(50, "v"));
+        final FastValidator<Integer> notSmall = Validators.not(small);
+        assertFalse(notSmall.isValid(5));
+        assertTrue(notSmall.isValid(50));
+        assertSame(small, Validators.not(notSmall));
+        final FastValidator<Integer> both = Validators.and(
+                Validators.type(Integer.class),
+                Validators.and(notSmall, Validators.range(0, 1000)));
+        assertTrue(both.isValid(50));
+        assertFalse(both.isValid(null));
+        assertFalse(both.isValid(5));
+        assertEquals("v cannot be 5", both.validate(5, "v"));
+        assertEquals("v is 5000 but must be between 0 and 1000",
+                both.validate(5000, "v"));
+    }
+
+    @Test
+    public void testPlainValidator() {
+        final Validator<Integer> even = new Validator<Integer>() {
+            @Override
+            public String validate(final Integer value, final Object name) {
+                return ((value != null) && (value % 2 == 0)) ? null : name
+                        + " is odd";
+            }
+        };
+        assertTrue(Validators.isValid(even, 4));
+        assertFalse(Validators.isValid(even, 3));
+        final FastValidator<Integer> evenSmall = Validators.and(even,
+                Validators.range(0, 9));
+        assertTrue(evenSmall.isValid(4));
+        assertFalse(evenSmall.isValid(3));
+        assertFalse(evenSmall.isValid(12));
+        assertEquals("v is odd", evenSmall.validate(3, "v"));
+        final FastValidator<Integer> odd = Validators.not(even);
+        assertTrue(odd.isValid(3));
+        assertFalse(Validators.not(odd).isValid(3));
+        final RegistryImpl<String, Integer> reg = new RegistryImpl<String, Integer>(
+                null, even);
+        assertNull(reg.register("a", 2, false));
+        try {
+            reg.register("b", 3, false);
+            assertTrue("expected IllegalArgumentException", false);
+        } catch (final IllegalArgumentException e) {
+            assertEquals("value is odd", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testRegisterAll() {
+        final RegistryImpl<String, Integer> reg = new RegistryImpl<String, Integer>(
+                Validators.type(String.class), Validators.range(0, 10));
+        final Map<String, Integer> map = new HashMap<String, Integer>();
+        map.put("a", 1);
+        map.put("b", 2);
+        reg.registerAll(map, false);
+        assertEquals(Integer.valueOf(2), reg.get("b"));
+        map.put("a", 3);
+        map.put("c", 11);
+        try {
+            reg.registerAll(map, true);
+            assertTrue("expected IllegalArgumentException", false);
+        } catch (final IllegalArgumentException e) {
+            // Nothing must have been registered
+            assertEquals(Integer.valueOf(1), reg.get("a"));
+            assertNull(reg.find("c"));
+        }
+        map.remove("c");
+        reg.registerAll(map, false);
+        assertEquals(Integer.valueOf(1), reg.get("a"));
+        reg.registerAll(map, true);
+        assertEquals(Integer.valueOf(3), reg.get("a"));
+    }
+}
@@ -0,0 +1,189 @@
+/**
+ *
+ */
+package com.blockwithme.util.shared.domains;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+/**
+ * Tests the primitive Domains, and their IntDomain view.
+ *
+ * @author monster
+ */
+public class DomainsTest {
+
+    /** Checks that getID(int) rejects value. */
+    private static void badValue(final IntDomain domain, final int value) {
+        try {
+            domain.getID(value);
+            fail(domain.getPrimitiveType() + " accepted value " + value);
+        } catch (final IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    /** Checks that getIntValue(int) rejects id. */
+    private static void badID(final IntDomain domain, final int id) {
+        try {
+            domain.getIntValue(id);
+            fail(domain.getPrimitiveType() + " accepted ID " + id);
+        } catch (final IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    /** Checks that value maps to itself, in both directions. */
+    private static void roundTrip(final IntDomain domain, final int value) {
+        final int id = domain.getID(value);
+        assertEquals(value, id);
+        assertEquals(value, domain.getIntValue(id));
+    }
+
+    @Test
+    public void testPrimitiveTypes() {
+        assertSame(byte.class, Domains.BYTE.getPrimitiveType());
+        assertSame(char.class, Domains.CHARACTER.getPrimitiveType());
+        assertSame(short.class, Domains.SHORT.getPrimitiveType());
+        assertSame(int.class, Domains.INTEGER.getPrimitiveType());
+    }
+
+    @Test
+    public void testByte() {
+        final IntDomain domain = Domains.BYTE;
+        roundTrip(domain, 0);
+        roundTrip(domain, Byte.MIN_VALUE);
+        roundTrip(domain, Byte.MAX_VALUE);
+        badValue(domain, Byte.MIN_VALUE - 1);
+        badValue(domain, Byte.MAX_VALUE + 1);
+        badID(domain, Byte.MAX_VALUE + 1);
+        badID(domain, Integer.MAX_VALUE);
+    }
+
+    @Test
+    public void testCharacter() {
+        final IntDomain domain = Domains.CHARACTER;
+        roundTrip(domain, 0);
+        roundTrip(domain, 'x');
+        roundTrip(domain, Character.MAX_VALUE);
+        badValue(domain, -1);
+        badValue(domain, Character.MAX_VALUE + 1);
+        badID(domain, -1);
+        badID(domain, Integer.MAX_VALUE);
+    }
+
+    @Test
+    public void testShort() {
+        final IntDomain domain = Domains.SHORT;
+        roundTrip(domain, 0);
+        roundTrip(domain, Short.MIN_VALUE);
+        roundTrip(domain, Short.MAX_VALUE);
+        badValue(domain, Short.MIN_VALUE - 1);
+        badValue(domain, Short.MAX_VALUE + 1);
+        badID(domain, Short.MAX_VALUE + 1);
+        badID(domain, Integer.MAX_VALUE);
+    }
+
+    @Test
+    public void testShortGetValue() {
+        final ShortDomain domain = Domains.SHORT;
+        assertEquals(Short.valueOf((short) 7), domain.getValue(7));
+        // Used to be rejected, as the upper bound was Short.MIN_VALUE.
+        assertEquals(Short.valueOf((short) 2000), domain.getValue(2000));
+        assertEquals(Short.valueOf(Short.MAX_VALUE),
+                domain.getValue(Short.MAX_VALUE));
+        assertEquals(Short.valueOf(Short.MIN_VALUE),
+                domain.getValue(Short.MIN_VALUE));
+        assertNull(domain.getValue(Integer.MAX_VALUE));
+        try {
+            domain.getValue(Short.MAX_VALUE + 1);
+            fail("accepted " + (Short.MAX_VALUE + 1));
+        } catch (final IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testInteger() {
+        final IntDomain domain = Domains.INTEGER;
+        roundTrip(domain, 0);
+        roundTrip(domain, Integer.MIN_VALUE);
+        roundTrip(domain, Integer.MAX_VALUE);
+        roundTrip(domain, -42);
+    }
+
+    @Test
+    public void testAdapter() {
+        final IntDomainAdapter adapter = new IntDomainAdapter(Domains.SHORT);
+        assertSame(Domains.SHORT, adapter.getIntDomain());
+        assertSame(Integer.class, adapter.getType());
+        assertTrue(adapter.exactType());
+        assertFalse(adapter.supportsNull());
+        assertEquals(-5, adapter.getID(-5));
+        assertEquals(Integer.valueOf(1000), adapter.getValue(1000));
+        // Values in the cache are shared
+        assertSame(adapter.getValue(3), adapter.getValue(3));
+        try {
+            adapter.getID(Short.MAX_VALUE + 1);
+            fail("adapter accepted an out-of-range value");
+        } catch (final IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            adapter.getID(null);
+            fail("adapter accepted null");
+        } catch (final NullPointerException e) {
+            // expected
+        }
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testAdapterNullDomain() {
+        new IntDomainAdapter(null);
+    }
+
+    @Test
+    public void testFloat() {
+        final FloatDomain domain = Domains.FLOAT;
+        for (final float f : new float[] { 0f, -0f, 1.5f, -3.25f,
+                Float.MAX_VALUE, Float.MIN_VALUE,
+                Float.NEGATIVE_INFINITY }) {
+            final int id = domain.getID(f);
+            assertEquals(domain.getID(Float.valueOf(f)), id);
+            assertEquals(Float.floatToIntBits(f),
+                    Float.floatToIntBits(domain.getFloatValue(id)));
+        }
+        assertTrue(Float.isNaN(domain.getFloatValue(domain.getID(Float.NaN))));
+        try {
+            domain.getFloatValue(domain.getID((Float) null));
+            fail("null ID accepted");
+        } catch (final IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testBoolean() {
+        final BooleanDomain domain = Domains.BOOLEAN;
+        assertEquals(0, domain.getID(false));
+        assertEquals(1, domain.getID(true));
+        assertEquals(domain.getID(Boolean.TRUE), domain.getID(true));
+        assertFalse(domain.getBooleanValue(0));
+        assertTrue(domain.getBooleanValue(1));
+        for (final int id : new int[] { -1, 2,
+                domain.getID((Boolean) null) }) {
+            try {
+                domain.getBooleanValue(id);
+                fail("ID " + id + " accepted");
+            } catch (final IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+}